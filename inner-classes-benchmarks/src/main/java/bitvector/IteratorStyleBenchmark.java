@@ -0,0 +1,181 @@
+package bitvector;
+
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Compares the four iterator styles of BitVector01..04 (static nested, inner, local, anonymous class).
+// Every invocation works on VECTORS vectors with random bits of the given density, so the branch predictor
+// cannot learn a single bit pattern; the reported time is per vector (@OperationsPerInvocation).
+// Each style runs in its own fork, so every call site only ever sees one class, as in a real program.
+
+// Things to look at in the results (run with -prof gc):
+// - gc.alloc.rate.norm of boxedForEach vs intIterator: does escape analysis remove the iterator object
+//   and the Integer boxes, and does that differ between the styles (the inner/local/anonymous iterators
+//   carry a reference to the outer vector, the static nested one does not)?
+// - setBit, equals and hashCode are inherited from BitVectorBase, so all four styles should be equal here;
+//   a difference would point to a measurement problem rather than to the inner class style.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IteratorStyleBenchmark {
+
+    static final int VECTORS = 1024;
+
+    @Param({"BitVector01", "BitVector02", "BitVector03", "BitVector04"})
+    String style;
+
+    // probability of a bit being set
+    @Param({"0.05", "0.5", "0.95"})
+    double density;
+
+    private BitVectorBase[] vectors;
+    private Iterable<Integer>[] iterables;
+    private BitVectorBase[] copies;
+    private int[] positions;
+
+    // random 64-bit word in which every bit is set with the given probability
+    static long randomWord(SplittableRandom random, double density) {
+        long word = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (random.nextDouble() < density) {
+                word |= 1L << bit;
+            }
+        }
+        return word;
+    }
+
+    static BitVectorBase newVector(String style, long value) {
+        switch (style) {
+            case "BitVector01": return new BitVector01(value);
+            case "BitVector02": return new BitVector02(value);
+            case "BitVector03": return new BitVector03(value);
+            case "BitVector04": return new BitVector04(value);
+            default: throw new IllegalArgumentException("Unknown BitVector style: " + style);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        vectors = new BitVectorBase[VECTORS];
+        iterables = new Iterable[VECTORS];
+        copies = new BitVectorBase[VECTORS];
+        positions = new int[VECTORS];
+        for (int i = 0; i < VECTORS; i++) {
+            long value = randomWord(random, density);
+            vectors[i] = newVector(style, value);
+            iterables[i] = (Iterable<Integer>) vectors[i]; // BitVector02..04 implement the raw Iterable
+            copies[i] = newVector(style, value);
+            positions[i] = random.nextInt(Long.SIZE);
+        }
+    }
+
+    // for (Integer bit : vector), i.e. Iterator<Integer>.next() with an Integer per set bit
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public int boxedForEach() {
+        int sum = 0;
+        for (Iterable<Integer> vector : iterables) {
+            for (Integer bit : vector) {
+                sum += bit;
+            }
+        }
+        return sum;
+    }
+
+    // the same iterator, but through nextInt()
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public int intIterator() {
+        int sum = 0;
+        for (BitVectorBase vector : vectors) {
+            PrimitiveIterator.OfInt it = vector.intIterator();
+            while (it.hasNext()) {
+                sum += it.nextInt();
+            }
+        }
+        return sum;
+    }
+
+    // iterator() as declared by Iterable, but the result consumed without boxing: shows whether the JIT
+    // sees through the interface call to the concrete iterator class
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public int iteratorNextInt() {
+        int sum = 0;
+        for (Iterable<Integer> vector : iterables) {
+            Iterator<Integer> it = vector.iterator();
+            PrimitiveIterator.OfInt ints = (PrimitiveIterator.OfInt) it;
+            while (ints.hasNext()) {
+                sum += ints.nextInt();
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public void forEachSetBit(Blackhole blackhole) {
+        for (BitVectorBase vector : vectors) {
+            vector.forEachSetBit(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public long setBit() {
+        long sum = 0;
+        for (int i = 0; i < VECTORS; i++) {
+            BitVectorBase vector = vectors[i];
+            int bit = positions[i];
+            vector.setBit(bit, true);
+            vector.setBit(bit ^ 1, false);
+            sum += vector.getValue();
+        }
+        return sum;
+    }
+
+    // always true: compares every vector with an equal copy, so the whole comparison is executed
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public int equalsCopy() {
+        int equal = 0;
+        for (int i = 0; i < VECTORS; i++) {
+            if (vectors[i].equals(copies[i])) {
+                equal++;
+            }
+        }
+        return equal;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public int hashCodes() {
+        int hash = 0;
+        for (BitVectorBase vector : vectors) {
+            hash = 31 * hash + vector.hashCode();
+        }
+        return hash;
+    }
+}
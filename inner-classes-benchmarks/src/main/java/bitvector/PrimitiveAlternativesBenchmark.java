@@ -0,0 +1,210 @@
+package bitvector;
+
+import java.util.BitSet;
+import java.util.PrimitiveIterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// The baselines for IteratorStyleBenchmark: the same bits (same seed, same densities) processed without
+// any of the BitVector01..04 classes, so the cost of the iterator objects can be read off directly.
+// Times are per 64-bit word, like IteratorStyleBenchmark reports them per vector.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveAlternativesBenchmark {
+
+    static final int WORDS = IteratorStyleBenchmark.VECTORS;
+
+    @Param({"0.05", "0.5", "0.95"})
+    double density;
+
+    private long[] words;
+    private long[] copies;
+    private BitSet[] bitSets;
+    private BitSet[] bitSetCopies;
+    private MultiWordBitVector multiWord;
+    private int[] positions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        words = new long[WORDS];
+        bitSets = new BitSet[WORDS];
+        bitSetCopies = new BitSet[WORDS];
+        positions = new int[WORDS];
+        multiWord = MultiWordBitVector.withCapacity(WORDS * Long.SIZE);
+        for (int i = 0; i < WORDS; i++) {
+            words[i] = IteratorStyleBenchmark.randomWord(random, density);
+            bitSets[i] = BitSet.valueOf(new long[] {words[i]});
+            bitSetCopies[i] = BitSet.valueOf(new long[] {words[i]});
+            positions[i] = random.nextInt(Long.SIZE);
+            multiWord.orWord(i, words[i]);
+        }
+        copies = words.clone();
+    }
+
+    // what the iterators did before: test all 64 bits one after the other
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public int bitByBit() {
+        int sum = 0;
+        for (long word : words) {
+            for (int bit = 0; bit < Long.SIZE; bit++) {
+                if ((word & (1L << bit)) != 0) {
+                    sum += bit;
+                }
+            }
+        }
+        return sum;
+    }
+
+    // the loop all iterators use now, without an iterator object around it
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public int numberOfTrailingZeros() {
+        int sum = 0;
+        for (long word : words) {
+            for (long remaining = word; remaining != 0; remaining &= remaining - 1) {
+                sum += Long.numberOfTrailingZeros(remaining);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public int bitSetNextSetBit() {
+        int sum = 0;
+        for (BitSet bitSet : bitSets) {
+            for (int bit = bitSet.nextSetBit(0); bit >= 0; bit = bitSet.nextSetBit(bit + 1)) {
+                sum += bit;
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public int bitSetStream() {
+        int sum = 0;
+        for (BitSet bitSet : bitSets) {
+            sum += bitSet.stream().sum();
+        }
+        return sum;
+    }
+
+    // all words in one MultiWordBitVector: one iterator for all of them instead of one per word
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public int multiWordIntIterator() {
+        int sum = 0;
+        PrimitiveIterator.OfInt it = multiWord.intIterator();
+        while (it.hasNext()) {
+            sum += it.nextInt() & (Long.SIZE - 1);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void multiWordForEachSetBit(Blackhole blackhole) {
+        multiWord.forEachSetBit(blackhole::consume);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public int multiWordStream() {
+        return multiWord.stream().map(bit -> bit & (Long.SIZE - 1)).sum();
+    }
+
+    // counterpart to IteratorStyleBenchmark.setBit, without the range check and the method call
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public long setBitLong() {
+        long sum = 0;
+        for (int i = 0; i < WORDS; i++) {
+            int bit = positions[i];
+            long word = words[i] | (1L << bit);
+            word &= ~(1L << (bit ^ 1));
+            words[i] = word;
+            sum += word;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public long setBitBitSet() {
+        long sum = 0;
+        for (int i = 0; i < WORDS; i++) {
+            BitSet bitSet = bitSets[i];
+            int bit = positions[i];
+            bitSet.set(bit);
+            bitSet.clear(bit ^ 1);
+            sum += bitSet.length();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public int equalsLong() {
+        int equal = 0;
+        for (int i = 0; i < WORDS; i++) {
+            if (words[i] == copies[i]) {
+                equal++;
+            }
+        }
+        return equal;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public int equalsBitSet() {
+        int equal = 0;
+        for (int i = 0; i < WORDS; i++) {
+            if (bitSets[i].equals(bitSetCopies[i])) {
+                equal++;
+            }
+        }
+        return equal;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public int hashCodeLong() {
+        int hash = 0;
+        for (long word : words) {
+            hash = 31 * hash + Long.hashCode(word);
+        }
+        return hash;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public int hashCodeBitSet() {
+        int hash = 0;
+        for (BitSet bitSet : bitSets) {
+            hash = 31 * hash + bitSet.hashCode();
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,100 @@
+package bitvector;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The WordOps loops with and without the Vector API. Every operation runs twice, each in its own fork:
+// *Scalar without jdk.incubator.vector (and -Dbitvector.vectorApi=false, in case the benchmark JVM itself
+// was started with the module, whose arguments the forks inherit), *Vector with --add-modules
+// jdk.incubator.vector. The forks decide, not the JVM that runs the benchmarks, so plain
+// java -jar benchmarks.jar (and mvn verify -Pbenchmark) measures both.
+
+// The word counts lie around WordOps.VECTOR_THRESHOLD (64): below it both variants run the same scalar
+// loop, so the difference between the two just above it shows whether the threshold is right.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class WordOpsBenchmark {
+
+    static final String SCALAR = "-Dbitvector.vectorApi=false";
+    static final String VECTOR = "--add-modules=jdk.incubator.vector";
+
+    @Param({"16", "32", "63", "64", "128", "1024", "16384"})
+    int words;
+
+    private long[] a;
+    private long[] b;
+    private long[] none;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        a = new long[words];
+        b = new long[words];
+        none = new long[words];
+        for (int i = 0; i < words; i++) {
+            a[i] = random.nextLong();
+            b[i] = random.nextLong();
+        }
+    }
+
+    // or is idempotent and xor applied twice restores a, so the arrays do not drift between invocations
+    private long[] orXor() {
+        WordOps.or(a, b, words);
+        WordOps.xor(a, b, words);
+        WordOps.xor(a, b, words);
+        return a;
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = SCALAR)
+    public long[] orXorScalar() {
+        return orXor();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = VECTOR)
+    public long[] orXorVector() {
+        return orXor();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = SCALAR)
+    public int cardinalityScalar() {
+        return WordOps.cardinality(a, words);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = VECTOR)
+    public int cardinalityVector() {
+        return WordOps.cardinality(a, words);
+    }
+
+    // a has no common bit with none, so intersects has to read all words
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = SCALAR)
+    public boolean intersectsNoneScalar() {
+        return WordOps.intersects(a, none, words);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = VECTOR)
+    public boolean intersectsNoneVector() {
+        return WordOps.intersects(a, none, words);
+    }
+}
@@ -0,0 +1,91 @@
+package bitvector;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Compares the word-wise queries of MultiWordBitVector with testing the bits one by one via isSet.
+// The sparse vector only has its first and its last bit set, the dense one has all bits set, so every
+// query has to cross the whole vector. With 64 bits per word the word-wise queries should be roughly
+// 64 times faster (more if the JIT vectorizes the scan over the zero words).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WordQueryBenchmark {
+
+    @Param({"65536", "16777216"})
+    int bits;
+
+    private MultiWordBitVector sparse;
+    private MultiWordBitVector dense;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sparse = MultiWordBitVector.withCapacity(bits);
+        sparse.setBit(0, true);
+        sparse.setBit(bits - 1, true);
+        dense = MultiWordBitVector.withCapacity(bits);
+        dense.setRange(0, bits, true);
+    }
+
+    // the next set bit after 0, bit by bit
+    @Benchmark
+    public int bitByBitNextSetBit() {
+        for (int bit = 1; bit < bits; bit++) {
+            if (sparse.isSet(bit)) {
+                return bit;
+            }
+        }
+        return -1;
+    }
+
+    @Benchmark
+    public int nextSetBit() {
+        return sparse.nextSetBit(1);
+    }
+
+    // the previous set bit before bits - 1, bit by bit
+    @Benchmark
+    public int bitByBitPreviousSetBit() {
+        for (int bit = bits - 2; bit >= 0; bit--) {
+            if (sparse.isSet(bit)) {
+                return bit;
+            }
+        }
+        return -1;
+    }
+
+    @Benchmark
+    public int previousSetBit() {
+        return sparse.previousSetBit(bits - 2);
+    }
+
+    // the first clear bit, bit by bit
+    @Benchmark
+    public int bitByBitNextClearBit() {
+        int bit = 0;
+        while (bit < bits && dense.isSet(bit)) {
+            bit++;
+        }
+        return bit;
+    }
+
+    @Benchmark
+    public int nextClearBit() {
+        return dense.nextClearBit(0);
+    }
+}
@@ -0,0 +1,253 @@
+package bitvector;
+
+import java.util.Arrays;
+
+// A dense boolean matrix, e.g. "node i reaches node j" or "user i has permission j".
+// An array of BitVectorBase objects would scatter the rows over the heap, with an object header and a
+// pointer per row. Here all rows lie one after the other in a single long[]: row r occupies the words
+// [r * wordsPerRow, (r + 1) * wordsPerRow), bit c of a row is column c (same layout as MultiWordBitVector).
+
+// Operations on rows combine 64 columns per step (WordOps, so the Vector API is used if available).
+// Columns are spread over all rows, one bit per row; for many column accesses transpose the matrix
+// first, then every column is a row.
+class BitMatrix {
+
+    // transpose works on 64 x 64 bit blocks
+    static final int BLOCK = Long.SIZE;
+
+    private final int rows;
+    private final int columns;
+    private final int wordsPerRow;
+    private final long[] words;
+
+    // Constructor for a matrix of the given size with all bits cleared
+    public BitMatrix(int rows, int columns) {
+        if (rows < 0 || columns < 0) {
+            throw new IllegalArgumentException("Matrix size must not be negative, was " + rows + " x " + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.wordsPerRow = MultiWordBitVector.wordsFor(columns);
+        long size = (long) rows * wordsPerRow;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Matrix too large for one array: " + rows + " x " + columns);
+        }
+        this.words = new long[(int) size];
+    }
+
+    // the n x n identity matrix, i.e. every node reaches itself
+    static BitMatrix identity(int n) {
+        BitMatrix identity = new BitMatrix(n, n);
+        for (int i = 0; i < n; i++) {
+            identity.set(i, i, true);
+        }
+        return identity;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int columns() {
+        return columns;
+    }
+
+    private void check(int row, int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new IllegalArgumentException("Position out of range; valid range: [0.." + (rows - 1) + "] x [0.."
+                    + (columns - 1) + "], was (" + row + ", " + column + ")");
+        }
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IllegalArgumentException("Argument row is out of range; valid range: [0.." + (rows - 1) + "], was " + row);
+        }
+    }
+
+    private void checkColumn(int column) {
+        if (column < 0 || column >= columns) {
+            throw new IllegalArgumentException("Argument column is out of range; valid range: [0.." + (columns - 1) + "], was " + column);
+        }
+    }
+
+    boolean get(int row, int column) {
+        check(row, column);
+        return (words[row * wordsPerRow + (column >>> 6)] & (1L << column)) != 0;
+    }
+
+    void set(int row, int column, boolean value) {
+        check(row, column);
+        int index = row * wordsPerRow + (column >>> 6);
+        if (value) {
+            words[index] |= 1L << column;
+        } else {
+            words[index] &= ~(1L << column);
+        }
+    }
+
+    // row target |= row source, e.g. "target reaches everything source reaches"
+    void orRow(int target, int source) {
+        checkRow(target);
+        checkRow(source);
+        WordOps.or(words, target * wordsPerRow, words, source * wordsPerRow, wordsPerRow);
+    }
+
+    // row target &= row source
+    void andRow(int target, int source) {
+        checkRow(target);
+        checkRow(source);
+        WordOps.and(words, target * wordsPerRow, words, source * wordsPerRow, wordsPerRow);
+    }
+
+    // copy of a row as bit vector (bit c = column c)
+    MultiWordBitVector row(int row) {
+        checkRow(row);
+        MultiWordBitVector vector = MultiWordBitVector.withCapacity(columns);
+        for (int i = 0; i < wordsPerRow; i++) {
+            vector.orWord(i, words[row * wordsPerRow + i]);
+        }
+        return vector;
+    }
+
+    // copy of a column as bit vector (bit r = row r); collects 64 rows into one word before storing it
+    MultiWordBitVector column(int column) {
+        checkColumn(column);
+        MultiWordBitVector vector = MultiWordBitVector.withCapacity(rows);
+        int wordIndex = column >>> 6;
+        int shift = column & 63;
+        for (int firstRow = 0; firstRow < rows; firstRow += BLOCK) {
+            long word = 0;
+            for (int r = firstRow, end = Math.min(firstRow + BLOCK, rows); r < end; r++) {
+                word |= ((words[r * wordsPerRow + wordIndex] >>> shift) & 1L) << (r - firstRow);
+            }
+            vector.orWord(firstRow >>> 6, word);
+        }
+        return vector;
+    }
+
+    int cardinality() {
+        return WordOps.cardinality(words, words.length);
+    }
+
+    // The transpose is done block by block: the 64 words of a 64 x 64 block (one word of 64 consecutive rows)
+    // are copied into a small array, transposed there and written to the mirrored block. Transposing bit by
+    // bit would read the rows once per column and miss the cache for large matrices; this way every word
+    // is read and written exactly once.
+    BitMatrix transpose() {
+        BitMatrix result = new BitMatrix(columns, rows);
+        long[] block = new long[BLOCK];
+        for (int firstRow = 0; firstRow < rows; firstRow += BLOCK) {
+            int blockRows = Math.min(BLOCK, rows - firstRow);
+            for (int wordIndex = 0; wordIndex < wordsPerRow; wordIndex++) {
+                for (int i = 0; i < blockRows; i++) {
+                    block[i] = words[(firstRow + i) * wordsPerRow + wordIndex];
+                }
+                Arrays.fill(block, blockRows, BLOCK, 0L);
+                transpose64(block);
+                // row i of the block is column wordIndex * 64 + i of this matrix
+                int blockColumns = Math.min(BLOCK, columns - wordIndex * BLOCK);
+                for (int i = 0; i < blockColumns; i++) {
+                    result.words[(wordIndex * BLOCK + i) * result.wordsPerRow + (firstRow >>> 6)] = block[i];
+                }
+            }
+        }
+        return result;
+    }
+
+    // Transposes a 64 x 64 bit block in place (a[i] is row i, bit j of it column j) in 6 rounds instead of
+    // 4096 single bit moves: the first round swaps the upper right 32 x 32 quadrant with the lower left one,
+    // the next rounds do the same for all 16 x 16 sub-blocks, then 8 x 8 .. 1 x 1
+    // (see "Hacker's Delight", chapter 7.3, with the bit order of Java's shifts).
+    static void transpose64(long[] a) {
+        long mask = 0x00000000FFFFFFFFL; // the low half of every 2 * width bits
+        for (int width = 32; width != 0; width >>>= 1, mask ^= mask << width) {
+            // k runs over the upper rows of each pair of width-row groups, k | width is the matching lower row
+            for (int k = 0; k < BLOCK; k = ((k | width) + 1) & ~width) {
+                long swap = ((a[k] >>> width) ^ a[k | width]) & mask;
+                a[k] ^= swap << width;
+                a[k | width] ^= swap;
+            }
+        }
+    }
+
+    // Boolean matrix product: result(i, j) = OR over k of (this(i, k) AND other(k, j)).
+    // Row i of the result is the OR of the rows k of other for which bit k of row i is set, so the inner
+    // loop combines whole rows of words instead of computing every (i, j) on its own.
+    BitMatrix multiply(BitMatrix other) {
+        if (columns != other.rows) {
+            throw new IllegalArgumentException("Matrix sizes do not match: " + rows + " x " + columns
+                    + " times " + other.rows + " x " + other.columns);
+        }
+        BitMatrix result = new BitMatrix(rows, other.columns);
+        int n = other.wordsPerRow;
+        for (int i = 0; i < rows; i++) {
+            for (int w = 0; w < wordsPerRow; w++) {
+                int base = w * Long.SIZE;
+                for (long word = words[i * wordsPerRow + w]; word != 0; word &= word - 1) {
+                    int k = base + Long.numberOfTrailingZeros(word);
+                    WordOps.or(result.words, i * n, other.words, k * n, n);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Transitive closure with Warshall's algorithm: after step k, (i, j) is set if j can be reached from i
+    // over intermediate nodes 0..k. "i reaches k" adds everything k reaches to row i with one orRow,
+    // so the whole closure takes n^3 / 64 word operations instead of n^3 bit operations.
+    // Only reachability over at least one edge is added; or the identity for the reflexive closure.
+    BitMatrix transitiveClosure() {
+        if (rows != columns) {
+            throw new IllegalArgumentException("Transitive closure needs a square matrix, was " + rows + " x " + columns);
+        }
+        BitMatrix closure = copy();
+        long[] w = closure.words;
+        for (int k = 0; k < rows; k++) {
+            int kWord = k >>> 6;
+            long kMask = 1L << k;
+            for (int i = 0; i < rows; i++) {
+                if ((w[i * wordsPerRow + kWord] & kMask) != 0 && i != k) {
+                    WordOps.or(w, i * wordsPerRow, w, k * wordsPerRow, wordsPerRow);
+                }
+            }
+        }
+        return closure;
+    }
+
+    BitMatrix copy() {
+        BitMatrix copy = new BitMatrix(rows, columns);
+        System.arraycopy(words, 0, copy.words, 0, words.length);
+        return copy;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BitMatrix that = (BitMatrix) o;
+        return rows == that.rows && columns == that.columns && Arrays.equals(words, that.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * rows + columns) + Arrays.hashCode(words);
+    }
+
+    // one line of 0 and 1 per row, for small matrices
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                builder.append(get(r, c) ? '1' : '0');
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,297 @@
+package bitvector;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+class BitVectorBase {
+	long value;
+	
+	BitVectorBase() {};
+	BitVectorBase(long value) {
+		this.value = value;
+	}
+	boolean isSet(int bit) {
+		if (bit<0 || bit>63) {
+			throw new IllegalArgumentException("Argument bit is out of range; valid range: [0..63], was " + bit);
+		}
+		
+		// Test the bit with bitwise AND, the counterpart to setBit below
+		return (value & (1L << bit)) != 0;
+	}
+	
+	void setBit(int bit, boolean set) {
+		if (bit<0 || bit>63) {
+			throw new IllegalArgumentException("Argument bit is out of range; valid range: [0..63], was " + bit);
+		}
+		
+		if (set) {
+            // Set the bit to 1 using bitwise OR
+            value |= (1L << bit);
+        } else {
+            // Clear the bit to 0 using bitwise AND with NOT
+            value &= ~(1L << bit);
+        }
+	}
+	
+	public long getValue() {
+        return value;
+    }
+
+	// word-level view of the bits: bits 64*i .. 64*i+63 form word i. The bulk operations below use it,
+	// so that vectors of different types can be combined; a BitVectorBase has just one word.
+	int wordCount() {
+		return 1;
+	}
+
+	long word(int index) {
+		return index == 0 ? getValue() : 0L;
+	}
+
+	// bulk operations, each one combines a whole word (64 bits) at a time instead of calling setBit per bit.
+	// They modify this vector in place, only the lowest 64 bits of the other vector are used here;
+	// the subclasses with more than one word override them.
+	void and(BitVectorBase other) {
+		value &= other.word(0);
+	}
+
+	void or(BitVectorBase other) {
+		value |= other.word(0);
+	}
+
+	void xor(BitVectorBase other) {
+		value ^= other.word(0);
+	}
+
+	void andNot(BitVectorBase other) {
+		value &= ~other.word(0);
+	}
+
+	// number of set bits, Long.bitCount compiles to a single popcnt instruction
+	int cardinality() {
+		int count = 0;
+		for (int i = 0, words = wordCount(); i < words; i++) {
+			count += Long.bitCount(word(i));
+		}
+		return count;
+	}
+
+	// whether at least one bit is set in both vectors
+	boolean intersects(BitVectorBase other) {
+		return (getValue() & other.word(0)) != 0;
+	}
+
+	// Queries like java.util.BitSet offers them. They look at one word (64 bits) per step and find the bit
+	// within the word with an intrinsic (a single tzcnt/lzcnt instruction), so they take O(words), not O(bits),
+	// and allocate nothing. Written against word(i), so they work for every subclass; subclasses with
+	// direct access to a long[] override them.
+
+	// position of the first set bit at or after fromBit, -1 if there is none
+	int nextSetBit(int fromBit) {
+		if (fromBit < 0) {
+			throw new IllegalArgumentException("Argument fromBit must not be negative, was " + fromBit);
+		}
+		int wordIndex = fromBit >>> 6;
+		int words = wordCount();
+		if (wordIndex >= words) {
+			return -1;
+		}
+		long word = word(wordIndex) & (-1L << fromBit); // ignore the bits below fromBit
+		while (word == 0) {
+			if (++wordIndex == words) {
+				return -1;
+			}
+			word = word(wordIndex);
+		}
+		return wordIndex * Long.SIZE + Long.numberOfTrailingZeros(word);
+	}
+
+	// position of the first clear bit at or after fromBit. All bits behind the last word count as clear,
+	// so this is wordCount() * 64 if all bits from fromBit on are set; -1 if that is beyond Integer.MAX_VALUE
+	int nextClearBit(int fromBit) {
+		if (fromBit < 0) {
+			throw new IllegalArgumentException("Argument fromBit must not be negative, was " + fromBit);
+		}
+		int wordIndex = fromBit >>> 6;
+		int words = wordCount();
+		if (wordIndex >= words) {
+			return fromBit;
+		}
+		long word = ~word(wordIndex) & (-1L << fromBit); // the clear bits, from fromBit on
+		while (word == 0) {
+			if (++wordIndex == words) {
+				long end = (long) words * Long.SIZE;
+				return end <= Integer.MAX_VALUE ? (int) end : -1;
+			}
+			word = ~word(wordIndex);
+		}
+		return wordIndex * Long.SIZE + Long.numberOfTrailingZeros(word);
+	}
+
+	// position of the last set bit at or before fromBit, -1 if there is none (also for fromBit == -1,
+	// so that "for (int i = previousSetBit(n); i >= 0; i = previousSetBit(i - 1))" needs no special case)
+	int previousSetBit(int fromBit) {
+		if (fromBit < 0) {
+			if (fromBit == -1) {
+				return -1;
+			}
+			throw new IllegalArgumentException("Argument fromBit must not be less than -1, was " + fromBit);
+		}
+		int wordIndex = fromBit >>> 6;
+		int words = wordCount();
+		long word;
+		if (wordIndex >= words) {
+			wordIndex = words - 1;
+			if (wordIndex < 0) {
+				return -1;
+			}
+			word = word(wordIndex);
+		} else {
+			word = word(wordIndex) & (-1L >>> (63 - (fromBit & 63))); // ignore the bits above fromBit
+		}
+		while (word == 0) {
+			if (wordIndex-- == 0) {
+				return -1;
+			}
+			word = word(wordIndex);
+		}
+		return wordIndex * Long.SIZE + 63 - Long.numberOfLeadingZeros(word);
+	}
+
+	// calls action with the position of every set bit in ascending order; nothing is boxed or allocated
+	void forEachSetBit(IntConsumer action) {
+		for (long remaining = getValue(); remaining != 0; remaining &= remaining - 1) {
+			action.accept(Long.numberOfTrailingZeros(remaining));
+		}
+	}
+
+	// primitive counterpart to Iterable.iterator(), the subclasses return their own iterator variant
+	PrimitiveIterator.OfInt intIterator() {
+		return new PrimitiveIterator.OfInt() {
+			private long remaining = getValue();
+
+			@Override
+			public boolean hasNext() {
+				return remaining != 0;
+			}
+
+			@Override
+			public int nextInt() {
+				if (remaining == 0) {
+					throw new NoSuchElementException("No more set bits in the BitVector.");
+				}
+				int bit = Long.numberOfTrailingZeros(remaining);
+				remaining &= remaining - 1;
+				return bit;
+			}
+		};
+	}
+	
+	// sized and splittable source for streams over the set bits. It is public because it also overrides
+	// Iterable.spliterator() in the subclasses, so StreamSupport.stream(vector.spliterator(), true) splits, too.
+	public Spliterator.OfInt spliterator() {
+		return new SetBitSpliterator(new long[] {getValue()}, 0, 1);
+	}
+
+	// the positions of the set bits as IntStream, in ascending order
+	IntStream stream() {
+		return StreamSupport.intStream(spliterator(), false);
+	}
+
+	// parallel version: the spliterator is split between words, so the work is spread over the common pool
+	IntStream parallelStream() {
+		return StreamSupport.intStream(spliterator(), true);
+	}
+	
+	// Compact binary form with the layout of a MappedBitVector file (so a written buffer can also be saved
+	// and mapped): int magic, int version, long number of bits, then the words up to the highest set bit,
+	// all little-endian. 8 bytes per 64 bits instead of the 64 chars of Long.toBinaryString.
+	// It is written at the position of the buffer, which is moved behind it; the byte order of the buffer
+	// is not changed.
+	void writeTo(ByteBuffer buffer) {
+		int words = serializedWordCount();
+		ByteBuffer out = writeHeader(buffer, words);
+		for (int i = 0; i < words; i++) {
+			out.putLong(word(i));
+		}
+		buffer.position(out.position());
+	}
+
+	// number of bytes writeTo needs
+	int serializedSize() {
+		return MappedBitVector.HEADER_BYTES + serializedWordCount() * Long.BYTES;
+	}
+
+	// the trailing zero words are not written
+	int serializedWordCount() {
+		int words = wordCount();
+		while (words > 0 && word(words - 1) == 0) {
+			words--;
+		}
+		return words;
+	}
+
+	// checks the space, writes the header and returns a little-endian duplicate of the buffer positioned behind it
+	ByteBuffer writeHeader(ByteBuffer buffer, int words) {
+		if (buffer.remaining() < MappedBitVector.HEADER_BYTES + (long) words * Long.BYTES) {
+			throw new BufferOverflowException();
+		}
+		// number of bits up to and including the highest set bit, so it does not overflow for bit Integer.MAX_VALUE
+		long length = words == 0 ? 0 : (long) words * Long.SIZE - Long.numberOfLeadingZeros(word(words - 1));
+		ByteBuffer out = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		out.putInt(MappedBitVector.MAGIC).putInt(MappedBitVector.VERSION).putLong(length);
+		return out;
+	}
+
+	// reads the header written by writeTo from a little-endian buffer and returns the number of words behind it,
+	// which are guaranteed to be in the buffer
+	static int readHeader(ByteBuffer in) {
+		if (in.remaining() < MappedBitVector.HEADER_BYTES) {
+			throw new BufferUnderflowException();
+		}
+		if (in.getInt() != MappedBitVector.MAGIC || in.getInt() != MappedBitVector.VERSION) {
+			throw new IllegalArgumentException("Not a serialized bit vector (wrong magic number or version)");
+		}
+		long length = in.getLong();
+		if (length < 0 || length > 1L + Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Corrupt serialized bit vector, invalid number of bits: " + length);
+		}
+		int words = (int) ((length + Long.SIZE - 1) / Long.SIZE);
+		if (in.remaining() < words * (long) Long.BYTES) {
+			throw new BufferUnderflowException();
+		}
+		return words;
+	}
+
+	// https://www.baeldung.com/java-equals-hashcode-contracts
+	@Override
+	public boolean equals(Object o) {
+	    // Check for reference equality
+	    if (this == o) {
+	        return true;
+	    }
+	    
+	    // Check for null and type mismatch
+	    if (o == null || getClass() != o.getClass()) {
+	        return false;
+	    }
+	    
+	    // Cast and compare the `value` field
+	    BitVectorBase that = (BitVectorBase) o;
+	    return value == that.value;
+	}
+
+	// not final: subclasses with more than one word (e.g. MultiWordBitVector) have to hash all of them
+	@Override
+	public int hashCode() {
+	    // Generate hash code using the `value` field
+	    return Long.hashCode(value);
+	}
+}
@@ -0,0 +1,515 @@
+package bitvector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+// This whole BitVector concept does not really pertain to this course, it might be from Datenstrukturen und Algorithmen
+// thus we don't need to understand the workings of the BitVector in detail, it complicates matters a bit..
+
+// in the first steps a BitVectorBase and an extending BitVectorXX-class is implemented.
+// then a diagram is given with interfaces to implement, the BitVectorXX class is supposed to implement the Iterable
+// interface, which has a method iterator returning an Iterator
+// the question is now, how do we return an implementing class of Iterator? And it is only here where the fun with
+// inner classes begins. In the end we have to find a way to implement the
+
+// @Override
+// public Iterator<Integer> iterator() { return SomeIterator; } method 
+
+// here we have 4 options that would fulfill the "new" statement in this method using a class inside the class:
+// - an inner static class
+// - an inner class
+// - a local inner class
+// - an anonymous class (where we don't write "class" anywhere!)
+
+// of course we might have a separate class for the Iterator..  using inner classes always suggests a tight connection 
+// between the outer class and the inner class .. the inner class acts as a helper class for the outer class in such
+// a case.
+
+// with that said, we should know these 4 options regarding inner classes in the exam.
+// Prof. Volz presumably had this rather complicated example as exercise in the script as 
+// a combination of an outer class implementing Iterable and an inner class implementing iterator is 
+// a) commonly accepted design and b) the example is probably from another course taught at HS Ansbach.
+
+// additional info about Iterable/Iterator:
+// The Iterable/Iterator combination in Java provides a standardized way to traverse elements  
+// in a collection or custom data structure.
+
+// Iterable Key Method:
+// iterator(): Returns an Iterator object.
+// Iterator: Encapsulates the logic for traversing elements in a collection or data structure.
+// hasNext(): Checks if there are more elements to traverse.
+// next(): Retrieves the next element.
+// remove(): (Optional) Removes the current element from the underlying collection.
+
+// primitive iteration:
+// Iterator<Integer> has to box every bit position into an Integer object (Integer.valueOf).
+// PrimitiveIterator.OfInt extends Iterator<Integer> and adds nextInt(), which returns a plain int.
+// So all four iterators below implement PrimitiveIterator.OfInt: the for-each loop still works via next(),
+// while intIterator() and forEachSetBit(IntConsumer) hand out the positions without allocating anything.
+
+class BitVector01 extends BitVectorBase implements Iterable<Integer> {
+
+    // Constructor for default initialization
+    public BitVector01() {
+        super();
+    }
+
+    // Constructor to initialize with a long value
+    public BitVector01(long value) {
+        super(value);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return intIterator();
+    }
+
+    @Override
+    PrimitiveIterator.OfInt intIterator() {
+        return new BitVectorIterator(getValue());
+    }
+
+    // Static inner class implementing PrimitiveIterator.OfInt (and therefore Iterator<Integer>)
+    private static class BitVectorIterator implements PrimitiveIterator.OfInt {
+        private long remaining;  // The bits of the value that have not been returned yet
+
+        public BitVectorIterator(long value) {
+            this.remaining = value;
+        }
+
+        @Override
+        public boolean hasNext() {
+            // There are more set bits as long as not all bits have been cleared
+            return remaining != 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more set bits in the BitVector.");
+            }
+        	// Instead of testing bit after bit with (value & (1L << currentBit)) != 0 we jump directly
+        	// to the next set bit and clear it afterwards:
+
+			//      	Breakdown of the Expressions
+			//        	Long.numberOfTrailingZeros(remaining):
+			//
+			//        	Counts the 0 bits below the lowest set bit, i.e. it returns the position of the lowest set bit.
+			//        	The JIT compiles it to a single CPU instruction (tzcnt/bsf on x86).
+			//        	Example: remaining = 00001100 in binary, numberOfTrailingZeros returns 2.
+			//
+			//        	remaining &= remaining - 1:
+			//
+			//        	Subtracting 1 flips the lowest set bit to 0 and all the 0 bits below it to 1.
+			//        	The AND with the old value therefore clears exactly the lowest set bit.
+			//        	Example:
+			//        	remaining         = 00001100
+			//        	remaining - 1     = 00001011
+			//        	remaining & (...) = 00001000 (bit 2 is cleared, bit 3 is the next one)
+            int bit = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            return bit;
+        }
+    }
+}
+
+
+class BitVector02 extends BitVectorBase implements Iterable {
+
+	// Constructor for default initialization
+    public BitVector02() {
+        super();
+    }
+
+    // Constructor to initialize with a long value
+    public BitVector02(long value) {
+        super(value);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return intIterator();
+    }
+
+    @Override
+    PrimitiveIterator.OfInt intIterator() {
+        return new BitVectorIterator(getValue());
+    }
+
+	
+    // Inner class implementing PrimitiveIterator.OfInt
+    private class BitVectorIterator implements PrimitiveIterator.OfInt {
+        private long remaining;  // The bits of the value that have not been returned yet
+
+        public BitVectorIterator(long value) {
+            this.remaining = value;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining != 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more set bits in the BitVector.");
+            }
+            // Return the position of the lowest set bit and clear it
+            int bit = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            return bit;
+        }
+    }
+}
+
+class BitVector03 extends BitVectorBase implements Iterable {
+
+	 // Constructor for default initialization
+    public BitVector03() {
+        super();
+    }
+
+    // Constructor to initialize with a long value
+    public BitVector03(long value) {
+        super(value);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return intIterator();
+    }
+
+    @Override
+    PrimitiveIterator.OfInt intIterator() {
+        
+    	// permitted modifiers for a local class
+        class BitVectorIterator implements PrimitiveIterator.OfInt {
+            private long remaining;  // The bits of the value that have not been returned yet
+
+            public BitVectorIterator(long value) {
+                this.remaining = value;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return remaining != 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("No more set bits in the BitVector.");
+                }
+                // Return the position of the lowest set bit and clear it
+                int bit = Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                return bit;
+            }
+        }
+    	
+    	
+    	return new BitVectorIterator(getValue());
+    }
+    
+}
+
+class BitVector04 extends BitVectorBase implements Iterable {
+
+	 // Constructor for default initialization
+    public BitVector04() {
+        super();
+    }
+
+    // Constructor to initialize with a long value
+    public BitVector04(long value) {
+        super(value);
+    }
+    
+    @Override
+    public Iterator<Integer> iterator() {
+        return intIterator();
+    }
+
+    @Override
+    PrimitiveIterator.OfInt intIterator() {
+        return new PrimitiveIterator.OfInt() { // Anonymous class implementing PrimitiveIterator.OfInt
+            private long remaining = getValue(); // Capture the current value
+
+            @Override
+            public boolean hasNext() {
+                return remaining != 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("No more set bits in the BitVector.");
+                }
+                int bit = Long.numberOfTrailingZeros(remaining); // Position of the lowest set bit
+                remaining &= remaining - 1;                      // Clear it
+                return bit;
+            }
+        };
+    }
+}
+
+// here we test everything
+public class BitVectorBaseTest {
+
+	public static void main(String[] args) {
+		BitVectorBase manipulator = new BitVectorBase(0b1010); // Initial value: 10
+        System.out.println("Initial value: " + Long.toBinaryString(manipulator.getValue()));
+
+        manipulator.setBit(1, true); // Set bit 1
+        System.out.println("After setting bit 1: " + Long.toBinaryString(manipulator.getValue()));
+
+        manipulator.setBit(2, false); // Clear bit 2
+        System.out.println("After clearing bit 2: " + Long.toBinaryString(manipulator.getValue()));
+
+        manipulator.setBit(63, true); // Set the highest bit
+        System.out.println("After setting bit 63: " + Long.toBinaryString(manipulator.getValue()));
+        System.out.println("isSet(1): " + manipulator.isSet(1) + ", isSet(2): " + manipulator.isSet(2)
+                + ", nextSetBit(4): " + manipulator.nextSetBit(4) + ", previousSetBit(62): " + manipulator.previousSetBit(62)
+                + ", nextClearBit(0): " + manipulator.nextClearBit(0) + ", cardinality: " + manipulator.cardinality());
+        
+        BitVectorBase bv1 = new BitVectorBase(12345L);
+        BitVectorBase bv2 = new BitVectorBase(12345L);
+        BitVectorBase bv3 = new BitVectorBase(54321L);
+
+        System.out.println("bv1 equals bv2: " + bv1.equals(bv2)); // true
+        System.out.println("bv1 equals bv3: " + bv1.equals(bv3)); // false
+
+        System.out.println("bv1 hashCode: " + bv1.hashCode()); // hash code of 12345L
+        System.out.println("bv2 hashCode: " + bv2.hashCode()); // hash code of 12345L
+        System.out.println("bv3 hashCode: " + bv3.hashCode()); // hash code of 54321L
+        
+        System.out.println("BitVector01");
+        BitVector01 bitVector01 = new BitVector01(); // Create the BitVector01 instance
+
+        // Set bits in the BitVector01 instance
+        bitVector01.setBit(1, true);
+        bitVector01.setBit(3, true);
+        bitVector01.setBit(5, true);
+
+        System.out.println("Bits set in the BitVector:");
+        // Iterate over the bits set in the BitVector01
+        for (int bit : bitVector01) {
+            System.out.println("Bit position: " + bit);
+        }
+
+        // the same bits with the primitive iterator of the anonymous class variant
+        BitVector04 bitVector04 = new BitVector04(bitVector01.getValue());
+        PrimitiveIterator.OfInt bits = bitVector04.intIterator();
+        while (bits.hasNext()) {
+            System.out.println("Bit position (nextInt): " + bits.nextInt());
+        }
+
+        System.out.println("MultiWordBitVector");
+        MultiWordBitVector multiWord = new MultiWordBitVector(); // grows beyond 64 bits when needed
+        multiWord.setBit(3, true);
+        multiWord.setBit(64, true);          // first bit of the second word
+        multiWord.setBit(1_000_000, true);   // the array grows on demand
+        multiWord.setRange(200, 205, true);  // word-level range operation
+        // primitive iteration, no Integer objects are created
+        multiWord.forEachSetBit(bit -> System.out.println("Bit position: " + bit));
+        System.out.println("isSet(64): " + multiWord.isSet(64) + ", length: " + multiWord.length());
+
+        MultiWordBitVector large = MultiWordBitVector.withCapacity(100_000_000);
+        large.setRange(0, 100_000_000, true); // 10^8 bits, set word by word
+        large.setRange(1, 100_000_000, false);
+        System.out.println("10^8 bits set and cleared again, equals single bit 0: " + large.equals(new MultiWordBitVector(1L)));
+
+        // bulk operations combine whole words instead of single bits
+        MultiWordBitVector evens = MultiWordBitVector.withCapacity(1_000_000);
+        MultiWordBitVector lowHalf = MultiWordBitVector.withCapacity(1_000_000);
+        IntStream.range(0, 500_000).forEach(i -> evens.setBit(2 * i, true));
+        lowHalf.setRange(0, 500_000, true);
+        System.out.println("evens and lowHalf: " + MultiWordBitVector.and(evens, lowHalf).cardinality()
+                + ", evens or lowHalf: " + MultiWordBitVector.or(evens, lowHalf).cardinality()
+                + ", evens xor lowHalf: " + MultiWordBitVector.xor(evens, lowHalf).cardinality()
+                + ", evens andNot lowHalf: " + MultiWordBitVector.andNot(evens, lowHalf).cardinality()
+                + " (Vector API used: " + WordOps.VECTOR_API_AVAILABLE + ")");
+        evens.and(lowHalf); // in place
+        System.out.println("in place: " + evens.cardinality() + ", intersects: " + evens.intersects(lowHalf));
+
+        // the set bits as (parallel) IntStream; the spliterator knows its size and splits between words
+        System.out.println("sum of set positions (parallel): " + lowHalf.parallelStream().asLongStream().sum()
+                + ", workers used: " + lowHalf.parallelStream()
+                        .mapToObj(bit -> Thread.currentThread().getName()).distinct().count());
+
+        System.out.println("RankSelectBitVector");
+        RankSelectBitVector index = new RankSelectBitVector();
+        IntStream.range(0, 100_000).forEach(i -> index.setBit(3 * i, true)); // every third position
+        System.out.println("rank(3000): " + index.rank(3000) + ", select(1000): " + index.select(1000)
+                + ", index overhead: " + index.indexSizeInBytes() + " of " + index.capacity() / 8 + " bytes");
+        index.setBit(1, true); // only the block counts from bit 1 on are recomputed with the next query
+        System.out.println("after setBit(1): rank(3000): " + index.rank(3000) + ", select(1): " + index.select(1));
+
+        System.out.println("MappedBitVector");
+        try {
+            Path file = Files.createTempFile("bitvector", ".bits");
+            try (MappedBitVector mapped = MappedBitVector.create(file, 100_000_000)) {
+                mapped.setBit(42, true);
+                mapped.setBit(99_999_999, true);
+                mapped.force(); // durable on disk now
+            }
+            // opening only reads the 16 byte header, no matter how large the file is
+            try (MappedBitVector reopened = MappedBitVector.open(file)) {
+                reopened.forEachSetBit(bit -> System.out.println("Bit position (from file): " + bit));
+            }
+            Files.delete(file);
+        } catch (IOException e) {
+            System.out.println("MappedBitVector failed: " + e);
+        }
+
+        System.out.println("Binary serialization");
+        MultiWordBitVector toSend = new MultiWordBitVector();
+        toSend.setRange(100, 200, true);
+        toSend.setBit(100_000, true);
+        ByteBuffer message = ByteBuffer.allocateDirect(toSend.serializedSize());
+        toSend.writeTo(message);
+        message.flip();
+        System.out.println(toSend.cardinality() + " bits in " + message.remaining() + " bytes, as binary string: "
+                + toSend.wordCount() * Long.SIZE + " chars");
+        BufferBitVector received = BufferBitVector.wrap(message.duplicate()); // no copy of the words
+        MultiWordBitVector copied = MultiWordBitVector.readFrom(message);
+        System.out.println("view: " + received.cardinality() + " bits, isSet(100000): " + received.isSet(100_000)
+                + ", copy equals original: " + copied.equals(toSend) + ", same hashCode: " + (received.hashCode() == toSend.hashCode()));
+
+        System.out.println("CopyOnWriteBitVector");
+        CopyOnWriteBitVector live = new CopyOnWriteBitVector();
+        for (int bit = 0; bit < 10_000_000; bit += 3) {
+            live.setBit(bit, true);
+        }
+        CopyOnWriteBitVector.Snapshot before = live.snapshot(); // O(1), shares all chunks
+        live.setBit(1, true);                                   // copies only the first chunk
+        System.out.println("snapshot: " + before.cardinality() + " bits, isSet(1): " + before.isSet(1)
+                + "; vector: " + live.cardinality() + " bits, isSet(1): " + live.isSet(1)
+                + "; chunks copied since the snapshot: " + live.ownedChunks());
+
+        System.out.println("BitmapIndex");
+        record Customer(String country, String status, boolean newsletter) {}
+        String[] countries = {"DE", "AT", "CH", "FR", "IT", "NL", "PL", "ES"};
+        String[] states = {"ACTIVE", "TRIAL", "CANCELLED"};
+        List<Customer> customers = new ArrayList<>();
+        BitmapIndex<Customer> customerIndex = new BitmapIndex<Customer>()
+                .addColumn("country", Customer::country)
+                .addColumn("status", Customer::status)
+                .addColumn("newsletter", Customer::newsletter);
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < 2_000_000; i++) {
+            Customer customer = new Customer(countries[random.nextInt(countries.length)],
+                    states[random.nextInt(states.length)], random.nextBoolean());
+            customers.add(customer);
+            customerIndex.add(customer);
+        }
+        BitmapIndex.Filter query = BitmapIndex.Filter.and(BitmapIndex.Filter.in("country", "DE", "AT"),
+                BitmapIndex.Filter.eq("status", "ACTIVE"), BitmapIndex.Filter.eq("newsletter", true));
+        for (int round = 0; round < 3; round++) { // the later rounds show the times after the JIT has compiled both
+            long start = System.nanoTime();
+            int matches = customerIndex.count(query);
+            long indexNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            long scanned = customers.stream()
+                    .filter(c -> c.country().equals("DE") || c.country().equals("AT"))
+                    .filter(c -> c.status().equals("ACTIVE"))
+                    .filter(Customer::newsletter)
+                    .count();
+            long scanNanos = System.nanoTime() - start;
+            System.out.println("matches: " + matches + " (scan: " + scanned + "), index: " + indexNanos / 1_000 + " us, scan: "
+                    + scanNanos / 1_000 + " us");
+        }
+
+        System.out.println("BitMatrix");
+        BitMatrix edges = new BitMatrix(3, 3); // 0 -> 1 -> 2
+        edges.set(0, 1, true);
+        edges.set(1, 2, true);
+        System.out.print("edges:\n" + edges + "transitive closure:\n" + edges.transitiveClosure()
+                + "transposed:\n" + edges.transpose());
+        int nodes = 4_000;
+        BitMatrix graph = new BitMatrix(nodes, nodes);
+        for (int i = 0; i < 2 * nodes; i++) {
+            graph.set(random.nextInt(nodes), random.nextInt(nodes), true);
+        }
+        long closureStart = System.nanoTime();
+        BitMatrix reachable = graph.transitiveClosure();
+        System.out.println(nodes + " nodes: " + reachable.cardinality() + " reachable pairs in "
+                + (System.nanoTime() - closureStart) / 1_000_000 + " ms, hash " + reachable.hashCode()
+                + ", equal to the transposed closure of the transposed graph: "
+                + reachable.equals(graph.transpose().transitiveClosure().transpose()));
+
+        System.out.println("CompressedBitmap");
+        CompressedBitmap sparse = new CompressedBitmap();
+        sparse.setBit(7, true);
+        sparse.setBit(2_000_000_000, true);     // a plain bit vector would need 250 MB for this
+        CompressedBitmap runs = new CompressedBitmap();
+        runs.setRange(0, 50_000_000);           // stored as one run per 65536-bit chunk
+        System.out.println("sparse: " + sparse.cardinality() + " bits in ~" + sparse.sizeInBytes() + " bytes");
+        System.out.println("runs: " + runs.cardinality() + " bits in ~" + runs.sizeInBytes() + " bytes");
+        System.out.println("sparse and runs: " + CompressedBitmap.and(sparse, runs).cardinality()
+                + ", sparse or runs: " + CompressedBitmap.or(sparse, runs).cardinality()
+                + ", runs andNot sparse: " + CompressedBitmap.andNot(runs, sparse).cardinality());
+        sparse.forEachSetBit(bit -> System.out.println("Bit position: " + bit));
+
+        System.out.println("ConcurrentBitVector");
+        ConcurrentBitVector shared = new ConcurrentBitVector(1_000_000);
+        // many worker threads of the common pool set neighbouring bits of the same words at the same time
+        IntStream.range(0, 1_000_000).parallel().filter(i -> i % 3 != 0).forEach(i -> shared.setBit(i, true));
+        int[] count = {0};
+        shared.forEachSetBit(bit -> count[0]++);
+        System.out.println("bits set by parallel workers: " + count[0] + " (expected " + (1_000_000 - 333_334) + ")");
+        System.out.println("testAndSet(1) claims an already set bit: " + shared.testAndSet(1)
+                + ", testAndSet(3) claims a free bit: " + shared.testAndSet(3));
+
+        System.out.println("BloomFilter");
+        for (BloomFilter filter : new BloomFilter[]{BloomFilter.create(100_000, 0.01), BloomFilter.createBlocked(100_000, 0.01)}) {
+            for (long key = 0; key < 100_000; key++) {
+                filter.put(key);
+            }
+            int falsePositives = 0;
+            for (long key = 100_000; key < 1_100_000; key++) {
+                if (filter.mightContain(key)) {
+                    falsePositives++;
+                }
+            }
+            filter.put("inner classes");
+            System.out.println(filter + ": false positives " + falsePositives / 10_000.0 + "% (expected ~"
+                    + Math.round(filter.expectedFalsePositiveRate() * 10_000) / 100.0 + "%), contains \"inner classes\": "
+                    + filter.mightContain("inner classes") + ", all keys found: "
+                    + LongStream.range(0, 100_000).allMatch(filter::mightContain));
+        }
+
+        int number = 259; // Example number
+
+        // Convert the number to its binary representation
+        String binaryString = Integer.toBinaryString(number);
+
+        // Add a leading '1' to denote a positive number
+        String leadingOneBinary = "1" + String.format("%63s", binaryString).replace(' ', '0');
+
+        // Group the binary string into bytes (8 bits) and separate with spaces
+        String formattedBinary = IntStream.range(0, leadingOneBinary.length())
+                .filter(i -> i % 8 == 0)
+                .mapToObj(i -> leadingOneBinary.substring(i, Math.min(i + 8, leadingOneBinary.length())))
+                .collect(Collectors.joining(" "));
+
+        // Print the result
+        System.out.println(number + " = (" + formattedBinary + ") as binary number");
+        
+	}
+	
+	
+}
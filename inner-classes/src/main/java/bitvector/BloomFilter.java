@@ -0,0 +1,237 @@
+package bitvector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// A Bloom filter answers "is this key in the set?" with either "definitely not" or "probably yes".
+// Every key sets k bits in a bit vector of m bits, chosen by k hash functions. A lookup checks these k bits:
+// if one of them is 0 the key was never added; if all are 1 it probably was (or other keys set them).
+// With n keys the probability of such a false positive is about (1 - e^(-kn/m))^k, so m and k are
+// computed from the expected number of keys and the accepted false positive rate.
+
+// The bits are stored in a MultiWordBitVector. Instead of k independent hash functions, every key is hashed
+// once to 64 bits and the k positions are derived from its two 32-bit halves h1, h2 as h1 + i * h2
+// ("double hashing", Kirsch and Mitzenmacher), so put/mightContain allocate nothing.
+
+// Two variants are nested in this class:
+// - Standard: the k bits are spread over the whole vector, i.e. up to k cache misses per lookup
+// - Blocked:  the first hash picks one block of 512 bits (8 words = one 64 byte cache line), all k bits
+//             lie in this block, so a lookup touches a single cache line. The price is a slightly higher
+//             false positive rate for the same number of bits.
+abstract class BloomFilter {
+
+    static final int MAGIC = 0x424C4F4D; // "BLOM"
+
+    final MultiWordBitVector bits;
+    final int numBits;
+    final int numHashFunctions;
+
+    BloomFilter(int numBits, int numHashFunctions) {
+        this.numBits = numBits;
+        this.numHashFunctions = numHashFunctions;
+        this.bits = MultiWordBitVector.withCapacity(numBits);
+    }
+
+    // a filter for about expectedInsertions keys with the given false positive rate, e.g. 0.01 for 1%
+    static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        int numBits = optimalNumBits(expectedInsertions, falsePositiveRate);
+        return new Standard(numBits, optimalNumHashFunctions(expectedInsertions, numBits));
+    }
+
+    // the cache-line blocked variant, see above
+    static BloomFilter createBlocked(long expectedInsertions, double falsePositiveRate) {
+        int numBits = optimalNumBits(expectedInsertions, falsePositiveRate);
+        // whole blocks only
+        int blocks = Math.max(1, (int) Math.min((numBits + Blocked.BLOCK_BITS - 1L) / Blocked.BLOCK_BITS,
+                Integer.MAX_VALUE / Blocked.BLOCK_BITS));
+        return new Blocked(blocks * Blocked.BLOCK_BITS, optimalNumHashFunctions(expectedInsertions, numBits));
+    }
+
+    // m = -n * ln(p) / (ln 2)^2
+    static int optimalNumBits(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Argument expectedInsertions must be positive, was " + expectedInsertions);
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("Argument falsePositiveRate must be in (0..1), was " + falsePositiveRate);
+        }
+        double bits = -expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        return (int) Math.max(Long.SIZE, Math.min(bits, Integer.MAX_VALUE));
+    }
+
+    // k = m / n * ln 2
+    static int optimalNumHashFunctions(long expectedInsertions, int numBits) {
+        return Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+    }
+
+    // finalization step of MurmurHash3: spreads every input bit over all 64 output bits
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    // FNV-1a over the chars, then mixed; reads the chars directly, no String or byte[] is created
+    static long hash(CharSequence key) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    // maps a 32-bit hash to [0, range) with a multiplication instead of the slower % ("fastrange", Lemire)
+    static int reduce(int hash, int range) {
+        return (int) (((hash & 0xFFFFFFFFL) * range) >>> 32);
+    }
+
+    abstract void putHash(long hash);
+
+    abstract boolean mightContainHash(long hash);
+
+    void put(long key) {
+        putHash(mix(key));
+    }
+
+    void put(CharSequence key) {
+        putHash(hash(key));
+    }
+
+    boolean mightContain(long key) {
+        return mightContainHash(mix(key));
+    }
+
+    boolean mightContain(CharSequence key) {
+        return mightContainHash(hash(key));
+    }
+
+    int bitSize() {
+        return numBits;
+    }
+
+    int numHashFunctions() {
+        return numHashFunctions;
+    }
+
+    // false positive rate for the keys added so far, estimated from the fraction of set bits
+    double expectedFalsePositiveRate() {
+        return Math.pow((double) bits.cardinality() / numBits, numHashFunctions);
+    }
+
+    // adds all keys of the other filter; both must have been created with the same parameters
+    void union(BloomFilter other) {
+        if (getClass() != other.getClass() || numBits != other.numBits || numHashFunctions != other.numHashFunctions) {
+            throw new IllegalArgumentException("Bloom filters are not compatible: " + this + " and " + other);
+        }
+        bits.or(other.bits);
+    }
+
+    // binary format: magic, variant (0 = standard, 1 = blocked), number of bits, number of hash functions,
+    // then all numBits / 64 words; DataOutput writes big-endian
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(this instanceof Blocked ? 1 : 0);
+        out.writeInt(numBits);
+        out.writeInt(numHashFunctions);
+        for (int i = 0, n = MultiWordBitVector.wordsFor(numBits); i < n; i++) {
+            out.writeLong(bits.word(i));
+        }
+    }
+
+    static BloomFilter readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a serialized Bloom filter, wrong magic number");
+        }
+        int variant = in.readByte();
+        int numBits = in.readInt();
+        int numHashFunctions = in.readInt();
+        if (variant < 0 || variant > 1 || numBits <= 0 || numHashFunctions <= 0
+                || (variant == 1 && numBits % Blocked.BLOCK_BITS != 0)) {
+            throw new IOException("Corrupt Bloom filter header: variant " + variant + ", bits " + numBits
+                    + ", hash functions " + numHashFunctions);
+        }
+        BloomFilter filter = variant == 0 ? new Standard(numBits, numHashFunctions) : new Blocked(numBits, numHashFunctions);
+        for (int i = 0, n = MultiWordBitVector.wordsFor(numBits); i < n; i++) {
+            filter.bits.orWord(i, in.readLong());
+        }
+        return filter;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[bits=" + numBits + ", hashFunctions=" + numHashFunctions + "]";
+    }
+
+    static final class Standard extends BloomFilter {
+
+        Standard(int numBits, int numHashFunctions) {
+            super(numBits, numHashFunctions);
+        }
+
+        @Override
+        void putHash(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= numHashFunctions; i++) {
+                int bit = reduce(h1 + i * h2, numBits);
+                bits.orWord(bit >>> 6, 1L << bit);
+            }
+        }
+
+        @Override
+        boolean mightContainHash(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= numHashFunctions; i++) {
+                int bit = reduce(h1 + i * h2, numBits);
+                if ((bits.word(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    static final class Blocked extends BloomFilter {
+
+        static final int BLOCK_WORDS = 8;
+        static final int BLOCK_BITS = BLOCK_WORDS * Long.SIZE;
+        private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L; // odd, so the multiplication permutes
+
+        private final int numBlocks;
+
+        Blocked(int numBits, int numHashFunctions) {
+            super(numBits, numHashFunctions);
+            this.numBlocks = numBits / BLOCK_BITS;
+        }
+
+        @Override
+        void putHash(long hash) {
+            int firstWord = reduce((int) (hash >>> 32), numBlocks) * BLOCK_WORDS;
+            long h = hash;
+            for (int i = 0; i < numHashFunctions; i++) {
+                h *= GOLDEN_RATIO;
+                int bit = (int) (h >>> 55); // top 9 bits: position 0..511 in the block
+                bits.orWord(firstWord + (bit >>> 6), 1L << bit);
+            }
+        }
+
+        @Override
+        boolean mightContainHash(long hash) {
+            int firstWord = reduce((int) (hash >>> 32), numBlocks) * BLOCK_WORDS;
+            long h = hash;
+            for (int i = 0; i < numHashFunctions; i++) {
+                h *= GOLDEN_RATIO;
+                int bit = (int) (h >>> 55);
+                if ((bits.word(firstWord + (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
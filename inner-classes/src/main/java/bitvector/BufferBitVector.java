@@ -0,0 +1,197 @@
+package bitvector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
+
+// A read-only bit vector directly on top of the bytes written by BitVectorBase.writeTo, e.g. a bitmap
+// that has just been received from the network into a (direct) ByteBuffer. wrap only checks the 16 byte
+// header; every word is read from the buffer when it is used, so nothing is copied or parsed up front.
+// Data in a MemorySegment (Java 22+) can be wrapped the same way via MemorySegment.asByteBuffer().
+
+// The view shares the bytes with the buffer: the vector changes if the bytes are overwritten,
+// so the buffer must not be reused while the vector is in use.
+class BufferBitVector extends BitVectorBase implements Iterable<Integer> {
+
+    private final ByteBuffer words; // read-only, little-endian, exactly the words of the vector
+    private final int wordCount;
+
+    private BufferBitVector(ByteBuffer words, int wordCount) {
+        super();
+        this.words = words;
+        this.wordCount = wordCount;
+    }
+
+    // wraps the serialized vector at the position of the buffer and moves the position behind it
+    static BufferBitVector wrap(ByteBuffer buffer) {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int wordCount = readHeader(in);
+        int size = wordCount * Long.BYTES;
+        // slice and asReadOnlyBuffer reset the byte order to big-endian, so it is set afterwards
+        ByteBuffer words = in.slice(in.position(), size).asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(in.position() + size);
+        return new BufferBitVector(words, wordCount);
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("BufferBitVector is read-only, copy it with MultiWordBitVector.readFrom to modify it");
+    }
+
+    @Override
+    int wordCount() {
+        return wordCount;
+    }
+
+    @Override
+    long word(int index) {
+        return index < wordCount ? words.getLong(index * Long.BYTES) : 0L;
+    }
+
+    @Override
+    boolean isSet(int bit) {
+        MultiWordBitVector.checkBit(bit);
+        return (word(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    @Override
+    void setBit(int bit, boolean set) {
+        throw readOnly();
+    }
+
+    @Override
+    void and(BitVectorBase other) {
+        throw readOnly();
+    }
+
+    @Override
+    void or(BitVectorBase other) {
+        throw readOnly();
+    }
+
+    @Override
+    void xor(BitVectorBase other) {
+        throw readOnly();
+    }
+
+    @Override
+    void andNot(BitVectorBase other) {
+        throw readOnly();
+    }
+
+    // forwarding a received bitmap: the words are copied byte for byte, they already have the right format
+    @Override
+    void writeTo(ByteBuffer buffer) {
+        int words = serializedWordCount();
+        ByteBuffer out = writeHeader(buffer, words);
+        out.put(this.words.duplicate().limit(words * Long.BYTES));
+        buffer.position(out.position());
+    }
+
+    @Override
+    int cardinality() {
+        int count = 0;
+        for (int i = 0; i < wordCount; i++) {
+            count += Long.bitCount(word(i));
+        }
+        return count;
+    }
+
+    @Override
+    boolean intersects(BitVectorBase other) {
+        for (int i = 0; i < wordCount; i++) {
+            if ((word(i) & other.word(i)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the lowest 64 bits, so code written against BitVectorBase keeps working
+    @Override
+    public long getValue() {
+        return word(0);
+    }
+
+    @Override
+    void forEachSetBit(IntConsumer action) {
+        for (int i = 0; i < wordCount; i++) {
+            int base = i * Long.SIZE;
+            for (long word = word(i); word != 0; word &= word - 1) {
+                action.accept(base + Long.numberOfTrailingZeros(word));
+            }
+        }
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return intIterator();
+    }
+
+    @Override
+    PrimitiveIterator.OfInt intIterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index = 0;
+            private long word = word(0);
+
+            @Override
+            public boolean hasNext() {
+                while (word == 0) {
+                    if (++index >= wordCount) {
+                        return false;
+                    }
+                    word = word(index);
+                }
+                return true;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("No more set bits in the BitVector.");
+                }
+                int bit = index * Long.SIZE + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                return bit;
+            }
+        };
+    }
+
+    @Override
+    public Spliterator.OfInt spliterator() {
+        return Spliterators.spliterator(intIterator(), cardinality(),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL);
+    }
+
+    // equal to another view with the same set bits, trailing zero words do not matter
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BufferBitVector that = (BufferBitVector) o;
+        for (int i = 0, n = Math.max(wordCount, that.wordCount); i < n; i++) {
+            if (word(i) != that.word(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // same scheme as MultiWordBitVector, so a view and its copy from readFrom have the same hash code
+    @Override
+    public int hashCode() {
+        long h = 1234;
+        for (int i = wordCount; --i >= 0; ) {
+            h ^= word(i) * (i + 1);
+        }
+        return (int) ((h >> 32) ^ h);
+    }
+}
@@ -0,0 +1,1206 @@
+package bitvector;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+// A compressed bitmap in the style of "Roaring Bitmaps" (Lemire et al.).
+// A plain bit vector needs one bit for every possible position, even if only a handful of bits are set.
+// Here the bit positions are split into chunks of 65536 (2^16): the upper 16 bits of a position select the
+// chunk (the "key"), the lower 16 bits are stored in a container for that chunk. Only chunks with at least
+// one set bit have a container, and every container picks the cheapest of three representations:
+// - ArrayContainer:  sorted char[] of the set positions, 2 bytes per bit, used for up to 4096 bits
+// - BitmapContainer: a fixed long[1024] (8 KB) plain bit vector, used for dense chunks
+// - RunContainer:    (start, length - 1) pairs, 4 bytes per run of consecutive bits, for run-heavy chunks
+
+// char is used for the 16-bit values, because it is Java's only unsigned 16-bit type.
+
+// The containers are static nested classes (like the iterator of BitVector01), the iterator over the
+// whole bitmap is an inner class (like in BitVector02), because it needs the keys and containers of its bitmap.
+class CompressedBitmap extends BitVectorBase implements Iterable<Integer> {
+
+    static final int CHUNK_BITS = 16;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;          // 65536 positions per container
+    static final int ARRAY_MAX_SIZE = 4096;                 // 4096 * 2 bytes = size of a BitmapContainer
+    static final int BITMAP_WORDS = CHUNK_SIZE / Long.SIZE; // 1024 words
+    static final int BITMAP_BYTES = BITMAP_WORDS * Long.BYTES;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size = 0; // number of containers in use
+
+    // Constructor for default initialization
+    public CompressedBitmap() {
+        super();
+        keys = new char[4];
+        containers = new Container[4];
+    }
+
+    // Constructor to initialize the lowest 64 bits with a long value, like BitVectorBase(long)
+    public CompressedBitmap(long value) {
+        this();
+        for (long remaining = value; remaining != 0; remaining &= remaining - 1) {
+            setBit(Long.numberOfTrailingZeros(remaining), true);
+        }
+    }
+
+    private static char highBits(int bit) {
+        return (char) (bit >>> CHUNK_BITS);
+    }
+
+    private static char lowBits(int bit) {
+        return (char) bit;
+    }
+
+    private int containerIndex(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * size);
+            containers = Arrays.copyOf(containers, 2 * size);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        containers[--size] = null;
+    }
+
+    // appends a container with a key larger than all existing keys, used to build results of and/or/andNot
+    private void appendContainer(char key, Container container) {
+        if (container == null) {
+            return;
+        }
+        insertContainer(size, key, container);
+    }
+
+    @Override
+    boolean isSet(int bit) {
+        MultiWordBitVector.checkBit(bit);
+        int index = containerIndex(highBits(bit));
+        return index >= 0 && containers[index].contains(lowBits(bit));
+    }
+
+    @Override
+    void setBit(int bit, boolean set) {
+        MultiWordBitVector.checkBit(bit);
+        char key = highBits(bit);
+        int index = containerIndex(key);
+        if (set) {
+            if (index >= 0) {
+                containers[index] = containers[index].add(lowBits(bit));
+            } else {
+                insertContainer(-index - 1, key, new ArrayContainer().add(lowBits(bit)));
+            }
+        } else if (index >= 0) {
+            Container container = containers[index].remove(lowBits(bit));
+            if (container.cardinality() == 0) {
+                removeContainer(index);
+            } else {
+                containers[index] = container;
+            }
+        }
+    }
+
+    // sets all bits in [fromBit, toBit); every chunk gets a single run, so this costs O(chunks), not O(bits)
+    void setRange(int fromBit, int toBit) {
+        MultiWordBitVector.checkRange(fromBit, toBit);
+        if (fromBit == toBit) {
+            return;
+        }
+        int last = toBit - 1;
+        for (int key = highBits(fromBit); key <= highBits(last); key++) {
+            int start = key == highBits(fromBit) ? lowBits(fromBit) : 0;
+            int end = key == highBits(last) ? lowBits(last) : CHUNK_SIZE - 1;
+            Container run = RunContainer.ofRange(start, end);
+            int index = containerIndex((char) key);
+            if (index >= 0) {
+                containers[index] = Container.or(containers[index], run);
+            } else {
+                insertContainer(-index - 1, (char) key, run);
+            }
+        }
+    }
+
+    @Override
+    int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    // switches every container to its smallest representation, e.g. after many single setBit calls
+    // (setBit only converts between array and bitmap, it never creates run containers on its own)
+    void runOptimize() {
+        for (int i = 0; i < size; i++) {
+            containers[i] = containers[i].optimize();
+        }
+    }
+
+    // rough number of bytes on the heap, object headers included
+    long sizeInBytes() {
+        long bytes = 16 + 16 + 2L * keys.length + 16 + 4L * containers.length;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    // the representation of the chunk that contains bit ("ArrayContainer", "BitmapContainer" or "RunContainer"),
+    // null if none of its bits is set; for tests and debugging
+    String containerType(int bit) {
+        MultiWordBitVector.checkBit(bit);
+        int index = containerIndex(highBits(bit));
+        return index >= 0 ? containers[index].getClass().getSimpleName() : null;
+    }
+
+    // a copy of any bit vector as compressed bitmap
+    static CompressedBitmap copyOf(BitVectorBase vector) {
+        CompressedBitmap copy = new CompressedBitmap();
+        if (vector instanceof CompressedBitmap that) {
+            for (int i = 0; i < that.size; i++) {
+                copy.appendContainer(that.keys[i], that.containers[i].copy());
+            }
+        } else {
+            vector.forEachSetBit(bit -> copy.setBit(bit, true));
+        }
+        return copy;
+    }
+
+    // Allocating forms: the result is a new bitmap, a and b stay unchanged.
+
+    // the bits set in a or b
+    static CompressedBitmap or(CompressedBitmap a, CompressedBitmap b) {
+        return union(a, b, false);
+    }
+
+    // the bits set in exactly one of a and b
+    static CompressedBitmap xor(CompressedBitmap a, CompressedBitmap b) {
+        return union(a, b, true);
+    }
+
+    private static CompressedBitmap union(CompressedBitmap a, CompressedBitmap b, boolean exclusive) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                result.appendContainer(a.keys[i], a.containers[i++].copy());
+            } else if (a.keys[i] > b.keys[j]) {
+                result.appendContainer(b.keys[j], b.containers[j++].copy());
+            } else {
+                Container x = a.containers[i++];
+                Container y = b.containers[j++];
+                result.appendContainer(a.keys[i - 1], exclusive ? Container.xor(x, y) : Container.or(x, y));
+            }
+        }
+        for (; i < a.size; i++) {
+            result.appendContainer(a.keys[i], a.containers[i].copy());
+        }
+        for (; j < b.size; j++) {
+            result.appendContainer(b.keys[j], b.containers[j].copy());
+        }
+        return result;
+    }
+
+    // the bits set in a and in b; only chunks present in both are visited
+    static CompressedBitmap and(CompressedBitmap a, CompressedBitmap b) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                result.appendContainer(a.keys[i], Container.and(a.containers[i++], b.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    // the bits set in a but not in b
+    static CompressedBitmap andNot(CompressedBitmap a, CompressedBitmap b) {
+        CompressedBitmap result = new CompressedBitmap();
+        int j = 0;
+        for (int i = 0; i < a.size; i++) {
+            while (j < b.size && b.keys[j] < a.keys[i]) {
+                j++;
+            }
+            if (j < b.size && b.keys[j] == a.keys[i]) {
+                result.appendContainer(a.keys[i], Container.andNot(a.containers[i], b.containers[j]));
+            } else {
+                result.appendContainer(a.keys[i], a.containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    // In-place forms: compute the result chunk by chunk and take over its containers.
+    // Other vector types are converted to a CompressedBitmap first.
+
+    private static CompressedBitmap compressed(BitVectorBase vector) {
+        return vector instanceof CompressedBitmap that ? that : copyOf(vector);
+    }
+
+    private void replaceWith(CompressedBitmap result) {
+        keys = result.keys;
+        containers = result.containers;
+        size = result.size;
+    }
+
+    @Override
+    void and(BitVectorBase other) {
+        replaceWith(and(this, compressed(other)));
+    }
+
+    @Override
+    void or(BitVectorBase other) {
+        replaceWith(or(this, compressed(other)));
+    }
+
+    @Override
+    void xor(BitVectorBase other) {
+        replaceWith(xor(this, compressed(other)));
+    }
+
+    @Override
+    void andNot(BitVectorBase other) {
+        replaceWith(andNot(this, compressed(other)));
+    }
+
+    @Override
+    boolean intersects(BitVectorBase other) {
+        CompressedBitmap that = compressed(other);
+        int i = 0;
+        int j = 0;
+        while (i < size && j < that.size) {
+            if (keys[i] < that.keys[j]) {
+                i++;
+            } else if (keys[i] > that.keys[j]) {
+                j++;
+            } else if (Container.and(containers[i++], that.containers[j++]) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // word-level view for the other vector types: a chunk has 1024 words
+    @Override
+    int wordCount() {
+        return size == 0 ? 0 : (keys[size - 1] + 1) * BITMAP_WORDS;
+    }
+
+    @Override
+    long word(int index) {
+        int i = containerIndex((char) (index / BITMAP_WORDS));
+        return i >= 0 ? containers[i].word(index % BITMAP_WORDS) : 0L;
+    }
+
+    // the lowest 64 bits, so code written against BitVectorBase keeps working
+    @Override
+    public long getValue() {
+        if (size == 0 || keys[0] != 0) {
+            return 0L;
+        }
+        long value = 0L;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (containers[0].contains((char) bit)) {
+                value |= 1L << bit;
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        // the same bits may be stored in different container types, so the contents are compared
+        CompressedBitmap that = (CompressedBitmap) o;
+        if (size != that.size || !Arrays.equals(keys, 0, size, that.keys, 0, that.size)) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (!containers[i].sameBits(that.containers[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        // computed from the set positions only, independent of the container representation
+        int[] h = {1};
+        forEachSetBit(bit -> h[0] = 31 * h[0] + bit);
+        return h[0];
+    }
+
+    @Override
+    void forEachSetBit(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << CHUNK_BITS, action);
+        }
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return intIterator();
+    }
+
+    @Override
+    PrimitiveIterator.OfInt intIterator() {
+        return new SetBitIterator();
+    }
+
+    @Override
+    public Spliterator.OfInt spliterator() {
+        return new ContainerSpliterator(0, size);
+    }
+
+    // Inner class: splits between containers. The cardinalities of the containers are cached,
+    // so the exact size is known right away (SIZED).
+    // Like the other spliterators, the bitmap must not be modified while a stream runs.
+    private class ContainerSpliterator implements Spliterator.OfInt {
+        private int index;       // next container to start
+        private final int fence; // one past the last container
+        private PrimitiveIterator.OfInt current = null;
+        private long size = 0;   // number of remaining set bits
+
+        ContainerSpliterator(int origin, int fence) {
+            this.index = origin;
+            this.fence = fence;
+            for (int i = origin; i < fence; i++) {
+                size += containers[i].cardinality();
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            while (current == null || !current.hasNext()) {
+                if (index >= fence) {
+                    return false;
+                }
+                current = containers[index].iterator(keys[index] << CHUNK_BITS);
+                index++;
+            }
+            action.accept(current.nextInt());
+            size--;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            if (current != null) {
+                current.forEachRemaining(action);
+            }
+            for (; index < fence; index++) {
+                containers[index].forEach(keys[index] << CHUNK_BITS, action);
+            }
+            size = 0;
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            // only untouched containers are handed out, a container being iterated stays here
+            int middle = (index + fence) >>> 1;
+            if (current != null || middle <= index) {
+                return null;
+            }
+            ContainerSpliterator prefix = new ContainerSpliterator(index, middle);
+            size -= prefix.size;
+            index = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return size;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | SORTED | SIZED | SUBSIZED | NONNULL;
+        }
+
+        // null means natural order, required by SORTED
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            return null;
+        }
+    }
+
+    // Inner class: walks the containers of the enclosing bitmap one after the other.
+    // Only one iterator object per container is created, nothing per element.
+    private class SetBitIterator implements PrimitiveIterator.OfInt {
+        private int index = -1;
+        private PrimitiveIterator.OfInt current = null;
+
+        @Override
+        public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+                if (++index >= size) {
+                    return false;
+                }
+                current = containers[index].iterator(keys[index] << CHUNK_BITS);
+            }
+            return true;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more set bits in the BitVector.");
+            }
+            return current.nextInt();
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Containers: each one holds the lower 16 bits of the positions in one chunk.
+    // add/remove may return a different container if another representation fits better.
+
+    private abstract static class Container {
+
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract void forEach(int high, IntConsumer action);
+
+        abstract PrimitiveIterator.OfInt iterator(int high);
+
+        // sets the bits of this container in a BITMAP_WORDS long array
+        abstract void orInto(long[] words);
+
+        // the 64 bits of word index (0..1023) of this container
+        abstract long word(int index);
+
+        abstract int numberOfRuns();
+
+        abstract long sizeInBytes();
+
+        abstract Container copy();
+
+        // the bits as BITMAP_WORDS words; bitmap containers return their own array, so do not modify it
+        long[] words() {
+            return toWords();
+        }
+
+        long[] toWords() {
+            long[] words = new long[BITMAP_WORDS];
+            orInto(words);
+            return words;
+        }
+
+        boolean sameBits(Container other) {
+            return cardinality() == other.cardinality() && Arrays.equals(words(), other.words());
+        }
+
+        // converts to the smallest of the three representations
+        Container optimize() {
+            return best(cardinality(), numberOfRuns(), this);
+        }
+
+        static long arrayBytes(int cardinality) {
+            return 2L * cardinality;
+        }
+
+        static long runBytes(int runs) {
+            return 4L * runs;
+        }
+
+        private static Container best(int cardinality, int runs, Container current) {
+            long array = cardinality <= ARRAY_MAX_SIZE ? arrayBytes(cardinality) : Long.MAX_VALUE;
+            long run = runBytes(runs);
+            if (run < Math.min(array, BITMAP_BYTES)) {
+                return current instanceof RunContainer ? current : RunContainer.fromWords(current.words(), runs, cardinality);
+            }
+            if (array <= BITMAP_BYTES) {
+                return current instanceof ArrayContainer ? current : ArrayContainer.fromWords(current.words(), cardinality);
+            }
+            return current instanceof BitmapContainer ? current : new BitmapContainer(current.toWords(), cardinality);
+        }
+
+        // picks the representation for a result computed as plain words, null for an empty result
+        static Container fromWords(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality == 0) {
+                return null;
+            }
+            BitmapContainer bitmap = new BitmapContainer(words, cardinality);
+            return best(cardinality, bitmap.numberOfRuns(), bitmap);
+        }
+
+        static Container or(Container a, Container b) {
+            if (a instanceof ArrayContainer x && b instanceof ArrayContainer y) {
+                return ArrayContainer.union(x, y);
+            }
+            if (a instanceof RunContainer x && b instanceof RunContainer y) {
+                return RunContainer.union(x, y).optimize();
+            }
+            long[] words = a.toWords();
+            b.orInto(words);
+            return fromWords(words);
+        }
+
+        static Container and(Container a, Container b) {
+            if (a instanceof ArrayContainer x) {
+                return x.filter(b, true);
+            }
+            if (b instanceof ArrayContainer y) {
+                return y.filter(a, true);
+            }
+            if (a instanceof RunContainer x && b instanceof RunContainer y) {
+                RunContainer result = RunContainer.intersection(x, y);
+                return result.cardinality() == 0 ? null : result.optimize();
+            }
+            long[] words = a.toWords();
+            long[] other = b.words();
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                words[i] &= other[i];
+            }
+            return fromWords(words);
+        }
+
+        static Container xor(Container a, Container b) {
+            long[] words = a.toWords();
+            long[] other = b.words();
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                words[i] ^= other[i];
+            }
+            return fromWords(words);
+        }
+
+        static Container andNot(Container a, Container b) {
+            if (a instanceof ArrayContainer x) {
+                return x.filter(b, false);
+            }
+            long[] words = a.toWords();
+            long[] other = b.words();
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                words[i] &= ~other[i];
+            }
+            return fromWords(words);
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] content;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] content, int cardinality) {
+            this.content = content;
+            this.cardinality = cardinality;
+        }
+
+        static ArrayContainer fromWords(long[] words, int cardinality) {
+            char[] content = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < words.length; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    content[n++] = (char) (i * Long.SIZE + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return new ArrayContainer(content, cardinality);
+        }
+
+        // merge of two sorted arrays; becomes a bitmap if the result gets too large
+        static Container union(ArrayContainer a, ArrayContainer b) {
+            char[] merged = new char[a.cardinality + b.cardinality];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < a.cardinality && j < b.cardinality) {
+                char x = a.content[i];
+                char y = b.content[j];
+                if (x < y) {
+                    merged[n++] = x;
+                    i++;
+                } else if (x > y) {
+                    merged[n++] = y;
+                    j++;
+                } else {
+                    merged[n++] = x;
+                    i++;
+                    j++;
+                }
+            }
+            while (i < a.cardinality) {
+                merged[n++] = a.content[i++];
+            }
+            while (j < b.cardinality) {
+                merged[n++] = b.content[j++];
+            }
+            ArrayContainer result = new ArrayContainer(merged, n);
+            return n <= ARRAY_MAX_SIZE ? result : new BitmapContainer(result.toWords(), n);
+        }
+
+        // keeps the values for which other.contains(value) == keep
+        Container filter(Container other, boolean keep) {
+            char[] result = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(content[i]) == keep) {
+                    result[n++] = content[i];
+                }
+            }
+            return n == 0 ? null : new ArrayContainer(result, n);
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(content, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(content, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX_SIZE) {
+                return new BitmapContainer(toWords(), cardinality).add(value);
+            }
+            index = -index - 1;
+            if (cardinality == content.length) {
+                content = Arrays.copyOf(content, Math.min(Math.max(4, 2 * content.length), ARRAY_MAX_SIZE));
+            }
+            System.arraycopy(content, index, content, index + 1, cardinality - index);
+            content[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(content, 0, cardinality, value);
+            if (index >= 0) {
+                System.arraycopy(content, index + 1, content, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) {
+                action.accept(high | content[i]);
+            }
+        }
+
+        @Override
+        PrimitiveIterator.OfInt iterator(int high) {
+            return new PrimitiveIterator.OfInt() {
+                private int index = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return index < cardinality;
+                }
+
+                @Override
+                public int nextInt() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException("No more set bits in the BitVector.");
+                    }
+                    return high | content[index++];
+                }
+            };
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < cardinality; i++) {
+                words[content[i] >>> 6] |= 1L << content[i];
+            }
+        }
+
+        @Override
+        long word(int index) {
+            int from = index << 6;
+            int i = Arrays.binarySearch(content, 0, cardinality, (char) from);
+            long word = 0L;
+            for (i = i >= 0 ? i : -i - 1; i < cardinality && content[i] < from + Long.SIZE; i++) {
+                word |= 1L << content[i];
+            }
+            return word;
+        }
+
+        @Override
+        int numberOfRuns() {
+            int runs = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (i == 0 || content[i] != content[i - 1] + 1) {
+                    runs++;
+                }
+            }
+            return runs;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16 + 4 + 16 + 2L * content.length;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(content, cardinality), cardinality);
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            long before = words[value >>> 6];
+            long after = before | (1L << value);
+            if (before != after) {
+                words[value >>> 6] = after;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long before = words[value >>> 6];
+            long after = before & ~(1L << value);
+            if (before != after) {
+                words[value >>> 6] = after;
+                if (--cardinality <= ARRAY_MAX_SIZE) {
+                    return ArrayContainer.fromWords(words, cardinality);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                int base = high | (i << 6);
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    action.accept(base + Long.numberOfTrailingZeros(word));
+                }
+            }
+        }
+
+        @Override
+        PrimitiveIterator.OfInt iterator(int high) {
+            return new PrimitiveIterator.OfInt() {
+                private int index = 0;
+                private long word = words[0];
+
+                @Override
+                public boolean hasNext() {
+                    while (word == 0) {
+                        if (++index >= BITMAP_WORDS) {
+                            return false;
+                        }
+                        word = words[index];
+                    }
+                    return true;
+                }
+
+                @Override
+                public int nextInt() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException("No more set bits in the BitVector.");
+                    }
+                    int value = high | (index << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    return value;
+                }
+            };
+        }
+
+        @Override
+        void orInto(long[] target) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                target[i] |= words[i];
+            }
+        }
+
+        @Override
+        long[] words() {
+            return words;
+        }
+
+        @Override
+        long word(int index) {
+            return words[index];
+        }
+
+        @Override
+        int numberOfRuns() {
+            // a run starts at every set bit whose lower neighbour is not set
+            int runs = 0;
+            long previous = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                runs += Long.bitCount(word & ~((word << 1) | (previous >>> 63)));
+                previous = word;
+            }
+            return runs;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16 + 4 + 16 + BITMAP_BYTES;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+    }
+
+    private static final class RunContainer extends Container {
+        // runs[2 * i] is the start of run i, runs[2 * i + 1] its length minus one,
+        // so a run can cover all 65536 values of a chunk
+        private char[] runs;
+        private int numberOfRuns;
+        private int cardinality;
+
+        RunContainer(char[] runs, int numberOfRuns, int cardinality) {
+            this.runs = runs;
+            this.numberOfRuns = numberOfRuns;
+            this.cardinality = cardinality;
+        }
+
+        static RunContainer ofRange(int start, int end) {
+            return new RunContainer(new char[] {(char) start, (char) (end - start)}, 1, end - start + 1);
+        }
+
+        static RunContainer fromWords(long[] words, int numberOfRuns, int cardinality) {
+            char[] runs = new char[2 * numberOfRuns];
+            int n = 0;
+            int value = nextSet(words, 0);
+            while (value >= 0) {
+                int end = nextClear(words, value) - 1;
+                runs[n++] = (char) value;
+                runs[n++] = (char) (end - value);
+                value = end + 1 < CHUNK_SIZE ? nextSet(words, end + 1) : -1;
+            }
+            return new RunContainer(runs, numberOfRuns, cardinality);
+        }
+
+        private static int nextSet(long[] words, int from) {
+            int index = from >>> 6;
+            long word = words[index] & (-1L << from);
+            while (word == 0) {
+                if (++index == BITMAP_WORDS) {
+                    return -1;
+                }
+                word = words[index];
+            }
+            return (index << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        private static int nextClear(long[] words, int from) {
+            int index = from >>> 6;
+            long word = ~words[index] & (-1L << from);
+            while (word == 0) {
+                if (++index == BITMAP_WORDS) {
+                    return CHUNK_SIZE;
+                }
+                word = ~words[index];
+            }
+            return (index << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        private int start(int run) {
+            return runs[2 * run];
+        }
+
+        private int end(int run) {
+            return runs[2 * run] + runs[2 * run + 1];
+        }
+
+        // appends [start, end] to a run list under construction, merging with the previous run if they touch
+        private void appendRun(int start, int end) {
+            if (numberOfRuns > 0 && start <= end(numberOfRuns - 1) + 1) {
+                int lastEnd = end(numberOfRuns - 1);
+                if (end > lastEnd) {
+                    runs[2 * numberOfRuns - 1] = (char) (end - start(numberOfRuns - 1));
+                    cardinality += end - lastEnd;
+                }
+                return;
+            }
+            if (2 * numberOfRuns == runs.length) {
+                runs = Arrays.copyOf(runs, Math.max(4, 2 * runs.length));
+            }
+            runs[2 * numberOfRuns] = (char) start;
+            runs[2 * numberOfRuns + 1] = (char) (end - start);
+            numberOfRuns++;
+            cardinality += end - start + 1;
+        }
+
+        private void insertRun(int run, int start, int end) {
+            if (2 * numberOfRuns == runs.length) {
+                runs = Arrays.copyOf(runs, Math.max(4, 2 * runs.length));
+            }
+            System.arraycopy(runs, 2 * run, runs, 2 * run + 2, 2 * (numberOfRuns - run));
+            runs[2 * run] = (char) start;
+            runs[2 * run + 1] = (char) (end - start);
+            numberOfRuns++;
+        }
+
+        private void deleteRun(int run) {
+            System.arraycopy(runs, 2 * run + 2, runs, 2 * run, 2 * (numberOfRuns - run - 1));
+            numberOfRuns--;
+        }
+
+        // index of the last run starting at or before value, -1 if there is none
+        private int runIndex(int value) {
+            int low = 0;
+            int high = numberOfRuns - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (start(middle) <= value) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return high;
+        }
+
+        static RunContainer union(RunContainer a, RunContainer b) {
+            RunContainer result = new RunContainer(new char[2 * (a.numberOfRuns + b.numberOfRuns)], 0, 0);
+            int i = 0;
+            int j = 0;
+            while (i < a.numberOfRuns || j < b.numberOfRuns) {
+                if (j == b.numberOfRuns || (i < a.numberOfRuns && a.start(i) <= b.start(j))) {
+                    result.appendRun(a.start(i), a.end(i++));
+                } else {
+                    result.appendRun(b.start(j), b.end(j++));
+                }
+            }
+            return result;
+        }
+
+        static RunContainer intersection(RunContainer a, RunContainer b) {
+            RunContainer result = new RunContainer(new char[2 * (a.numberOfRuns + b.numberOfRuns)], 0, 0);
+            int i = 0;
+            int j = 0;
+            while (i < a.numberOfRuns && j < b.numberOfRuns) {
+                int start = Math.max(a.start(i), b.start(j));
+                int end = Math.min(a.end(i), b.end(j));
+                if (start <= end) {
+                    result.appendRun(start, end);
+                }
+                if (a.end(i) < b.end(j)) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            int run = runIndex(value);
+            return run >= 0 && value <= end(run);
+        }
+
+        @Override
+        Container add(char value) {
+            int run = runIndex(value);
+            if (run >= 0 && value <= end(run)) {
+                return this;
+            }
+            boolean extendsPrevious = run >= 0 && end(run) + 1 == value;
+            boolean extendsNext = run + 1 < numberOfRuns && start(run + 1) == value + 1;
+            if (extendsPrevious && extendsNext) {
+                runs[2 * run + 1] = (char) (end(run + 1) - start(run));
+                deleteRun(run + 1);
+            } else if (extendsPrevious) {
+                runs[2 * run + 1]++;
+            } else if (extendsNext) {
+                runs[2 * run + 2] = value;
+                runs[2 * run + 3]++;
+            } else {
+                insertRun(run + 1, value, value);
+            }
+            cardinality++;
+            // isolated values make runs expensive, switch once another representation is smaller
+            return runBytes(numberOfRuns) > Math.min(arrayBytes(cardinality), BITMAP_BYTES) ? optimize() : this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int run = runIndex(value);
+            if (run < 0 || value > end(run)) {
+                return this;
+            }
+            int start = start(run);
+            int end = end(run);
+            if (start == end) {
+                deleteRun(run);
+            } else if (value == start) {
+                runs[2 * run]++;
+                runs[2 * run + 1]--;
+            } else if (value == end) {
+                runs[2 * run + 1]--;
+            } else {
+                runs[2 * run + 1] = (char) (value - 1 - start);
+                insertRun(run + 1, value + 1, end);
+            }
+            cardinality--;
+            return runBytes(numberOfRuns) > Math.min(arrayBytes(cardinality), BITMAP_BYTES) ? optimize() : this;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int run = 0; run < numberOfRuns; run++) {
+                for (int value = start(run), end = end(run); value <= end; value++) {
+                    action.accept(high | value);
+                }
+            }
+        }
+
+        @Override
+        PrimitiveIterator.OfInt iterator(int high) {
+            return new PrimitiveIterator.OfInt() {
+                private int run = 0;
+                private int value = numberOfRuns > 0 ? start(0) : 0;
+
+                @Override
+                public boolean hasNext() {
+                    return run < numberOfRuns;
+                }
+
+                @Override
+                public int nextInt() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException("No more set bits in the BitVector.");
+                    }
+                    int result = high | value;
+                    if (value == end(run)) {
+                        if (++run < numberOfRuns) {
+                            value = start(run);
+                        }
+                    } else {
+                        value++;
+                    }
+                    return result;
+                }
+            };
+        }
+
+        @Override
+        void orInto(long[] words) {
+            // whole words are filled at once, only the first and last word of a run are masked
+            for (int run = 0; run < numberOfRuns; run++) {
+                int from = start(run);
+                int to = end(run) + 1;
+                int startWord = from >>> 6;
+                int endWord = (to - 1) >>> 6;
+                long firstWordMask = -1L << from;
+                long lastWordMask = -1L >>> -to;
+                if (startWord == endWord) {
+                    words[startWord] |= firstWordMask & lastWordMask;
+                } else {
+                    words[startWord] |= firstWordMask;
+                    Arrays.fill(words, startWord + 1, endWord, -1L);
+                    words[endWord] |= lastWordMask;
+                }
+            }
+        }
+
+        @Override
+        long word(int index) {
+            int from = index << 6;
+            int to = from + Long.SIZE - 1;
+            long word = 0L;
+            for (int run = Math.max(0, runIndex(from)); run < numberOfRuns && start(run) <= to; run++) {
+                int start = Math.max(start(run), from);
+                int end = Math.min(end(run), to);
+                if (start <= end) {
+                    word |= (-1L << start) & (-1L >>> (63 - (end & 63)));
+                }
+            }
+            return word;
+        }
+
+        @Override
+        int numberOfRuns() {
+            return numberOfRuns;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16 + 8 + 16 + 2L * runs.length;
+        }
+
+        @Override
+        Container copy() {
+            return new RunContainer(Arrays.copyOf(runs, 2 * numberOfRuns), numberOfRuns, cardinality);
+        }
+    }
+}
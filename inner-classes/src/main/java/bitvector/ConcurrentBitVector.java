@@ -0,0 +1,328 @@
+package bitvector;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+// setBit of BitVectorBase does "value |= mask", which is three steps: read the value, OR the mask, write it back.
+// If two threads set different bits of the same word at the same time, both can read the old value and the
+// second write overwrites the bit of the first one (a "lost update").
+
+// This variant updates every word atomically with a VarHandle on the long[]:
+// getAndBitwiseOr/getAndBitwiseAnd are executed as a single atomic instruction (e.g. "lock or" on x86),
+// so no thread ever blocks another one, and there is no synchronized block serializing the callers.
+// A VarHandle is a typed reference to a variable (here: the elements of a long[]) that offers
+// such atomic access modes, AtomicLongArray uses the same mechanism internally.
+
+// The capacity is fixed when the vector is created: growing a shared array would need a lock or a copy
+// that all threads agree on, which is exactly what we want to avoid for a set of known ids.
+
+// snapshot() copies the vector as it was at one point in time, like a seqlock: every modification
+// increments writesStarted before and writesFinished after it changes words. A copy is only
+// returned if no modification was running when it started (both counters equal) and none started
+// while it was made (writesStarted unchanged), otherwise it is made again. Writers never wait for
+// readers. The price is two atomic increments of shared counters per modification.
+class ConcurrentBitVector extends BitVectorBase implements Iterable<Integer> {
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle WRITES_STARTED;
+    private static final VarHandle WRITES_FINISHED;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            WRITES_STARTED = lookup.findVarHandle(ConcurrentBitVector.class, "writesStarted", long.class);
+            WRITES_FINISHED = lookup.findVarHandle(ConcurrentBitVector.class, "writesFinished", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long[] words;
+    private final int capacity; // number of bits, valid positions are [0..capacity - 1]
+    // number of modifications that have started / finished changing words, see snapshot()
+    private volatile long writesStarted;
+    private volatile long writesFinished;
+
+    // Constructor with the number of bits the vector has to hold
+    public ConcurrentBitVector(int capacity) {
+        super();
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Argument capacity must not be negative, was " + capacity);
+        }
+        this.capacity = capacity;
+        this.words = new long[MultiWordBitVector.wordsFor(capacity)];
+    }
+
+    private void checkBit(int bit) {
+        if (bit < 0 || bit >= capacity) {
+            throw new IllegalArgumentException("Argument bit is out of range; valid range: [0.." + (capacity - 1) + "], was " + bit);
+        }
+    }
+
+    // atomic read of a word, sees all updates made before by getAndBitwiseOr/And in other threads
+    private long loadWord(int index) {
+        return (long) WORDS.getAcquire(words, index);
+    }
+
+    // enclose every modification of words, for snapshot()
+    private void startWrite() {
+        WRITES_STARTED.getAndAdd(this, 1L);
+    }
+
+    private void finishWrite() {
+        WRITES_FINISHED.getAndAdd(this, 1L);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    @Override
+    boolean isSet(int bit) {
+        checkBit(bit);
+        return (loadWord(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    @Override
+    void setBit(int bit, boolean set) {
+        if (set) {
+            testAndSet(bit);
+        } else {
+            testAndClear(bit);
+        }
+    }
+
+    void clearBit(int bit) {
+        testAndClear(bit);
+    }
+
+    // sets the bit and returns whether it was set before; exactly one of several threads
+    // calling testAndSet for the same bit gets false, e.g. to claim an id for processing
+    boolean testAndSet(int bit) {
+        checkBit(bit);
+        long mask = 1L << bit;
+        startWrite();
+        long previous = (long) WORDS.getAndBitwiseOr(words, bit >>> 6, mask);
+        finishWrite();
+        return (previous & mask) != 0;
+    }
+
+    // clears the bit and returns whether it was set before
+    boolean testAndClear(int bit) {
+        checkBit(bit);
+        long mask = 1L << bit;
+        startWrite();
+        long previous = (long) WORDS.getAndBitwiseAnd(words, bit >>> 6, ~mask);
+        finishWrite();
+        return (previous & mask) != 0;
+    }
+
+    @Override
+    int wordCount() {
+        return words.length;
+    }
+
+    @Override
+    long word(int index) {
+        return index < words.length ? loadWord(index) : 0L;
+    }
+
+    // Bulk operations: every word is combined with one atomic instruction, so they can run while other
+    // threads call setBit. isSet, word and the iteration with forEachSetBit may see them half done,
+    // snapshot() sees them completely or not at all.
+
+    @Override
+    void and(BitVectorBase other) {
+        startWrite();
+        try {
+            for (int i = 0; i < words.length; i++) {
+                WORDS.getAndBitwiseAnd(words, i, other.word(i));
+            }
+        } finally {
+            finishWrite();
+        }
+    }
+
+    @Override
+    void or(BitVectorBase other) {
+        checkFits(other);
+        startWrite();
+        try {
+            for (int i = 0; i < words.length; i++) {
+                long word = other.word(i);
+                if (word != 0) {
+                    WORDS.getAndBitwiseOr(words, i, word);
+                }
+            }
+        } finally {
+            finishWrite();
+        }
+    }
+
+    @Override
+    void xor(BitVectorBase other) {
+        checkFits(other);
+        startWrite();
+        try {
+            for (int i = 0; i < words.length; i++) {
+                long word = other.word(i);
+                if (word != 0) {
+                    WORDS.getAndBitwiseXor(words, i, word);
+                }
+            }
+        } finally {
+            finishWrite();
+        }
+    }
+
+    @Override
+    void andNot(BitVectorBase other) {
+        startWrite();
+        try {
+            for (int i = 0; i < words.length; i++) {
+                long word = other.word(i);
+                if (word != 0) {
+                    WORDS.getAndBitwiseAnd(words, i, ~word);
+                }
+            }
+        } finally {
+            finishWrite();
+        }
+    }
+
+    // or/xor would have to set bits beyond the fixed capacity
+    private void checkFits(BitVectorBase other) {
+        for (int i = Math.max(0, words.length - 1), n = other.wordCount(); i < n; i++) {
+            long beyond = i < words.length ? other.word(i) & ~validBits(i) : other.word(i);
+            if (beyond != 0) {
+                throw new IllegalArgumentException("Argument other has bits beyond the capacity of " + capacity + " bits");
+            }
+        }
+    }
+
+    private long validBits(int wordIndex) {
+        int bitsInWord = capacity - wordIndex * Long.SIZE;
+        return bitsInWord >= Long.SIZE ? -1L : (1L << bitsInWord) - 1;
+    }
+
+    @Override
+    int cardinality() {
+        int count = 0;
+        for (int i = 0; i < words.length; i++) {
+            count += Long.bitCount(loadWord(i));
+        }
+        return count;
+    }
+
+    @Override
+    boolean intersects(BitVectorBase other) {
+        for (int i = 0; i < words.length; i++) {
+            if ((loadWord(i) & other.word(i)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Copies the vector as it was at one point in time into a plain MultiWordBitVector: every
+    // modification (including a whole bulk operation) is either completely in the copy or not at all.
+    // While modifications are running the copy is repeated; with writers that never pause it can
+    // take several attempts.
+    MultiWordBitVector snapshot() {
+        long[] copy = new long[words.length];
+        for (int attempt = 1; ; attempt++) {
+            // read finished before started: if they are equal, every modification started so far has finished
+            long finished = writesFinished;
+            long started = writesStarted;
+            if (started == finished) {
+                for (int i = 0; i < words.length; i++) {
+                    copy[i] = loadWord(i);
+                }
+                if (writesStarted == started) {
+                    break;
+                }
+            }
+            // let the writers run, they may be waiting for the processor this thread spins on
+            if (attempt % 64 == 0) {
+                Thread.yield();
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        MultiWordBitVector snapshot = new MultiWordBitVector();
+        snapshot.words = copy;
+        snapshot.wordsInUse = copy.length;
+        snapshot.recalculateWordsInUse();
+        return snapshot;
+    }
+
+    // the lowest 64 bits, so code written against BitVectorBase keeps working
+    @Override
+    public long getValue() {
+        return words.length > 0 ? loadWord(0) : 0L;
+    }
+
+    // iterators work on a snapshot, so concurrent updates never show up in the middle of an iteration
+    @Override
+    public Iterator<Integer> iterator() {
+        return intIterator();
+    }
+
+    @Override
+    PrimitiveIterator.OfInt intIterator() {
+        return snapshot().intIterator();
+    }
+
+    // streams work on a snapshot, too
+    @Override
+    public Spliterator.OfInt spliterator() {
+        return snapshot().spliterator();
+    }
+
+    // Reads every word once (atomically) and reports its set bits, without copying the whole vector.
+    // Weakly consistent: modifications running at the same time may be reported for some words and
+    // not for others; iterator() and spliterator() work on a snapshot() instead.
+    @Override
+    void forEachSetBit(IntConsumer action) {
+        for (int i = 0; i < words.length; i++) {
+            int base = i * Long.SIZE;
+            for (long word = loadWord(i); word != 0; word &= word - 1) {
+                action.accept(base + Long.numberOfTrailingZeros(word));
+            }
+        }
+    }
+
+    // like ConcurrentHashMap.equals: only meaningful while no other thread modifies one of the vectors
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ConcurrentBitVector that = (ConcurrentBitVector) o;
+        if (capacity != that.capacity) {
+            return false;
+        }
+        for (int i = 0; i < words.length; i++) {
+            if (loadWord(i) != that.word(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        long h = 1234;
+        for (int i = words.length; --i >= 0; ) {
+            h ^= loadWord(i) * (i + 1);
+        }
+        return 31 * capacity + (int) ((h >> 32) ^ h);
+    }
+}
@@ -0,0 +1,400 @@
+package bitvector;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
+
+// The anonymous iterator of BitVector04 captures getValue() when it is created, so it keeps iterating the
+// bits of that moment even if setBit is called in between: it iterates a snapshot. For one word that copy
+// is free, for a vector with 10^8 bits a full copy per reader is not.
+
+// This vector stores its words in chunks of 64 words (4096 bits). snapshot() returns an immutable
+// Snapshot that shares the chunks with the vector instead of copying them, in O(1):
+// - after a snapshot, every chunk is shared; the first write to a chunk copies just this chunk (512 bytes)
+//   and from then on writes go to the copy, so memory only grows with the chunks that actually change
+// - the array of chunk references is shared, too, and copied on the first write after a snapshot
+// - chunks that were never written are null and cost nothing
+// Whether the vector still shares a chunk is tracked with an epoch number: snapshot() starts a new epoch,
+// and a chunk belongs to the vector only if it was copied in the current epoch.
+
+// Thread safety: a Snapshot never changes, so any number of threads can read and iterate it without locks,
+// and it never blocks the writer. The vector itself synchronizes its methods; snapshot() only holds the
+// lock for a few field updates.
+// Reading the vector itself (forEachSetBit, the iterator, equals) does not take a snapshot: a snapshot
+// starts a new epoch, after which the next writes would copy every chunk they touch although nobody
+// keeps the snapshot. Call snapshot() explicitly to iterate a state that does not change.
+class CopyOnWriteBitVector extends BitVectorBase implements Iterable<Integer> {
+
+    static final int WORDS_PER_CHUNK = 64;
+    static final int ADDRESS_WORDS_PER_CHUNK = 6;
+
+    private long[][] chunks = new long[0][];
+    private int[] chunkEpochs = new int[0]; // epoch in which the vector copied (and owns) the chunk
+    private int epoch = 0;
+    private boolean chunksShared = false;   // the chunks array itself is shared with the last snapshot
+
+    // Constructor for default initialization, grows when needed
+    public CopyOnWriteBitVector() {
+        super();
+    }
+
+    // an immutable view of the current bits, see above
+    synchronized Snapshot snapshot() {
+        epoch++;
+        chunksShared = true;
+        return new Snapshot(chunks);
+    }
+
+    // the chunk with the given index, ready to be written: allocated, or copied if it is shared
+    private long[] writableChunk(int chunkIndex) {
+        if (chunkIndex >= chunks.length) {
+            int newLength = Math.max(chunkIndex + 1, 2 * chunks.length);
+            chunks = Arrays.copyOf(chunks, newLength);
+            chunkEpochs = Arrays.copyOf(chunkEpochs, newLength);
+            chunksShared = false;
+        } else if (chunksShared) {
+            chunks = chunks.clone();
+            chunksShared = false;
+        }
+        long[] chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            chunk = new long[WORDS_PER_CHUNK];
+        } else if (chunkEpochs[chunkIndex] != epoch) {
+            chunk = chunk.clone();
+        } else {
+            return chunk;
+        }
+        chunks[chunkIndex] = chunk;
+        chunkEpochs[chunkIndex] = epoch;
+        return chunk;
+    }
+
+    private static long word(long[][] chunks, int index) {
+        int chunkIndex = index >>> ADDRESS_WORDS_PER_CHUNK;
+        if (chunkIndex >= chunks.length) {
+            return 0L;
+        }
+        long[] chunk = chunks[chunkIndex];
+        return chunk == null ? 0L : chunk[index & (WORDS_PER_CHUNK - 1)];
+    }
+
+    // sets a whole word; shared chunks are only copied if the word really changes
+    private void setWord(int index, long word) {
+        if (word(chunks, index) != word) {
+            writableChunk(index >>> ADDRESS_WORDS_PER_CHUNK)[index & (WORDS_PER_CHUNK - 1)] = word;
+        }
+    }
+
+    @Override
+    synchronized int wordCount() {
+        return chunks.length * WORDS_PER_CHUNK;
+    }
+
+    @Override
+    synchronized long word(int index) {
+        return word(chunks, index);
+    }
+
+    @Override
+    synchronized boolean isSet(int bit) {
+        MultiWordBitVector.checkBit(bit);
+        return (word(chunks, bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    @Override
+    synchronized void setBit(int bit, boolean set) {
+        MultiWordBitVector.checkBit(bit);
+        int index = bit >>> 6;
+        long word = word(chunks, index);
+        setWord(index, set ? word | (1L << bit) : word & ~(1L << bit));
+    }
+
+    // bulk operations word by word; unchanged words (e.g. and with all ones) do not copy their chunk
+
+    @Override
+    synchronized void and(BitVectorBase other) {
+        for (int i = 0, n = chunks.length * WORDS_PER_CHUNK; i < n; i++) {
+            setWord(i, word(chunks, i) & other.word(i));
+        }
+    }
+
+    @Override
+    synchronized void or(BitVectorBase other) {
+        for (int i = 0, n = other.wordCount(); i < n; i++) {
+            setWord(i, word(chunks, i) | other.word(i));
+        }
+    }
+
+    @Override
+    synchronized void xor(BitVectorBase other) {
+        for (int i = 0, n = other.wordCount(); i < n; i++) {
+            setWord(i, word(chunks, i) ^ other.word(i));
+        }
+    }
+
+    @Override
+    synchronized void andNot(BitVectorBase other) {
+        for (int i = 0, n = Math.min(chunks.length * WORDS_PER_CHUNK, other.wordCount()); i < n; i++) {
+            setWord(i, word(chunks, i) & ~other.word(i));
+        }
+    }
+
+    @Override
+    synchronized int cardinality() {
+        return cardinality(chunks);
+    }
+
+    private static int cardinality(long[][] chunks) {
+        int count = 0;
+        for (long[] chunk : chunks) {
+            if (chunk != null) {
+                for (long word : chunk) {
+                    count += Long.bitCount(word);
+                }
+            }
+        }
+        return count;
+    }
+
+    // the lowest 64 bits, so code written against BitVectorBase keeps working
+    @Override
+    public synchronized long getValue() {
+        return word(chunks, 0);
+    }
+
+    // number of chunks this vector has copied since the last snapshot, i.e. the memory a snapshot costs
+    synchronized int ownedChunks() {
+        int owned = 0;
+        for (int i = 0; i < chunks.length; i++) {
+            if (chunks[i] != null && chunkEpochs[i] == epoch) {
+                owned++;
+            }
+        }
+        return owned;
+    }
+
+    // reads the live chunks under the lock, so other threads cannot modify the vector during the iteration
+    @Override
+    synchronized void forEachSetBit(IntConsumer action) {
+        forEachSetBit(chunks, action);
+    }
+
+    // null chunks are skipped as a whole
+    private static void forEachSetBit(long[][] chunks, IntConsumer action) {
+        for (int c = 0; c < chunks.length; c++) {
+            long[] chunk = chunks[c];
+            if (chunk == null) {
+                continue;
+            }
+            for (int i = 0; i < WORDS_PER_CHUNK; i++) {
+                int base = (c * WORDS_PER_CHUNK + i) * Long.SIZE;
+                for (long word = chunk[i]; word != 0; word &= word - 1) {
+                    action.accept(base + Long.numberOfTrailingZeros(word));
+                }
+            }
+        }
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return intIterator();
+    }
+
+    // reads one word at a time under the lock (weakly consistent, like the iterators of ConcurrentHashMap):
+    // bits changed behind the current position are seen, bits before it are not
+    @Override
+    PrimitiveIterator.OfInt intIterator() {
+        return new SetBitIterator(this);
+    }
+
+    // not SIZED: the number of set bits may change during the traversal
+    @Override
+    public Spliterator.OfInt spliterator() {
+        return Spliterators.spliteratorUnknownSize(intIterator(),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL);
+    }
+
+    // reads the words of both vectors one at a time under their own lock, so two threads comparing
+    // a with b and b with a cannot deadlock; like ConcurrentBitVector.equals only meaningful while no
+    // other thread modifies one of the vectors
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CopyOnWriteBitVector that = (CopyOnWriteBitVector) o;
+        for (int i = 0, n = Math.max(wordCount(), that.wordCount()); i < n; i++) {
+            if (word(i) != that.word(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // same scheme as MultiWordBitVector and Snapshot
+    @Override
+    public synchronized int hashCode() {
+        return hashCode(chunks);
+    }
+
+    private static int hashCode(long[][] chunks) {
+        long h = 1234;
+        for (int i = chunks.length * WORDS_PER_CHUNK; --i >= 0; ) {
+            h ^= word(chunks, i) * (i + 1);
+        }
+        return (int) ((h >> 32) ^ h);
+    }
+
+    // Iterates the set bits through word(i) and wordCount(), which are synchronized for the vector and
+    // plain reads for a Snapshot; wordCount() is read again at the end, the vector may have grown.
+    private static final class SetBitIterator implements PrimitiveIterator.OfInt {
+        private final BitVectorBase bits;
+        private int index = 0;
+        private long word;
+
+        SetBitIterator(BitVectorBase bits) {
+            this.bits = bits;
+            this.word = bits.word(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (word == 0) {
+                if (index + 1 >= bits.wordCount()) {
+                    return false;
+                }
+                word = bits.word(++index);
+            }
+            return true;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more set bits in the BitVector.");
+            }
+            int bit = index * Long.SIZE + Long.numberOfTrailingZeros(word);
+            word &= word - 1;
+            return bit;
+        }
+    }
+
+    // Immutable state of a CopyOnWriteBitVector. All fields are final, so a snapshot can be handed to other
+    // threads without synchronization (the final field semantics make the chunks visible, too).
+    static final class Snapshot extends BitVectorBase implements Iterable<Integer> {
+
+        private final long[][] chunks;
+
+        private Snapshot(long[][] chunks) {
+            super();
+            this.chunks = chunks;
+        }
+
+        private static UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException("A snapshot is immutable, modify the CopyOnWriteBitVector instead");
+        }
+
+        @Override
+        int wordCount() {
+            return chunks.length * WORDS_PER_CHUNK;
+        }
+
+        @Override
+        long word(int index) {
+            return CopyOnWriteBitVector.word(chunks, index);
+        }
+
+        @Override
+        boolean isSet(int bit) {
+            MultiWordBitVector.checkBit(bit);
+            return (word(bit >>> 6) & (1L << bit)) != 0;
+        }
+
+        @Override
+        void setBit(int bit, boolean set) {
+            throw readOnly();
+        }
+
+        @Override
+        void and(BitVectorBase other) {
+            throw readOnly();
+        }
+
+        @Override
+        void or(BitVectorBase other) {
+            throw readOnly();
+        }
+
+        @Override
+        void xor(BitVectorBase other) {
+            throw readOnly();
+        }
+
+        @Override
+        void andNot(BitVectorBase other) {
+            throw readOnly();
+        }
+
+        @Override
+        int cardinality() {
+            return CopyOnWriteBitVector.cardinality(chunks);
+        }
+
+        @Override
+        public long getValue() {
+            return word(0);
+        }
+
+        @Override
+        void forEachSetBit(IntConsumer action) {
+            CopyOnWriteBitVector.forEachSetBit(chunks, action);
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return intIterator();
+        }
+
+        @Override
+        PrimitiveIterator.OfInt intIterator() {
+            return new SetBitIterator(this);
+        }
+
+        @Override
+        public Spliterator.OfInt spliterator() {
+            return Spliterators.spliterator(intIterator(), cardinality(),
+                    Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL);
+        }
+
+        // equal to another snapshot with the same set bits, no matter how the chunks are laid out
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Snapshot that = (Snapshot) o;
+            for (int i = 0, n = Math.max(wordCount(), that.wordCount()); i < n; i++) {
+                if (word(i) != that.word(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // same scheme as MultiWordBitVector
+        @Override
+        public int hashCode() {
+            return CopyOnWriteBitVector.hashCode(chunks);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package bitvector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
+
+// A bit vector whose words live in a file instead of on the heap.
+// FileChannel.map asks the operating system to map the file into the address space of the process:
+// reading a word reads the file page (the OS loads it on first access), writing a word changes the page,
+// and the OS writes changed pages back to the file. So opening costs the same for 1 KB and for 1 GB,
+// nothing is copied onto the heap, and the garbage collector never has to look at the bits.
+
+// File layout (little-endian, so the file looks the same on every platform):
+//   int magic "BITV", int version, long capacity in bits, then capacity / 64 (rounded up) words
+// The header has 16 bytes, so every word starts at an offset divisible by 8.
+
+// Bit positions are ints like in all bit vectors of this package, so a vector has at most 2^31 bits
+// (256 MB), which fits into a single MappedByteBuffer. The capacity is fixed when the file is created.
+class MappedBitVector extends BitVectorBase implements Iterable<Integer>, Closeable {
+
+    static final int MAGIC = 0x42495456; // "BITV"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int wordCount;
+
+    private MappedBitVector(FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        super();
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.wordCount = MultiWordBitVector.wordsFor(capacity);
+    }
+
+    // creates (or overwrites) a file for a vector with the given number of bits, all bits cleared
+    static MappedBitVector create(Path file, int capacity) throws IOException {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Argument capacity must not be negative, was " + capacity);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            long size = HEADER_BYTES + (long) MultiWordBitVector.wordsFor(capacity) * Long.BYTES;
+            // a newly mapped region beyond the old end of file is filled with zeros by the OS
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, capacity);
+            return new MappedBitVector(channel, buffer, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // opens an existing file; only the header is read, the words are loaded by the OS when they are used
+    static MappedBitVector open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a bit vector file, too short: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a bit vector file (wrong magic number or version): " + file);
+            }
+            long capacity = buffer.getLong(8);
+            if (capacity < 0 || capacity > Integer.MAX_VALUE
+                    || channel.size() < HEADER_BYTES + (long) MultiWordBitVector.wordsFor((int) capacity) * Long.BYTES) {
+                throw new IOException("Corrupt bit vector file, capacity " + capacity + " does not match the file size: " + file);
+            }
+            return new MappedBitVector(channel, buffer, (int) capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void checkBit(int bit) {
+        if (bit < 0 || bit >= capacity) {
+            throw new IllegalArgumentException("Argument bit is out of range; valid range: [0.." + (capacity - 1) + "], was " + bit);
+        }
+    }
+
+    private static int offset(int wordIndex) {
+        return HEADER_BYTES + wordIndex * Long.BYTES;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    @Override
+    int wordCount() {
+        return wordCount;
+    }
+
+    @Override
+    long word(int index) {
+        return index < wordCount ? buffer.getLong(offset(index)) : 0L;
+    }
+
+    private void setWord(int index, long word) {
+        buffer.putLong(offset(index), word);
+    }
+
+    @Override
+    boolean isSet(int bit) {
+        checkBit(bit);
+        return (word(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    @Override
+    void setBit(int bit, boolean set) {
+        checkBit(bit);
+        int index = bit >>> 6;
+        long word = word(index);
+        setWord(index, set ? word | (1L << bit) : word & ~(1L << bit));
+    }
+
+    // writes all changed pages to the storage device, like FileChannel.force / fsync;
+    // without it, the OS writes them back at some later point (also after a crash of the JVM, but not of the OS)
+    void force() {
+        buffer.force();
+    }
+
+    // closes the file channel. The mapping itself is released when the buffer is garbage collected,
+    // Java offers no way to unmap a MappedByteBuffer explicitly, so the vector must not be used afterwards.
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    // bulk operations, word by word directly in the mapped file
+
+    @Override
+    void and(BitVectorBase other) {
+        for (int i = 0; i < wordCount; i++) {
+            setWord(i, word(i) & other.word(i));
+        }
+    }
+
+    @Override
+    void or(BitVectorBase other) {
+        checkFits(other);
+        for (int i = 0; i < wordCount; i++) {
+            setWord(i, word(i) | other.word(i));
+        }
+    }
+
+    @Override
+    void xor(BitVectorBase other) {
+        checkFits(other);
+        for (int i = 0; i < wordCount; i++) {
+            setWord(i, word(i) ^ other.word(i));
+        }
+    }
+
+    @Override
+    void andNot(BitVectorBase other) {
+        for (int i = 0; i < wordCount; i++) {
+            setWord(i, word(i) & ~other.word(i));
+        }
+    }
+
+    // or/xor must not set bits beyond the fixed capacity
+    private void checkFits(BitVectorBase other) {
+        for (int i = Math.max(0, wordCount - 1), n = other.wordCount(); i < n; i++) {
+            int bitsInWord = capacity - i * Long.SIZE;
+            long valid = i >= wordCount ? 0L : bitsInWord >= Long.SIZE ? -1L : (1L << bitsInWord) - 1;
+            if ((other.word(i) & ~valid) != 0) {
+                throw new IllegalArgumentException("Argument other has bits beyond the capacity of " + capacity + " bits");
+            }
+        }
+    }
+
+    @Override
+    int cardinality() {
+        int count = 0;
+        for (int i = 0; i < wordCount; i++) {
+            count += Long.bitCount(word(i));
+        }
+        return count;
+    }
+
+    @Override
+    boolean intersects(BitVectorBase other) {
+        for (int i = 0; i < wordCount; i++) {
+            if ((word(i) & other.word(i)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the lowest 64 bits, so code written against BitVectorBase keeps working
+    @Override
+    public long getValue() {
+        return word(0);
+    }
+
+    @Override
+    void forEachSetBit(IntConsumer action) {
+        for (int i = 0; i < wordCount; i++) {
+            int base = i * Long.SIZE;
+            for (long word = word(i); word != 0; word &= word - 1) {
+                action.accept(base + Long.numberOfTrailingZeros(word));
+            }
+        }
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return intIterator();
+    }
+
+    @Override
+    PrimitiveIterator.OfInt intIterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index = 0;
+            private long word = word(0);
+
+            @Override
+            public boolean hasNext() {
+                while (word == 0) {
+                    if (++index >= wordCount) {
+                        return false;
+                    }
+                    word = word(index);
+                }
+                return true;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("No more set bits in the BitVector.");
+                }
+                int bit = index * Long.SIZE + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                return bit;
+            }
+        };
+    }
+
+    @Override
+    public Spliterator.OfInt spliterator() {
+        return Spliterators.spliterator(intIterator(), cardinality(),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        MappedBitVector that = (MappedBitVector) o;
+        if (capacity != that.capacity) {
+            return false;
+        }
+        for (int i = 0; i < wordCount; i++) {
+            if (word(i) != that.word(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        long h = 1234;
+        for (int i = wordCount; --i >= 0; ) {
+            h ^= word(i) * (i + 1);
+        }
+        return 31 * capacity + (int) ((h >> 32) ^ h);
+    }
+}
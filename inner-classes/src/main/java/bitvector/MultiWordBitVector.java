@@ -0,0 +1,532 @@
+package bitvector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+// BitVectorBase can only hold the 64 bits of its single long field. This variant keeps the
+// setBit/isSet/equals/hashCode contract of BitVectorBase, but stores the bits in a long[] that
+// grows on demand, so any non-negative int can be used as bit index.
+
+// bit number i lives in word i >>> 6 (i / 64) at position i & 63 (i % 64).
+// Note that Java only uses the lowest 6 bits of the shift distance for longs, so (1L << i) is the
+// same as (1L << (i & 63)) and we do not have to mask the index ourselves.
+
+// Everything that touches more than one bit (setRange, clear, the bulk operations and/or/xor/andNot,
+// cardinality, equals, hashCode, the iterator) works on whole words, i.e. 64 bits per step, so vectors with 10^8 bits are still cheap to handle.
+class MultiWordBitVector extends BitVectorBase implements Iterable<Integer> {
+
+    static final int ADDRESS_BITS_PER_WORD = 6;
+    static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+    static final long WORD_MASK = 0xFFFFFFFFFFFFFFFFL;
+
+    // bit index Integer.MAX_VALUE is the highest one we can address
+    static final int MAX_WORDS = wordIndex(Integer.MAX_VALUE) + 1;
+
+    long[] words;
+    int wordsInUse = 0; // number of words up to and including the highest non-zero word
+
+    // Constructor for default initialization (room for one word, grows when needed)
+    public MultiWordBitVector() {
+        super();
+        words = new long[1];
+    }
+
+    // Constructor to initialize the lowest 64 bits with a long value, like BitVectorBase(long):
+    // new MultiWordBitVector(0b1010) has the bits 1 and 3 set
+    public MultiWordBitVector(long value) {
+        this();
+        words[0] = value;
+        wordsInUse = value != 0 ? 1 : 0;
+    }
+
+    // An empty vector with an initial capacity in bits, avoids re-allocations for large vectors.
+    // A static factory and not a constructor: an int constructor next to the long one would take
+    // new MultiWordBitVector(0b1010) as capacity and silently create an empty vector.
+    static MultiWordBitVector withCapacity(int initialBits) {
+        MultiWordBitVector vector = new MultiWordBitVector();
+        vector.words = allocate(initialBits);
+        return vector;
+    }
+
+    // the word array for an initial capacity in bits, for withCapacity and the subclasses
+    static long[] allocate(int initialBits) {
+        if (initialBits < 0) {
+            throw new IllegalArgumentException("Argument initialBits must not be negative, was " + initialBits);
+        }
+        return new long[wordsFor(initialBits)];
+    }
+
+    static int wordIndex(int bit) {
+        return bit >>> ADDRESS_BITS_PER_WORD;
+    }
+
+    // number of words needed for the given number of bits, computed in long to avoid an overflow
+    static int wordsFor(int bits) {
+        return (int) (((long) bits + BITS_PER_WORD - 1) >>> ADDRESS_BITS_PER_WORD);
+    }
+
+    static void checkBit(int bit) {
+        if (bit < 0) {
+            throw new IllegalArgumentException("Argument bit is out of range; valid range: [0.." + Integer.MAX_VALUE + "], was " + bit);
+        }
+    }
+
+    static void checkRange(int fromBit, int toBit) {
+        if (fromBit < 0 || toBit < fromBit) {
+            throw new IllegalArgumentException("Invalid bit range; expected 0 <= fromBit <= toBit, was [" + fromBit + ".." + toBit + ")");
+        }
+    }
+
+    // grows the array to hold at least wordsRequired words, at least doubling it to keep setBit amortized O(1)
+    void ensureCapacity(int wordsRequired) {
+        if (words.length < wordsRequired) {
+            int newLength = (int) Math.min(Math.max(2L * words.length, wordsRequired), MAX_WORDS);
+            words = Arrays.copyOf(words, newLength);
+        }
+    }
+
+    // after clearing bits the highest words may have become zero
+    void recalculateWordsInUse() {
+        int i = wordsInUse - 1;
+        while (i >= 0 && words[i] == 0) {
+            i--;
+        }
+        wordsInUse = i + 1;
+    }
+
+    // called by every method that modifies the words, with the lowest word index that may have changed;
+    // subclasses that keep data derived from the words (e.g. RankSelectBitVector) invalidate it here
+    void wordsChanged(int fromWord) {
+    }
+
+    @Override
+    boolean isSet(int bit) {
+        checkBit(bit);
+        int wordIndex = wordIndex(bit);
+        return wordIndex < wordsInUse && (words[wordIndex] & (1L << bit)) != 0;
+    }
+
+    @Override
+    void setBit(int bit, boolean set) {
+        checkBit(bit);
+        int wordIndex = wordIndex(bit);
+        if (set) {
+            ensureCapacity(wordIndex + 1);
+            words[wordIndex] |= (1L << bit);
+            wordsInUse = Math.max(wordsInUse, wordIndex + 1);
+            wordsChanged(wordIndex);
+        } else if (wordIndex < wordsInUse) {
+            words[wordIndex] &= ~(1L << bit);
+            if (wordIndex == wordsInUse - 1) {
+                recalculateWordsInUse();
+            }
+            wordsChanged(wordIndex);
+        }
+    }
+
+    // sets the bits of mask in the given word, for callers that compute whole words themselves (e.g. BloomFilter)
+    void orWord(int wordIndex, long mask) {
+        if (mask == 0) {
+            return;
+        }
+        ensureCapacity(wordIndex + 1);
+        words[wordIndex] |= mask;
+        wordsInUse = Math.max(wordsInUse, wordIndex + 1);
+        wordsChanged(wordIndex);
+    }
+
+    // sets or clears all bits in [fromBit, toBit) with at most two masked words and plain
+    // word assignments in between, instead of calling setBit for every single bit
+    void setRange(int fromBit, int toBit, boolean set) {
+        checkRange(fromBit, toBit);
+        if (fromBit == toBit) {
+            return;
+        }
+        int startWord = wordIndex(fromBit);
+        int endWord = wordIndex(toBit - 1);
+        wordsChanged(startWord);
+        // -1L << fromBit keeps the bits from fromBit upwards, -1L >>> -toBit the bits below toBit
+        long firstWordMask = WORD_MASK << fromBit;
+        long lastWordMask = WORD_MASK >>> -toBit;
+
+        if (set) {
+            ensureCapacity(endWord + 1);
+            if (startWord == endWord) {
+                words[startWord] |= (firstWordMask & lastWordMask);
+            } else {
+                words[startWord] |= firstWordMask;
+                Arrays.fill(words, startWord + 1, endWord, WORD_MASK);
+                words[endWord] |= lastWordMask;
+            }
+            wordsInUse = Math.max(wordsInUse, endWord + 1);
+        } else {
+            if (startWord >= wordsInUse) {
+                return;
+            }
+            if (endWord >= wordsInUse) {
+                endWord = wordsInUse - 1;
+                lastWordMask = WORD_MASK;
+            }
+            if (startWord == endWord) {
+                words[startWord] &= ~(firstWordMask & lastWordMask);
+            } else {
+                words[startWord] &= ~firstWordMask;
+                Arrays.fill(words, startWord + 1, endWord, 0L);
+                words[endWord] &= ~lastWordMask;
+            }
+            recalculateWordsInUse();
+        }
+    }
+
+    // clears all bits but keeps the allocated words for reuse
+    void clear() {
+        wordsChanged(0);
+        Arrays.fill(words, 0, wordsInUse, 0L);
+        wordsInUse = 0;
+    }
+
+    // index of the highest set bit plus one, 0 for an empty vector; a long, because with bit
+    // Integer.MAX_VALUE set the length is 2^31
+    long length() {
+        if (wordsInUse == 0) {
+            return 0;
+        }
+        return (long) BITS_PER_WORD * (wordsInUse - 1) + (BITS_PER_WORD - Long.numberOfLeadingZeros(words[wordsInUse - 1]));
+    }
+
+    // number of bits the vector can hold before it has to grow again
+    long capacity() {
+        return (long) words.length * BITS_PER_WORD;
+    }
+
+    // a copy with its own word array, sized to the words in use
+    MultiWordBitVector copy() {
+        MultiWordBitVector copy = new MultiWordBitVector();
+        copy.words = Arrays.copyOf(words, wordsInUse);
+        copy.wordsInUse = wordsInUse;
+        return copy;
+    }
+
+    @Override
+    int wordCount() {
+        return wordsInUse;
+    }
+
+    @Override
+    long word(int index) {
+        return index < wordsInUse ? words[index] : 0L;
+    }
+
+    // In-place bulk operations. With another MultiWordBitVector the word arrays are combined directly
+    // by WordOps (optionally with the Vector API), other vector types are read through word(i).
+
+    @Override
+    void and(BitVectorBase other) {
+        wordsChanged(0);
+        if (other instanceof MultiWordBitVector that) {
+            int n = Math.min(wordsInUse, that.wordsInUse);
+            WordOps.and(words, that.words, n);
+            Arrays.fill(words, n, wordsInUse, 0L); // the other vector has no bits there
+            wordsInUse = n;
+        } else {
+            for (int i = 0; i < wordsInUse; i++) {
+                words[i] &= other.word(i);
+            }
+        }
+        recalculateWordsInUse();
+    }
+
+    @Override
+    void or(BitVectorBase other) {
+        wordsChanged(0);
+        if (other instanceof MultiWordBitVector that) {
+            ensureCapacity(that.wordsInUse);
+            int n = Math.min(wordsInUse, that.wordsInUse);
+            WordOps.or(words, that.words, n);
+            if (that.wordsInUse > n) {
+                System.arraycopy(that.words, n, words, n, that.wordsInUse - n);
+                wordsInUse = that.wordsInUse;
+            }
+        } else {
+            int otherWords = other.wordCount();
+            ensureCapacity(otherWords);
+            for (int i = 0; i < otherWords; i++) {
+                words[i] |= other.word(i);
+            }
+            wordsInUse = Math.max(wordsInUse, otherWords);
+            recalculateWordsInUse();
+        }
+    }
+
+    @Override
+    void xor(BitVectorBase other) {
+        wordsChanged(0);
+        if (other instanceof MultiWordBitVector that) {
+            ensureCapacity(that.wordsInUse);
+            int n = Math.min(wordsInUse, that.wordsInUse);
+            WordOps.xor(words, that.words, n);
+            if (that.wordsInUse > n) {
+                System.arraycopy(that.words, n, words, n, that.wordsInUse - n);
+                wordsInUse = that.wordsInUse;
+            }
+        } else {
+            int otherWords = other.wordCount();
+            ensureCapacity(otherWords);
+            for (int i = 0; i < otherWords; i++) {
+                words[i] ^= other.word(i);
+            }
+            wordsInUse = Math.max(wordsInUse, otherWords);
+        }
+        recalculateWordsInUse();
+    }
+
+    @Override
+    void andNot(BitVectorBase other) {
+        wordsChanged(0);
+        if (other instanceof MultiWordBitVector that) {
+            WordOps.andNot(words, that.words, Math.min(wordsInUse, that.wordsInUse));
+        } else {
+            for (int i = 0, n = Math.min(wordsInUse, other.wordCount()); i < n; i++) {
+                words[i] &= ~other.word(i);
+            }
+        }
+        recalculateWordsInUse();
+    }
+
+    @Override
+    int cardinality() {
+        return WordOps.cardinality(words, wordsInUse);
+    }
+
+    @Override
+    boolean intersects(BitVectorBase other) {
+        if (other instanceof MultiWordBitVector that) {
+            return WordOps.intersects(words, that.words, Math.min(wordsInUse, that.wordsInUse));
+        }
+        for (int i = 0, n = Math.min(wordsInUse, other.wordCount()); i < n; i++) {
+            if ((words[i] & other.word(i)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the queries of BitVectorBase, directly on the array and only over the words in use
+
+    @Override
+    int nextSetBit(int fromBit) {
+        if (fromBit < 0) {
+            throw new IllegalArgumentException("Argument fromBit must not be negative, was " + fromBit);
+        }
+        int wordIndex = wordIndex(fromBit);
+        if (wordIndex >= wordsInUse) {
+            return -1;
+        }
+        long word = words[wordIndex] & (WORD_MASK << fromBit);
+        while (word == 0) {
+            if (++wordIndex == wordsInUse) {
+                return -1;
+            }
+            word = words[wordIndex];
+        }
+        return wordIndex * BITS_PER_WORD + Long.numberOfTrailingZeros(word);
+    }
+
+    @Override
+    int nextClearBit(int fromBit) {
+        if (fromBit < 0) {
+            throw new IllegalArgumentException("Argument fromBit must not be negative, was " + fromBit);
+        }
+        int wordIndex = wordIndex(fromBit);
+        if (wordIndex >= wordsInUse) {
+            return fromBit;
+        }
+        long word = ~words[wordIndex] & (WORD_MASK << fromBit);
+        while (word == 0) {
+            if (++wordIndex == wordsInUse) {
+                long end = (long) wordsInUse * BITS_PER_WORD;
+                return end <= Integer.MAX_VALUE ? (int) end : -1;
+            }
+            word = ~words[wordIndex];
+        }
+        return wordIndex * BITS_PER_WORD + Long.numberOfTrailingZeros(word);
+    }
+
+    @Override
+    int previousSetBit(int fromBit) {
+        if (fromBit < 0) {
+            if (fromBit == -1) {
+                return -1;
+            }
+            throw new IllegalArgumentException("Argument fromBit must not be less than -1, was " + fromBit);
+        }
+        int wordIndex = wordIndex(fromBit);
+        long word;
+        if (wordIndex >= wordsInUse) {
+            // all bits of the highest word in use are below fromBit (and it is never 0, if there is one)
+            wordIndex = wordsInUse - 1;
+            if (wordIndex < 0) {
+                return -1;
+            }
+            word = words[wordIndex];
+        } else {
+            word = words[wordIndex] & (WORD_MASK >>> (BITS_PER_WORD - 1 - (fromBit & (BITS_PER_WORD - 1))));
+        }
+        while (word == 0) {
+            if (wordIndex-- == 0) {
+                return -1;
+            }
+            word = words[wordIndex];
+        }
+        return wordIndex * BITS_PER_WORD + BITS_PER_WORD - 1 - Long.numberOfLeadingZeros(word);
+    }
+
+    // allocating forms: the result is a new vector, a and b stay unchanged
+
+    static MultiWordBitVector and(MultiWordBitVector a, MultiWordBitVector b) {
+        // copy the shorter one, the result cannot be longer than that
+        MultiWordBitVector result = (a.wordsInUse <= b.wordsInUse ? a : b).copy();
+        result.and(a.wordsInUse <= b.wordsInUse ? b : a);
+        return result;
+    }
+
+    static MultiWordBitVector or(MultiWordBitVector a, MultiWordBitVector b) {
+        MultiWordBitVector result = (a.wordsInUse >= b.wordsInUse ? a : b).copy();
+        result.or(a.wordsInUse >= b.wordsInUse ? b : a);
+        return result;
+    }
+
+    static MultiWordBitVector xor(MultiWordBitVector a, MultiWordBitVector b) {
+        MultiWordBitVector result = (a.wordsInUse >= b.wordsInUse ? a : b).copy();
+        result.xor(a.wordsInUse >= b.wordsInUse ? b : a);
+        return result;
+    }
+
+    static MultiWordBitVector andNot(MultiWordBitVector a, MultiWordBitVector b) {
+        MultiWordBitVector result = a.copy();
+        result.andNot(b);
+        return result;
+    }
+
+    // same format as BitVectorBase.writeTo, but the words are copied as one block through a LongBuffer view
+    @Override
+    void writeTo(ByteBuffer buffer) {
+        ByteBuffer out = writeHeader(buffer, wordsInUse);
+        out.asLongBuffer().put(words, 0, wordsInUse);
+        buffer.position(out.position() + wordsInUse * Long.BYTES);
+    }
+
+    // reads a bit vector written by writeTo at the position of the buffer and moves the position behind it.
+    // The words are copied once into a new long[]; use BufferBitVector.wrap to read them without copying.
+    static MultiWordBitVector readFrom(ByteBuffer buffer) {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int wordCount = readHeader(in);
+        MultiWordBitVector vector = new MultiWordBitVector();
+        vector.words = new long[Math.max(1, wordCount)];
+        in.asLongBuffer().get(vector.words, 0, wordCount);
+        vector.wordsInUse = wordCount;
+        vector.recalculateWordsInUse(); // other writers may have written trailing zero words
+        buffer.position(in.position() + wordCount * Long.BYTES);
+        return vector;
+    }
+
+    // the lowest 64 bits, so code written against BitVectorBase keeps working
+    @Override
+    public long getValue() {
+        return wordsInUse > 0 ? words[0] : 0L;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        // only the words in use count, the capacity of the arrays may differ
+        MultiWordBitVector that = (MultiWordBitVector) o;
+        return wordsInUse == that.wordsInUse
+                && Arrays.equals(words, 0, wordsInUse, that.words, 0, that.wordsInUse);
+    }
+
+    @Override
+    public int hashCode() {
+        // same scheme as java.util.BitSet: every word is weighted by its position,
+        // trailing zero words do not change the result
+        long h = 1234;
+        for (int i = wordsInUse; --i >= 0; ) {
+            h ^= words[i] * (i + 1);
+        }
+        return (int) ((h >> 32) ^ h);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return intIterator();
+    }
+
+    @Override
+    PrimitiveIterator.OfInt intIterator() {
+        return new SetBitIterator(words, wordsInUse);
+    }
+
+    @Override
+    void forEachSetBit(IntConsumer action) {
+        final long[] words = this.words;
+        final int wordsInUse = this.wordsInUse;
+        for (int i = 0; i < wordsInUse; i++) {
+            int base = i * BITS_PER_WORD;
+            for (long word = words[i]; word != 0; word &= word - 1) {
+                action.accept(base + Long.numberOfTrailingZeros(word));
+            }
+        }
+    }
+
+    @Override
+    public Spliterator.OfInt spliterator() {
+        return new SetBitSpliterator(words, 0, wordsInUse);
+    }
+
+    // Static nested iterator like in BitVector01, but it skips whole zero words and jumps to the next set bit
+    // with Long.numberOfTrailingZeros, instead of testing the 64 bit positions of each word one by one
+    private static class SetBitIterator implements PrimitiveIterator.OfInt {
+        private final long[] words;
+        private final int wordsInUse;
+        private int wordIndex = 0;
+        private long word;  // remaining (not yet returned) bits of the current word
+
+        SetBitIterator(long[] words, int wordsInUse) {
+            this.words = words;
+            this.wordsInUse = wordsInUse;
+            this.word = wordsInUse > 0 ? words[0] : 0L;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (word == 0) {
+                if (++wordIndex >= wordsInUse) {
+                    return false;
+                }
+                word = words[wordIndex];
+            }
+            return true;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more set bits in the BitVector.");
+            }
+            int bit = wordIndex * BITS_PER_WORD + Long.numberOfTrailingZeros(word);
+            word &= word - 1; // clears the lowest set bit
+            return bit;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package bitvector;
+
+import java.util.Arrays;
+
+// A MultiWordBitVector with a rank/select index, the building block of "succinct" data structures:
+// rank(i)   = number of set bits before position i
+// select(k) = position of the k-th set bit (counting from 0), i.e. the inverse of rank
+// Both would take O(n) when counting bit by bit.
+
+// The index stores for every block of 8 words (512 bits) the number of set bits before that block
+// (one int per 512 bits = 6.25% extra memory). Then
+// - rank(i) adds the count of the block and the Long.bitCount of at most 8 words: O(1)
+// - select(k) finds the block with a binary search over the counts and scans at most 8 words: O(log n)
+
+// The index is not rebuilt on every setBit: MultiWordBitVector reports the lowest changed word via
+// wordsChanged, which only marks the block counts from there on as outdated. The next rank/select
+// recomputes just those blocks, so setting bits at the end of the vector stays cheap.
+class RankSelectBitVector extends MultiWordBitVector {
+
+    static final int WORDS_PER_BLOCK = 8;
+
+    // blockRanks[b] = number of set bits in the blocks 0..b-1; the entry after the last block is the total
+    private int[] blockRanks = new int[1];
+    private int validEntries = 1; // blockRanks[0..validEntries-1] are up to date (entry 0 is always 0)
+
+    // Constructor for default initialization
+    public RankSelectBitVector() {
+        super();
+    }
+
+    // Constructor with an initial capacity in bits
+    public RankSelectBitVector(int initialBits) {
+        super();
+        words = allocate(initialBits);
+    }
+
+    @Override
+    void wordsChanged(int fromWord) {
+        // the counts of all blocks up to and including the block of fromWord do not depend on it
+        validEntries = Math.min(validEntries, fromWord / WORDS_PER_BLOCK + 1);
+    }
+
+    private int blockCount() {
+        return (wordsInUse + WORDS_PER_BLOCK - 1) / WORDS_PER_BLOCK;
+    }
+
+    // recomputes the outdated block counts
+    private void updateIndex() {
+        int entries = blockCount() + 1;
+        if (validEntries >= entries) {
+            return;
+        }
+        if (blockRanks.length < entries) {
+            blockRanks = Arrays.copyOf(blockRanks, Math.max(entries, 2 * blockRanks.length));
+        }
+        for (int entry = validEntries; entry < entries; entry++) {
+            int from = (entry - 1) * WORDS_PER_BLOCK;
+            int to = Math.min(from + WORDS_PER_BLOCK, wordsInUse);
+            int count = blockRanks[entry - 1];
+            for (int i = from; i < to; i++) {
+                count += Long.bitCount(words[i]);
+            }
+            blockRanks[entry] = count;
+        }
+        validEntries = entries;
+    }
+
+    // number of set bits in [0, bit)
+    int rank(int bit) {
+        checkBit(bit);
+        updateIndex();
+        int wordIndex = wordIndex(bit);
+        if (wordIndex >= wordsInUse) {
+            return blockRanks[blockCount()];
+        }
+        int block = wordIndex / WORDS_PER_BLOCK;
+        int count = blockRanks[block];
+        for (int i = block * WORDS_PER_BLOCK; i < wordIndex; i++) {
+            count += Long.bitCount(words[i]);
+        }
+        // (1L << bit) - 1 keeps the bits below bit within its word, 0 if bit is the first one of the word
+        return count + Long.bitCount(words[wordIndex] & ((1L << bit) - 1));
+    }
+
+    // position of the set bit with the given rank (0 = lowest set bit), -1 if there are not that many set bits
+    int select(int rank) {
+        updateIndex();
+        int blocks = blockCount();
+        if (rank < 0 || rank >= blockRanks[blocks]) {
+            return -1;
+        }
+        // the last block whose count of preceding bits is <= rank contains the bit
+        int low = 0;
+        int high = blocks - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (blockRanks[middle] <= rank) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        int remaining = rank - blockRanks[low];
+        for (int i = low * WORDS_PER_BLOCK; ; i++) {
+            int count = Long.bitCount(words[i]);
+            if (remaining < count) {
+                return i * BITS_PER_WORD + selectInWord(words[i], remaining);
+            }
+            remaining -= count;
+        }
+    }
+
+    // position of the k-th set bit within a word: halves the word six times (32, 16, .. 1 bits) and
+    // goes to the upper half whenever the lower one has too few set bits
+    static int selectInWord(long word, int k) {
+        int position = 0;
+        for (int width = 32; width > 0; width >>>= 1) {
+            int lowerCount = Long.bitCount(word & ((1L << width) - 1));
+            if (k >= lowerCount) {
+                k -= lowerCount;
+                word >>>= width;
+                position += width;
+            }
+        }
+        return position;
+    }
+
+    @Override
+    int cardinality() {
+        updateIndex();
+        return blockRanks[blockCount()];
+    }
+
+    // extra memory of the index in bytes, compare with capacity() / 8 for the bits themselves
+    long indexSizeInBytes() {
+        return 16 + 4L * blockRanks.length;
+    }
+}
@@ -0,0 +1,102 @@
+package bitvector;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+// Spliterator over the positions of the set bits in words[origin..fence).
+// A Spliterator is what streams are built on: tryAdvance/forEachRemaining deliver the elements and
+// trySplit hands half of the remaining elements to another thread of a parallel stream.
+// The default spliterator of Iterable knows neither the size nor how to split, so a parallel stream over
+// it runs on one core. This one splits between whole words and reports its exact size (SIZED), which it
+// gets from Long.bitCount of the words; the size is only computed when a stream asks for it.
+// Like java.util.BitSet.stream(), the vector must not be modified while the stream runs.
+class SetBitSpliterator implements Spliterator.OfInt {
+
+    private final long[] words;
+    private int index;       // the word that is currently consumed
+    private final int fence; // one past the last word
+    private long word;       // the bits of words[index] that have not been delivered yet
+    private long size = -1;  // number of remaining set bits, -1 while not computed yet
+
+    SetBitSpliterator(long[] words, int origin, int fence) {
+        this(words, origin, fence, origin < fence ? words[origin] : 0L);
+    }
+
+    private SetBitSpliterator(long[] words, int index, int fence, long word) {
+        this.words = words;
+        this.index = index;
+        this.fence = fence;
+        this.word = word;
+    }
+
+    @Override
+    public boolean tryAdvance(IntConsumer action) {
+        while (word == 0) {
+            if (++index >= fence) {
+                index = fence;
+                return false;
+            }
+            word = words[index];
+        }
+        action.accept(index * Long.SIZE + Long.numberOfTrailingZeros(word));
+        word &= word - 1;
+        if (size > 0) {
+            size--;
+        }
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(IntConsumer action) {
+        for (int i = index; i < fence; i++) {
+            int base = i * Long.SIZE;
+            for (long remaining = i == index ? word : words[i]; remaining != 0; remaining &= remaining - 1) {
+                action.accept(base + Long.numberOfTrailingZeros(remaining));
+            }
+        }
+        index = fence;
+        word = 0L;
+        size = 0;
+    }
+
+    // returns the first half of the remaining words (the current, partly consumed word included)
+    // and keeps the second half; null if less than two words are left
+    @Override
+    public Spliterator.OfInt trySplit() {
+        int middle = (index + 1 + fence) >>> 1;
+        if (middle <= index + 1 || middle >= fence) {
+            return null;
+        }
+        SetBitSpliterator prefix = new SetBitSpliterator(words, index, middle, word);
+        if (size >= 0) {
+            size -= prefix.estimateSize();
+        }
+        index = middle;
+        word = words[middle];
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        if (size < 0) {
+            long count = Long.bitCount(word);
+            for (int i = index + 1; i < fence; i++) {
+                count += Long.bitCount(words[i]);
+            }
+            size = count;
+        }
+        return size;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | SORTED | SIZED | SUBSIZED | NONNULL;
+    }
+
+    // null means natural order, required by SORTED
+    @Override
+    public Comparator<? super Integer> getComparator() {
+        return null;
+    }
+}
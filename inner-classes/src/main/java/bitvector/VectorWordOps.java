@@ -0,0 +1,85 @@
+package bitvector;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Vector API versions of the WordOps loops. This class must only be loaded if the jdk.incubator.vector
+// module is present (see WordOps.VECTOR_API_AVAILABLE), otherwise loading it fails with a NoClassDefFoundError.
+
+// Every loop processes SPECIES.length() words at once (the widest vector the CPU supports)
+// and handles the remaining words at the end with the scalar code.
+final class VectorWordOps {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    private VectorWordOps() {
+    }
+
+    static void and(long[] a, int aFrom, long[] b, int bFrom, int n) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(n); i < upper; i += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, a, aFrom + i).and(LongVector.fromArray(SPECIES, b, bFrom + i)).intoArray(a, aFrom + i);
+        }
+        for (; i < n; i++) {
+            a[aFrom + i] &= b[bFrom + i];
+        }
+    }
+
+    static void or(long[] a, int aFrom, long[] b, int bFrom, int n) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(n); i < upper; i += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, a, aFrom + i).or(LongVector.fromArray(SPECIES, b, bFrom + i)).intoArray(a, aFrom + i);
+        }
+        for (; i < n; i++) {
+            a[aFrom + i] |= b[bFrom + i];
+        }
+    }
+
+    static void xor(long[] a, long[] b, int n) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(n); i < upper; i += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, a, i).lanewise(VectorOperators.XOR, LongVector.fromArray(SPECIES, b, i)).intoArray(a, i);
+        }
+        for (; i < n; i++) {
+            a[i] ^= b[i];
+        }
+    }
+
+    static void andNot(long[] a, long[] b, int n) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(n); i < upper; i += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, a, i).lanewise(VectorOperators.AND_NOT, LongVector.fromArray(SPECIES, b, i)).intoArray(a, i);
+        }
+        for (; i < n; i++) {
+            a[i] &= ~b[i];
+        }
+    }
+
+    static int cardinality(long[] a, int n) {
+        int i = 0;
+        long count = 0;
+        for (int upper = SPECIES.loopBound(n); i < upper; i += SPECIES.length()) {
+            count += LongVector.fromArray(SPECIES, a, i).lanewise(VectorOperators.BIT_COUNT).reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < n; i++) {
+            count += Long.bitCount(a[i]);
+        }
+        return (int) count;
+    }
+
+    static boolean intersects(long[] a, long[] b, int n) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(n); i < upper; i += SPECIES.length()) {
+            if (LongVector.fromArray(SPECIES, a, i).and(LongVector.fromArray(SPECIES, b, i)).compare(VectorOperators.NE, 0L).anyTrue()) {
+                return true;
+            }
+        }
+        for (; i < n; i++) {
+            if ((a[i] & b[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
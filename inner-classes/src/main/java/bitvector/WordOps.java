@@ -0,0 +1,97 @@
+package bitvector;
+
+// Word-parallel loops over the long[] of the multi-word bit vectors: one step combines 64 bits at once.
+// n is the number of words to process, both arrays must have at least n elements (behind the offsets, if given).
+
+// The Vector API (jdk.incubator.vector) can process several words per CPU instruction (e.g. 4 longs with AVX2,
+// 8 with AVX-512). In JDK 21 it is still an incubator module, so it is optional: it is only used if the JVM was
+// started with --add-modules jdk.incubator.vector. Otherwise (or with -Dbitvector.vectorApi=false) the plain loops
+// below are used, which HotSpot's auto-vectorizer already turns into SIMD code for the simple cases.
+final class WordOps {
+
+    static final boolean VECTOR_API_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && !"false".equals(System.getProperty("bitvector.vectorApi"));
+
+    // below this number of words the setup of the vector loop costs more than it saves
+    static final int VECTOR_THRESHOLD = 64;
+
+    private WordOps() {
+    }
+
+    private static boolean useVectorApi(int n) {
+        return VECTOR_API_AVAILABLE && n >= VECTOR_THRESHOLD;
+    }
+
+    static void and(long[] a, long[] b, int n) {
+        and(a, 0, b, 0, n);
+    }
+
+    // a[aFrom..aFrom+n) &= b[bFrom..bFrom+n), e.g. for the rows of a BitMatrix that share one array
+    static void and(long[] a, int aFrom, long[] b, int bFrom, int n) {
+        if (useVectorApi(n)) {
+            VectorWordOps.and(a, aFrom, b, bFrom, n);
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            a[aFrom + i] &= b[bFrom + i];
+        }
+    }
+
+    static void or(long[] a, long[] b, int n) {
+        or(a, 0, b, 0, n);
+    }
+
+    static void or(long[] a, int aFrom, long[] b, int bFrom, int n) {
+        if (useVectorApi(n)) {
+            VectorWordOps.or(a, aFrom, b, bFrom, n);
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            a[aFrom + i] |= b[bFrom + i];
+        }
+    }
+
+    static void xor(long[] a, long[] b, int n) {
+        if (useVectorApi(n)) {
+            VectorWordOps.xor(a, b, n);
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            a[i] ^= b[i];
+        }
+    }
+
+    static void andNot(long[] a, long[] b, int n) {
+        if (useVectorApi(n)) {
+            VectorWordOps.andNot(a, b, n);
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            a[i] &= ~b[i];
+        }
+    }
+
+    // Long.bitCount is an intrinsic, the JIT emits a single popcnt instruction for it
+    static int cardinality(long[] a, int n) {
+        if (useVectorApi(n)) {
+            return VectorWordOps.cardinality(a, n);
+        }
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            count += Long.bitCount(a[i]);
+        }
+        return count;
+    }
+
+    static boolean intersects(long[] a, long[] b, int n) {
+        if (useVectorApi(n)) {
+            return VectorWordOps.intersects(a, b, n);
+        }
+        for (int i = 0; i < n; i++) {
+            if ((a[i] & b[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,170 @@
+package bitvector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * Tests for BitMatrix against a naive boolean[][] reference, with sizes around the 64 bit block size.
+ */
+public class BitMatrixTest {
+
+    private static final int[] SIZES = {0, 1, 5, 63, 64, 65, 130};
+
+    private static boolean[][] random(SplittableRandom random, int rows, int columns, double density) {
+        boolean[][] matrix = new boolean[rows][columns];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                matrix[r][c] = random.nextDouble() < density;
+            }
+        }
+        return matrix;
+    }
+
+    private static BitMatrix of(boolean[][] reference, int rows, int columns) {
+        BitMatrix matrix = new BitMatrix(rows, columns);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                matrix.set(r, c, reference[r][c]);
+            }
+        }
+        return matrix;
+    }
+
+    private static void assertMatrix(boolean[][] expected, BitMatrix actual, int rows, int columns) {
+        assertEquals(rows, actual.rows());
+        assertEquals(columns, actual.columns());
+        int cardinality = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                assertEquals("(" + r + ", " + c + ")", expected[r][c], actual.get(r, c));
+                cardinality += expected[r][c] ? 1 : 0;
+            }
+        }
+        assertEquals(cardinality, actual.cardinality());
+    }
+
+    @Test
+    public void transpose64MatchesNaiveTranspose() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int round = 0; round < 100; round++) {
+            long[] block = new long[64];
+            for (int i = 0; i < 64; i++) {
+                block[i] = round == 0 ? 1L << i : random.nextLong();
+            }
+            long[] expected = new long[64];
+            for (int i = 0; i < 64; i++) {
+                for (int j = 0; j < 64; j++) {
+                    if ((block[i] & (1L << j)) != 0) {
+                        expected[j] |= 1L << i;
+                    }
+                }
+            }
+            BitMatrix.transpose64(block);
+            assertArrayEquals(expected, block);
+        }
+    }
+
+    @Test
+    public void transposeMatchesReference() {
+        SplittableRandom random = new SplittableRandom(2);
+        for (int rows : SIZES) {
+            for (int columns : SIZES) {
+                boolean[][] reference = random(random, rows, columns, 0.3);
+                boolean[][] transposed = new boolean[columns][rows];
+                for (int r = 0; r < rows; r++) {
+                    for (int c = 0; c < columns; c++) {
+                        transposed[c][r] = reference[r][c];
+                    }
+                }
+                BitMatrix matrix = of(reference, rows, columns);
+                assertMatrix(reference, matrix, rows, columns);
+                assertMatrix(transposed, matrix.transpose(), columns, rows);
+                assertEquals(matrix, matrix.transpose().transpose());
+            }
+        }
+    }
+
+    @Test
+    public void multiplyMatchesReference() {
+        SplittableRandom random = new SplittableRandom(3);
+        for (int rows : SIZES) {
+            for (int inner : SIZES) {
+                for (int columns : new int[] {0, 7, 64, 100}) {
+                    boolean[][] a = random(random, rows, inner, 0.05);
+                    boolean[][] b = random(random, inner, columns, 0.05);
+                    boolean[][] product = new boolean[rows][columns];
+                    for (int i = 0; i < rows; i++) {
+                        for (int j = 0; j < columns; j++) {
+                            for (int k = 0; k < inner && !product[i][j]; k++) {
+                                product[i][j] = a[i][k] && b[k][j];
+                            }
+                        }
+                    }
+                    assertMatrix(product, of(a, rows, inner).multiply(of(b, inner, columns)), rows, columns);
+                }
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> new BitMatrix(2, 3).multiply(new BitMatrix(2, 3)));
+    }
+
+    @Test
+    public void transitiveClosureMatchesReference() {
+        SplittableRandom random = new SplittableRandom(4);
+        for (int n : SIZES) {
+            for (double density : new double[] {0.01, 0.03, 0.2}) {
+                boolean[][] reference = random(random, n, n, density);
+                BitMatrix graph = of(reference, n, n);
+                // Floyd-Warshall on booleans: reachable over at least one edge
+                boolean[][] reachable = new boolean[n][];
+                for (int i = 0; i < n; i++) {
+                    reachable[i] = reference[i].clone();
+                }
+                for (int k = 0; k < n; k++) {
+                    for (int i = 0; i < n; i++) {
+                        for (int j = 0; j < n; j++) {
+                            reachable[i][j] |= reachable[i][k] && reachable[k][j];
+                        }
+                    }
+                }
+                assertMatrix(reachable, graph.transitiveClosure(), n, n);
+                assertMatrix(reference, graph, n, n); // unchanged
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> new BitMatrix(2, 3).transitiveClosure());
+    }
+
+    @Test
+    public void rowsAndColumns() {
+        SplittableRandom random = new SplittableRandom(5);
+        for (int rows : SIZES) {
+            for (int columns : SIZES) {
+                boolean[][] reference = random(random, rows, columns, 0.4);
+                BitMatrix matrix = of(reference, rows, columns);
+                for (int r = 0; r < rows; r++) {
+                    MultiWordBitVector row = matrix.row(r);
+                    for (int c = 0; c < columns; c++) {
+                        assertEquals(reference[r][c], row.isSet(c));
+                    }
+                }
+                for (int c = 0; c < columns; c++) {
+                    MultiWordBitVector column = matrix.column(c);
+                    int count = 0;
+                    for (int r = 0; r < rows; r++) {
+                        assertEquals(reference[r][c], column.isSet(r));
+                        count += reference[r][c] ? 1 : 0;
+                    }
+                    assertEquals(count, column.cardinality());
+                }
+                assertThrows(IllegalArgumentException.class, () -> matrix.column(columns));
+                assertThrows(IllegalArgumentException.class, () -> matrix.row(rows));
+            }
+        }
+        // a matrix without rows still has columns, each of them empty
+        assertEquals(0, new BitMatrix(0, 10).column(9).cardinality());
+    }
+}
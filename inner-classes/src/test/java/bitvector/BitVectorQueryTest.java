@@ -0,0 +1,234 @@
+package bitvector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * Tests for isSet and the queries nextSetBit, nextClearBit, previousSetBit and cardinality:
+ * same answers as java.util.BitSet, O(words) instead of O(bits), and no allocation.
+ */
+public class BitVectorQueryTest {
+
+    /**
+     * Plain long[] vector that only implements wordCount/word, so it uses the generic queries of
+     * BitVectorBase, and counts how many words they read.
+     */
+    static final class CountingBitVector extends BitVectorBase {
+        final long[] words;
+        long reads;
+
+        CountingBitVector(long[] words) {
+            this.words = words;
+        }
+
+        @Override
+        int wordCount() {
+            return words.length;
+        }
+
+        @Override
+        long word(int index) {
+            reads++;
+            return index < words.length ? words[index] : 0L;
+        }
+    }
+
+    private static BitSet randomBitSet(SplittableRandom random, int bits, double density) {
+        BitSet bitSet = new BitSet(bits);
+        for (int i = 0; i < bits; i++) {
+            if (random.nextDouble() < density) {
+                bitSet.set(i);
+            }
+        }
+        return bitSet;
+    }
+
+    private static void assertSameQueries(BitSet expected, BitVectorBase vector, int bits) {
+        assertEquals(expected.cardinality(), vector.cardinality());
+        for (int from = 0; from < bits + 70; from++) {
+            assertEquals("nextSetBit(" + from + ")", expected.nextSetBit(from), vector.nextSetBit(from));
+            assertEquals("previousSetBit(" + from + ")", expected.previousSetBit(from), vector.previousSetBit(from));
+        }
+        // the vectors may have more (clear) bits than the BitSet at the end, so only compare within bits
+        for (int from = 0; from < bits; from++) {
+            int expectedClear = expected.nextClearBit(from);
+            int actualClear = vector.nextClearBit(from);
+            if (expectedClear < bits) {
+                assertEquals("nextClearBit(" + from + ")", expectedClear, actualClear);
+            } else {
+                assertTrue("nextClearBit(" + from + ") = " + actualClear, actualClear >= bits);
+            }
+        }
+        assertEquals(-1, vector.previousSetBit(-1));
+    }
+
+    @Test
+    public void isSetReturnsWhatSetBitSet() {
+        BitVectorBase[] vectors = {new BitVectorBase(), new BitVector01(), new BitVector02(), new BitVector03(), new BitVector04()};
+        for (BitVectorBase vector : vectors) {
+            vector.setBit(0, true);
+            vector.setBit(17, true);
+            vector.setBit(63, true);
+            vector.setBit(17, false);
+            for (int bit = 0; bit < 64; bit++) {
+                assertEquals(vector.getClass() + " bit " + bit, bit == 0 || bit == 63, vector.isSet(bit));
+            }
+            assertThrows(IllegalArgumentException.class, () -> vector.isSet(64));
+            assertThrows(IllegalArgumentException.class, () -> vector.isSet(-1));
+        }
+    }
+
+    @Test
+    public void singleWordQueriesMatchBitSet() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int round = 0; round < 200; round++) {
+            long value = round == 0 ? 0L : round == 1 ? -1L : random.nextLong() & random.nextLong();
+            assertSameQueries(BitSet.valueOf(new long[] {value}), new BitVectorBase(value), 64);
+        }
+    }
+
+    @Test
+    public void multiWordQueriesMatchBitSet() {
+        SplittableRandom random = new SplittableRandom(2);
+        for (double density : new double[] {0, 0.001, 0.05, 0.5, 0.98, 1}) {
+            BitSet expected = randomBitSet(random, 3_000, density);
+            MultiWordBitVector vector = new MultiWordBitVector();
+            expected.stream().forEach(bit -> vector.setBit(bit, true));
+            assertSameQueries(expected, vector, 3_000);
+        }
+    }
+
+    @Test
+    public void genericQueriesMatchBitSetForAllVectorTypes() {
+        SplittableRandom random = new SplittableRandom(3);
+        for (double density : new double[] {0, 0.01, 0.5, 1}) {
+            BitSet expected = randomBitSet(random, 2_000, density);
+            ConcurrentBitVector concurrent = new ConcurrentBitVector(2_000);
+            CompressedBitmap compressed = new CompressedBitmap();
+            CopyOnWriteBitVector copyOnWrite = new CopyOnWriteBitVector();
+            expected.stream().forEach(bit -> {
+                concurrent.setBit(bit, true);
+                compressed.setBit(bit, true);
+                copyOnWrite.setBit(bit, true);
+            });
+            assertSameQueries(expected, concurrent, 2_000);
+            assertSameQueries(expected, compressed, 2_000);
+            assertSameQueries(expected, copyOnWrite, 2_000);
+            assertSameQueries(expected, new CountingBitVector(expected.toLongArray()), expected.length());
+        }
+    }
+
+    @Test
+    public void queriesAtTheEndOfTheIntRange() {
+        MultiWordBitVector vector = new MultiWordBitVector();
+        vector.setBit(Integer.MAX_VALUE, true);
+        assertEquals(Integer.MAX_VALUE, vector.nextSetBit(0));
+        assertEquals(Integer.MAX_VALUE, vector.previousSetBit(Integer.MAX_VALUE));
+        assertEquals(-1, vector.previousSetBit(Integer.MAX_VALUE - 1));
+        assertEquals(Integer.MAX_VALUE - 1, vector.nextClearBit(Integer.MAX_VALUE - 1));
+        // bit Integer.MAX_VALUE is set, the next clear bit would be 2^31
+        assertEquals(-1, vector.nextClearBit(Integer.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> vector.nextSetBit(-1));
+        assertThrows(IllegalArgumentException.class, () -> vector.previousSetBit(-2));
+    }
+
+    // Every query reads each word at most once: with one set bit at the far end, a bit-by-bit implementation
+    // would need 64 steps per word, a word-wise one needs exactly one word read per word.
+    @Test
+    public void genericQueriesReadEveryWordAtMostOnce() {
+        int words = 1 << 16;
+        long[] oneBitAtEachEnd = new long[words];
+        oneBitAtEachEnd[0] = 1L;
+        oneBitAtEachEnd[words - 1] = Long.MIN_VALUE;
+        CountingBitVector sparse = new CountingBitVector(oneBitAtEachEnd);
+
+        sparse.reads = 0;
+        assertEquals(words * 64 - 1, sparse.nextSetBit(1));
+        assertTrue("nextSetBit read " + sparse.reads + " words", sparse.reads <= words);
+
+        sparse.reads = 0;
+        assertEquals(0, sparse.previousSetBit(words * 64 - 2));
+        assertTrue("previousSetBit read " + sparse.reads + " words", sparse.reads <= words);
+
+        long[] allSet = new long[words];
+        Arrays.fill(allSet, -1L);
+        CountingBitVector dense = new CountingBitVector(allSet);
+        dense.reads = 0;
+        assertEquals(words * 64, dense.nextClearBit(0));
+        assertTrue("nextClearBit read " + dense.reads + " words", dense.reads <= words);
+    }
+
+    // MultiWordBitVector reads its array directly, so the reads cannot be counted here; the answers on
+    // 2^24 bits are checked, the speed against a bit by bit scan is measured in WordQueryBenchmark
+    @Test
+    public void multiWordQueriesOnLargeVectors() {
+        int bits = 1 << 24;
+        MultiWordBitVector sparse = MultiWordBitVector.withCapacity(bits);
+        sparse.setBit(0, true);
+        sparse.setBit(bits - 1, true);
+        MultiWordBitVector dense = MultiWordBitVector.withCapacity(bits);
+        dense.setRange(0, bits, true);
+
+        assertEquals(bits - 1, sparse.nextSetBit(1));
+        assertEquals(0, sparse.previousSetBit(bits - 2));
+        assertEquals(bits, dense.nextClearBit(0));
+        assertEquals(bits - 1, dense.previousSetBit(bits - 1));
+    }
+
+    @Test
+    public void queriesDoNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        MultiWordBitVector multiWord = MultiWordBitVector.withCapacity(1 << 16);
+        SplittableRandom random = new SplittableRandom(4);
+        for (int i = 0; i < 1_000; i++) {
+            multiWord.setBit(random.nextInt(1 << 16), true);
+        }
+        BitVectorBase single = new BitVector04(random.nextLong());
+        CountingBitVector generic = new CountingBitVector(new long[] {random.nextLong(), 0L, random.nextLong()});
+
+        long sink = runQueries(multiWord, single, generic); // warm up, so that the JIT compiles the queries
+        long before = threads.getCurrentThreadAllocatedBytes();
+        sink += runQueries(multiWord, single, generic);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        // 300,000 queries: allocating a single object in each of them would add up to megabytes
+        assertTrue("queries allocated " + allocated + " bytes (" + sink + ")", allocated < 1_024);
+    }
+
+    private static long runQueries(MultiWordBitVector multiWord, BitVectorBase single, BitVectorBase generic) {
+        long sum = 0;
+        for (int i = 0; i < 100_000; i++) {
+            int from = i & 0xFFFF;
+            sum += multiWord.nextSetBit(from) + multiWord.previousSetBit(from) + multiWord.nextClearBit(from)
+                    + multiWord.cardinality();
+            sum += single.nextSetBit(i & 63) + single.previousSetBit(i & 63) + single.nextClearBit(i & 63)
+                    + single.cardinality() + (single.isSet(i & 63) ? 1 : 0);
+            sum += generic.nextSetBit(i & 191) + generic.previousSetBit(i & 191) + generic.nextClearBit(i & 191);
+        }
+        return sum;
+    }
+
+    @Test
+    public void emptyVectors() {
+        for (BitVectorBase vector : new BitVectorBase[] {new BitVectorBase(), new MultiWordBitVector(), new CompressedBitmap()}) {
+            assertEquals(-1, vector.nextSetBit(0));
+            assertEquals(-1, vector.previousSetBit(1_000));
+            assertEquals(5, vector.nextClearBit(5));
+            assertEquals(0, vector.cardinality());
+            assertFalse(vector.isSet(5));
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package bitvector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+
+import bitvector.BitmapIndex.Filter;
+
+/**
+ * Tests for BitmapIndex: random filters built from eq/in/and/or/not select the same rows as a brute-force scan
+ * over the records with the equivalent Predicate, also after records were removed, added again and updated.
+ */
+public class BitmapIndexTest {
+
+    private record Customer(String country, String status, Boolean newsletter, int age) {
+    }
+
+    private static final String[] COUNTRIES = {"DE", "AT", "CH", "FR", null};
+    private static final String[] STATUSES = {"ACTIVE", "TRIAL", "CANCELLED"};
+    private static final Boolean[] NEWSLETTER = {true, false, null};
+    private static final int AGES = 10;
+
+    private static Customer randomCustomer(SplittableRandom random) {
+        return new Customer(COUNTRIES[random.nextInt(COUNTRIES.length)], STATUSES[random.nextInt(STATUSES.length)],
+                NEWSLETTER[random.nextInt(NEWSLETTER.length)], random.nextInt(AGES));
+    }
+
+    private static BitmapIndex<Customer> newIndex() {
+        return new BitmapIndex<Customer>()
+                .addColumn("country", Customer::country)
+                .addColumn("status", Customer::status)
+                .addColumn("newsletter", Customer::newsletter)
+                .addColumn("age", Customer::age);
+    }
+
+    // a filter and the predicate that selects the same records
+    private record Query(Filter filter, Predicate<Customer> predicate, String text) {
+    }
+
+    private static Object randomValue(SplittableRandom random, String column) {
+        return switch (column) {
+            case "country" -> random.nextInt(10) == 0 ? "XX" : COUNTRIES[random.nextInt(COUNTRIES.length)];
+            case "status" -> STATUSES[random.nextInt(STATUSES.length)];
+            case "newsletter" -> NEWSLETTER[random.nextInt(NEWSLETTER.length)];
+            default -> random.nextInt(AGES + 1); // AGES is not in the index
+        };
+    }
+
+    private static Object value(Customer customer, String column) {
+        return switch (column) {
+            case "country" -> customer.country();
+            case "status" -> customer.status();
+            case "newsletter" -> customer.newsletter();
+            default -> customer.age();
+        };
+    }
+
+    private static Query randomQuery(SplittableRandom random, int depth) {
+        int kind = depth == 0 ? random.nextInt(2) : random.nextInt(7);
+        String[] columns = {"country", "status", "newsletter", "age"};
+        String column = columns[random.nextInt(columns.length)];
+        switch (kind) {
+            case 0 -> {
+                Object value = randomValue(random, column);
+                return new Query(Filter.eq(column, value), c -> Objects.equals(value(c, column), value), column + " = " + value);
+            }
+            case 1 -> {
+                Object[] values = new Object[random.nextInt(4)];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = randomValue(random, column);
+                }
+                List<Object> list = Arrays.asList(values);
+                return new Query(Filter.in(column, values), c -> list.contains(value(c, column)), column + " in " + list);
+            }
+            case 2, 3 -> {
+                Query[] parts = randomQueries(random, depth - 1);
+                Filter[] filters = new Filter[parts.length];
+                Predicate<Customer> predicate = c -> true;
+                StringBuilder text = new StringBuilder("and(");
+                for (int i = 0; i < parts.length; i++) {
+                    filters[i] = parts[i].filter();
+                    predicate = predicate.and(parts[i].predicate());
+                    text.append(parts[i].text()).append(", ");
+                }
+                return new Query(Filter.and(filters), predicate, text.append(')').toString());
+            }
+            case 4, 5 -> {
+                Query[] parts = randomQueries(random, depth - 1);
+                Filter[] filters = new Filter[parts.length];
+                Predicate<Customer> predicate = c -> false;
+                StringBuilder text = new StringBuilder("or(");
+                for (int i = 0; i < parts.length; i++) {
+                    filters[i] = parts[i].filter();
+                    predicate = predicate.or(parts[i].predicate());
+                    text.append(parts[i].text()).append(", ");
+                }
+                return new Query(Filter.or(filters), predicate, text.append(')').toString());
+            }
+            default -> {
+                Query part = randomQuery(random, depth - 1);
+                return new Query(Filter.not(part.filter()), part.predicate().negate(), "not(" + part.text() + ")");
+            }
+        }
+    }
+
+    // 0 to 3 filters, and() and or() without any filter, too
+    private static Query[] randomQueries(SplittableRandom random, int depth) {
+        Query[] queries = new Query[random.nextInt(4)];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = randomQuery(random, depth);
+        }
+        return queries;
+    }
+
+    // the rows of the records in the index (null for removed rows) that match, by looking at every record
+    private static BitSet scan(List<Customer> records, Predicate<Customer> predicate) {
+        BitSet rows = new BitSet();
+        for (int row = 0; row < records.size(); row++) {
+            if (records.get(row) != null && predicate.test(records.get(row))) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    private static BitSet toBitSet(MultiWordBitVector vector) {
+        BitSet bits = new BitSet();
+        vector.forEachSetBit(bits::set);
+        return bits;
+    }
+
+    private static void assertSameRows(BitmapIndex<Customer> index, List<Customer> records, Query query) {
+        BitSet expected = scan(records, query.predicate());
+        MultiWordBitVector rows = index.rows(query.filter());
+        assertEquals(query.text(), expected, toBitSet(rows));
+        assertEquals(query.text(), expected.cardinality(), index.count(query.filter()));
+        List<Customer> selected = new ArrayList<>();
+        expected.stream().forEach(row -> selected.add(records.get(row)));
+        assertEquals(query.text(), selected, index.select(query.filter()));
+        // the result is a copy: modifying it changes neither the index nor the next result
+        rows.setBit(records.size() + 5, true);
+        rows.and(new MultiWordBitVector());
+        assertEquals(query.text(), expected, toBitSet(index.rows(query.filter())));
+    }
+
+    @Test
+    public void filtersMatchAScan() {
+        SplittableRandom random = new SplittableRandom(1);
+        BitmapIndex<Customer> index = newIndex();
+        List<Customer> records = new ArrayList<>();
+        for (int round = 0; round < 40; round++) {
+            // adds, removals and updates, so that rows are reused and bit vectors shrink
+            for (int i = random.nextInt(300); i > 0; i--) {
+                int action = random.nextInt(10);
+                List<Integer> live = scan(records, c -> true).stream().boxed().toList();
+                if (action < 6 || live.isEmpty()) {
+                    Customer customer = randomCustomer(random);
+                    int row = index.add(customer);
+                    if (row == records.size()) {
+                        records.add(customer);
+                    } else {
+                        assertNull(records.get(row));
+                        records.set(row, customer);
+                    }
+                } else if (action < 9) {
+                    int row = live.get(random.nextInt(live.size()));
+                    assertEquals(records.get(row), index.remove(row));
+                    records.set(row, null);
+                } else {
+                    int row = live.get(random.nextInt(live.size()));
+                    Customer customer = randomCustomer(random);
+                    index.update(row, customer);
+                    records.set(row, customer);
+                }
+            }
+            assertEquals(records.stream().filter(Objects::nonNull).count(), index.size());
+            for (int q = 0; q < 50; q++) {
+                assertSameRows(index, records, randomQuery(random, 3));
+            }
+        }
+    }
+
+    @Test
+    public void emptyIndexAndEmptyFilters() {
+        BitmapIndex<Customer> index = newIndex();
+        List<Customer> records = new ArrayList<>();
+        Query all = new Query(Filter.and(), c -> true, "and()");
+        Query none = new Query(Filter.or(), c -> false, "or()");
+        assertSameRows(index, records, all);
+        assertSameRows(index, records, none);
+        assertSameRows(index, records, new Query(Filter.not(Filter.eq("country", "DE")), c -> true, "not"));
+
+        SplittableRandom random = new SplittableRandom(2);
+        for (int i = 0; i < 200; i++) {
+            Customer customer = randomCustomer(random);
+            index.add(customer);
+            records.add(customer);
+        }
+        assertSameRows(index, records, all);
+        assertSameRows(index, records, none);
+        assertSameRows(index, records, new Query(Filter.in("status"), c -> false, "in()"));
+        // removed rows do not match not() nor and()
+        for (int row = 0; row < 200; row += 3) {
+            index.remove(row);
+            records.set(row, null);
+        }
+        assertSameRows(index, records, all);
+        assertSameRows(index, records, new Query(Filter.not(Filter.or()), c -> true, "not(or())"));
+        assertSameRows(index, records, new Query(Filter.eq("country", null), c -> c.country() == null, "country = null"));
+        assertSameRows(index, records, new Query(Filter.eq("country", "DE").and(Filter.eq("status", "ACTIVE")).or(Filter.eq("age", 3)),
+                c -> "DE".equals(c.country()) && "ACTIVE".equals(c.status()) || c.age() == 3, "default methods"));
+    }
+
+    @Test
+    public void columnAddedLaterIndexesExistingRecords() {
+        SplittableRandom random = new SplittableRandom(3);
+        BitmapIndex<Customer> index = new BitmapIndex<Customer>().addColumn("country", Customer::country);
+        List<Customer> records = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Customer customer = randomCustomer(random);
+            index.add(customer);
+            records.add(customer);
+        }
+        for (int row = 1; row < 500; row += 2) {
+            index.remove(row);
+            records.set(row, null);
+        }
+        index.addColumn("status", Customer::status);
+        for (String status : STATUSES) {
+            assertSameRows(index, records, new Query(Filter.eq("status", status), c -> status.equals(c.status()), "status = " + status));
+            assertSameRows(index, records, new Query(Filter.and(Filter.eq("country", "AT"), Filter.not(Filter.eq("status", status))),
+                    c -> "AT".equals(c.country()) && !status.equals(c.status()), "AT and not " + status));
+        }
+        // the removed rows are reused by the next add, in both columns
+        Customer customer = new Customer("CH", "TRIAL", true, 1);
+        int row = index.add(customer);
+        assertTrue(row % 2 == 1);
+        assertEquals(customer, index.get(row));
+        records.set(row, customer);
+        assertSameRows(index, records, new Query(Filter.eq("status", "TRIAL"), c -> "TRIAL".equals(c.status()), "status = TRIAL"));
+    }
+
+    @Test
+    public void invalidArguments() {
+        BitmapIndex<Customer> index = newIndex();
+        int row = index.add(new Customer("DE", "ACTIVE", true, 1));
+        assertThrows(IllegalArgumentException.class, () -> index.addColumn("country", Customer::country));
+        assertThrows(IllegalArgumentException.class, () -> index.count(Filter.eq("unknown", 1)));
+        assertThrows(NullPointerException.class, () -> index.add(null));
+        assertThrows(NullPointerException.class, () -> index.update(row, null));
+        assertThrows(IllegalArgumentException.class, () -> index.get(row + 1));
+        assertThrows(IllegalArgumentException.class, () -> index.get(-1));
+        index.remove(row);
+        assertThrows(IllegalArgumentException.class, () -> index.get(row));
+        assertThrows(IllegalArgumentException.class, () -> index.remove(row));
+        assertThrows(IllegalArgumentException.class, () -> index.update(row, new Customer("AT", "TRIAL", false, 2)));
+        assertEquals(0, index.size());
+    }
+}
@@ -0,0 +1,187 @@
+package bitvector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.BiFunction;
+
+import org.junit.Test;
+
+/**
+ * Tests for both Bloom filter variants: no false negatives, also after union and serialization, and a
+ * false positive rate close to the requested one.
+ */
+public class BloomFilterTest {
+
+    private static final int KEYS = 100_000;
+
+    private static final BiFunction<Long, Double, BloomFilter> STANDARD = BloomFilter::create;
+    private static final BiFunction<Long, Double, BloomFilter> BLOCKED = BloomFilter::createBlocked;
+
+    // the keys are random, the keys that were not added are taken from a disjoint range
+    private static long[] keys(SplittableRandom random, int count) {
+        return random.longs(count, 0, Long.MAX_VALUE).toArray();
+    }
+
+    private static double falsePositiveRate(BloomFilter filter, SplittableRandom random, int lookups) {
+        int falsePositives = 0;
+        for (int i = 0; i < lookups; i++) {
+            if (filter.mightContain(random.nextLong(Long.MIN_VALUE, 0))) {
+                falsePositives++;
+            }
+        }
+        return (double) falsePositives / lookups;
+    }
+
+    private static void assertNoFalseNegatives(BloomFilter filter, long[] keys) {
+        for (long key : keys) {
+            assertTrue(filter + " lost " + key, filter.mightContain(key));
+        }
+    }
+
+    @Test
+    public void noFalseNegatives() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (BiFunction<Long, Double, BloomFilter> create : List.of(STANDARD, BLOCKED)) {
+            for (double rate : new double[] {0.5, 0.01, 0.0001}) {
+                // also more keys than expected
+                for (long expected : new long[] {1, 1000, KEYS}) {
+                    BloomFilter filter = create.apply(expected, rate);
+                    long[] keys = keys(random, (int) Math.min(KEYS, 3 * expected));
+                    for (long key : keys) {
+                        filter.put(key);
+                    }
+                    assertNoFalseNegatives(filter, keys);
+                    for (int i = 0; i < 1000; i++) {
+                        String key = "key-" + keys[i % keys.length];
+                        filter.put(key);
+                        assertTrue(filter.mightContain(key));
+                        assertTrue(filter.mightContain(new StringBuilder(key)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void falsePositiveRateIsBounded() {
+        SplittableRandom random = new SplittableRandom(2);
+        for (double rate : new double[] {0.1, 0.01, 0.001}) {
+            BloomFilter standard = BloomFilter.create(KEYS, rate);
+            BloomFilter blocked = BloomFilter.createBlocked(KEYS, rate);
+            for (long key : keys(random, KEYS)) {
+                standard.put(key);
+                blocked.put(key);
+            }
+            int lookups = (int) (200 / rate);
+            double standardRate = falsePositiveRate(standard, random, lookups);
+            double blockedRate = falsePositiveRate(blocked, random, lookups);
+            // the measured rates scatter by about 1 / sqrt(200) = 7% around the true rate
+            assertTrue("standard " + standardRate + " for " + rate, standardRate < 1.3 * rate);
+            // the blocked variant pays with a higher rate, especially for small rates
+            assertTrue("blocked " + blockedRate + " for " + rate, blockedRate < 2.5 * rate);
+            // the estimate from the set bits is close to the requested rate
+            assertEquals(rate, standard.expectedFalsePositiveRate(), 0.2 * rate);
+            assertEquals(rate, blocked.expectedFalsePositiveRate(), 0.2 * rate);
+        }
+    }
+
+    @Test
+    public void unionContainsBoth() {
+        SplittableRandom random = new SplittableRandom(3);
+        for (BiFunction<Long, Double, BloomFilter> create : List.of(STANDARD, BLOCKED)) {
+            BloomFilter a = create.apply(10_000L, 0.01);
+            BloomFilter b = create.apply(10_000L, 0.01);
+            long[] keysA = keys(random, 5000);
+            long[] keysB = keys(random, 5000);
+            for (long key : keysA) {
+                a.put(key);
+            }
+            for (long key : keysB) {
+                b.put(key);
+            }
+            a.union(b);
+            assertNoFalseNegatives(a, keysA);
+            assertNoFalseNegatives(a, keysB);
+            assertNoFalseNegatives(b, keysB);
+            assertThrows(IllegalArgumentException.class, () -> a.union(create.apply(20_000L, 0.01)));
+        }
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(100, 0.01).union(BloomFilter.createBlocked(100, 0.01)));
+    }
+
+    private static byte[] serialize(BloomFilter filter) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static BloomFilter deserialize(byte[] bytes) throws IOException {
+        return BloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    public void serializationRoundTrip() throws IOException {
+        SplittableRandom random = new SplittableRandom(4);
+        for (BiFunction<Long, Double, BloomFilter> create : List.of(STANDARD, BLOCKED)) {
+            BloomFilter filter = create.apply(5000L, 0.02);
+            long[] keys = keys(random, 5000);
+            for (long key : keys) {
+                filter.put(key);
+            }
+            byte[] bytes = serialize(filter);
+            assertEquals(4 + 1 + 4 + 4 + MultiWordBitVector.wordsFor(filter.bitSize()) * Long.BYTES, bytes.length);
+            BloomFilter copy = deserialize(bytes);
+            assertEquals(filter.getClass(), copy.getClass());
+            assertEquals(filter.bitSize(), copy.bitSize());
+            assertEquals(filter.numHashFunctions(), copy.numHashFunctions());
+            assertEquals(filter.bits, copy.bits);
+            assertNoFalseNegatives(copy, keys);
+            // the same answers for keys that were not added
+            for (int i = 0; i < 10_000; i++) {
+                long key = random.nextLong(Long.MIN_VALUE, 0);
+                assertEquals(filter.mightContain(key), copy.mightContain(key));
+            }
+        }
+    }
+
+    @Test
+    public void corruptSerializationIsRejected() throws IOException {
+        byte[] valid = serialize(BloomFilter.createBlocked(1000, 0.01));
+        byte[] magic = valid.clone();
+        magic[0] ^= 1;
+        assertThrows(IOException.class, () -> deserialize(magic));
+        byte[] variant = valid.clone();
+        variant[4] = 2;
+        assertThrows(IOException.class, () -> deserialize(variant));
+        // a blocked filter must have whole blocks
+        byte[] bits = valid.clone();
+        bits[8] ^= 1;
+        assertThrows(IOException.class, () -> deserialize(bits));
+        byte[] hashFunctions = valid.clone();
+        hashFunctions[9] = hashFunctions[10] = hashFunctions[11] = hashFunctions[12] = 0;
+        assertThrows(IOException.class, () -> deserialize(hashFunctions));
+        byte[] truncated = Arrays.copyOf(valid, valid.length - 1);
+        assertThrows(IOException.class, () -> deserialize(truncated));
+    }
+
+    @Test
+    public void invalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(10, 0));
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.createBlocked(10, 1));
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.createBlocked(10, Double.NaN));
+        // optimal parameters: about 9.6 bits and 7 hash functions per key for 1%
+        assertEquals(958_505, BloomFilter.optimalNumBits(KEYS, 0.01), 1);
+        assertEquals(7, BloomFilter.optimalNumHashFunctions(KEYS, BloomFilter.optimalNumBits(KEYS, 0.01)));
+        assertEquals(0, BloomFilter.createBlocked(KEYS, 0.01).bitSize() % BloomFilter.Blocked.BLOCK_BITS);
+    }
+}
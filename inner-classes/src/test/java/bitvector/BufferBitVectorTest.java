@@ -0,0 +1,269 @@
+package bitvector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the binary format of BitVectorBase.writeTo: every vector type written and read back with
+ * MultiWordBitVector.readFrom and BufferBitVector.wrap has the same bits as java.util.BitSet, and corrupt or
+ * truncated headers are rejected without moving the position of the buffer.
+ */
+public class BufferBitVectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final int BITS = 5000;
+
+    private static void assertSameBits(BitSet expected, BitVectorBase vector) {
+        assertEquals(expected.cardinality(), vector.cardinality());
+        for (int bit = 0; bit < BITS + 2 * Long.SIZE; bit++) {
+            assertEquals("isSet(" + bit + ")", expected.get(bit), vector.isSet(bit));
+        }
+        assertArrayEquals(expected.stream().toArray(), vector.stream().toArray());
+        assertArrayEquals(expected.stream().toArray(), vector.parallelStream().toArray());
+        List<Integer> fromIterator = new ArrayList<>();
+        vector.intIterator().forEachRemaining((int bit) -> fromIterator.add(bit));
+        assertArrayEquals(expected.stream().toArray(), fromIterator.stream().mapToInt(Integer::intValue).toArray());
+        List<Integer> fromForEach = new ArrayList<>();
+        vector.forEachSetBit(fromForEach::add);
+        assertEquals(fromIterator, fromForEach);
+        for (int from = 0; from < BITS + 2 * Long.SIZE; from += 5) {
+            assertEquals("nextSetBit(" + from + ")", expected.nextSetBit(from), vector.nextSetBit(from));
+            assertEquals("previousSetBit(" + from + ")", expected.previousSetBit(from), vector.previousSetBit(from));
+        }
+    }
+
+    // the vector types that can be written, all filled with the same bits
+    private static List<Supplier<BitVectorBase>> writers() {
+        return List.of(MultiWordBitVector::new, RankSelectBitVector::new, CompressedBitmap::new,
+                CopyOnWriteBitVector::new, () -> new ConcurrentBitVector(BITS));
+    }
+
+    private static BitSet randomBits(SplittableRandom random, int maxBit) {
+        BitSet bits = new BitSet();
+        int count = random.nextInt(4) == 0 ? 0 : random.nextInt(1, maxBit);
+        for (int i = 0; i < count; i++) {
+            bits.set(random.nextInt(maxBit));
+        }
+        return bits;
+    }
+
+    private static <T extends BitVectorBase> T fill(T vector, BitSet bits) {
+        bits.stream().forEach(bit -> vector.setBit(bit, true));
+        return vector;
+    }
+
+    @Test
+    public void roundTripOfEveryVectorType() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int round = 0; round < 40; round++) {
+            BitSet expected = randomBits(random, 1 + random.nextInt(BITS));
+            for (Supplier<BitVectorBase> writer : writers()) {
+                BitVectorBase vector = fill(writer.get(), expected);
+                String message = vector.getClass().getSimpleName() + " with " + expected.cardinality() + " bits";
+                int size = vector.serializedSize();
+                assertEquals(message, MappedBitVector.HEADER_BYTES + MultiWordBitVector.wordsFor(expected.length()) * Long.BYTES, size);
+
+                // at an offset, behind other data, in a big-endian buffer: the order of the buffer does not matter
+                ByteBuffer buffer = (random.nextBoolean() ? ByteBuffer.allocate(size + 20) : ByteBuffer.allocateDirect(size + 20));
+                buffer.position(7);
+                vector.writeTo(buffer);
+                assertEquals(message, 7 + size, buffer.position());
+                assertEquals(message, ByteOrder.BIG_ENDIAN, buffer.order());
+
+                buffer.position(7);
+                BufferBitVector view = BufferBitVector.wrap(buffer);
+                assertEquals(message, 7 + size, buffer.position());
+                assertSameBits(expected, view);
+                buffer.position(7);
+                MultiWordBitVector copy = MultiWordBitVector.readFrom(buffer);
+                assertEquals(message, 7 + size, buffer.position());
+                assertSameBits(expected, copy);
+                assertEquals(message, fill(new MultiWordBitVector(), expected), copy);
+                assertEquals(message, copy.hashCode(), view.hashCode());
+
+                // a view written again has the same bytes
+                ByteBuffer again = ByteBuffer.allocate(view.serializedSize());
+                view.writeTo(again);
+                assertFalse(message, again.hasRemaining());
+                assertEquals(message, buffer.duplicate().position(7).limit(7 + size), again.flip());
+            }
+        }
+    }
+
+    @Test
+    public void singleWordAndHighestBits() {
+        BitVectorBase single = new BitVectorBase(0x8000_0000_0000_0001L);
+        ByteBuffer buffer = ByteBuffer.allocate(single.serializedSize());
+        single.writeTo(buffer);
+        BufferBitVector view = BufferBitVector.wrap(buffer.flip());
+        assertEquals(single.getValue(), view.getValue());
+        assertEquals(List.of(0, 63), view.stream().boxed().toList());
+        // the number of bits in the header counts up to the highest set bit
+        assertEquals(64, buffer.order(ByteOrder.LITTLE_ENDIAN).getLong(8));
+
+        BitVectorBase empty = new MultiWordBitVector();
+        assertEquals(MappedBitVector.HEADER_BYTES, empty.serializedSize());
+        ByteBuffer emptyBuffer = ByteBuffer.allocate(MappedBitVector.HEADER_BYTES);
+        empty.writeTo(emptyBuffer);
+        BufferBitVector emptyView = BufferBitVector.wrap(emptyBuffer.flip());
+        assertSameBits(new BitSet(), emptyView);
+        assertEquals(0, emptyView.getValue());
+        assertEquals(new MultiWordBitVector(), MultiWordBitVector.readFrom(emptyBuffer.flip()));
+
+        // bit Integer.MAX_VALUE: the number of bits is 2^31 and does not overflow
+        MultiWordBitVector highest = new MultiWordBitVector();
+        highest.setBit(Integer.MAX_VALUE, true);
+        ByteBuffer highestBuffer = ByteBuffer.allocate(highest.serializedSize());
+        highest.writeTo(highestBuffer);
+        assertEquals(1L << 31, highestBuffer.order(ByteOrder.LITTLE_ENDIAN).getLong(8));
+        BufferBitVector highestView = BufferBitVector.wrap(highestBuffer.flip());
+        assertTrue(highestView.isSet(Integer.MAX_VALUE));
+        assertEquals(Integer.MAX_VALUE, highestView.previousSetBit(Integer.MAX_VALUE));
+        assertEquals(1, highestView.cardinality());
+    }
+
+    @Test
+    public void viewOfAMappedBitVectorFile() throws IOException {
+        SplittableRandom random = new SplittableRandom(2);
+        Path file = folder.newFile().toPath();
+        BitSet expected = randomBits(random, BITS);
+        try (MappedBitVector vector = MappedBitVector.create(file, BITS)) {
+            fill(vector, expected);
+        }
+        // the file may have trailing zero words, the views ignore them
+        BufferBitVector view = BufferBitVector.wrap(ByteBuffer.wrap(Files.readAllBytes(file)));
+        assertSameBits(expected, view);
+        MultiWordBitVector copy = MultiWordBitVector.readFrom(ByteBuffer.wrap(Files.readAllBytes(file)));
+        assertSameBits(expected, copy);
+        assertEquals(copy.hashCode(), view.hashCode());
+    }
+
+    @Test
+    public void viewIsReadOnlyAndSharesTheBytes() {
+        MultiWordBitVector vector = new MultiWordBitVector();
+        vector.setBit(3, true);
+        vector.setBit(100, true);
+        ByteBuffer buffer = ByteBuffer.allocate(vector.serializedSize());
+        vector.writeTo(buffer);
+        BufferBitVector view = BufferBitVector.wrap(buffer.flip());
+
+        assertThrows(UnsupportedOperationException.class, () -> view.setBit(5, true));
+        assertThrows(UnsupportedOperationException.class, () -> view.and(vector));
+        assertThrows(UnsupportedOperationException.class, () -> view.or(vector));
+        assertThrows(UnsupportedOperationException.class, () -> view.xor(vector));
+        assertThrows(UnsupportedOperationException.class, () -> view.andNot(vector));
+        assertThrows(IllegalArgumentException.class, () -> view.isSet(-1));
+        assertTrue(view.intersects(vector));
+        assertFalse(view.intersects(new MultiWordBitVector(1L)));
+
+        // the bytes are not copied: the second word (bit 100) is cleared under the view
+        buffer.putLong(MappedBitVector.HEADER_BYTES + Long.BYTES, 0L);
+        assertFalse(view.isSet(100));
+        assertEquals(1, view.cardinality());
+    }
+
+    @Test
+    public void writeToATooSmallBufferFails() {
+        MultiWordBitVector vector = new MultiWordBitVector();
+        vector.setBit(200, true);
+        for (BitVectorBase writer : List.of(vector, new CompressedBitmap(), new BitVectorBase(5))) {
+            if (writer instanceof CompressedBitmap) {
+                writer.setBit(200, true);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(writer.serializedSize() + 2);
+            buffer.position(3);
+            assertThrows(BufferOverflowException.class, () -> writer.writeTo(buffer));
+            assertEquals(3, buffer.position());
+            // nothing was written
+            assertEquals(0, buffer.getInt(3));
+        }
+    }
+
+    // a valid serialized vector with bits 0 and 130, 3 words
+    private static ByteBuffer valid() {
+        MultiWordBitVector vector = new MultiWordBitVector();
+        vector.setBit(0, true);
+        vector.setBit(130, true);
+        ByteBuffer buffer = ByteBuffer.allocate(vector.serializedSize());
+        vector.writeTo(buffer);
+        return buffer.flip();
+    }
+
+    private static void assertRejected(Class<? extends RuntimeException> expected, ByteBuffer buffer) {
+        int position = buffer.position();
+        assertThrows(expected, () -> BufferBitVector.wrap(buffer));
+        assertEquals(position, buffer.position());
+        assertThrows(expected, () -> MultiWordBitVector.readFrom(buffer));
+        assertEquals(position, buffer.position());
+    }
+
+    @Test
+    public void corruptHeadersAreRejected() {
+        ByteBuffer header = valid().order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(MappedBitVector.MAGIC, header.getInt(0));
+        assertEquals(MappedBitVector.VERSION, header.getInt(4));
+        assertEquals(131, header.getLong(8));
+
+        assertRejected(IllegalArgumentException.class, valid().put(0, (byte) 'X'));
+        assertRejected(IllegalArgumentException.class, valid().put(4, (byte) 2));
+        assertRejected(IllegalArgumentException.class, valid().order(ByteOrder.LITTLE_ENDIAN).putLong(8, -1));
+        assertRejected(IllegalArgumentException.class, valid().order(ByteOrder.LITTLE_ENDIAN).putLong(8, (1L << 31) + 1));
+        // the header written big-endian is not recognized
+        ByteBuffer bigEndian = valid();
+        bigEndian.putInt(0, MappedBitVector.MAGIC).putInt(4, MappedBitVector.VERSION);
+        assertRejected(IllegalArgumentException.class, bigEndian);
+
+        // truncated header, and the words for more bits than the buffer holds
+        assertRejected(BufferUnderflowException.class, valid().limit(MappedBitVector.HEADER_BYTES - 1));
+        assertRejected(BufferUnderflowException.class, ByteBuffer.allocate(0));
+        assertRejected(BufferUnderflowException.class, valid().limit(valid().limit() - 1));
+        assertRejected(BufferUnderflowException.class, valid().order(ByteOrder.LITTLE_ENDIAN).putLong(8, 200));
+        assertRejected(BufferUnderflowException.class, valid().order(ByteOrder.LITTLE_ENDIAN).putLong(8, 1L << 31));
+
+        // fewer bits than the words hold: the rest of the buffer is not part of the vector
+        ByteBuffer shorter = valid().order(ByteOrder.LITTLE_ENDIAN).putLong(8, 64);
+        BufferBitVector view = BufferBitVector.wrap(shorter);
+        assertEquals(MappedBitVector.HEADER_BYTES + Long.BYTES, shorter.position());
+        assertEquals(List.of(0), view.stream().boxed().toList());
+    }
+
+    @Test
+    public void severalVectorsInOneBuffer() {
+        SplittableRandom random = new SplittableRandom(3);
+        List<BitSet> expected = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        for (int i = 0; i < 10; i++) {
+            BitSet bits = randomBits(random, 1 + random.nextInt(BITS));
+            expected.add(bits);
+            fill(new MultiWordBitVector(), bits).writeTo(buffer);
+        }
+        buffer.flip();
+        for (int i = 0; i < 10; i++) {
+            BitVectorBase vector = i % 2 == 0 ? BufferBitVector.wrap(buffer) : MultiWordBitVector.readFrom(buffer);
+            assertSameBits(expected.get(i), vector);
+        }
+        assertFalse(buffer.hasRemaining());
+    }
+}
@@ -0,0 +1,286 @@
+package bitvector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * Tests for CompressedBitmap against java.util.BitSet: the conversions between array, bitmap and run
+ * containers at the 4096 boundary and back, and the set operations on all combinations of containers.
+ */
+public class CompressedBitmapTest {
+
+    private static final String ARRAY = "ArrayContainer";
+    private static final String BITMAP = "BitmapContainer";
+    private static final String RUN = "RunContainer";
+
+    private static void assertSameBits(BitSet expected, CompressedBitmap bitmap) {
+        assertEquals(expected.cardinality(), bitmap.cardinality());
+        assertEquals(expected.isEmpty(), bitmap.isEmpty());
+        assertEquals(expected, toBitSet(bitmap));
+        int[] fromStream = bitmap.stream().toArray();
+        assertEquals(expected.cardinality(), fromStream.length);
+        for (int i = 0, bit = expected.nextSetBit(0); bit >= 0; i++, bit = expected.nextSetBit(bit + 1)) {
+            assertEquals(bit, fromStream[i]);
+        }
+        assertEquals(expected.cardinality(), bitmap.parallelStream().count());
+        // the queries at about 1000 positions, a query in a long run scans the whole run
+        int length = expected.length() + 70;
+        for (int from = 0; from < length; from += 1 + length / 1000) {
+            assertEquals("isSet(" + from + ")", expected.get(from), bitmap.isSet(from));
+            assertEquals("nextSetBit(" + from + ")", expected.nextSetBit(from), bitmap.nextSetBit(from));
+            assertEquals("nextClearBit(" + from + ")", expected.nextClearBit(from), bitmap.nextClearBit(from));
+        }
+    }
+
+    private static BitSet toBitSet(CompressedBitmap bitmap) {
+        BitSet bitSet = new BitSet();
+        bitmap.forEachSetBit(bitSet::set);
+        return bitSet;
+    }
+
+    @Test
+    public void arrayBecomesBitmapAfter4096BitsAndBack() {
+        SplittableRandom random = new SplittableRandom(1);
+        int base = 3 * CompressedBitmap.CHUNK_SIZE;
+        CompressedBitmap bitmap = new CompressedBitmap();
+        BitSet expected = new BitSet();
+        // every other bit, so there are no runs
+        int[] bits = new int[CompressedBitmap.ARRAY_MAX_SIZE + 2];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = base + 2 * i;
+        }
+        for (int i = bits.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = bits[i];
+            bits[i] = bits[j];
+            bits[j] = swap;
+        }
+        for (int i = 0; i < CompressedBitmap.ARRAY_MAX_SIZE; i++) {
+            bitmap.setBit(bits[i], true);
+            expected.set(bits[i]);
+            assertEquals(ARRAY, bitmap.containerType(base));
+        }
+        assertSameBits(expected, bitmap);
+        // setting a bit that is already set does not convert
+        bitmap.setBit(bits[0], true);
+        assertEquals(ARRAY, bitmap.containerType(base));
+
+        bitmap.setBit(bits[CompressedBitmap.ARRAY_MAX_SIZE], true);
+        expected.set(bits[CompressedBitmap.ARRAY_MAX_SIZE]);
+        assertEquals(BITMAP, bitmap.containerType(base));
+        bitmap.setBit(bits[CompressedBitmap.ARRAY_MAX_SIZE + 1], true);
+        expected.set(bits[CompressedBitmap.ARRAY_MAX_SIZE + 1]);
+        assertEquals(BITMAP, bitmap.containerType(base));
+        assertSameBits(expected, bitmap);
+
+        // clearing a bit that is not set does not convert, back to 4096 bits does
+        bitmap.setBit(base + 1, false);
+        assertEquals(BITMAP, bitmap.containerType(base));
+        bitmap.setBit(bits[0], false);
+        expected.clear(bits[0]);
+        assertEquals(BITMAP, bitmap.containerType(base));
+        bitmap.setBit(bits[1], false);
+        expected.clear(bits[1]);
+        assertEquals(ARRAY, bitmap.containerType(base));
+        assertSameBits(expected, bitmap);
+
+        // and up again, then down to nothing
+        bitmap.setBit(bits[0], true);
+        expected.set(bits[0]);
+        assertEquals(BITMAP, bitmap.containerType(base));
+        for (int bit : bits) {
+            bitmap.setBit(bit, false);
+            expected.clear(bit);
+            assertEquals(expected.isEmpty() ? null : expected.cardinality() > CompressedBitmap.ARRAY_MAX_SIZE ? BITMAP : ARRAY,
+                    bitmap.containerType(base));
+        }
+        assertSameBits(expected, bitmap);
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    public void runsAreChosenWhenSmallest() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        BitSet expected = new BitSet();
+        bitmap.setRange(100, 3 * CompressedBitmap.CHUNK_SIZE + 7);
+        expected.set(100, 3 * CompressedBitmap.CHUNK_SIZE + 7);
+        for (int chunk = 0; chunk < 4; chunk++) {
+            assertEquals(RUN, bitmap.containerType(chunk * CompressedBitmap.CHUNK_SIZE));
+        }
+        assertNull(bitmap.containerType(4 * CompressedBitmap.CHUNK_SIZE));
+        assertSameBits(expected, bitmap);
+
+        // holes split the run, until runs are larger than the array or bitmap
+        int base = CompressedBitmap.CHUNK_SIZE;
+        for (int bit = base + 1; bit < base + CompressedBitmap.CHUNK_SIZE; bit += 2) {
+            bitmap.setBit(bit, false);
+            expected.clear(bit);
+        }
+        assertEquals(BITMAP, bitmap.containerType(base));
+        assertSameBits(expected, bitmap);
+        for (int bit = base; bit < base + CompressedBitmap.CHUNK_SIZE; bit += 4) {
+            bitmap.setBit(bit, false);
+            expected.clear(bit);
+        }
+        // 8192 bits left: still a bitmap; after runOptimize too, runs and array would be larger
+        assertEquals(BITMAP, bitmap.containerType(base));
+        bitmap.runOptimize();
+        assertEquals(BITMAP, bitmap.containerType(base));
+        assertSameBits(expected, bitmap);
+
+        // isolated bits in a run container
+        int third = 2 * CompressedBitmap.CHUNK_SIZE;
+        for (int bit = third; bit < third + 6000; bit += 2) {
+            bitmap.setBit(bit, false);
+            expected.clear(bit);
+        }
+        assertEquals(BITMAP, bitmap.containerType(third));
+        assertSameBits(expected, bitmap);
+
+        // many single setBit calls make a bitmap, runOptimize turns it into one run
+        CompressedBitmap dense = new CompressedBitmap();
+        for (int bit = 0; bit < 10_000; bit++) {
+            dense.setBit(bit, true);
+        }
+        assertEquals(BITMAP, dense.containerType(0));
+        dense.runOptimize();
+        assertEquals(RUN, dense.containerType(0));
+        BitSet range = new BitSet();
+        range.set(0, 10_000);
+        assertSameBits(range, dense);
+        // a few runs next to each other
+        dense.setBit(20_000, true);
+        range.set(20_000);
+        assertEquals(RUN, dense.containerType(0));
+        dense.setBit(10_000, true);
+        range.set(10_000);
+        dense.setBit(5_000, false);
+        range.clear(5_000);
+        assertEquals(RUN, dense.containerType(0));
+        assertSameBits(range, dense);
+
+        // a small array is not turned into runs
+        CompressedBitmap sparse = new CompressedBitmap();
+        sparse.setBit(5, true);
+        sparse.setBit(500, true);
+        sparse.runOptimize();
+        assertEquals(ARRAY, sparse.containerType(0));
+    }
+
+    // bits of a chunk: sparse (array), dense (bitmap), few runs, or a mix of runs and isolated bits
+    private static void fillChunk(SplittableRandom random, int chunk, int kind, CompressedBitmap bitmap, BitSet expected) {
+        int base = chunk * CompressedBitmap.CHUNK_SIZE;
+        switch (kind) {
+            case 0 -> {
+                for (int i = random.nextInt(1, 5000); i > 0; i--) {
+                    int bit = base + random.nextInt(CompressedBitmap.CHUNK_SIZE);
+                    bitmap.setBit(bit, true);
+                    expected.set(bit);
+                }
+            }
+            case 1 -> {
+                for (int i = random.nextInt(4000, 40_000); i > 0; i--) {
+                    int bit = base + random.nextInt(CompressedBitmap.CHUNK_SIZE);
+                    bitmap.setBit(bit, true);
+                    expected.set(bit);
+                }
+            }
+            default -> {
+                for (int i = random.nextInt(1, 20); i > 0; i--) {
+                    int from = base + random.nextInt(CompressedBitmap.CHUNK_SIZE);
+                    int to = Math.min(base + CompressedBitmap.CHUNK_SIZE, from + random.nextInt(1, 8000));
+                    bitmap.setRange(from, to);
+                    expected.set(from, to);
+                }
+                if (kind == 3) {
+                    for (int i = random.nextInt(100); i > 0; i--) {
+                        int bit = base + random.nextInt(CompressedBitmap.CHUNK_SIZE);
+                        boolean set = random.nextBoolean();
+                        bitmap.setBit(bit, set);
+                        expected.set(bit, set);
+                    }
+                }
+            }
+        }
+    }
+
+    private static CompressedBitmap randomBitmap(SplittableRandom random, BitSet expected) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int chunk = 0; chunk < 6; chunk++) {
+            if (random.nextInt(4) != 0) {
+                fillChunk(random, chunk, random.nextInt(4), bitmap, expected);
+            }
+        }
+        if (random.nextBoolean()) {
+            bitmap.runOptimize();
+        }
+        return bitmap;
+    }
+
+    @Test
+    public void setOperationsMatchBitSet() {
+        SplittableRandom random = new SplittableRandom(2);
+        for (int round = 0; round < 60; round++) {
+            BitSet x = new BitSet();
+            BitSet y = new BitSet();
+            CompressedBitmap a = randomBitmap(random, x);
+            CompressedBitmap b = randomBitmap(random, y);
+            assertSameBits(x, a);
+            assertEquals(x.intersects(y), a.intersects(b));
+
+            BitSet expected = (BitSet) x.clone();
+            expected.and(y);
+            assertSameBits(expected, CompressedBitmap.and(a, b));
+            expected = (BitSet) x.clone();
+            expected.or(y);
+            assertSameBits(expected, CompressedBitmap.or(a, b));
+            expected = (BitSet) x.clone();
+            expected.xor(y);
+            assertSameBits(expected, CompressedBitmap.xor(a, b));
+            expected = (BitSet) x.clone();
+            expected.andNot(y);
+            CompressedBitmap andNot = CompressedBitmap.andNot(a, b);
+            assertSameBits(expected, andNot);
+
+            // in place, and with a copy in other containers: same bits, so equal
+            CompressedBitmap copy = CompressedBitmap.copyOf(a);
+            copy.andNot(b);
+            assertEquals(andNot, copy);
+            assertEquals(andNot.hashCode(), copy.hashCode());
+            copy.runOptimize();
+            assertEquals(andNot, copy);
+            // a and b are unchanged
+            assertSameBits(x, a);
+            assertSameBits(y, b);
+        }
+    }
+
+    @Test
+    public void randomSetAndClearMatchBitSet() {
+        SplittableRandom random = new SplittableRandom(3);
+        CompressedBitmap bitmap = new CompressedBitmap();
+        BitSet expected = new BitSet();
+        for (int step = 0; step < 200_000; step++) {
+            // most bits in two chunks, so that they grow past 4096 bits and shrink again
+            int bit = random.nextInt(10) == 0 ? random.nextInt(1 << 22) : random.nextInt(2 * CompressedBitmap.CHUNK_SIZE);
+            boolean set = step % 100_000 < 60_000 ? random.nextInt(3) != 0 : random.nextInt(3) == 0;
+            bitmap.setBit(bit, set);
+            expected.set(bit, set);
+            assertEquals(expected.get(bit), bitmap.isSet(bit));
+            if (step % 20_000 == 0) {
+                assertSameBits(expected, bitmap);
+                bitmap.runOptimize();
+                assertSameBits(expected, bitmap);
+            }
+        }
+        assertSameBits(expected, bitmap);
+        assertFalse(bitmap.isSet(Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,71 @@
+package bitvector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Tests that snapshot() copies the vector at one point in time while other threads modify it.
+ */
+public class ConcurrentBitVectorTest {
+
+    static final int BITS = 1 << 16;
+
+    @Test
+    public void snapshotSeesBulkOperationsCompletelyOrNotAtAll() throws InterruptedException {
+        ConcurrentBitVector vector = new ConcurrentBitVector(BITS);
+        // one bit in the first and one in the last word: a copy made word by word while or/andNot
+        // run would sometimes contain only one of them
+        MultiWordBitVector pair = new MultiWordBitVector();
+        pair.setBit(0, true);
+        pair.setBit(BITS - 1, true);
+
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            while (!stop.get()) {
+                vector.or(pair);
+                vector.andNot(pair);
+            }
+        });
+        writer.start();
+        try {
+            for (int i = 0; i < 5_000; i++) {
+                MultiWordBitVector snapshot = vector.snapshot();
+                int cardinality = snapshot.cardinality();
+                assertTrue("snapshot with " + cardinality + " bits", cardinality == 0 || cardinality == 2);
+                assertEquals(snapshot.isSet(0), snapshot.isSet(BITS - 1));
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+    }
+
+    @Test
+    public void snapshotCountsSetBitsOfAllWriters() throws InterruptedException {
+        ConcurrentBitVector vector = new ConcurrentBitVector(BITS);
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            int first = t;
+            writers[t] = new Thread(() -> {
+                for (int bit = first; bit < BITS; bit += writers.length) {
+                    vector.setBit(bit, true);
+                }
+            });
+            writers[t].start();
+        }
+        int previous = 0;
+        for (Thread writer : writers) {
+            writer.join();
+            // bits are only set, so later snapshots never have fewer of them
+            int cardinality = vector.snapshot().cardinality();
+            assertTrue(cardinality >= previous);
+            previous = cardinality;
+        }
+        assertEquals(BITS, vector.snapshot().cardinality());
+        assertEquals(BITS, vector.snapshot().length());
+    }
+}
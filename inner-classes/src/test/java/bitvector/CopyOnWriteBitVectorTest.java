@@ -0,0 +1,68 @@
+package bitvector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.PrimitiveIterator;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import org.junit.Test;
+
+/**
+ * Tests that reading a CopyOnWriteBitVector does not make the following writes copy chunks,
+ * and that snapshots keep their state.
+ */
+public class CopyOnWriteBitVectorTest {
+
+    private static CopyOnWriteBitVector everyThirdBit(int bits) {
+        CopyOnWriteBitVector vector = new CopyOnWriteBitVector();
+        for (int bit = 0; bit < bits; bit += 3) {
+            vector.setBit(bit, true);
+        }
+        return vector;
+    }
+
+    @Test
+    public void readingTheVectorDoesNotStartAnEpoch() {
+        CopyOnWriteBitVector vector = everyThirdBit(100_000);
+        int chunks = vector.ownedChunks();
+
+        int[] sum = {0};
+        vector.forEachSetBit(bit -> sum[0] += bit);
+        vector.intIterator().forEachRemaining((int bit) -> sum[0] -= bit);
+        assertEquals(0, sum[0]);
+        assertTrue(vector.equals(everyThirdBit(100_000)));
+        assertEquals(vector.cardinality(), StreamSupport.intStream(vector.spliterator(), false).count());
+
+        // without a snapshot all chunks still belong to the vector, a write copies nothing
+        vector.setBit(1, true);
+        assertEquals(chunks, vector.ownedChunks());
+    }
+
+    @Test
+    public void writesAfterASnapshotCopyOnlyTheirChunk() {
+        CopyOnWriteBitVector vector = everyThirdBit(100_000);
+        CopyOnWriteBitVector.Snapshot snapshot = vector.snapshot();
+        vector.setBit(1, true);
+        assertEquals(1, vector.ownedChunks());
+        assertFalse(snapshot.isSet(1));
+        assertTrue(vector.isSet(1));
+        assertArrayEquals(IntStream.range(0, 100_000).filter(bit -> bit % 3 == 0).toArray(),
+                StreamSupport.intStream(snapshot.spliterator(), false).toArray());
+    }
+
+    @Test
+    public void iteratorSeesBitsSetBehindItsPosition() {
+        CopyOnWriteBitVector vector = new CopyOnWriteBitVector();
+        vector.setBit(5, true);
+        PrimitiveIterator.OfInt bits = vector.intIterator();
+        assertEquals(5, bits.nextInt());
+        vector.setBit(10_000, true);
+        assertTrue(bits.hasNext());
+        assertEquals(10_000, bits.nextInt());
+        assertFalse(bits.hasNext());
+    }
+}
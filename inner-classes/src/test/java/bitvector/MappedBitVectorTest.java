@@ -0,0 +1,228 @@
+package bitvector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for MappedBitVector: the bits survive closing and opening the file, the file has the documented
+ * layout, corrupt files are rejected, and the queries and bulk operations give the same results as BitSet.
+ */
+public class MappedBitVectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void assertSameBits(BitSet expected, MappedBitVector vector) {
+        assertEquals(expected.cardinality(), vector.cardinality());
+        for (int bit = 0; bit < vector.capacity(); bit++) {
+            assertEquals("isSet(" + bit + ")", expected.get(bit), vector.isSet(bit));
+        }
+        assertArrayEquals(expected.stream().toArray(), vector.stream().toArray());
+        int[] fromIterator = new int[expected.cardinality()];
+        int i = 0;
+        for (int bit : vector) {
+            fromIterator[i++] = bit;
+        }
+        assertArrayEquals(expected.stream().toArray(), fromIterator);
+        for (int from = 0; from < vector.capacity(); from += 7) {
+            assertEquals("nextSetBit(" + from + ")", expected.nextSetBit(from), vector.nextSetBit(from));
+            assertEquals("previousSetBit(" + from + ")", expected.previousSetBit(from), vector.previousSetBit(from));
+        }
+    }
+
+    private static void setRandomBits(SplittableRandom random, MappedBitVector vector, BitSet expected, int count) {
+        for (int i = 0; i < count; i++) {
+            int bit = random.nextInt(vector.capacity());
+            boolean set = random.nextInt(4) != 0;
+            vector.setBit(bit, set);
+            expected.set(bit, set);
+        }
+    }
+
+    @Test
+    public void bitsSurviveCloseAndOpen() throws IOException {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int capacity : new int[] {0, 1, 63, 64, 65, 1000, 100_003}) {
+            Path file = folder.newFile().toPath();
+            BitSet expected = new BitSet();
+            try (MappedBitVector vector = MappedBitVector.create(file, capacity)) {
+                assertEquals(capacity, vector.capacity());
+                assertSameBits(expected, vector);
+                if (capacity > 0) {
+                    setRandomBits(random, vector, expected, capacity / 2 + 1);
+                    vector.setBit(capacity - 1, true);
+                    expected.set(capacity - 1);
+                }
+                assertSameBits(expected, vector);
+            }
+            assertEquals(MappedBitVector.HEADER_BYTES + (long) MultiWordBitVector.wordsFor(capacity) * Long.BYTES, Files.size(file));
+
+            try (MappedBitVector vector = MappedBitVector.open(file)) {
+                assertEquals(capacity, vector.capacity());
+                assertSameBits(expected, vector);
+                // modified again and reopened
+                if (capacity > 0) {
+                    setRandomBits(random, vector, expected, 100);
+                    vector.force();
+                }
+            }
+            try (MappedBitVector vector = MappedBitVector.open(file)) {
+                assertSameBits(expected, vector);
+            }
+        }
+    }
+
+    @Test
+    public void fileLayout() throws IOException {
+        Path file = folder.newFile().toPath();
+        try (MappedBitVector vector = MappedBitVector.create(file, 130)) {
+            vector.setBit(0, true);
+            vector.setBit(65, true);
+            vector.setBit(129, true);
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(MappedBitVector.HEADER_BYTES + 3 * Long.BYTES, bytes.limit());
+        assertEquals(MappedBitVector.MAGIC, bytes.getInt(0));
+        assertEquals(MappedBitVector.VERSION, bytes.getInt(4));
+        assertEquals(130, bytes.getLong(8));
+        assertEquals(1L, bytes.getLong(16));
+        assertEquals(2L, bytes.getLong(24));
+        assertEquals(2L, bytes.getLong(32));
+    }
+
+    @Test
+    public void createOverwritesAnExistingFile() throws IOException {
+        Path file = folder.newFile().toPath();
+        try (MappedBitVector vector = MappedBitVector.create(file, 10_000)) {
+            vector.setBit(5, true);
+            vector.setBit(9_999, true);
+        }
+        try (MappedBitVector vector = MappedBitVector.create(file, 100)) {
+            assertEquals(0, vector.cardinality());
+        }
+        assertEquals(MappedBitVector.HEADER_BYTES + 2 * Long.BYTES, Files.size(file));
+    }
+
+    private Path corrupt(int capacity, int offset, byte[] bytes, int truncateTo) throws IOException {
+        Path file = folder.newFile().toPath();
+        try (MappedBitVector vector = MappedBitVector.create(file, capacity)) {
+            vector.setBit(0, true);
+        }
+        byte[] content = Files.readAllBytes(file);
+        System.arraycopy(bytes, 0, content, offset, bytes.length);
+        Files.write(file, Arrays.copyOf(content, Math.min(content.length, truncateTo)));
+        return file;
+    }
+
+    private static byte[] littleEndianLong(long value) {
+        return ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(value).array();
+    }
+
+    @Test
+    public void corruptFilesAreRejected() throws IOException {
+        Path tooShort = corrupt(100, 0, new byte[0], MappedBitVector.HEADER_BYTES - 1);
+        assertThrows(IOException.class, () -> MappedBitVector.open(tooShort));
+        Path wrongMagic = corrupt(100, 0, new byte[] {'X'}, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> MappedBitVector.open(wrongMagic));
+        Path wrongVersion = corrupt(100, 4, new byte[] {2}, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> MappedBitVector.open(wrongVersion));
+        Path truncated = corrupt(1000, 0, new byte[0], MappedBitVector.HEADER_BYTES + 8);
+        assertThrows(IOException.class, () -> MappedBitVector.open(truncated));
+        Path tooLarge = corrupt(100, 8, littleEndianLong(Integer.MAX_VALUE + 1L), Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> MappedBitVector.open(tooLarge));
+        Path negative = corrupt(100, 8, littleEndianLong(-1), Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> MappedBitVector.open(negative));
+        assertThrows(IllegalArgumentException.class, () -> MappedBitVector.create(folder.newFile().toPath(), -1));
+
+        // a smaller capacity than the file holds is fine, the rest of the file is ignored
+        Path smaller = corrupt(1000, 8, littleEndianLong(64), Integer.MAX_VALUE);
+        try (MappedBitVector vector = MappedBitVector.open(smaller)) {
+            assertEquals(64, vector.capacity());
+            assertTrue(vector.isSet(0));
+        }
+    }
+
+    @Test
+    public void bulkOperationsMatchBitSet() throws IOException {
+        SplittableRandom random = new SplittableRandom(2);
+        int capacity = 5000;
+        try (MappedBitVector vector = MappedBitVector.create(folder.newFile().toPath(), capacity)) {
+            BitSet expected = new BitSet();
+            setRandomBits(random, vector, expected, 2000);
+            for (int round = 0; round < 40; round++) {
+                MultiWordBitVector other = new MultiWordBitVector();
+                BitSet otherBits = new BitSet();
+                // and/andNot may have bits beyond the capacity, or/xor not
+                int limit = round % 4 < 2 ? capacity + 500 : capacity;
+                for (int i = random.nextInt(3000); i > 0; i--) {
+                    int bit = random.nextInt(limit);
+                    other.setBit(bit, true);
+                    otherBits.set(bit);
+                }
+                assertEquals(expected.intersects(otherBits), vector.intersects(other));
+                switch (round % 4) {
+                    case 0 -> {
+                        vector.and(other);
+                        expected.and(otherBits);
+                    }
+                    case 1 -> {
+                        vector.andNot(other);
+                        expected.andNot(otherBits);
+                    }
+                    case 2 -> {
+                        vector.or(other);
+                        expected.or(otherBits);
+                    }
+                    default -> {
+                        vector.xor(other);
+                        expected.xor(otherBits);
+                    }
+                }
+                assertSameBits(expected, vector);
+                if (expected.isEmpty()) {
+                    setRandomBits(random, vector, expected, 2000);
+                }
+            }
+
+            MultiWordBitVector beyond = new MultiWordBitVector();
+            beyond.setBit(capacity, true);
+            assertThrows(IllegalArgumentException.class, () -> vector.or(beyond));
+            assertThrows(IllegalArgumentException.class, () -> vector.xor(beyond));
+            assertThrows(IllegalArgumentException.class, () -> vector.setBit(capacity, true));
+            assertThrows(IllegalArgumentException.class, () -> vector.isSet(-1));
+            assertSameBits(expected, vector);
+        }
+    }
+
+    @Test
+    public void equalsComparesTheBits() throws IOException {
+        try (MappedBitVector a = MappedBitVector.create(folder.newFile().toPath(), 200);
+             MappedBitVector b = MappedBitVector.create(folder.newFile().toPath(), 200);
+             MappedBitVector c = MappedBitVector.create(folder.newFile().toPath(), 201)) {
+            a.setBit(150, true);
+            b.setBit(150, true);
+            assertEquals(a, b);
+            assertEquals(a.hashCode(), b.hashCode());
+            c.setBit(150, true);
+            assertFalse(a.equals(c));
+            b.setBit(3, true);
+            assertFalse(a.equals(b));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package bitvector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for the construction of MultiWordBitVector and for vectors that use the highest bit index.
+ */
+public class MultiWordBitVectorTest {
+
+    @Test
+    public void longConstructorKeepsTheBitVectorBaseContract() {
+        MultiWordBitVector vector = new MultiWordBitVector(0b1010);
+        BitVectorBase base = new BitVectorBase(0b1010);
+        assertEquals(2, vector.cardinality());
+        assertEquals(base.getValue(), vector.getValue());
+        for (int bit = 0; bit < 64; bit++) {
+            assertEquals("bit " + bit, base.isSet(bit), vector.isSet(bit));
+        }
+        assertEquals(new MultiWordBitVector(0b1010), vector);
+    }
+
+    @Test
+    public void withCapacityCreatesAnEmptyVector() {
+        MultiWordBitVector vector = MultiWordBitVector.withCapacity(1_000);
+        assertEquals(0, vector.cardinality());
+        assertTrue(vector.capacity() >= 1_000);
+        assertEquals(new MultiWordBitVector(), vector);
+        assertEquals(0, MultiWordBitVector.withCapacity(0).cardinality());
+        assertThrows(IllegalArgumentException.class, () -> MultiWordBitVector.withCapacity(-1));
+    }
+
+    @Test
+    public void highestBitIndex() {
+        MultiWordBitVector vector = new MultiWordBitVector();
+        vector.setBit(3, true);
+        vector.setBit(Integer.MAX_VALUE, true);
+        assertEquals(1L << 31, vector.length());
+
+        MultiWordBitVector copy = vector.copy();
+        assertEquals(vector, copy);
+        assertTrue(copy.isSet(Integer.MAX_VALUE));
+
+        MultiWordBitVector low = new MultiWordBitVector(0b1001);
+        assertEquals(3, MultiWordBitVector.or(vector, low).cardinality());
+        assertEquals(1, MultiWordBitVector.and(vector, low).cardinality());
+        assertEquals(2, MultiWordBitVector.xor(vector, low).cardinality());
+        assertEquals(1, MultiWordBitVector.andNot(vector, low).cardinality());
+        assertEquals(Integer.MAX_VALUE, MultiWordBitVector.andNot(vector, low).nextSetBit(0));
+        assertEquals(3, vector.previousSetBit(Integer.MAX_VALUE - 1));
+    }
+}
@@ -0,0 +1,160 @@
+package bitvector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * Tests for rank and select against java.util.BitSet, after every kind of modification, so that the block
+ * counts of the index are invalidated and recomputed from any word on.
+ */
+public class RankSelectBitVectorTest {
+
+    private static final int BITS = 20_000;
+
+    private static void assertRankSelect(BitSet expected, RankSelectBitVector vector) {
+        int cardinality = expected.cardinality();
+        assertEquals(cardinality, vector.cardinality());
+        int rank = 0;
+        for (int bit = 0; bit < BITS + 2 * Long.SIZE; bit++) {
+            assertEquals("rank(" + bit + ")", rank, vector.rank(bit));
+            if (expected.get(bit)) {
+                assertEquals("select(" + rank + ")", bit, vector.select(rank));
+                rank++;
+            }
+        }
+        assertEquals(cardinality, vector.rank(Integer.MAX_VALUE));
+        assertEquals(-1, vector.select(cardinality));
+        assertEquals(-1, vector.select(-1));
+    }
+
+    // a query between two modifications, so that only a part of the index is valid when the next one comes
+    private static void query(SplittableRandom random, BitSet expected, RankSelectBitVector vector) {
+        int bit = random.nextInt(BITS);
+        assertEquals("rank(" + bit + ")", expected.get(0, bit).cardinality(), vector.rank(bit));
+    }
+
+    @Test
+    public void rankAndSelectAfterModifications() {
+        SplittableRandom random = new SplittableRandom(1);
+        RankSelectBitVector vector = new RankSelectBitVector();
+        BitSet expected = new BitSet();
+        assertRankSelect(expected, vector);
+        for (int round = 0; round < 300; round++) {
+            int from = random.nextInt(BITS);
+            int to = Math.min(BITS, from + random.nextInt(2000));
+            switch (random.nextInt(8)) {
+                case 0, 1 -> {
+                    for (int i = random.nextInt(50); i > 0; i--) {
+                        int bit = random.nextInt(BITS);
+                        boolean set = random.nextBoolean();
+                        vector.setBit(bit, set);
+                        expected.set(bit, set);
+                    }
+                }
+                case 2 -> {
+                    vector.setRange(from, to, true);
+                    expected.set(from, to);
+                }
+                case 3 -> {
+                    vector.setRange(from, to, false);
+                    expected.clear(from, to);
+                }
+                case 4 -> {
+                    int word = random.nextInt(BITS / Long.SIZE);
+                    long mask = random.nextLong();
+                    vector.orWord(word, mask);
+                    for (int i = 0; i < Long.SIZE; i++) {
+                        if ((mask & (1L << i)) != 0) {
+                            expected.set(word * Long.SIZE + i);
+                        }
+                    }
+                }
+                default -> {
+                    MultiWordBitVector other = new MultiWordBitVector();
+                    BitSet otherBits = new BitSet();
+                    for (int i = random.nextInt(500); i > 0; i--) {
+                        int bit = random.nextInt(BITS);
+                        other.setBit(bit, true);
+                        otherBits.set(bit);
+                    }
+                    switch (random.nextInt(4)) {
+                        case 0 -> {
+                            vector.and(other);
+                            expected.and(otherBits);
+                        }
+                        case 1 -> {
+                            vector.or(other);
+                            expected.or(otherBits);
+                        }
+                        case 2 -> {
+                            vector.xor(other);
+                            expected.xor(otherBits);
+                        }
+                        default -> {
+                            vector.andNot(other);
+                            expected.andNot(otherBits);
+                        }
+                    }
+                }
+            }
+            if (random.nextBoolean()) {
+                query(random, expected, vector);
+            }
+            if (round % 25 == 0) {
+                assertRankSelect(expected, vector);
+            }
+        }
+        assertRankSelect(expected, vector);
+        vector.clear();
+        expected.clear();
+        assertRankSelect(expected, vector);
+    }
+
+    @Test
+    public void clearingTheHighestBitsShrinksTheIndex() {
+        RankSelectBitVector vector = new RankSelectBitVector(64);
+        BitSet expected = new BitSet();
+        for (int bit = 0; bit < BITS; bit += 3) {
+            vector.setBit(bit, true);
+            expected.set(bit);
+        }
+        assertRankSelect(expected, vector);
+        // from the end backwards, the number of words in use goes down
+        for (int bit = BITS - 1; bit >= BITS / 2; bit--) {
+            vector.setBit(bit, false);
+            expected.clear(bit);
+            if (bit % 512 == 0) {
+                int last = expected.cardinality() - 1;
+                assertEquals(last + 1, vector.cardinality());
+                assertEquals(expected.previousSetBit(BITS), vector.select(last));
+                assertEquals(last, vector.rank(expected.previousSetBit(BITS)));
+            }
+        }
+        assertRankSelect(expected, vector);
+        // and grows again
+        vector.setBit(BITS + 100, true);
+        expected.set(BITS + 100);
+        assertEquals(expected.cardinality() - 1, vector.rank(BITS + 100));
+        assertEquals(BITS + 100, vector.select(expected.cardinality() - 1));
+    }
+
+    @Test
+    public void selectInWordLikeALoop() {
+        SplittableRandom random = new SplittableRandom(2);
+        for (int round = 0; round < 1000; round++) {
+            long word = round == 0 ? -1L : round == 1 ? Long.MIN_VALUE : random.nextLong() & random.nextLong();
+            int k = 0;
+            for (int bit = 0; bit < Long.SIZE; bit++) {
+                if ((word & (1L << bit)) != 0) {
+                    assertEquals(bit, RankSelectBitVector.selectInWord(word, k++));
+                }
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> new RankSelectBitVector().rank(-1));
+    }
+}
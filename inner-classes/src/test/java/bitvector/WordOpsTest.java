@@ -0,0 +1,188 @@
+package bitvector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * Tests the WordOps loops against plain loops for lengths below, at and above WordOps.VECTOR_THRESHOLD,
+ * with tails of every length. The build runs this test twice: without and with
+ * --add-modules jdk.incubator.vector, so that both the scalar and the Vector API path are tested.
+ */
+public class WordOpsTest {
+
+    private static long[] random(SplittableRandom random, int n) {
+        long[] words = new long[n];
+        for (int i = 0; i < n; i++) {
+            // some zero and some full words, the rest random
+            int kind = random.nextInt(8);
+            words[i] = kind == 0 ? 0L : kind == 1 ? -1L : random.nextLong();
+        }
+        return words;
+    }
+
+    // the surefire execution with the module sets bitvector.expectVectorApi, so a missing module fails the build
+    @Test
+    public void vectorApiAsConfigured() {
+        assertEquals(Boolean.getBoolean("bitvector.expectVectorApi"), WordOps.VECTOR_API_AVAILABLE);
+    }
+
+    @Test
+    public void bulkOperationsMatchPlainLoops() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int n = 0; n <= 3 * WordOps.VECTOR_THRESHOLD + 17; n++) {
+            long[] a = random(random, n + 3);
+            long[] b = random(random, n + 5);
+            long[] expected;
+
+            long[] actual = a.clone();
+            WordOps.and(actual, b, n);
+            expected = a.clone();
+            for (int i = 0; i < n; i++) {
+                expected[i] &= b[i];
+            }
+            assertArrayEquals("and " + n, expected, actual);
+
+            actual = a.clone();
+            WordOps.or(actual, b, n);
+            expected = a.clone();
+            for (int i = 0; i < n; i++) {
+                expected[i] |= b[i];
+            }
+            assertArrayEquals("or " + n, expected, actual);
+
+            actual = a.clone();
+            WordOps.xor(actual, b, n);
+            expected = a.clone();
+            for (int i = 0; i < n; i++) {
+                expected[i] ^= b[i];
+            }
+            assertArrayEquals("xor " + n, expected, actual);
+
+            actual = a.clone();
+            WordOps.andNot(actual, b, n);
+            expected = a.clone();
+            boolean intersects = false;
+            int cardinality = 0;
+            for (int i = 0; i < n; i++) {
+                expected[i] &= ~b[i];
+                intersects |= (a[i] & b[i]) != 0;
+                cardinality += Long.bitCount(a[i]);
+            }
+            assertArrayEquals("andNot " + n, expected, actual);
+            assertEquals("intersects " + n, intersects, WordOps.intersects(a, b, n));
+            assertEquals("cardinality " + n, cardinality, WordOps.cardinality(a, n));
+        }
+    }
+
+    // a and b only intersect in the last word, which is in the tail of the vector loop for most lengths
+    @Test
+    public void intersectsInTheTail() {
+        for (int n = 1; n <= 3 * WordOps.VECTOR_THRESHOLD; n++) {
+            long[] a = new long[n];
+            long[] b = new long[n];
+            a[n - 1] = 1L << 63;
+            b[n - 1] = -1L;
+            assertEquals(true, WordOps.intersects(a, b, n));
+            assertEquals(false, WordOps.intersects(a, b, n - 1));
+        }
+    }
+
+    // the variants with offsets, as BitMatrix uses them for rows in one array
+    @Test
+    public void offsetsMatchPlainLoops() {
+        SplittableRandom random = new SplittableRandom(2);
+        for (int n : new int[] {0, 1, 7, 63, 64, 65, 129, 200}) {
+            for (int aFrom : new int[] {0, 1, 5}) {
+                for (int bFrom : new int[] {0, 3}) {
+                    long[] a = random(random, aFrom + n + 2);
+                    long[] b = random(random, bFrom + n + 2);
+
+                    long[] actual = a.clone();
+                    WordOps.and(actual, aFrom, b, bFrom, n);
+                    long[] expected = a.clone();
+                    for (int i = 0; i < n; i++) {
+                        expected[aFrom + i] &= b[bFrom + i];
+                    }
+                    assertArrayEquals("and " + n, expected, actual);
+
+                    actual = a.clone();
+                    WordOps.or(actual, aFrom, b, bFrom, n);
+                    expected = a.clone();
+                    for (int i = 0; i < n; i++) {
+                        expected[aFrom + i] |= b[bFrom + i];
+                    }
+                    assertArrayEquals("or " + n, expected, actual);
+                }
+            }
+        }
+    }
+
+    // the bulk operations of MultiWordBitVector use WordOps; vectors of different lengths around the threshold
+    @Test
+    public void multiWordBulkOperationsMatchBitSet() {
+        SplittableRandom random = new SplittableRandom(3);
+        int[] bits = {0, 100, 64 * 63 + 5, 64 * 64, 64 * 65 + 1, 64 * 200 + 33};
+        for (int aBits : bits) {
+            for (int bBits : bits) {
+                BitSet a = new BitSet();
+                BitSet b = new BitSet();
+                MultiWordBitVector va = new MultiWordBitVector();
+                MultiWordBitVector vb = new MultiWordBitVector();
+                for (int i = 0; i < aBits; i++) {
+                    if (random.nextInt(3) == 0) {
+                        a.set(i);
+                        va.setBit(i, true);
+                    }
+                }
+                for (int i = 0; i < bBits; i++) {
+                    if (random.nextInt(3) == 0) {
+                        b.set(i);
+                        vb.setBit(i, true);
+                    }
+                }
+                assertBits(and(a, b), MultiWordBitVector.and(va, vb));
+                assertBits(or(a, b), MultiWordBitVector.or(va, vb));
+                assertBits(xor(a, b), MultiWordBitVector.xor(va, vb));
+                assertBits(andNot(a, b), MultiWordBitVector.andNot(va, vb));
+                assertEquals(a.intersects(b), va.intersects(vb));
+                assertEquals(a.cardinality(), va.cardinality());
+            }
+        }
+    }
+
+    private static void assertBits(BitSet expected, MultiWordBitVector actual) {
+        assertEquals(expected.cardinality(), actual.cardinality());
+        for (int i = expected.nextSetBit(0); i >= 0; i = expected.nextSetBit(i + 1)) {
+            assertEquals(true, actual.isSet(i));
+        }
+    }
+
+    private static BitSet and(BitSet a, BitSet b) {
+        BitSet result = (BitSet) a.clone();
+        result.and(b);
+        return result;
+    }
+
+    private static BitSet or(BitSet a, BitSet b) {
+        BitSet result = (BitSet) a.clone();
+        result.or(b);
+        return result;
+    }
+
+    private static BitSet xor(BitSet a, BitSet b) {
+        BitSet result = (BitSet) a.clone();
+        result.xor(b);
+        return result;
+    }
+
+    private static BitSet andNot(BitSet a, BitSet b) {
+        BitSet result = (BitSet) a.clone();
+        result.andNot(b);
+        return result;
+    }
+}
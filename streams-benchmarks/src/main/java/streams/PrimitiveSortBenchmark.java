@@ -0,0 +1,140 @@
+package streams;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The boxed paths StreamApp and FurtherStreams used before (boxed().sorted(Comparator.reverseOrder()),
+// sorted(..).limit(n), sorted(Comparator.comparingInt(..))) against PrimitiveSort on the same random ints.
+// Every benchmark sorts a fresh copy, the copy is part of the time of all of them.
+// Run with -prof gc to see the allocation of the boxed variants (gc.alloc.rate.norm).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveSortBenchmark {
+
+    static final int TOP = 10;
+
+    @Param({"1000", "100000", "1000000"})
+    int length;
+
+    private int[] values;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        values = new SplittableRandom(42).ints(length).toArray();
+    }
+
+    @Benchmark
+    public int[] descendingBoxed() {
+        return Arrays.stream(values.clone())
+                .boxed()
+                .sorted(Comparator.reverseOrder())
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    @Benchmark
+    public int[] descendingPrimitive() {
+        return PrimitiveSort.descending(Arrays.stream(values.clone())).toArray();
+    }
+
+    @Benchmark
+    public int[] sortDescending() {
+        int[] a = values.clone();
+        PrimitiveSort.sortDescending(a);
+        return a;
+    }
+
+    @Benchmark
+    public int[] parallelSortDescending() {
+        int[] a = values.clone();
+        PrimitiveSort.parallelSortDescending(a);
+        return a;
+    }
+
+    @Benchmark
+    public int[] arraysSort() {
+        int[] a = values.clone();
+        Arrays.sort(a);
+        return a;
+    }
+
+    @Benchmark
+    public int[] radixSort() {
+        int[] a = values.clone();
+        PrimitiveSort.radixSort(a);
+        return a;
+    }
+
+    @Benchmark
+    public int[] arraysParallelSort() {
+        int[] a = values.clone();
+        Arrays.parallelSort(a);
+        return a;
+    }
+
+    @Benchmark
+    public int[] parallelRadixSort() {
+        int[] a = values.clone();
+        PrimitiveSort.parallelRadixSort(a);
+        return a;
+    }
+
+    // the TOP largest values
+
+    @Benchmark
+    public int[] topBoxed() {
+        return Arrays.stream(values.clone())
+                .boxed()
+                .sorted(Comparator.reverseOrder())
+                .limit(TOP)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    @Benchmark
+    public int[] topSelect() {
+        return PrimitiveSort.largest(values.clone(), TOP);
+    }
+
+    @Benchmark
+    public int[] topHeap() {
+        return PrimitiveCollectors.topK(Arrays.stream(values.clone()), TOP);
+    }
+
+    // sorted by absolute value, like FurtherStreams
+
+    @Benchmark
+    public int[] byKeyBoxed() {
+        return Arrays.stream(values.clone())
+                .boxed()
+                .sorted(Comparator.comparingInt(Math::abs))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    @Benchmark
+    public int[] byKeyPrimitive() {
+        int[] a = values.clone();
+        PrimitiveSort.sortByKey(a, Math::abs);
+        return a;
+    }
+}
@@ -0,0 +1,263 @@
+package streams;
+
+import java.math.BigInteger;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+// Primitive streams of start, start + step, start + 2 * step, .. with a fixed number of elements, instead of
+// Stream.iterate(0, n -> n + 2).limit(10): no boxing, and since element i is computed directly as
+// start + i * step, the spliterators know their size (SIZED | SUBSIZED) and split into two equal halves,
+// so .parallel() really distributes the work. For doubles this also means that the rounding error of
+// every element is that of one multiplication and one addition, repeated additions of 0.345 would
+// accumulate it.
+final class ArithmeticProgression {
+
+    private ArithmeticProgression() {
+    }
+
+    // count ints start, start + step, ..; IllegalArgumentException if the last one does not fit into an int
+    static IntStream ints(int start, int step, long count) {
+        checkCount(count);
+        if (count > 0 && step != 0) {
+            // with a step != 0 more than 2^32 elements cannot fit, below that the product fits into a long
+            long last = count - 1 > 0xFFFF_FFFFL ? Long.MAX_VALUE : start + (count - 1) * (long) step;
+            if (last < Integer.MIN_VALUE || last > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Progression leaves the int range: " + count + " elements from " + start + " with step " + step);
+            }
+        }
+        return StreamSupport.intStream(new IntProgression(start, step, 0, count), false);
+    }
+
+    // the ints from start to endInclusive (or the last one before it) with the given step,
+    // e.g. intsClosed(1, 10, 1) instead of Stream.iterate(1, n -> n <= 10, n -> n + 1)
+    static IntStream intsClosed(int start, int endInclusive, int step) {
+        if (step == 0) {
+            throw new IllegalArgumentException("Argument step must not be 0");
+        }
+        long distance = (long) endInclusive - start;
+        long count = distance != 0 && (distance < 0) != (step < 0) ? 0 : distance / step + 1;
+        return ints(start, step, count);
+    }
+
+    // count longs start, start + step, ..; IllegalArgumentException if the last one does not fit into a long
+    static LongStream longs(long start, long step, long count) {
+        checkCount(count);
+        // (count - 1) * step may overflow although the last element fits, e.g. Long.MIN_VALUE + 2 * Long.MAX_VALUE
+        if (count > 0 && BigInteger.valueOf(count - 1).multiply(BigInteger.valueOf(step)).add(BigInteger.valueOf(start)).bitLength() >= Long.SIZE) {
+            throw new IllegalArgumentException("Progression leaves the long range: " + count + " elements from " + start + " with step " + step);
+        }
+        return StreamSupport.longStream(new LongProgression(start, step, 0, count), false);
+    }
+
+    // count doubles start + i * step for i = 0 .. count-1
+    static DoubleStream doubles(double start, double step, long count) {
+        checkCount(count);
+        if (!Double.isFinite(start) || !Double.isFinite(step)) {
+            throw new IllegalArgumentException("Start and step must be finite, were " + start + " and " + step);
+        }
+        return StreamSupport.doubleStream(new DoubleProgression(start, step, 0, count), false);
+    }
+
+    private static void checkCount(long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Argument count must not be negative, was " + count);
+        }
+    }
+
+    // ascending with distinct elements for a positive step; doubles may round to the same value,
+    // so they are only SORTED
+    private static int characteristics(boolean ascending, boolean distinct) {
+        return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE | Spliterator.NONNULL
+                | (ascending ? Spliterator.SORTED : 0) | (distinct ? Spliterator.DISTINCT : 0);
+    }
+
+    // The spliterators cover the indices [index, end). Int and long arithmetic may overflow in i * step,
+    // the sum is still exact because the factories checked that every element fits.
+
+    private static final class IntProgression implements Spliterator.OfInt {
+        private final int start;
+        private final int step;
+        private long index;
+        private final long end;
+
+        IntProgression(int start, int step, long index, long end) {
+            this.start = start;
+            this.step = step;
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (index >= end) {
+                return false;
+            }
+            action.accept(start + (int) index++ * step);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            for (long i = index; i < end; i++) {
+                action.accept(start + (int) i * step);
+            }
+            index = end;
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            long mid = index + ((end - index) >>> 1);
+            if (mid == index) {
+                return null;
+            }
+            Spliterator.OfInt prefix = new IntProgression(start, step, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ArithmeticProgression.characteristics(step > 0, step != 0);
+        }
+
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            if (step > 0) {
+                return null; // natural order
+            }
+            throw new IllegalStateException();
+        }
+    }
+
+    private static final class LongProgression implements Spliterator.OfLong {
+        private final long start;
+        private final long step;
+        private long index;
+        private final long end;
+
+        LongProgression(long start, long step, long index, long end) {
+            this.start = start;
+            this.step = step;
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (index >= end) {
+                return false;
+            }
+            action.accept(start + index++ * step);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            for (long i = index; i < end; i++) {
+                action.accept(start + i * step);
+            }
+            index = end;
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            long mid = index + ((end - index) >>> 1);
+            if (mid == index) {
+                return null;
+            }
+            Spliterator.OfLong prefix = new LongProgression(start, step, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ArithmeticProgression.characteristics(step > 0, step != 0);
+        }
+
+        @Override
+        public Comparator<? super Long> getComparator() {
+            if (step > 0) {
+                return null; // natural order
+            }
+            throw new IllegalStateException();
+        }
+    }
+
+    private static final class DoubleProgression implements Spliterator.OfDouble {
+        private final double start;
+        private final double step;
+        private long index;
+        private final long end;
+
+        DoubleProgression(double start, double step, long index, long end) {
+            this.start = start;
+            this.step = step;
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            if (index >= end) {
+                return false;
+            }
+            action.accept(start + index++ * step);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            for (long i = index; i < end; i++) {
+                action.accept(start + i * step);
+            }
+            index = end;
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            long mid = index + ((end - index) >>> 1);
+            if (mid == index) {
+                return null;
+            }
+            Spliterator.OfDouble prefix = new DoubleProgression(start, step, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ArithmeticProgression.characteristics(step > 0, false);
+        }
+
+        @Override
+        public Comparator<? super Double> getComparator() {
+            if (step > 0) {
+                return null; // natural order
+            }
+            throw new IllegalStateException();
+        }
+    }
+}
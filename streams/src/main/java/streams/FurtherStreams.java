@@ -36,6 +36,17 @@ public class FurtherStreams {
 	            .sorted()           // Sort the IntStream
 	            .collect(Collectors.toList());
 		
+		// a list of primitive ints, collected without boxing
+		PrimitiveCollectors.IntList primitiveList = PrimitiveCollectors.toList(IntStream.of(2, -4, 10, 45, 99, 199, -5)
+	            .map(Math::abs)
+	            .sorted());
+		System.out.println(primitiveList);
+		
+		// sorted by absolute value but keeping the sign: sorted(Comparator.comparingInt(Math::abs)) needs
+		// a Stream<Integer>, sortedByKey sorts the ints by key without boxing (stable, -4 stays before 4)
+		PrimitiveSort.sortedByKey(IntStream.of(2, -4, 10, 4, -99, 199, -5), Math::abs)
+				.forEach(System.out::println);
+		
 		// 2
 		System.out.println("Exercise 2");
 		Arrays.asList(Locale.getAvailableLocales())
@@ -58,11 +69,12 @@ public class FurtherStreams {
 		// into a Stream<Integer> instead of using the specialized IntStream. 
 		// This is because Stream works with objects, while IntStream is designed
 		// for primitive int.
-		Stream.iterate(new int[]{0, 1}, t -> new int[]{t[1], t[0] + t[1]})
-				.limit(15)
-				.map(x->x[0])
+		// Stream.iterate(new int[]{0, 1}, t -> new int[]{t[1], t[0] + t[1]}) even creates
+		// such an array object for every element, and t[0] + t[1] overflows silently.
+		// LinearRecurrence produces a LongStream with the two last terms in one array,
+		// and throws an ArithmeticException if a term does not fit into a long.
+		LinearRecurrence.fibonacci().terms(0, 15)
 				.forEach(System.out::println);
-				//.forEach(x->System.out.println("{" + x[0] + "," + x[1] + "}"));
 		
 	}
 }
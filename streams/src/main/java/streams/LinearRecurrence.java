@@ -0,0 +1,423 @@
+package streams;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// A linear recurrence a(n) = c[0] * a(n-1) + c[1] * a(n-2) + ... + c[k-1] * a(n-k) with the initial values
+// a(0) .. a(k-1), e.g. Fibonacci: c = {1, 1}, a(0) = 0, a(1) = 1.
+//
+// Stream.iterate(new int[]{0, 1}, fib -> new int[]{fib[1], fib[0] + fib[1]}) creates an array per element,
+// overflows silently after 46 terms and cannot be split, because every element depends on the one before.
+// terms(from, to) keeps the last k terms in one array per spliterator and checks every step with
+// Math.addExact/multiplyExact; bigTerms computes the same sequence with BigInteger.
+//
+// Splitting: the vector (a(n), .., a(n+k-1)) is M^n times (a(0), .., a(k-1)) for the k x k companion matrix M,
+// and M^n takes only log2(n) matrix multiplications. trySplit therefore jumps directly to the middle of the
+// range, so a parallel stream computes the terms n..m on all cores without computing the terms before n.
+// For terms the jump is done in long with Math.multiplyExact/addExact: as soon as a power of M or a term
+// does not fit, the range is not split. A split therefore costs at most about 2 * 64 small matrix
+// multiplications, even for ranges whose terms overflow after a few steps (Fibonacci after term 92).
+final class LinearRecurrence {
+
+    // smallest range that is split, a jump costs about 2 * k^3 * log2(n) multiplications
+    static final int MIN_SPLIT = 1 << 10;
+
+    private final long[] coefficients;
+    private final long[] initialValues;
+    private final BigInteger[][] companion;
+    private final long[][] longCompanion;
+
+    private LinearRecurrence(long[] coefficients, long[] initialValues) {
+        int k = coefficients.length;
+        this.coefficients = coefficients;
+        this.initialValues = initialValues;
+        // row i < k-1 moves a(n+i+1) up, the last row computes a(n+k) from a(n) .. a(n+k-1)
+        this.companion = new BigInteger[k][k];
+        for (BigInteger[] row : companion) {
+            Arrays.fill(row, BigInteger.ZERO);
+        }
+        for (int i = 0; i < k - 1; i++) {
+            companion[i][i + 1] = BigInteger.ONE;
+        }
+        for (int j = 0; j < k; j++) {
+            companion[k - 1][j] = BigInteger.valueOf(coefficients[k - 1 - j]);
+        }
+        this.longCompanion = new long[k][k];
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < k; j++) {
+                longCompanion[i][j] = companion[i][j].longValue();
+            }
+        }
+    }
+
+    // coefficients c[0] (for a(n-1)) .. c[k-1] (for a(n-k)), initial values a(0) .. a(k-1)
+    static LinearRecurrence of(long[] coefficients, long[] initialValues) {
+        if (coefficients.length == 0 || coefficients.length != initialValues.length) {
+            throw new IllegalArgumentException("A recurrence of order k needs k coefficients and k initial values, was "
+                    + coefficients.length + " and " + initialValues.length);
+        }
+        return new LinearRecurrence(coefficients.clone(), initialValues.clone());
+    }
+
+    // 0, 1, 1, 2, 3, 5, 8, ..
+    static LinearRecurrence fibonacci() {
+        return new LinearRecurrence(new long[] {1, 1}, new long[] {0, 1});
+    }
+
+    int order() {
+        return coefficients.length;
+    }
+
+    // the n-th term; ArithmeticException if it does not fit into a long
+    long term(long n) {
+        try {
+            return bigTerm(n).longValueExact();
+        } catch (ArithmeticException e) {
+            throw overflow(n);
+        }
+    }
+
+    BigInteger bigTerm(long n) {
+        checkRange(n, n);
+        return state(n)[0];
+    }
+
+    // the terms from (inclusive) to to (exclusive); the stream throws an ArithmeticException when it reaches
+    // a term that does not fit into a long
+    LongStream terms(long from, long to) {
+        return StreamSupport.longStream(spliterator(from, to), false);
+    }
+
+    // the window is computed when the first term is read, so a range whose terms do not fit only fails
+    // if it is actually traversed
+    Spliterator.OfLong spliterator(long from, long to) {
+        checkRange(from, to);
+        return new LongTerms(from, to, null);
+    }
+
+    // the same terms as BigInteger, for terms beyond the range of long
+    Stream<BigInteger> bigTerms(long from, long to) {
+        checkRange(from, to);
+        return StreamSupport.stream(new BigTerms(from, to, window(from)), false);
+    }
+
+    private static void checkRange(long from, long to) {
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Invalid range of terms [" + from + ", " + to + ")");
+        }
+    }
+
+    private static ArithmeticException overflow(long n) {
+        return new ArithmeticException("Term " + n + " does not fit into a long, use bigTerms");
+    }
+
+    // (a(n), .., a(n+k-1)) = M^n * (a(0), .., a(k-1))
+    private BigInteger[] state(long n) {
+        int k = order();
+        BigInteger[] state = new BigInteger[k];
+        for (int i = 0; i < k; i++) {
+            state[i] = BigInteger.valueOf(initialValues[i]);
+        }
+        // square and multiply, the powers of M are applied to the vector directly
+        BigInteger[][] power = companion;
+        for (long e = n; e != 0; e >>>= 1) {
+            if ((e & 1) != 0) {
+                state = multiply(power, state);
+            }
+            if (e > 1) {
+                power = multiply(power, power);
+            }
+        }
+        return state;
+    }
+
+    // The k terms before the first term of a spliterator starting at from: a(from-k) .. a(from-1), oldest first.
+    // Terms with a negative index are 0, they are never used because a(0) .. a(k-1) are the initial values.
+    private BigInteger[] window(long from) {
+        int k = order();
+        if (from >= k) {
+            return state(from - k);
+        }
+        BigInteger[] window = new BigInteger[k];
+        for (int i = 0; i < k; i++) {
+            long n = from - k + i;
+            window[i] = n < 0 ? BigInteger.ZERO : BigInteger.valueOf(initialValues[(int) n]);
+        }
+        return window;
+    }
+
+    // The window of a spliterator starting at from. The long jump fails if only the powers of M overflow,
+    // e.g. for all-zero initial values, so then the window is computed exactly with BigInteger.
+    private long[] longWindow(long from) {
+        long[] window = exactLongWindow(from);
+        return window != null ? window : bigWindowAsLongs(from);
+    }
+
+    // the window computed in long arithmetic, null as soon as a power of M or a term does not fit
+    private long[] exactLongWindow(long from) {
+        int k = order();
+        if (from < k) {
+            return bigWindowAsLongs(from); // only initial values and zeros
+        }
+        long[] state = initialValues.clone();
+        long[][] power = longCompanion;
+        try {
+            for (long e = from - k; e != 0; e >>>= 1) {
+                if ((e & 1) != 0) {
+                    state = multiplyExact(power, state);
+                }
+                if (e > 1) {
+                    power = multiplyExact(power, power);
+                }
+            }
+        } catch (ArithmeticException e) {
+            return null;
+        }
+        return state;
+    }
+
+    private static long[][] multiplyExact(long[][] a, long[][] b) {
+        int k = a.length;
+        long[][] product = new long[k][k];
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < k; j++) {
+                long sum = 0;
+                for (int m = 0; m < k; m++) {
+                    sum = Math.addExact(sum, Math.multiplyExact(a[i][m], b[m][j]));
+                }
+                product[i][j] = sum;
+            }
+        }
+        return product;
+    }
+
+    private static long[] multiplyExact(long[][] a, long[] v) {
+        int k = a.length;
+        long[] product = new long[k];
+        for (int i = 0; i < k; i++) {
+            long sum = 0;
+            for (int m = 0; m < k; m++) {
+                sum = Math.addExact(sum, Math.multiplyExact(a[i][m], v[m]));
+            }
+            product[i] = sum;
+        }
+        return product;
+    }
+
+    private long[] bigWindowAsLongs(long from) {
+        BigInteger[] window = window(from);
+        long[] longs = new long[window.length];
+        for (int i = 0; i < window.length; i++) {
+            if (window[i].bitLength() >= Long.SIZE) {
+                throw overflow(from - window.length + i);
+            }
+            longs[i] = window[i].longValue();
+        }
+        return longs;
+    }
+
+    private static BigInteger[][] multiply(BigInteger[][] a, BigInteger[][] b) {
+        int k = a.length;
+        BigInteger[][] product = new BigInteger[k][k];
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < k; j++) {
+                BigInteger sum = BigInteger.ZERO;
+                for (int m = 0; m < k; m++) {
+                    if (a[i][m].signum() != 0 && b[m][j].signum() != 0) {
+                        sum = sum.add(a[i][m].multiply(b[m][j]));
+                    }
+                }
+                product[i][j] = sum;
+            }
+        }
+        return product;
+    }
+
+    private static BigInteger[] multiply(BigInteger[][] a, BigInteger[] v) {
+        int k = a.length;
+        BigInteger[] product = new BigInteger[k];
+        for (int i = 0; i < k; i++) {
+            BigInteger sum = BigInteger.ZERO;
+            for (int m = 0; m < k; m++) {
+                if (a[i][m].signum() != 0) {
+                    sum = sum.add(a[i][m].multiply(v[m]));
+                }
+            }
+            product[i] = sum;
+        }
+        return product;
+    }
+
+    // The window is a ring buffer with the last k terms, window[head] is the oldest one. The next term
+    // replaces the oldest, so an element costs k multiply-adds and no allocation.
+    private final class LongTerms implements Spliterator.OfLong {
+        private long index;
+        private final long end;
+        private long[] window; // null until the first term is read
+        private int head = 0;
+
+        LongTerms(long index, long end, long[] window) {
+            this.index = index;
+            this.end = end;
+            this.window = window;
+        }
+
+        // a(index), stored as newest term of the window
+        private long next() {
+            if (window == null) {
+                window = longWindow(index);
+            }
+            int k = window.length;
+            long value;
+            if (index < k) {
+                value = initialValues[(int) index];
+            } else {
+                value = 0;
+                try {
+                    // c[j] belongs to a(index-1-j), which is at head + k-1-j (modulo k)
+                    for (int j = 0, position = head + k - 1; j < k; j++, position--) {
+                        long c = coefficients[j];
+                        long term = window[position >= k ? position - k : position];
+                        if (c != 0) {
+                            value = Math.addExact(value, c == 1 ? term : Math.multiplyExact(c, term));
+                        }
+                    }
+                } catch (ArithmeticException e) {
+                    throw overflow(index);
+                }
+            }
+            window[head] = value;
+            head = head + 1 == k ? 0 : head + 1;
+            index++;
+            return value;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (index >= end) {
+                return false;
+            }
+            action.accept(next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            while (index < end) {
+                action.accept(next());
+            }
+        }
+
+        // The first half keeps this window, the second half starts with the window computed by the jump.
+        // If the jump to mid overflows a long, the range is not split: the overflow must only show up
+        // when such a term is traversed, which e.g. limit() may never do.
+        @Override
+        public Spliterator.OfLong trySplit() {
+            if (end - index < MIN_SPLIT) {
+                return null;
+            }
+            long mid = index + (end - index) / 2;
+            long[] jumped = exactLongWindow(mid);
+            if (jumped == null) {
+                return null;
+            }
+            LongTerms prefix = new LongTerms(index, mid, window);
+            prefix.head = head;
+            index = mid;
+            window = jumped;
+            head = 0;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+        }
+    }
+
+    // BigInteger variant of LongTerms; the additions of course create a new BigInteger per term
+    private final class BigTerms implements Spliterator<BigInteger> {
+        private long index;
+        private final long end;
+        private BigInteger[] window;
+        private int head = 0;
+
+        BigTerms(long index, long end, BigInteger[] window) {
+            this.index = index;
+            this.end = end;
+            this.window = window;
+        }
+
+        private BigInteger next() {
+            int k = window.length;
+            BigInteger value;
+            if (index < k) {
+                value = BigInteger.valueOf(initialValues[(int) index]);
+            } else {
+                value = BigInteger.ZERO;
+                for (int j = 0, position = head + k - 1; j < k; j++, position--) {
+                    long c = coefficients[j];
+                    BigInteger term = window[position >= k ? position - k : position];
+                    if (c != 0) {
+                        value = value.add(c == 1 ? term : term.multiply(BigInteger.valueOf(c)));
+                    }
+                }
+            }
+            window[head] = value;
+            head = head + 1 == k ? 0 : head + 1;
+            index++;
+            return value;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super BigInteger> action) {
+            if (index >= end) {
+                return false;
+            }
+            action.accept(next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super BigInteger> action) {
+            while (index < end) {
+                action.accept(next());
+            }
+        }
+
+        @Override
+        public Spliterator<BigInteger> trySplit() {
+            if (end - index < MIN_SPLIT) {
+                return null;
+            }
+            long mid = index + (end - index) / 2;
+            BigTerms prefix = new BigTerms(index, mid, window);
+            prefix.head = head;
+            index = mid;
+            window = window(mid);
+            head = 0;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package streams;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// The lines of a (large) text file as a stream that can run in parallel.
+// Files.lines reads the file with one BufferedReader and decodes every line into a String, even the lines a
+// filter drops right away. Here the file is memory-mapped and every line is a Line, a view of its bytes in
+// the mapping: filters like line.startsWith("ERROR") compare bytes, only lines that are kept and
+// converted with toString are decoded. For a parallel stream the spliterator splits a chunk in the
+// middle and moves the split point to the next newline, so every core scans its own part of the file.
+//
+// A mapping can hold at most 2 GB, so larger files are mapped in regions of REGION_BYTES that end at a
+// newline; a single line must not be longer than a region.
+final class MappedLines {
+
+    static final int REGION_BYTES = 1 << 30;
+    // chunks smaller than this are not split any further
+    static final int MIN_CHUNK_BYTES = 1 << 16;
+
+    private MappedLines() {
+    }
+
+    // The lines of the file, as UTF-8 (or ASCII) text, without the line terminators \n and \r\n.
+    // The mapping stays valid after this method returns, the file must not be truncated while the stream runs.
+    static Stream<Line> lines(Path file) throws IOException {
+        return lines(file, REGION_BYTES, MIN_CHUNK_BYTES);
+    }
+
+    // with smaller regions and chunks, so that tests split small files like large ones
+    static Stream<Line> lines(Path file, int regionBytes, int minChunkBytes) throws IOException {
+        if (regionBytes < 1 || regionBytes > REGION_BYTES) {
+            throw new IllegalArgumentException("Argument regionBytes must be in [1, " + REGION_BYTES + "], was " + regionBytes);
+        }
+        if (minChunkBytes < 1) {
+            throw new IllegalArgumentException("Argument minChunkBytes must be positive, was " + minChunkBytes);
+        }
+        return StreamSupport.stream(new Regions(map(file, regionBytes), minChunkBytes), false);
+    }
+
+    // maps the file in regions that end at a newline (except the last one), little-endian and read-only
+    static ByteBuffer[] map(Path file) throws IOException {
+        return map(file, REGION_BYTES);
+    }
+
+    static ByteBuffer[] map(Path file, int regionBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<ByteBuffer> regions = new ArrayList<>();
+            for (long start = 0; start < size; ) {
+                int length = (int) Math.min(regionBytes, size - start);
+                ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                if (start + length < size) {
+                    // the region ends after the last complete line, the rest is part of the next region
+                    int lastNewline = length - 1;
+                    while (lastNewline >= 0 && region.get(lastNewline) != '\n') {
+                        lastNewline--;
+                    }
+                    if (lastNewline < 0) {
+                        throw new IOException("Line at byte " + start + " of " + file + " is longer than " + regionBytes + " bytes");
+                    }
+                    length = lastNewline + 1;
+                }
+                // slice resets the byte order to big-endian, the newline search reads little-endian words
+                regions.add(region.slice(0, length).order(ByteOrder.LITTLE_ENDIAN));
+                start += length;
+            }
+            return regions.toArray(new ByteBuffer[0]);
+        }
+    }
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long NEWLINES = ONES * '\n';
+
+    // Position of the first '\n' in [from, to) of a little-endian buffer, or to if there is none.
+    // Checks 8 bytes per step: after x = word ^ NEWLINES the newline bytes are 0, and (x - ONES) & ~x & HIGH_BITS
+    // sets the high bit of the lowest zero byte ("Hacker's Delight", chapter 6.1).
+    static int indexOfNewline(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long x = buffer.getLong(i) ^ NEWLINES;
+            long found = (x - ONES) & ~x & HIGH_BITS;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    // A line as view of its bytes, no bytes are copied or decoded.
+    // As CharSequence every byte is one char: for ASCII text (most logs) this is exactly the line, bytes of
+    // multi-byte UTF-8 characters show up as single chars. toString decodes the line as UTF-8.
+    // The view stays valid as long as the stream's mapping. Lines with the same bytes are equal (and have the
+    // same hashCode), so like Strings they can be collected into sets or used as map keys.
+    static final class Line implements CharSequence {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int length;
+
+        Line(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        byte byteAt(int index) {
+            checkIndex(index);
+            return buffer.get(offset + index);
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (byteAt(index) & 0xFF);
+        }
+
+        @Override
+        public Line subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("Invalid range [" + start + ", " + end + ") of a line with " + length + " bytes");
+            }
+            return new Line(buffer, offset + start, end - start);
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of range for a line with " + length + " bytes");
+            }
+        }
+
+        // compares the bytes of the line with the UTF-8 encoding of the prefix; for ASCII prefixes directly
+        // char by char, without encoding the prefix
+        boolean startsWith(CharSequence prefix) {
+            return regionMatches(0, prefix);
+        }
+
+        // an ASCII text is compared char by char, any other text is encoded once before the scan
+        boolean contains(CharSequence text) {
+            for (int i = 0, n = text.length(); i < n; i++) {
+                if (text.charAt(i) >= 0x80) {
+                    return contains(text.toString().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            for (int start = 0, last = length - text.length(); start <= last; start++) {
+                if (regionMatches(start, text)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean contains(byte[] bytes) {
+            for (int start = 0, last = length - bytes.length; start <= last; start++) {
+                if (regionMatches(start, bytes)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean regionMatches(int start, CharSequence text) {
+            int n = text.length();
+            if (start + n > length) {
+                return false;
+            }
+            for (int i = 0; i < n; i++) {
+                char c = text.charAt(i);
+                if (c >= 0x80) {
+                    return regionMatches(start, text.toString().getBytes(StandardCharsets.UTF_8));
+                }
+                if (buffer.get(offset + start + i) != c) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean regionMatches(int start, byte[] bytes) {
+            if (start + bytes.length > length) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (buffer.get(offset + start + i) != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        byte[] toByteArray() {
+            byte[] bytes = new byte[length];
+            buffer.get(offset, bytes);
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return new String(toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        // the same bytes, no matter in which file or at which position the lines are
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Line that = (Line) o;
+            if (length != that.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(offset + i) != that.buffer.get(that.offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // like Arrays.hashCode of the bytes
+        @Override
+        public int hashCode() {
+            int hash = 1;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + buffer.get(offset + i);
+            }
+            return hash;
+        }
+    }
+
+    // The lines of a part [position, end) of one region; the part always starts at the beginning of a line.
+    private static final class Chunk implements Spliterator<Line> {
+        private final ByteBuffer buffer;
+        private int position;
+        private final int end;
+        private final int minChunkBytes;
+
+        Chunk(ByteBuffer buffer, int position, int end, int minChunkBytes) {
+            this.buffer = buffer;
+            this.position = position;
+            this.end = end;
+            this.minChunkBytes = minChunkBytes;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Line> action) {
+            if (position >= end) {
+                return false;
+            }
+            int newline = indexOfNewline(buffer, position, end);
+            int lineEnd = newline > position && buffer.get(newline - 1) == '\r' ? newline - 1 : newline;
+            Line line = new Line(buffer, position, lineEnd - position);
+            position = newline + 1;
+            action.accept(line);
+            return true;
+        }
+
+        // splits in the middle, moved behind the next newline
+        @Override
+        public Spliterator<Line> trySplit() {
+            if (end - position < minChunkBytes) {
+                return null;
+            }
+            int split = indexOfNewline(buffer, position + (end - position) / 2, end) + 1;
+            if (split >= end) {
+                return null;
+            }
+            Chunk prefix = new Chunk(buffer, position, split, minChunkBytes);
+            position = split;
+            return prefix;
+        }
+
+        // the number of lines is unknown without scanning, the bytes are an upper bound
+        @Override
+        public long estimateSize() {
+            return end - position;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    // The regions [next, last) of a file, preceded by the partly consumed chunk current (may be null).
+    // Splits the list of regions first, a single region is split by its Chunk.
+    private static final class Regions implements Spliterator<Line> {
+        private final ByteBuffer[] regions;
+        private int next;
+        private final int last;
+        private Chunk current;
+        private final int minChunkBytes;
+
+        Regions(ByteBuffer[] regions, int minChunkBytes) {
+            this(regions, 0, regions.length, null, minChunkBytes);
+        }
+
+        private Regions(ByteBuffer[] regions, int next, int last, Chunk current, int minChunkBytes) {
+            this.regions = regions;
+            this.next = next;
+            this.last = last;
+            this.current = current;
+            this.minChunkBytes = minChunkBytes;
+        }
+
+        private Chunk chunk(int region) {
+            return new Chunk(regions[region], 0, regions[region].limit(), minChunkBytes);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Line> action) {
+            while (true) {
+                if (current == null) {
+                    if (next >= last) {
+                        return false;
+                    }
+                    current = chunk(next++);
+                }
+                if (current.tryAdvance(action)) {
+                    return true;
+                }
+                current = null;
+            }
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Line> action) {
+            if (current != null) {
+                current.forEachRemaining(action);
+                current = null;
+            }
+            while (next < last) {
+                chunk(next++).forEachRemaining(action);
+            }
+        }
+
+        @Override
+        public Spliterator<Line> trySplit() {
+            if (current == null && last - next == 1) {
+                current = chunk(next++);
+            }
+            if (next == last) {
+                return current == null ? null : current.trySplit();
+            }
+            int mid = next + (last - next) / 2;
+            Regions prefix = new Regions(regions, next, mid, current, minChunkBytes);
+            next = mid;
+            current = null;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            long size = current == null ? 0 : current.estimateSize();
+            for (int i = next; i < last; i++) {
+                size += regions[i].limit();
+            }
+            return size;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package streams;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Runs parallel stream pipelines on an own ForkJoinPool instead of the common pool.
+// .parallel() always uses ForkJoinPool.commonPool(), which all parallel streams (and CompletableFutures
+// without executor) of the JVM share, so one long pipeline can keep all workers busy and the others
+// wait. A terminal operation that is started by a task of another ForkJoinPool runs its subtasks in that
+// pool instead: run submits the whole pipeline as one task to the pool of this runner.
+//
+// Instead of peek(n -> System.out.println(.. + Thread.currentThread().getName())) run returns a Report:
+// how often the source was split, how many tasks the workers stole from each other, how many elements
+// of the source each worker processed, and the wall time. The pipelines of one runner run one after the
+// other, so the steal count of the pool belongs to one pipeline.
+//
+//     try (ParallelRunner runner = new ParallelRunner(4)) {
+//         ParallelRunner.Report<Integer> report = runner.run(IntStream.rangeClosed(1, 10000), s -> s.map(n -> n * n).sum());
+//     }
+final class ParallelRunner implements AutoCloseable {
+
+    private final ForkJoinPool pool;
+
+    ParallelRunner(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Argument parallelism must be positive, was " + parallelism);
+        }
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    int parallelism() {
+        return pool.getParallelism();
+    }
+
+    // Runs pipeline on source.parallel() in the pool of this runner; source is closed afterwards.
+    // Exceptions of the pipeline are rethrown.
+    <T, R> Report<R> run(Stream<T> source, Function<? super Stream<T>, ? extends R> pipeline) {
+        Metrics metrics = new Metrics();
+        try (Stream<T> counted = StreamSupport.stream(new Counting<>(source.parallel().spliterator(), metrics), true).onClose(source::close)) {
+            return execute(() -> pipeline.apply(counted), metrics);
+        }
+    }
+
+    <R> Report<R> run(IntStream source, Function<? super IntStream, ? extends R> pipeline) {
+        Metrics metrics = new Metrics();
+        try (IntStream counted = StreamSupport.intStream(new CountingInt(source.parallel().spliterator(), metrics), true).onClose(source::close)) {
+            return execute(() -> pipeline.apply(counted), metrics);
+        }
+    }
+
+    <R> Report<R> run(LongStream source, Function<? super LongStream, ? extends R> pipeline) {
+        Metrics metrics = new Metrics();
+        try (LongStream counted = StreamSupport.longStream(new CountingLong(source.parallel().spliterator(), metrics), true).onClose(source::close)) {
+            return execute(() -> pipeline.apply(counted), metrics);
+        }
+    }
+
+    private synchronized <R> Report<R> execute(Callable<R> pipeline, Metrics metrics) {
+        long steals = pool.getStealCount();
+        long start = System.nanoTime();
+        R result = pool.invoke(ForkJoinTask.adapt(pipeline));
+        long wallNanos = System.nanoTime() - start;
+        return new Report<>(result, pool.getParallelism(), wallNanos, metrics.splits.sum(), pool.getStealCount() - steals,
+                metrics.elementsPerWorker());
+    }
+
+    // waits for running pipelines and stops the workers
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    // splits: number of successful trySplit calls of the source, the source was processed in splits + 1 parts.
+    // steals: tasks that a worker took from the queue of another worker; the pool updates this counter
+    // while it scans for work, so it is an estimate (like ForkJoinPool.getStealCount).
+    // elementsPerWorker: elements of the source per worker thread, by thread name; elements that a filter
+    // drops later count as well.
+    record Report<R>(R result, int parallelism, long wallNanos, long splits, long steals, Map<String, Long> elementsPerWorker) {
+
+        long elements() {
+            return elementsPerWorker.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        // the elements of the busiest worker relative to an even distribution over all workers of the pool:
+        // 1 is perfectly balanced, parallelism means that one worker did everything
+        double imbalance() {
+            long elements = elements();
+            long max = elementsPerWorker.values().stream().mapToLong(Long::longValue).max().orElse(0);
+            return elements == 0 ? 1 : (double) max * parallelism / elements;
+        }
+
+        @Override
+        public String toString() {
+            return "Report{result=" + result + ", parallelism=" + parallelism + ", wallMillis=" + wallNanos / 1_000_000.0
+                    + ", splits=" + splits + ", steals=" + steals + ", elements=" + elements()
+                    + ", imbalance=" + imbalance() + ", elementsPerWorker=" + elementsPerWorker + "}";
+        }
+    }
+
+    private static final class Metrics {
+        final LongAdder splits = new LongAdder();
+        final Map<Thread, LongAdder> elements = new ConcurrentHashMap<>();
+
+        // called once per part with the count of a whole forEachRemaining, or per element by tryAdvance
+        void count(long n) {
+            if (n > 0) {
+                elements.computeIfAbsent(Thread.currentThread(), thread -> new LongAdder()).add(n);
+            }
+        }
+
+        // ordered by name length first, so that worker-10 comes after worker-9
+        Map<String, Long> elementsPerWorker() {
+            Map<String, Long> perWorker = new TreeMap<>(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()));
+            elements.forEach((thread, count) -> perWorker.merge(thread.getName(), count.sum(), Long::sum));
+            return perWorker;
+        }
+    }
+
+    // The spliterators pass everything to the source, counting successful splits and the elements each
+    // thread receives; forEachRemaining counts locally and reports once at the end.
+
+    private static final class Counting<T> implements Spliterator<T> {
+        private final Spliterator<T> source;
+        private final Metrics metrics;
+
+        Counting(Spliterator<T> source, Metrics metrics) {
+            this.source = source;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            boolean advanced = source.tryAdvance(action);
+            metrics.count(advanced ? 1 : 0);
+            return advanced;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            long[] count = {0};
+            source.forEachRemaining(value -> {
+                count[0]++;
+                action.accept(value);
+            });
+            metrics.count(count[0]);
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            Spliterator<T> prefix = source.trySplit();
+            if (prefix == null) {
+                return null;
+            }
+            metrics.splits.increment();
+            return new Counting<>(prefix, metrics);
+        }
+
+        @Override
+        public long estimateSize() {
+            return source.estimateSize();
+        }
+
+        @Override
+        public long getExactSizeIfKnown() {
+            return source.getExactSizeIfKnown();
+        }
+
+        @Override
+        public int characteristics() {
+            return source.characteristics();
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return source.getComparator();
+        }
+    }
+
+    private static final class CountingInt implements Spliterator.OfInt {
+        private final Spliterator.OfInt source;
+        private final Metrics metrics;
+
+        CountingInt(Spliterator.OfInt source, Metrics metrics) {
+            this.source = source;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            boolean advanced = source.tryAdvance(action);
+            metrics.count(advanced ? 1 : 0);
+            return advanced;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            long[] count = {0};
+            source.forEachRemaining((int value) -> {
+                count[0]++;
+                action.accept(value);
+            });
+            metrics.count(count[0]);
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            Spliterator.OfInt prefix = source.trySplit();
+            if (prefix == null) {
+                return null;
+            }
+            metrics.splits.increment();
+            return new CountingInt(prefix, metrics);
+        }
+
+        @Override
+        public long estimateSize() {
+            return source.estimateSize();
+        }
+
+        @Override
+        public long getExactSizeIfKnown() {
+            return source.getExactSizeIfKnown();
+        }
+
+        @Override
+        public int characteristics() {
+            return source.characteristics();
+        }
+
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            return source.getComparator();
+        }
+    }
+
+    private static final class CountingLong implements Spliterator.OfLong {
+        private final Spliterator.OfLong source;
+        private final Metrics metrics;
+
+        CountingLong(Spliterator.OfLong source, Metrics metrics) {
+            this.source = source;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            boolean advanced = source.tryAdvance(action);
+            metrics.count(advanced ? 1 : 0);
+            return advanced;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            long[] count = {0};
+            source.forEachRemaining((long value) -> {
+                count[0]++;
+                action.accept(value);
+            });
+            metrics.count(count[0]);
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            Spliterator.OfLong prefix = source.trySplit();
+            if (prefix == null) {
+                return null;
+            }
+            metrics.splits.increment();
+            return new CountingLong(prefix, metrics);
+        }
+
+        @Override
+        public long estimateSize() {
+            return source.estimateSize();
+        }
+
+        @Override
+        public long getExactSizeIfKnown() {
+            return source.getExactSizeIfKnown();
+        }
+
+        @Override
+        public int characteristics() {
+            return source.characteristics();
+        }
+
+        @Override
+        public Comparator<? super Long> getComparator() {
+            return source.getComparator();
+        }
+    }
+}
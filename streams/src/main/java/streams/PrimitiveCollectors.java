@@ -0,0 +1,629 @@
+package streams;
+
+import java.util.Arrays;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+// Collecting IntStream/LongStream/DoubleStream results without boxing.
+// Collectors.toList(), partitioningBy and sorted(Comparator.reverseOrder()) only exist for streams of
+// objects, so an IntStream has to be boxed first: an Integer per element, and a List of references.
+// The containers below store primitives in arrays and are meant for the three-argument collect of the
+// primitive streams, e.g. stream.collect(IntList::new, IntList::add, IntList::addAll); the static methods
+// do exactly that. Every container has an efficient combiner (arraycopy, merge of sorted arrays, adding
+// counts), so parallel streams combine the results of their parts cheaply.
+final class PrimitiveCollectors {
+
+    private PrimitiveCollectors() {
+    }
+
+    static IntList toList(IntStream values) {
+        return values.collect(IntList::new, IntList::add, IntList::addAll);
+    }
+
+    static LongList toList(LongStream values) {
+        return values.collect(LongList::new, LongList::add, LongList::addAll);
+    }
+
+    static DoubleList toList(DoubleStream values) {
+        return values.collect(DoubleList::new, DoubleList::add, DoubleList::addAll);
+    }
+
+    // the k largest values, largest first
+    static int[] topK(IntStream values, int k) {
+        long[] top = values.collect(() -> new TopK(k), TopK::add, TopK::addAll).toArray();
+        int[] result = new int[top.length];
+        for (int i = 0; i < top.length; i++) {
+            result[i] = (int) top[i];
+        }
+        return result;
+    }
+
+    static long[] topK(LongStream values, int k) {
+        return values.collect(() -> new TopK(k), TopK::add, TopK::addAll).toArray();
+    }
+
+    // NaN is larger than all other values, like in Double.compare
+    static double[] topK(DoubleStream values, int k) {
+        long[] top = values.collect(() -> new TopK(k), (heap, value) -> heap.add(sortable(value)), TopK::addAll).toArray();
+        double[] result = new double[top.length];
+        for (int i = 0; i < top.length; i++) {
+            result[i] = unsortable(top[i]);
+        }
+        return result;
+    }
+
+    // A long with the same order as the double in Double.compare: for negative doubles all bits except the sign
+    // are flipped, so that larger magnitudes become smaller longs.
+    static long sortable(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    static double unsortable(long sortable) {
+        return Double.longBitsToDouble(sortable ^ ((sortable >> 63) & Long.MAX_VALUE));
+    }
+
+    static Histogram histogram(IntStream values, double min, double max, int buckets) {
+        return histogram(values.asDoubleStream(), min, max, buckets);
+    }
+
+    static Histogram histogram(LongStream values, double min, double max, int buckets) {
+        return histogram(values.asDoubleStream(), min, max, buckets);
+    }
+
+    static Histogram histogram(DoubleStream values, double min, double max, int buckets) {
+        return values.collect(() -> new Histogram(min, max, buckets), Histogram::add, Histogram::addAll);
+    }
+
+    static IntPartition partition(IntStream values, IntPredicate predicate) {
+        IntList[] lists = values.collect(() -> new IntList[] {new IntList(), new IntList()},
+                (l, value) -> l[predicate.test(value) ? 0 : 1].add(value),
+                (l, other) -> {
+                    l[0].addAll(other[0]);
+                    l[1].addAll(other[1]);
+                });
+        return new IntPartition(lists[0].toArray(), lists[1].toArray());
+    }
+
+    static LongPartition partition(LongStream values, LongPredicate predicate) {
+        LongList[] lists = values.collect(() -> new LongList[] {new LongList(), new LongList()},
+                (l, value) -> l[predicate.test(value) ? 0 : 1].add(value),
+                (l, other) -> {
+                    l[0].addAll(other[0]);
+                    l[1].addAll(other[1]);
+                });
+        return new LongPartition(lists[0].toArray(), lists[1].toArray());
+    }
+
+    static DoublePartition partition(DoubleStream values, DoublePredicate predicate) {
+        DoubleList[] lists = values.collect(() -> new DoubleList[] {new DoubleList(), new DoubleList()},
+                (l, value) -> l[predicate.test(value) ? 0 : 1].add(value),
+                (l, other) -> {
+                    l[0].addAll(other[0]);
+                    l[1].addAll(other[1]);
+                });
+        return new DoublePartition(lists[0].toArray(), lists[1].toArray());
+    }
+
+    // the values for which the predicate was true and the others, both in encounter order
+    record IntPartition(int[] matching, int[] rest) {
+    }
+
+    record LongPartition(long[] matching, long[] rest) {
+    }
+
+    record DoublePartition(double[] matching, double[] rest) {
+    }
+
+    static LongStats stats(IntStream values) {
+        return stats(values.asLongStream());
+    }
+
+    static LongStats stats(LongStream values) {
+        return values.collect(LongStats::new, LongStats::add, LongStats::addAll);
+    }
+
+    static DoubleStats stats(DoubleStream values) {
+        return values.collect(DoubleStats::new, DoubleStats::add, DoubleStats::addAll);
+    }
+
+    // growth of the lists: doubled, at least to the needed size
+    private static int grow(int length, int needed) {
+        if (needed < 0 || needed > Integer.MAX_VALUE - 8) {
+            throw new OutOfMemoryError("List too large: " + Integer.toUnsignedString(needed) + " elements");
+        }
+        return (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, 2L * length));
+    }
+
+    static final class IntList {
+        private int[] values = new int[16];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grow(values.length, size + 1));
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, grow(values.length, size + other.size));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of range for size " + size);
+            }
+            return values[index];
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        IntStream stream() {
+            return Arrays.stream(values, 0, size);
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(toArray());
+        }
+    }
+
+    static final class LongList {
+        private long[] values = new long[16];
+        private int size = 0;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grow(values.length, size + 1));
+            }
+            values[size++] = value;
+        }
+
+        void addAll(LongList other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, grow(values.length, size + other.size));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of range for size " + size);
+            }
+            return values[index];
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        LongStream stream() {
+            return Arrays.stream(values, 0, size);
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(toArray());
+        }
+    }
+
+    static final class DoubleList {
+        private double[] values = new double[16];
+        private int size = 0;
+
+        void add(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grow(values.length, size + 1));
+            }
+            values[size++] = value;
+        }
+
+        void addAll(DoubleList other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, grow(values.length, size + other.size));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        double get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of range for size " + size);
+            }
+            return values[index];
+        }
+
+        double[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        DoubleStream stream() {
+            return Arrays.stream(values, 0, size);
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(toArray());
+        }
+    }
+
+    // The k largest longs in a binary min-heap: the smallest of them is at the root, so a new value is
+    // compared with the root only, and replaces it if it is larger (O(log k)). Memory stays at k longs no
+    // matter how long the stream is; two heaps are combined by adding the k values of one to the other.
+    static final class TopK {
+        private final long[] heap;
+        private int size = 0;
+
+        TopK(int k) {
+            if (k < 0) {
+                throw new IllegalArgumentException("Argument k must not be negative, was " + k);
+            }
+            this.heap = new long[k];
+        }
+
+        void add(long value) {
+            if (size < heap.length) {
+                // sift up
+                int i = size++;
+                while (i > 0 && heap[(i - 1) >>> 1] > value) {
+                    heap[i] = heap[(i - 1) >>> 1];
+                    i = (i - 1) >>> 1;
+                }
+                heap[i] = value;
+            } else if (size > 0 && value > heap[0]) {
+                siftDown(value);
+            }
+        }
+
+        // replaces the root with the value and moves it down to its place
+        private void siftDown(long value) {
+            int i = 0;
+            for (int child = 1; child < size; child = 2 * i + 1) {
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (heap[child] >= value) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = value;
+        }
+
+        void addAll(TopK other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.heap[i]);
+            }
+        }
+
+        // largest first
+        long[] toArray() {
+            long[] sorted = Arrays.copyOf(heap, size);
+            Arrays.sort(sorted);
+            for (int i = 0, j = sorted.length - 1; i < j; i++, j--) {
+                long swap = sorted[i];
+                sorted[i] = sorted[j];
+                sorted[j] = swap;
+            }
+            return sorted;
+        }
+    }
+
+    // Counts per bucket of equal width in [min, max); values below and above (and NaN) are counted separately.
+    static final class Histogram {
+        private final double min;
+        private final double max;
+        private final double scale;
+        private final long[] counts;
+        private long below = 0;
+        private long above = 0;
+
+        Histogram(double min, double max, int buckets) {
+            if (!(min < max) || buckets <= 0) {
+                throw new IllegalArgumentException("Invalid histogram [" + min + ", " + max + ") with " + buckets + " buckets");
+            }
+            this.min = min;
+            this.max = max;
+            this.scale = buckets / (max - min);
+            this.counts = new long[buckets];
+        }
+
+        void add(double value) {
+            if (value < min) {
+                below++;
+            } else if (value < max) {
+                // rounding may give buckets for values just below max
+                counts[Math.min((int) ((value - min) * scale), counts.length - 1)]++;
+            } else {
+                above++;
+            }
+        }
+
+        void addAll(Histogram other) {
+            if (other.min != min || other.max != max || other.counts.length != counts.length) {
+                throw new IllegalArgumentException("Histograms with different buckets cannot be combined");
+            }
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            below += other.below;
+            above += other.above;
+        }
+
+        int buckets() {
+            return counts.length;
+        }
+
+        long count(int bucket) {
+            return counts[bucket];
+        }
+
+        long[] counts() {
+            return counts.clone();
+        }
+
+        // lower bound of the bucket, inclusive
+        double lowerBound(int bucket) {
+            return min + bucket / scale;
+        }
+
+        long below() {
+            return below;
+        }
+
+        // values >= max or NaN
+        long above() {
+            return above;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < counts.length; i++) {
+                builder.append('[').append(lowerBound(i)).append(", ").append(i + 1 < counts.length ? lowerBound(i + 1) : max)
+                        .append("): ").append(counts[i]).append('\n');
+            }
+            return builder.append("below: ").append(below).append(", above: ").append(above).toString();
+        }
+    }
+
+    // Count, sum, min, max and percentiles of longs. The values are kept (8 bytes each) to compute exact
+    // percentiles; each part of a parallel stream sorts its own values when it is combined, and two sorted
+    // parts are merged in linear time, so most of the sorting runs in parallel.
+    static final class LongStats {
+        private long[] values = new long[16];
+        private int size = 0;
+        private boolean sorted = true;
+        private long sum = 0;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grow(values.length, size + 1));
+            }
+            sorted &= size == 0 || values[size - 1] <= value;
+            values[size++] = value;
+            sum += value;
+        }
+
+        void addAll(LongStats other) {
+            sort();
+            other.sort();
+            long[] merged = new long[grow(0, size + other.size)];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < size && j < other.size) {
+                merged[k++] = values[i] <= other.values[j] ? values[i++] : other.values[j++];
+            }
+            System.arraycopy(values, i, merged, k, size - i);
+            System.arraycopy(other.values, j, merged, k + size - i, other.size - j);
+            values = merged;
+            size += other.size;
+            sum += other.sum;
+        }
+
+        private void sort() {
+            if (!sorted) {
+                Arrays.sort(values, 0, size);
+                sorted = true;
+            }
+        }
+
+        long count() {
+            return size;
+        }
+
+        long sum() {
+            return sum;
+        }
+
+        double average() {
+            return size == 0 ? 0 : (double) sum / size;
+        }
+
+        long min() {
+            checkNotEmpty(size);
+            sort();
+            return values[0];
+        }
+
+        long max() {
+            checkNotEmpty(size);
+            sort();
+            return values[size - 1];
+        }
+
+        // p in [0, 100], linear interpolation between the two closest values
+        double percentile(double p) {
+            checkPercentile(p, size);
+            sort();
+            double rank = p / 100 * (size - 1);
+            int lower = (int) rank;
+            return lower + 1 < size ? values[lower] + (rank - lower) * (values[lower + 1] - (double) values[lower]) : values[lower];
+        }
+
+        double median() {
+            return percentile(50);
+        }
+
+        @Override
+        public String toString() {
+            if (size == 0) {
+                return "LongStats{count=0}";
+            }
+            return "LongStats{count=" + size + ", sum=" + sum + ", min=" + min() + ", average=" + average() + ", median=" + median()
+                    + ", p90=" + percentile(90) + ", p99=" + percentile(99) + ", max=" + max() + "}";
+        }
+    }
+
+    // DoubleStats is LongStats for doubles; the sum is compensated (Kahan), like DoubleSummaryStatistics.
+    // NaN values are sorted to the end, like in Arrays.sort.
+    static final class DoubleStats {
+        private double[] values = new double[16];
+        private int size = 0;
+        private boolean sorted = true;
+        private double sum = 0;
+        private double compensation = 0;
+        private double simpleSum = 0; // without compensation, for infinite values
+
+        void add(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grow(values.length, size + 1));
+            }
+            sorted &= size == 0 || Double.compare(values[size - 1], value) <= 0;
+            values[size++] = value;
+            addToSum(value);
+            simpleSum += value;
+        }
+
+        private void addToSum(double value) {
+            double y = value - compensation;
+            double t = sum + y;
+            compensation = (t - sum) - y;
+            sum = t;
+        }
+
+        void addAll(DoubleStats other) {
+            sort();
+            other.sort();
+            double[] merged = new double[grow(0, size + other.size)];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < size && j < other.size) {
+                merged[k++] = Double.compare(values[i], other.values[j]) <= 0 ? values[i++] : other.values[j++];
+            }
+            System.arraycopy(values, i, merged, k, size - i);
+            System.arraycopy(other.values, j, merged, k + size - i, other.size - j);
+            values = merged;
+            size += other.size;
+            addToSum(other.sum);
+            addToSum(-other.compensation);
+            simpleSum += other.simpleSum;
+        }
+
+        private void sort() {
+            if (!sorted) {
+                Arrays.sort(values, 0, size);
+                sorted = true;
+            }
+        }
+
+        long count() {
+            return size;
+        }
+
+        double sum() {
+            double total = sum - compensation;
+            // infinite values make the compensation NaN, their sum is the simple sum
+            return Double.isNaN(total) && Double.isInfinite(simpleSum) ? simpleSum : total;
+        }
+
+        double average() {
+            return size == 0 ? 0 : sum() / size;
+        }
+
+        double min() {
+            checkNotEmpty(size);
+            sort();
+            return values[0];
+        }
+
+        double max() {
+            checkNotEmpty(size);
+            sort();
+            return values[size - 1];
+        }
+
+        double percentile(double p) {
+            checkPercentile(p, size);
+            sort();
+            double rank = p / 100 * (size - 1);
+            int lower = (int) rank;
+            return lower + 1 < size ? interpolate(values[lower], values[lower + 1], rank - lower) : values[lower];
+        }
+
+        // a + fraction * (b - a) is NaN for two equal infinite values, and (b - a) is infinite for an infinite
+        // one; between two different infinities the result stays NaN
+        private static double interpolate(double a, double b, double fraction) {
+            if (fraction == 0 || a == b) {
+                return a;
+            }
+            if (Double.isInfinite(a) || Double.isInfinite(b)) {
+                return (1 - fraction) * a + fraction * b;
+            }
+            return a + fraction * (b - a);
+        }
+
+        double median() {
+            return percentile(50);
+        }
+
+        @Override
+        public String toString() {
+            if (size == 0) {
+                return "DoubleStats{count=0}";
+            }
+            return "DoubleStats{count=" + size + ", sum=" + sum() + ", min=" + min() + ", average=" + average() + ", median=" + median()
+                    + ", p90=" + percentile(90) + ", p99=" + percentile(99) + ", max=" + max() + "}";
+        }
+    }
+
+    private static void checkNotEmpty(int size) {
+        if (size == 0) {
+            throw new IllegalStateException("No values");
+        }
+    }
+
+    private static void checkPercentile(double p, int size) {
+        checkNotEmpty(size);
+        if (!(p >= 0 && p <= 100)) {
+            throw new IllegalArgumentException("Percentile must be in [0, 100], was " + p);
+        }
+    }
+}
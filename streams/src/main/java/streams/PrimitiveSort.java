@@ -0,0 +1,466 @@
+package streams;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongToIntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+// Sorting int[] and long[] without boxing.
+// boxed().sorted(Comparator.reverseOrder()) turns every int into an Integer (16 bytes plus a 4 or 8 byte
+// reference instead of 4 bytes) and compares through a Comparator, with the Integers scattered over the
+// heap. The methods here work on the primitive arrays:
+// - sortDescending: Arrays.sort and one reverse pass
+// - sortByKey: stable sort by an int key, the (key, index) pairs are packed into longs and radix sorted
+// - largest/smallest: the top n with introselect in O(length), only the n values are sorted
+// - radixSort/parallelRadixSort: LSD radix sort, 8 bits per pass; the parallel variant counts and
+//   distributes each pass in blocks on all cores
+// The methods with a stream parameter collect the stream into an array, sort it and stream it again,
+// so they can be used in the middle of a pipeline, e.g. PrimitiveSort.descending(Arrays.stream(a)).forEach(..).
+final class PrimitiveSort {
+
+    // below this size radixSort is not worth the buffer and the passes, and insertion sort ends introselect
+    static final int MIN_RADIX_LENGTH = 1 << 8;
+    static final int INSERTION_SORT_LENGTH = 16;
+    // minimum number of elements per block of the parallel radix sort
+    static final int MIN_BLOCK_LENGTH = 1 << 14;
+
+    private PrimitiveSort() {
+    }
+
+    static void sortDescending(int[] a) {
+        Arrays.sort(a);
+        reverse(a);
+    }
+
+    static void sortDescending(long[] a) {
+        Arrays.sort(a);
+        reverse(a);
+    }
+
+    static void parallelSortDescending(int[] a) {
+        parallelRadixSort(a);
+        reverse(a);
+    }
+
+    static void parallelSortDescending(long[] a) {
+        parallelRadixSort(a);
+        reverse(a);
+    }
+
+    static void reverse(int[] a) {
+        for (int i = 0, j = a.length - 1; i < j; i++, j--) {
+            int swap = a[i];
+            a[i] = a[j];
+            a[j] = swap;
+        }
+    }
+
+    static void reverse(long[] a) {
+        for (int i = 0, j = a.length - 1; i < j; i++, j--) {
+            long swap = a[i];
+            a[i] = a[j];
+            a[j] = swap;
+        }
+    }
+
+    // Sorts by key, elements with equal keys keep their order (stable). The key is computed once per element;
+    // key << 32 | index is sorted as a long, which orders by key first and index second.
+    static void sortByKey(int[] a, IntUnaryOperator key) {
+        long[] packed = new long[a.length];
+        for (int i = 0; i < a.length; i++) {
+            packed[i] = (long) key.applyAsInt(a[i]) << 32 | i;
+        }
+        radixSort(packed, packed.length >= 2 * MIN_BLOCK_LENGTH);
+        int[] copy = a.clone();
+        for (int i = 0; i < a.length; i++) {
+            a[i] = copy[(int) packed[i]];
+        }
+    }
+
+    static void sortByKey(long[] a, LongToIntFunction key) {
+        long[] packed = new long[a.length];
+        for (int i = 0; i < a.length; i++) {
+            packed[i] = (long) key.applyAsInt(a[i]) << 32 | i;
+        }
+        radixSort(packed, packed.length >= 2 * MIN_BLOCK_LENGTH);
+        long[] copy = a.clone();
+        for (int i = 0; i < a.length; i++) {
+            a[i] = copy[(int) packed[i]];
+        }
+    }
+
+    // the n largest values, largest first; a is not modified
+    static int[] largest(int[] a, int n) {
+        checkN(n, a.length);
+        int[] copy = a.clone();
+        if (n > 0 && n < copy.length) {
+            select(copy, copy.length - n);
+        }
+        int[] top = Arrays.copyOfRange(copy, copy.length - n, copy.length);
+        sortDescending(top);
+        return top;
+    }
+
+    static long[] largest(long[] a, int n) {
+        checkN(n, a.length);
+        long[] copy = a.clone();
+        if (n > 0 && n < copy.length) {
+            select(copy, copy.length - n);
+        }
+        long[] top = Arrays.copyOfRange(copy, copy.length - n, copy.length);
+        sortDescending(top);
+        return top;
+    }
+
+    // the n smallest values, smallest first; a is not modified
+    static int[] smallest(int[] a, int n) {
+        checkN(n, a.length);
+        int[] copy = a.clone();
+        if (n > 0 && n < copy.length) {
+            select(copy, n - 1);
+        }
+        int[] bottom = Arrays.copyOf(copy, n);
+        Arrays.sort(bottom);
+        return bottom;
+    }
+
+    static long[] smallest(long[] a, int n) {
+        checkN(n, a.length);
+        long[] copy = a.clone();
+        if (n > 0 && n < copy.length) {
+            select(copy, n - 1);
+        }
+        long[] bottom = Arrays.copyOf(copy, n);
+        Arrays.sort(bottom);
+        return bottom;
+    }
+
+    private static void checkN(int n, int length) {
+        if (n < 0 || n > length) {
+            throw new IllegalArgumentException("Argument n is out of range; valid range: [0.." + length + "], was " + n);
+        }
+    }
+
+    // Introselect: afterwards a[k] is the value that a sorted array would have there, the values before it
+    // are <= a[k] and the values after it >= a[k]. Quickselect with a median of three pivot only continues
+    // in the part that contains k, O(length) on average; if that takes more than 2 * log2(length) rounds
+    // (bad pivots), the remaining part is sorted, which bounds the worst case at O(length * log(length)).
+    static void select(int[] a, int k) {
+        if (k < 0 || k >= a.length) {
+            throw new IllegalArgumentException("Argument k is out of range; valid range: [0.." + (a.length - 1) + "], was " + k);
+        }
+        int lo = 0;
+        int hi = a.length - 1;
+        for (int depth = 2 * (32 - Integer.numberOfLeadingZeros(a.length)); hi - lo >= INSERTION_SORT_LENGTH; depth--) {
+            if (depth == 0) {
+                Arrays.sort(a, lo, hi + 1);
+                return;
+            }
+            // median of three: afterwards a[lo] <= a[mid] <= a[hi]
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < a[lo]) {
+                swap(a, mid, lo);
+            }
+            if (a[hi] < a[lo]) {
+                swap(a, hi, lo);
+            }
+            if (a[hi] < a[mid]) {
+                swap(a, hi, mid);
+            }
+            int pivot = a[mid];
+            // Hoare partition: [lo, j] <= pivot, [i, hi] >= pivot, everything in between == pivot
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (a[i] < pivot) {
+                    i++;
+                }
+                while (a[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(a, i++, j--);
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+        insertionSort(a, lo, hi);
+    }
+
+    static void select(long[] a, int k) {
+        if (k < 0 || k >= a.length) {
+            throw new IllegalArgumentException("Argument k is out of range; valid range: [0.." + (a.length - 1) + "], was " + k);
+        }
+        int lo = 0;
+        int hi = a.length - 1;
+        for (int depth = 2 * (32 - Integer.numberOfLeadingZeros(a.length)); hi - lo >= INSERTION_SORT_LENGTH; depth--) {
+            if (depth == 0) {
+                Arrays.sort(a, lo, hi + 1);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < a[lo]) {
+                swap(a, mid, lo);
+            }
+            if (a[hi] < a[lo]) {
+                swap(a, hi, lo);
+            }
+            if (a[hi] < a[mid]) {
+                swap(a, hi, mid);
+            }
+            long pivot = a[mid];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (a[i] < pivot) {
+                    i++;
+                }
+                while (a[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(a, i++, j--);
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+        insertionSort(a, lo, hi);
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        int swap = a[i];
+        a[i] = a[j];
+        a[j] = swap;
+    }
+
+    private static void swap(long[] a, int i, int j) {
+        long swap = a[i];
+        a[i] = a[j];
+        a[j] = swap;
+    }
+
+    private static void insertionSort(int[] a, int lo, int hi) {
+        for (int i = lo + 1; i <= hi; i++) {
+            int value = a[i];
+            int j = i - 1;
+            while (j >= lo && a[j] > value) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = value;
+        }
+    }
+
+    private static void insertionSort(long[] a, int lo, int hi) {
+        for (int i = lo + 1; i <= hi; i++) {
+            long value = a[i];
+            int j = i - 1;
+            while (j >= lo && a[j] > value) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = value;
+        }
+    }
+
+    static void radixSort(int[] a) {
+        radixSort(a, false);
+    }
+
+    static void parallelRadixSort(int[] a) {
+        radixSort(a, true);
+    }
+
+    static void radixSort(long[] a) {
+        radixSort(a, false);
+    }
+
+    static void parallelRadixSort(long[] a) {
+        radixSort(a, true);
+    }
+
+    // number of blocks for the parallel passes, 1 for sequential sorting
+    private static int blocks(int length, boolean parallel) {
+        if (!parallel) {
+            return 1;
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(4 * cores, length / MIN_BLOCK_LENGTH));
+    }
+
+    private static void forEachBlock(int blocks, IntConsumer action) {
+        if (blocks == 1) {
+            action.accept(0);
+        } else {
+            IntStream.range(0, blocks).parallel().forEach(action);
+        }
+    }
+
+    // Converts the counts of the digits per block into the start position of each block's first element with that
+    // digit: all elements with digit 0 (block 0 first, then block 1, ..), then digit 1, and so on.
+    // Returns false if all elements have the same digit, the pass would not change anything then.
+    private static boolean toOffsets(int[][] counts, int length) {
+        int position = 0;
+        for (int digit = 0; digit < 256; digit++) {
+            int total = 0;
+            for (int[] blockCounts : counts) {
+                total += blockCounts[digit];
+            }
+            if (total == length) {
+                return false;
+            }
+            for (int[] blockCounts : counts) {
+                int count = blockCounts[digit];
+                blockCounts[digit] = position;
+                position += count;
+            }
+        }
+        return true;
+    }
+
+    // LSD radix sort, one pass per byte from the lowest to the highest. Each pass counts the byte values and
+    // then moves every element to its place in the buffer, which keeps the order of the previous pass (stable).
+    // The sign bit is flipped in the highest byte, so that negative values come first.
+    private static void radixSort(int[] a, boolean parallel) {
+        int length = a.length;
+        if (length < MIN_RADIX_LENGTH) {
+            Arrays.sort(a);
+            return;
+        }
+        int blocks = blocks(length, parallel);
+        int blockLength = (length + blocks - 1) / blocks;
+        int[][] counts = new int[blocks][256];
+        int[] source = a;
+        int[] target = new int[length];
+        for (int shift = 0; shift < Integer.SIZE; shift += 8) {
+            int s = shift;
+            int flip = shift == Integer.SIZE - 8 ? 0x80 : 0;
+            int[] from = source;
+            int[] to = target;
+            forEachBlock(blocks, block -> {
+                int[] blockCounts = counts[block];
+                Arrays.fill(blockCounts, 0);
+                for (int i = block * blockLength, end = Math.min(length, i + blockLength); i < end; i++) {
+                    blockCounts[((from[i] >>> s) & 0xFF) ^ flip]++;
+                }
+            });
+            if (!toOffsets(counts, length)) {
+                continue;
+            }
+            forEachBlock(blocks, block -> {
+                int[] offsets = counts[block];
+                for (int i = block * blockLength, end = Math.min(length, i + blockLength); i < end; i++) {
+                    int value = from[i];
+                    to[offsets[((value >>> s) & 0xFF) ^ flip]++] = value;
+                }
+            });
+            source = to;
+            target = from;
+        }
+        if (source != a) {
+            System.arraycopy(source, 0, a, 0, length);
+        }
+    }
+
+    private static void radixSort(long[] a, boolean parallel) {
+        int length = a.length;
+        if (length < MIN_RADIX_LENGTH) {
+            Arrays.sort(a);
+            return;
+        }
+        int blocks = blocks(length, parallel);
+        int blockLength = (length + blocks - 1) / blocks;
+        int[][] counts = new int[blocks][256];
+        long[] source = a;
+        long[] target = new long[length];
+        for (int shift = 0; shift < Long.SIZE; shift += 8) {
+            int s = shift;
+            int flip = shift == Long.SIZE - 8 ? 0x80 : 0;
+            long[] from = source;
+            long[] to = target;
+            forEachBlock(blocks, block -> {
+                int[] blockCounts = counts[block];
+                Arrays.fill(blockCounts, 0);
+                for (int i = block * blockLength, end = Math.min(length, i + blockLength); i < end; i++) {
+                    blockCounts[((int) (from[i] >>> s) & 0xFF) ^ flip]++;
+                }
+            });
+            if (!toOffsets(counts, length)) {
+                continue;
+            }
+            forEachBlock(blocks, block -> {
+                int[] offsets = counts[block];
+                for (int i = block * blockLength, end = Math.min(length, i + blockLength); i < end; i++) {
+                    long value = from[i];
+                    to[offsets[((int) (value >>> s) & 0xFF) ^ flip]++] = value;
+                }
+            });
+            source = to;
+            target = from;
+        }
+        if (source != a) {
+            System.arraycopy(source, 0, a, 0, length);
+        }
+    }
+
+    // stream-friendly variants; parallel streams use the parallel radix sort
+
+    static IntStream descending(IntStream values) {
+        boolean parallel = values.isParallel();
+        int[] a = values.toArray();
+        if (parallel) {
+            parallelSortDescending(a);
+        } else {
+            sortDescending(a);
+        }
+        return parallel ? Arrays.stream(a).parallel() : Arrays.stream(a);
+    }
+
+    static LongStream descending(LongStream values) {
+        boolean parallel = values.isParallel();
+        long[] a = values.toArray();
+        if (parallel) {
+            parallelSortDescending(a);
+        } else {
+            sortDescending(a);
+        }
+        return parallel ? Arrays.stream(a).parallel() : Arrays.stream(a);
+    }
+
+    static IntStream sortedByKey(IntStream values, IntUnaryOperator key) {
+        boolean parallel = values.isParallel();
+        int[] a = values.toArray();
+        sortByKey(a, key);
+        return parallel ? Arrays.stream(a).parallel() : Arrays.stream(a);
+    }
+
+    static LongStream sortedByKey(LongStream values, LongToIntFunction key) {
+        boolean parallel = values.isParallel();
+        long[] a = values.toArray();
+        sortByKey(a, key);
+        return parallel ? Arrays.stream(a).parallel() : Arrays.stream(a);
+    }
+
+    // the n largest values, largest first; a bounded heap, so the stream is not collected into an array
+    static IntStream largest(IntStream values, int n) {
+        return Arrays.stream(PrimitiveCollectors.topK(values, n));
+    }
+
+    static LongStream largest(LongStream values, int n) {
+        return Arrays.stream(PrimitiveCollectors.topK(values, n));
+    }
+}
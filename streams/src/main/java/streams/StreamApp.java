@@ -1,12 +1,18 @@
 package streams;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
@@ -15,70 +21,129 @@ import java.util.stream.Stream;
 
 public class StreamApp {
 	
+	// The shared translation catalog (see TranslationCatalog), opened on first use (holder class idiom), so
+	// the enums themselves can be used without it
+	private static final class Translations {
+	    static final TranslationCatalog CATALOG;
+	    static final TranslationCatalog.Section<Direction> DIRECTIONS;
+
+	    static {
+	        try {
+	            CATALOG = TranslationCatalog.load();
+	            DIRECTIONS = CATALOG.section(Direction.class);
+	        } catch (IOException e) {
+	            throw new UncheckedIOException(e);
+	        }
+	    }
+
+	    // DIRECTIONS_BY_LANGUAGE[language.id()][direction.ordinal()], a row is decoded when its language is first used
+	    static final AtomicReferenceArray<String[]> DIRECTIONS_BY_LANGUAGE = new AtomicReferenceArray<>(CATALOG.languageCount());
+	}
+
+	// A language of the translations. The languages are not part of the code: they are the language codes of
+	// the keys in the translation resources, so a new language only needs its keys there. A language code is
+	// resolved once with forCode, after that the id is the index into the translation tables: no String is
+	// compared or created per lookup.
+	record Language(int id, String code) {
+
+	    // the language for an ISO 639-1 code like "de" or "DE", null if the catalog has no translations into it;
+	    // the catalog compares the bytes of the codes, no String is created
+	    public static Language lookup(String code) {
+	        int id = Translations.CATALOG.languageId(code);
+	        return id < 0 ? null : new Language(id, Translations.CATALOG.languageCode(id));
+	    }
+
+	    public static Language forCode(String code) {
+	        Language language = lookup(code);
+	        if (language == null) {
+	            throw new IllegalArgumentException("Unknown language code: " + code);
+	        }
+	        return language;
+	    }
+
+	    @Override
+	    public String toString() {
+	        return code;
+	    }
+	}
+
 	enum Direction {
-	    LEFT("links", "gauche", "left", "izquierda", "sinistra", "лево", "lewo", "sol", "يسار", "چپ"),
-	    RIGHT("rechts", "droite", "right", "derecha", "destra", "право", "prawo", "sağ", "يمين", "راست"),
-	    FOLLOW("folgen", "suivre", "follow", "seguir", "seguire", "следовать", "podążać", "takip et", "اتبع", "پیروی کردن"),
-	    TURN_AROUND("wenden", "faire demi-tour", "turn around", "dar la vuelta", "girare", "разворот", "zawrócić", "geri dön", "استدر", "دور زدن");
-
-	    // Fields for translations
-	    private final String german;
-	    private final String french;
-	    private final String english;
-	    private final String spanish;
-	    private final String italian;
-	    private final String russian;
-	    private final String polish;
-	    private final String turkish;
-	    private final String arabic;
-	    private final String persian;
-
-	    // Constructor
-	    Direction(String german, String french, String english, String spanish, String italian, String russian, 
-	              String polish, String turkish, String arabic, String persian) {
-	        this.german = german;
-	        this.french = french;
-	        this.english = english;
-	        this.spanish = spanish;
-	        this.italian = italian;
-	        this.russian = russian;
-	        this.polish = polish;
-	        this.turkish = turkish;
-	        this.arabic = arabic;
-	        this.persian = persian;
+	    LEFT, RIGHT, FOLLOW, TURN_AROUND;
+
+	    static final String NOT_AVAILABLE = "Translation not available";
+
+	    // The translations are not part of the code: they come from the translation catalog, compiled from
+	    // translations/streams.StreamApp$Direction.properties, so a new language or a corrected translation
+	    // only changes that file. A row with the translations into one language is decoded from the catalog
+	    // when the language is first used, after that a lookup is a single array access; languages that are
+	    // never used are never decoded.
+	    private static String[] row(int languageId) {
+	        AtomicReferenceArray<String[]> rows = Translations.DIRECTIONS_BY_LANGUAGE;
+	        String[] row = rows.get(languageId);
+	        if (row == null) {
+	            // two threads may both decode the row, they get equal arrays
+	            Direction[] all = values();
+	            row = new String[all.length];
+	            for (Direction direction : all) {
+	                row[direction.ordinal()] = Translations.DIRECTIONS.getOrDefault(direction, languageId, NOT_AVAILABLE);
+	            }
+	            rows.set(languageId, row);
+	        }
+	        return row;
 	    }
 
-	    // Getters
-	    public String getGerman() { return german; }
-	    public String getFrench() { return french; }
-	    public String getEnglish() { return english; }
-	    public String getSpanish() { return spanish; }
-	    public String getItalian() { return italian; }
-	    public String getRussian() { return russian; }
-	    public String getPolish() { return polish; }
-	    public String getTurkish() { return turkish; }
-	    public String getArabic() { return arabic; }
-	    public String getPersian() { return persian; }
-	    
-//	    
-
-	    // Dynamic translation lookup
+	    // Getters for some languages; NOT_AVAILABLE if the catalog has no translations into the language
+	    public String getGerman() { return getTranslation("de"); }
+	    public String getFrench() { return getTranslation("fr"); }
+	    public String getEnglish() { return getTranslation("en"); }
+	    public String getSpanish() { return getTranslation("es"); }
+	    public String getItalian() { return getTranslation("it"); }
+	    public String getRussian() { return getTranslation("ru"); }
+	    public String getPolish() { return getTranslation("pl"); }
+	    public String getTurkish() { return getTranslation("tr"); }
+	    public String getArabic() { return getTranslation("ar"); }
+	    public String getPersian() { return getTranslation("fa"); }
+
+	    // Translation lookup with a resolved language: a single array access once the language was used
+	    public String getTranslation(Language language) {
+	        return row(language.id())[ordinal()];
+	    }
+
+	    // Dynamic translation lookup by code; resolve the code once with Language.forCode
+	    // when translating more than a few directions
 	    public String getTranslation(String languageCode) {
-	        return switch (languageCode.toLowerCase()) {
-	            case "de" -> german;
-	            case "fr" -> french;
-	            case "en" -> english;
-	            case "es" -> spanish;
-	            case "it" -> italian;
-	            case "ru" -> russian;
-	            case "pl" -> polish;
-	            case "tr" -> turkish;
-	            case "ar" -> arabic;
-	            case "fa" -> persian;
-	            default -> "Translation not available";
-	        };
+	        int languageId = Translations.CATALOG.languageId(languageCode);
+	        return languageId >= 0 ? row(languageId)[ordinal()] : NOT_AVAILABLE;
+	    }
+
+	    // Bulk translation into an existing array, nothing is allocated
+	    public static void translate(Direction[] directions, Language language, String[] target) {
+	        if (target.length < directions.length) {
+	            throw new IllegalArgumentException("Target array too small: " + target.length + " < " + directions.length);
+	        }
+	        String[] row = row(language.id());
+	        for (int i = 0; i < directions.length; i++) {
+	            target[i] = row[directions[i].ordinal()];
+	        }
+	    }
+
+	    // Bulk translation into a new array (the only allocation)
+	    public static String[] translate(Direction[] directions, Language language) {
+	        String[] target = new String[directions.length];
+	        translate(directions, language, target);
+	        return target;
+	    }
+
+	    // Translation step for streams, e.g. directions.map(Direction.translator(italian)):
+	    // the function is created once per pipeline and only returns existing Strings
+	    public static Function<Direction, String> translator(Language language) {
+	        String[] row = row(language.id());
+	        return direction -> row[direction.ordinal()];
+	    }
+
+	    public static Stream<String> translate(Stream<Direction> directions, Language language) {
+	        return directions.map(translator(language));
 	    }
-	    
 	}
 	
     public static void main(String[] args) {
@@ -106,6 +171,21 @@ public class StreamApp {
         Stream<String> lines = Stream.of("Line 1", "Line 2", "Line 3");
         System.out.println("File lines:");
         lines.forEach(System.out::println);
+        
+        // the same with a real file: the file is memory-mapped, startsWith compares the bytes of each line,
+        // only the lines that pass the filter are decoded into Strings by println
+        try {
+            Path logFile = Files.createTempFile("streams", ".log");
+            Files.write(logFile, List.of("Line 1", "# comment", "Line 2", "Line 3"));
+            try (Stream<MappedLines.Line> fileLines = MappedLines.lines(logFile)) {
+                fileLines.parallel()
+                        .filter(line -> line.startsWith("Line"))
+                        .forEachOrdered(System.out::println);
+            }
+            Files.deleteIfExists(logFile);
+        } catch (IOException e) {
+            System.out.println("File could not be read: " + e.getMessage());
+        }
 
         // 5. Intermediate Operations
         System.out.println("Uppercase names sorted:");
@@ -113,12 +193,25 @@ public class StreamApp {
                 .map(String::toUpperCase)
                 .sorted()
                 .forEach(System.out::println);
+        // the same pipeline with elements and time per stage; StreamProfiler.of(stream, false) runs it without measuring
+        StreamProfiler<String> profiledNames = StreamProfiler.of(names.stream())
+                .map(String::toUpperCase).as("toUpperCase")
+                .sorted();
+        profiledNames.forEach(System.out::println);
+        System.out.println(profiledNames.profile());
 
         // 6. Terminal Operations: Collectors
         List<String> filteredNames = names.stream()
                 .filter(name -> name.length() > 3)
                 .collect(Collectors.toList());
         System.out.println("Filtered names (length > 3): " + filteredNames);
+        
+        // collecting an IntStream: partitioningBy, sorted(Comparator.reverseOrder()) etc. need boxed(),
+        // the primitive collectors store the ints in arrays
+        PrimitiveCollectors.IntPartition evenAndOdd = PrimitiveCollectors.partition(Arrays.stream(numbers), n -> n % 2 == 0);
+        System.out.println("Even numbers: " + Arrays.toString(evenAndOdd.matching()) + ", odd numbers: " + Arrays.toString(evenAndOdd.rest()));
+        System.out.println("Largest 3 numbers: " + Arrays.toString(PrimitiveCollectors.topK(Arrays.stream(numbers), 3)));
+        System.out.println(PrimitiveCollectors.stats(Arrays.stream(numbers)));
 
         // 7. Reduce Operation
         OptionalInt product = Arrays.stream(numbers)
@@ -127,10 +220,18 @@ public class StreamApp {
 
         // 8. Stream from an Infinite Source
         System.out.println("First 5 Fibonacci numbers:");
-        Stream.iterate(new int[]{0, 1}, fib -> new int[]{fib[1], fib[0] + fib[1]})
-                .limit(5)
-                .map(fib -> fib[0])
+        LinearRecurrence.fibonacci().terms(0, 5)
+                .forEach(System.out::println);
+        // Fibonacci numbers beyond the 92nd do not fit into a long: terms would throw an ArithmeticException there,
+        // bigTerms continues with BigInteger
+        LinearRecurrence.fibonacci().bigTerms(91, 94)
                 .forEach(System.out::println);
+        // in parallel every part of the range starts by jumping ahead to its first term, not by computing all terms before it
+        long fibonacciBits = LinearRecurrence.fibonacci().bigTerms(0, 50_000)
+                .parallel()
+                .mapToLong(BigInteger::bitLength)
+                .sum();
+        System.out.println("Bits of the first 50,000 Fibonacci numbers: " + fibonacciBits);
 
         // 9. Grouping and Partitioning
         Map<Boolean, List<String>> partitionedNames = names.stream()
@@ -213,6 +314,12 @@ public class StreamApp {
             });
         System.out.println();
         
+        // counting words: split runs a regex and toUpperCase/toLowerCase create a new String per word,
+        // WordCounter scans the chars directly and folds the case while scanning
+        WordCounter.Counts wordCounts = WordCounter.count(message);
+        System.out.println(wordCounts.total() + " words, " + wordCounts.size() + " distinct, most frequent: " + wordCounts.top(1)
+                + ", \"DE\": " + wordCounts.get("DE"));
+        
         
         // Stream.generate from script
         Random rnd = new Random();
@@ -230,23 +337,31 @@ public class StreamApp {
             .map(n -> "Even number: " + n) // Transform each number into a string
             .forEach(System.out::println); // Print each string
         
-        Stream<Double> doubleNumbers = Stream.iterate(0.0, n -> n + 0.345);
+        // the same without boxing: an IntStream that knows its size and can be split for parallel streams
+        ArithmeticProgression.ints(0, 2, 10)
+            .mapToObj(n -> "Even number: " + n)
+            .forEach(System.out::println);
+        
+        // element i is computed as 0.0 + i * 0.345, iterate would add up the rounding errors of 0.345
+        DoubleStream doubleNumbers = ArithmeticProgression.doubles(0.0, 0.345, 30);
         
-        doubleNumbers.limit(30)
+        doubleNumbers
         .map(n -> Math.round(n * 100.00) / 100.0) // Rounds to 2 decimal place
         .filter(n-> n>2.5)
         .forEach(System.out::println);
         
         // finite Stream with iterate, with additional Predicate
         Stream.iterate(1, n -> n <= 10, n -> n + 1).forEach(System.out::println);
+        // or as closed range with a step
+        ArithmeticProgression.intsClosed(1, 10, 1).forEach(System.out::println);
         
         int[] fieldWithNumbers = {-4, 6, 20, -34, 99};
         
-        Arrays.stream(fieldWithNumbers)
-        .boxed()
-        .sorted(Comparator.reverseOrder())
-        .mapToInt(Integer::intValue)
+        // descending without boxed().sorted(Comparator.reverseOrder()): the ints are sorted as int[]
+        PrimitiveSort.descending(Arrays.stream(fieldWithNumbers))
         .forEach(System.out::println);
+        // only the two largest, without sorting the rest
+        System.out.println(Arrays.toString(PrimitiveSort.largest(fieldWithNumbers, 2)));
         
         // parallel streams
         String orderedResult = IntStream.rangeClosed(1, 10)
@@ -257,22 +372,27 @@ public class StreamApp {
 
         System.out.println("Ordered result: " + orderedResult); 
        
+        // parallel() and sequential() switch the whole pipeline, not the following stages: the last call wins,
+        // so this pipeline runs sequentially on the main thread
         int sumOfSquares = IntStream.rangeClosed(1, 10000)
                 .parallel() // Start with a parallel stream
-                .peek(n -> System.out.println("Parallel processing: " + n + " on " + Thread.currentThread().getName()))
                 .sequential() // Switch to sequential processing
-                .peek(n -> System.out.println("Sequential processing: " + n + " on " + Thread.currentThread().getName()))
                 .map(n -> n * n)
                 .sum(); // Sum the squares
-        
-        List<Integer> result = IntStream.rangeClosed(9951, 9955)
-        	    .parallel()
-        	    .peek(n -> System.out.println("Parallel processing: " + n + " on " + Thread.currentThread().getName()))
-        	    .boxed()
-        	    .collect(Collectors.toList());
 
         System.out.println("Sum of squares: " + sumOfSquares);
         
+        // instead of printing the thread name in peek: run the pipeline on an own pool with 4 workers (not the
+        // common pool all parallel streams share) and get splits, steals, elements per worker and time as a report
+        try (ParallelRunner runner = new ParallelRunner(4)) {
+            ParallelRunner.Report<Integer> squares = runner.run(IntStream.rangeClosed(1, 10000), range -> range.map(n -> n * n).sum());
+            System.out.println("Sum of squares in parallel: " + squares);
+            
+            ParallelRunner.Report<List<Integer>> result = runner.run(IntStream.rangeClosed(9951, 9955),
+                    range -> range.boxed().collect(Collectors.toList()));
+            System.out.println(result.result() + " collected by " + result.elementsPerWorker());
+        }
+        
         // enums and streams
         Direction[] directions = {
                 Direction.LEFT,
@@ -298,14 +418,32 @@ public class StreamApp {
 
         // outputting translated directions
         System.out.println("Übersetzte Richtungsanweisungen:");
-        // for loop
+        // for loop, the language code is resolved once before the loop
+        Language italian = Language.forCode("it");
         for (Direction direction : directions) {
-            System.out.println(direction + ": " + direction.getTranslation("it")); // Deutsche Übersetzung
+            System.out.println(direction + ": " + direction.getTranslation(italian)); // Italian translation
         }
         
         // with a stream
+        Language persian = Language.forCode("fa");
         Stream.of(directions).forEach(x-> 
-        	{System.out.println(x + ": " + x.getTranslation("fa"));});
+        	{System.out.println(x + ": " + x.getTranslation(persian));});
+        
+        // bulk translation, one array access per direction
+        System.out.println(String.join(", ", Direction.translate(directions, Language.forCode("DE"))));
+        System.out.println(Direction.translate(Stream.of(directions), Language.forCode("es")).collect(Collectors.joining(", ")));
+        
+        // the translations above come from the memory-mapped binary catalog that the build generates from
+        // translations/streams.StreamApp$Direction.properties; it can also be read directly, by language code
+        // and ordinal, and only the strings that are looked up are ever decoded
+        try {
+            TranslationCatalog catalog = TranslationCatalog.load();
+            TranslationCatalog.Section<Direction> directionTranslations = catalog.section(Direction.class);
+            int french = catalog.languageId("fr");
+            Stream.of(directions).forEach(x -> System.out.println(x + ": " + directionTranslations.get(x, french)));
+        } catch (IOException e) {
+            System.out.println("Translation catalog not available: " + e.getMessage());
+        }
         
         
         // finally a flatMap example
@@ -0,0 +1,348 @@
+package streams;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+// A stream wrapper that measures every intermediate stage of a pipeline:
+//
+//     StreamProfiler<String> upper = StreamProfiler.of(names.stream()).map(String::toUpperCase).as("upper").sorted();
+//     List<String> result = upper.toList();
+//     log(upper.profile()); // Profile{wallMillis=.., stages=[Stage{name=upper, in=5, out=5, ..}, Stage{name=sorted#2, ..}]}
+//
+// A stream is lazy and pushes one element after the other through all stages, so the time of a stage
+// cannot be read off from the outside. Instead the functions of the stages are wrapped: the mapper of map,
+// the predicate of filter, the comparator of sorted. The time of a stage is the time in its own function,
+// without the stages after it. Counting peeks before and after each stage count the elements going in
+// and coming out. distinct, limit and skip have no function, they are counted but not timed.
+//
+// Allocation is estimated: for the first SAMPLE_RATE calls of a stage and then about every SAMPLE_RATE-th
+// call the bytes the thread allocated during the call are measured (HotSpot's per-thread allocation
+// counter, -1 if the JVM has none) and extrapolated to all calls. Memory the stream allocates itself, like the buffer of sorted, is not included.
+// Measuring costs about 100 ns per element and stage (two System.nanoTime calls, the counters), so for
+// very cheap functions like String::length the profile shows mostly the measurement.
+//
+// StreamProfiler.of(stream, false) wraps nothing: every stage is added to the stream as it is, so the
+// pipeline runs exactly like the plain stream, the only cost is one StreamProfiler object per stage.
+// That way profiling can stay in production code and be switched on for slow pipelines.
+final class StreamProfiler<T> {
+
+    static final int SAMPLE_RATE = 64;
+
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private final Stream<T> stream;
+    // null if profiling is disabled; shared by all StreamProfilers of one pipeline
+    private final Stages stages;
+
+    private StreamProfiler(Stream<T> stream, Stages stages) {
+        this.stream = stream;
+        this.stages = stages;
+    }
+
+    static <T> StreamProfiler<T> of(Stream<T> stream) {
+        return of(stream, true);
+    }
+
+    static <T> StreamProfiler<T> of(Stream<T> stream, boolean enabled) {
+        return new StreamProfiler<>(stream, enabled ? new Stages() : null);
+    }
+
+    boolean enabled() {
+        return stages != null;
+    }
+
+    StreamProfiler<T> filter(Predicate<? super T> predicate) {
+        if (stages == null) {
+            return new StreamProfiler<>(stream.filter(predicate), null);
+        }
+        Stage stage = stages.add("filter");
+        return counted(stage, stream.peek(stage::countIn).filter(value -> {
+            long allocated = stage.allocatedBefore();
+            long start = System.nanoTime();
+            boolean matches = predicate.test(value);
+            stage.stop(start, allocated);
+            return matches;
+        }));
+    }
+
+    <R> StreamProfiler<R> map(Function<? super T, ? extends R> mapper) {
+        if (stages == null) {
+            return new StreamProfiler<>(stream.map(mapper), null);
+        }
+        Stage stage = stages.add("map");
+        return counted(stage, stream.peek(stage::countIn).map(value -> {
+            long allocated = stage.allocatedBefore();
+            long start = System.nanoTime();
+            R result = mapper.apply(value);
+            stage.stop(start, allocated);
+            return result;
+        }));
+    }
+
+    // the time is that of the mapper creating the inner streams; their elements are produced later,
+    // while they are pushed to the next stages
+    <R> StreamProfiler<R> flatMap(Function<? super T, ? extends Stream<? extends R>> mapper) {
+        if (stages == null) {
+            return new StreamProfiler<>(stream.flatMap(mapper), null);
+        }
+        Stage stage = stages.add("flatMap");
+        return counted(stage, stream.peek(stage::countIn).flatMap(value -> {
+            long allocated = stage.allocatedBefore();
+            long start = System.nanoTime();
+            Stream<? extends R> result = mapper.apply(value);
+            stage.stop(start, allocated);
+            return result;
+        }));
+    }
+
+    StreamProfiler<T> peek(Consumer<? super T> action) {
+        if (stages == null) {
+            return new StreamProfiler<>(stream.peek(action), null);
+        }
+        Stage stage = stages.add("peek");
+        return counted(stage, stream.peek(stage::countIn).peek(value -> {
+            long allocated = stage.allocatedBefore();
+            long start = System.nanoTime();
+            action.accept(value);
+            stage.stop(start, allocated);
+        }));
+    }
+
+    // natural order, ClassCastException if the elements are not Comparable (like Stream.sorted).
+    // Disabled, it is Stream.sorted() itself, which does nothing if the stream is already SORTED
+    // (e.g. from a TreeSet); sorted(naturalOrder()) would sort again.
+    @SuppressWarnings("unchecked")
+    StreamProfiler<T> sorted() {
+        if (stages == null) {
+            return new StreamProfiler<>(stream.sorted(), null);
+        }
+        return sorted((Comparator<? super T>) Comparator.naturalOrder());
+    }
+
+    // the time of all comparisons, calls is their number
+    StreamProfiler<T> sorted(Comparator<? super T> comparator) {
+        if (stages == null) {
+            return new StreamProfiler<>(stream.sorted(comparator), null);
+        }
+        Stage stage = stages.add("sorted");
+        return counted(stage, stream.peek(stage::countIn).sorted((a, b) -> {
+            long allocated = stage.allocatedBefore();
+            long start = System.nanoTime();
+            int result = comparator.compare(a, b);
+            stage.stop(start, allocated);
+            return result;
+        }));
+    }
+
+    StreamProfiler<T> distinct() {
+        if (stages == null) {
+            return new StreamProfiler<>(stream.distinct(), null);
+        }
+        Stage stage = stages.add("distinct");
+        return counted(stage, stream.peek(stage::countIn).distinct());
+    }
+
+    StreamProfiler<T> limit(long maxSize) {
+        if (stages == null) {
+            return new StreamProfiler<>(stream.limit(maxSize), null);
+        }
+        Stage stage = stages.add("limit");
+        return counted(stage, stream.peek(stage::countIn).limit(maxSize));
+    }
+
+    StreamProfiler<T> skip(long n) {
+        if (stages == null) {
+            return new StreamProfiler<>(stream.skip(n), null);
+        }
+        Stage stage = stages.add("skip");
+        return counted(stage, stream.peek(stage::countIn).skip(n));
+    }
+
+    StreamProfiler<T> parallel() {
+        return new StreamProfiler<>(stream.parallel(), stages);
+    }
+
+    StreamProfiler<T> sequential() {
+        return new StreamProfiler<>(stream.sequential(), stages);
+    }
+
+    // names the last stage, the default is the operation and its position, e.g. map#1
+    StreamProfiler<T> as(String name) {
+        if (stages != null) {
+            stages.rename(name);
+        }
+        return this;
+    }
+
+    private <R> StreamProfiler<R> counted(Stage stage, Stream<R> stream) {
+        return new StreamProfiler<>(stream.peek(stage::countOut), stages);
+    }
+
+    // Terminal operations; they measure the wall time of the whole pipeline.
+
+    List<T> toList() {
+        return apply(Stream::toList);
+    }
+
+    <R, A> R collect(Collector<? super T, A, R> collector) {
+        return apply(s -> s.collect(collector));
+    }
+
+    void forEach(Consumer<? super T> action) {
+        apply(s -> {
+            s.forEach(action);
+            return null;
+        });
+    }
+
+    // count may skip stages that cannot change the number of elements (see Stream.count),
+    // these stages show 0 elements
+    long count() {
+        return apply(Stream::count);
+    }
+
+    // any other terminal operation, e.g. apply(s -> s.anyMatch(..)) or apply(s -> s.mapToInt(..).sum())
+    <R> R apply(Function<? super Stream<T>, ? extends R> terminal) {
+        if (stages == null) {
+            return terminal.apply(stream);
+        }
+        long start = System.nanoTime();
+        try {
+            return terminal.apply(stream);
+        } finally {
+            stages.wallNanos += System.nanoTime() - start;
+        }
+    }
+
+    // the profile of the pipeline so far; an empty profile if profiling is disabled
+    Profile profile() {
+        if (stages == null) {
+            return new Profile(0, List.of());
+        }
+        return new Profile(stages.wallNanos, stages.list.stream().map(Stage::snapshot).toList());
+    }
+
+    // in/out: elements going into and coming out of the stage.
+    // calls: calls of the stage's function (comparisons for sorted, 0 for stages without function).
+    // nanos: time in these calls, summed over all threads, so for parallel streams it can exceed the wall time.
+    // allocatedBytes: estimated bytes allocated by these calls, -1 if unknown.
+    record StageProfile(String name, long in, long out, long calls, long nanos, long allocatedBytes) {
+
+        @Override
+        public String toString() {
+            return "Stage{name=" + name + ", in=" + in + ", out=" + out + ", calls=" + calls + ", millis=" + nanos / 1_000_000.0
+                    + ", allocatedBytes=" + allocatedBytes + "}";
+        }
+    }
+
+    record Profile(long wallNanos, List<StageProfile> stages) {
+
+        // the stage with the most time, null without stages
+        StageProfile slowest() {
+            return stages.stream().max(Comparator.comparingLong(StageProfile::nanos)).orElse(null);
+        }
+
+        @Override
+        public String toString() {
+            return "Profile{wallMillis=" + wallNanos / 1_000_000.0 + ", stages=" + stages + "}";
+        }
+    }
+
+    private static final class Stages {
+        final List<Stage> list = new ArrayList<>();
+        // written by the thread that runs the terminal operation
+        long wallNanos = 0;
+
+        Stage add(String operation) {
+            Stage stage = new Stage(operation + "#" + (list.size() + 1));
+            list.add(stage);
+            return stage;
+        }
+
+        void rename(String name) {
+            if (list.isEmpty()) {
+                throw new IllegalStateException("No stage to name " + name);
+            }
+            list.get(list.size() - 1).name = name;
+        }
+    }
+
+    // LongAdders instead of AtomicLongs: in a parallel stream all workers count at the same time
+    private static final class Stage {
+        String name;
+        final LongAdder in = new LongAdder();
+        final LongAdder out = new LongAdder();
+        final LongAdder calls = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder samples = new LongAdder();
+        final LongAdder sampledBytes = new LongAdder();
+        // not exact with several threads, it only decides when random sampling starts
+        int unsampledCalls = SAMPLE_RATE;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        void countIn(Object value) {
+            in.increment();
+        }
+
+        void countOut(Object value) {
+            out.increment();
+        }
+
+        // the allocation counter of the thread before a sampled call, -1 if the call is not sampled
+        long allocatedBefore() {
+            if (THREADS == null) {
+                return -1;
+            }
+            if (unsampledCalls > 0) {
+                unsampledCalls--;
+                return THREADS.getCurrentThreadAllocatedBytes();
+            }
+            if (ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0) {
+                return THREADS.getCurrentThreadAllocatedBytes();
+            }
+            return -1;
+        }
+
+        void stop(long start, long allocatedBefore) {
+            long end = System.nanoTime();
+            calls.increment();
+            nanos.add(end - start);
+            if (allocatedBefore >= 0) {
+                sampledBytes.add(THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore);
+                samples.increment();
+            }
+        }
+
+        StageProfile snapshot() {
+            long calls = this.calls.sum();
+            long samples = this.samples.sum();
+            long allocatedBytes = calls == 0 ? 0 : samples == 0 ? -1 : sampledBytes.sum() * calls / samples;
+            return new StageProfile(name, in.sum(), out.sum(), calls, nanos.sum(), allocatedBytes);
+        }
+    }
+
+    // the per-thread allocation counter of HotSpot, null if the JVM does not support it
+    private static com.sun.management.ThreadMXBean threads() {
+        try {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                    && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads;
+            }
+        } catch (LinkageError e) {
+            // module jdk.management is not available
+        }
+        return null;
+    }
+}
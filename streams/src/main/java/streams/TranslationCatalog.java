@@ -0,0 +1,438 @@
+package streams;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// A compact binary catalog with the translations of enum constants like StreamApp.Direction.
+// The translations are resource files translations/<binary enum name>.properties, e.g.
+// translations/streams.StreamApp$Direction.properties, with keys <CONSTANT>.<language code>. The languages
+// are the codes used in these keys, so adding a language or an enum only changes the resource files.
+// generate compiles them into one file during the build (see main and the pom), and at startup load maps
+// that file into memory. Nothing is read or decoded up front: a lookup reads one entry of the offset table
+// and decodes just this one string. Startup time and heap usage therefore stay the same no matter how many
+// languages and enums the catalog holds.
+//
+// File layout, all ints little-endian:
+//   header     MAGIC, VERSION, languageCount, enumCount
+//   languages  languageCount x (offset, length) of the language codes; the index is the language id
+//   enums      enumCount x (offset, length) of the binary class name, constantCount, tableOffset
+//   tables     per enum: constantCount x (offset, length) of the constant names, sorted by their UTF-8
+//              bytes, followed by constantCount x languageCount x (offset, length) of the translations,
+//              one row per constant in the same order
+//   pool       the UTF-8 bytes of all strings, every distinct string is stored once
+// Offsets are positions in the file, a missing translation has the length -1.
+//
+// The generator only reads the resource files, not the compiled enums: the build runs this file with the
+// java source launcher before anything is compiled, and constants are matched by name when a section is
+// looked up.
+public final class TranslationCatalog {
+
+    static final int MAGIC = 0x54434154; // "TCAT"
+    // 2: enums are stored under Class.getName(); 3: constants are matched by name instead of ordinal
+    static final int VERSION = 3;
+    static final int HEADER_BYTES = 4 * Integer.BYTES;
+    static final int ENTRY_BYTES = 2 * Integer.BYTES;  // offset and length of a string
+    static final int ENUM_BYTES = 4 * Integer.BYTES;
+    static final String RESOURCE_DIRECTORY = "translations/";
+    static final String CATALOG_RESOURCE = RESOURCE_DIRECTORY + "catalog.bin";
+    static final String RESOURCE_SUFFIX = ".properties";
+
+    private final ByteBuffer buffer; // read-only, little-endian; only absolute gets, so it can be shared by threads
+    private final int languageCount;
+    private final int enumCount;
+
+    private TranslationCatalog(ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a translation catalog");
+        }
+        if (buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IllegalArgumentException("Unsupported catalog version " + buffer.getInt(Integer.BYTES) + ", expected " + VERSION);
+        }
+        this.buffer = buffer;
+        this.languageCount = buffer.getInt(2 * Integer.BYTES);
+        this.enumCount = buffer.getInt(3 * Integer.BYTES);
+        if (languageCount < 0 || enumCount < 0
+                || (long) HEADER_BYTES + (long) languageCount * ENTRY_BYTES + (long) enumCount * ENUM_BYTES > buffer.capacity()) {
+            throw new IllegalArgumentException("Corrupt catalog header: " + languageCount + " languages, " + enumCount + " enums");
+        }
+    }
+
+    // maps the catalog file; the mapping stays valid after the channel is closed
+    static TranslationCatalog open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Catalog too large: " + channel.size() + " bytes");
+            }
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new TranslationCatalog(mapped.order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    // The catalog generated during the build. A file on the class path is mapped directly; a catalog in a
+    // jar is copied into a temporary file once and mapped from there, so it is not on the heap either.
+    // Without a generated catalog (e.g. started from an IDE that did not run the build) the resource files
+    // are compiled into memory, if they are a directory on the class path.
+    static TranslationCatalog load() throws IOException {
+        ClassLoader loader = TranslationCatalog.class.getClassLoader();
+        URL url = loader.getResource(CATALOG_RESOURCE);
+        if (url == null) {
+            URL directory = loader.getResource(RESOURCE_DIRECTORY);
+            if (directory == null || !"file".equals(directory.getProtocol())) {
+                throw new FileNotFoundException("Resource " + CATALOG_RESOURCE + " not found on the class path, it is generated by mvn generate-resources");
+            }
+            Map<String, Properties> translations = readResources(toPath(directory));
+            return wrap(build(languages(translations), translations));
+        }
+        if ("file".equals(url.getProtocol())) {
+            return open(toPath(url));
+        }
+        Path copy = Files.createTempFile("translations", ".bin");
+        try (InputStream in = url.openStream()) {
+            Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+            return open(copy);
+        } finally {
+            // the mapping stays valid without the file name; where a mapped file cannot be deleted, it is on exit
+            try {
+                Files.deleteIfExists(copy);
+            } catch (IOException e) {
+                copy.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    private static Path toPath(URL url) throws IOException {
+        try {
+            return Path.of(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid location " + url, e);
+        }
+    }
+
+    // a catalog that is already in memory; the buffer must not be modified afterwards
+    static TranslationCatalog wrap(ByteBuffer buffer) {
+        // slice and asReadOnlyBuffer reset the byte order to big-endian, so it is set afterwards
+        return new TranslationCatalog(buffer.slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    int languageCount() {
+        return languageCount;
+    }
+
+    String languageCode(int languageId) {
+        checkLanguage(languageId);
+        return string(HEADER_BYTES + languageId * ENTRY_BYTES);
+    }
+
+    // the id of a language code like "de" or "DE", -1 if the catalog has no such language.
+    // Resolve it once, the lookups then only take the id.
+    int languageId(String code) {
+        byte[] expected = code.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < languageCount; i++) {
+            if (matches(HEADER_BYTES + i * ENTRY_BYTES, expected, true)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void checkLanguage(int languageId) {
+        if (languageId < 0 || languageId >= languageCount) {
+            throw new IllegalArgumentException("Argument languageId is out of range; valid range: [0.." + (languageCount - 1) + "], was " + languageId);
+        }
+    }
+
+    // The translations of one enum, identified by its binary name, so two enums with the same simple name in
+    // different packages or outer classes get different sections. The constants are looked up by name once
+    // (binary search in the sorted names), so constants that were added, removed or reordered after the
+    // catalog was generated never get the translations of another constant; they just have none.
+    <E extends Enum<E>> Section<E> section(Class<E> type) {
+        byte[] name = type.getName().getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < enumCount; i++) {
+            int position = HEADER_BYTES + languageCount * ENTRY_BYTES + i * ENUM_BYTES;
+            if (!matches(position, name, false)) {
+                continue;
+            }
+            int constantCount = buffer.getInt(position + 2 * Integer.BYTES);
+            int tableOffset = buffer.getInt(position + 3 * Integer.BYTES);
+            E[] constants = type.getEnumConstants();
+            int[] rows = new int[constants.length];
+            for (E constant : constants) {
+                rows[constant.ordinal()] = find(tableOffset, constantCount, constant.name().getBytes(StandardCharsets.UTF_8));
+            }
+            return new Section<>(this, tableOffset + constantCount * ENTRY_BYTES, rows);
+        }
+        throw new IllegalArgumentException("No translations for " + type.getName() + " in the catalog");
+    }
+
+    // the row of the constant name among the sorted names of a table, -1 if it is not there
+    private int find(int tableOffset, int constantCount, byte[] name) {
+        int low = 0;
+        int high = constantCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(tableOffset + mid * ENTRY_BYTES, name);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // The translations of one enum, looked up by ordinal and language id: the position of the entry is
+    // computed, one entry of the offset table is read and only the requested string is decoded.
+    static final class Section<E extends Enum<E>> {
+        private final TranslationCatalog catalog;
+        private final int translationsOffset;
+        private final int[] rows; // row of each constant by ordinal, -1 if the catalog does not have it
+
+        private Section(TranslationCatalog catalog, int translationsOffset, int[] rows) {
+            this.catalog = catalog;
+            this.translationsOffset = translationsOffset;
+            this.rows = rows;
+        }
+
+        // the translation, null if the resource files had none for this constant and language
+        String get(E constant, int languageId) {
+            catalog.checkLanguage(languageId);
+            int row = rows[constant.ordinal()];
+            if (row < 0) {
+                return null;
+            }
+            return catalog.string(translationsOffset + (row * catalog.languageCount + languageId) * ENTRY_BYTES);
+        }
+
+        String getOrDefault(E constant, int languageId, String defaultValue) {
+            String translation = get(constant, languageId);
+            return translation != null ? translation : defaultValue;
+        }
+    }
+
+    // decodes the string of the (offset, length) entry at the given position
+    private String string(int entryPosition) {
+        int length = buffer.getInt(entryPosition + Integer.BYTES);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(buffer.getInt(entryPosition), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // compares the string of an entry with the expected bytes without decoding it
+    private boolean matches(int entryPosition, byte[] expected, boolean ignoreAsciiCase) {
+        int offset = buffer.getInt(entryPosition);
+        if (buffer.getInt(entryPosition + Integer.BYTES) != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            byte actual = buffer.get(offset + i);
+            if (actual != expected[i] && !(ignoreAsciiCase && isAsciiLetter(actual) && (actual ^ 0x20) == expected[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the order of the string of an entry and the given bytes, unsigned byte by byte like Arrays.compareUnsigned
+    private int compare(int entryPosition, byte[] bytes) {
+        int offset = buffer.getInt(entryPosition);
+        int length = buffer.getInt(entryPosition + Integer.BYTES);
+        for (int i = 0, n = Math.min(length, bytes.length); i < n; i++) {
+            int cmp = Integer.compare(buffer.get(offset + i) & 0xFF, bytes[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, bytes.length);
+    }
+
+    private static boolean isAsciiLetter(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    // The translations of every enum in a directory: <binary enum name>.properties, read as UTF-8
+    static Map<String, Properties> readResources(Path directory) throws IOException {
+        SortedMap<String, Properties> translations = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + RESOURCE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                Properties properties = new Properties();
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    properties.load(reader);
+                }
+                translations.put(name.substring(0, name.length() - RESOURCE_SUFFIX.length()), properties);
+            }
+        }
+        return translations;
+    }
+
+    // all language codes used in the keys, sorted, so that the ids do not depend on the order of the files
+    static List<String> languages(Map<String, Properties> translations) {
+        TreeSet<String> languages = new TreeSet<>();
+        for (Properties properties : translations.values()) {
+            for (String key : properties.stringPropertyNames()) {
+                languages.add(key.substring(key.lastIndexOf('.') + 1));
+            }
+        }
+        return new ArrayList<>(languages);
+    }
+
+    // Compiles the catalog for the given languages (the list index becomes the language id) and the
+    // translations of the enums (binary enum name to <CONSTANT>.<language code> = translation).
+    // Translations into other languages are left out.
+    static ByteBuffer build(List<String> languages, Map<String, Properties> translations) {
+        Map<String, Integer> languageIds = new HashMap<>();
+        for (String language : languages) {
+            if (languageIds.putIfAbsent(language, languageIds.size()) != null) {
+                throw new IllegalArgumentException("Duplicate language " + language);
+            }
+        }
+        List<String> enums = new ArrayList<>(translations.keySet());
+
+        // first the tables with pool offsets relative to the start of the pool, then the pool size is known
+        Pool pool = new Pool();
+        int[] languageEntries = new int[2 * languages.size()];
+        for (int i = 0; i < languages.size(); i++) {
+            pool.add(languages.get(i), languageEntries, 2 * i);
+        }
+        List<int[]> tables = new ArrayList<>();
+        int[] constantCounts = new int[enums.size()];
+        int[] enumNameEntries = new int[2 * enums.size()];
+        for (int e = 0; e < enums.size(); e++) {
+            pool.add(enums.get(e), enumNameEntries, 2 * e);
+            Properties properties = translations.get(enums.get(e));
+            // constant name to the translations by language id, constants sorted by their UTF-8 bytes
+            SortedMap<byte[], String[]> rows = new TreeMap<>(Arrays::compareUnsigned);
+            for (String key : properties.stringPropertyNames()) {
+                int dot = key.lastIndexOf('.');
+                if (dot <= 0) {
+                    throw new IllegalArgumentException("Key " + key + " of " + enums.get(e) + " is not <CONSTANT>.<language code>");
+                }
+                Integer languageId = languageIds.get(key.substring(dot + 1));
+                String[] row = rows.computeIfAbsent(key.substring(0, dot).getBytes(StandardCharsets.UTF_8), name -> new String[languages.size()]);
+                if (languageId != null) {
+                    row[languageId] = properties.getProperty(key);
+                }
+            }
+            constantCounts[e] = rows.size();
+            int[] table = new int[2 * rows.size() * (1 + languages.size())];
+            Arrays.fill(table, -1);
+            int row = 0;
+            int translationsStart = 2 * rows.size();
+            for (Map.Entry<byte[], String[]> constant : rows.entrySet()) {
+                pool.add(new String(constant.getKey(), StandardCharsets.UTF_8), table, 2 * row);
+                String[] values = constant.getValue();
+                for (int languageId = 0; languageId < values.length; languageId++) {
+                    if (values[languageId] != null) {
+                        pool.add(values[languageId], table, translationsStart + 2 * (row * languages.size() + languageId));
+                    }
+                }
+                row++;
+            }
+            tables.add(table);
+        }
+
+        int size = HEADER_BYTES + languages.size() * ENTRY_BYTES + enums.size() * ENUM_BYTES;
+        int[] tableOffsets = new int[enums.size()];
+        for (int e = 0; e < enums.size(); e++) {
+            tableOffsets[e] = size;
+            size += tables.get(e).length * Integer.BYTES;
+        }
+        int poolStart = size;
+        ByteBuffer out = ByteBuffer.allocate(poolStart + pool.size()).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(languages.size()).putInt(enums.size());
+        putEntries(out, languageEntries, poolStart);
+        for (int e = 0; e < enums.size(); e++) {
+            out.putInt(poolStart + enumNameEntries[2 * e]).putInt(enumNameEntries[2 * e + 1]);
+            out.putInt(constantCounts[e]).putInt(tableOffsets[e]);
+        }
+        for (int[] table : tables) {
+            putEntries(out, table, poolStart);
+        }
+        out.put(pool.bytes, 0, pool.size());
+        return out.flip();
+    }
+
+    // writes the catalog built from the translations into a file
+    static void generate(Path target, List<String> languages, Map<String, Properties> translations) throws IOException {
+        ByteBuffer catalog = build(languages, translations);
+        Files.write(target, Arrays.copyOf(catalog.array(), catalog.limit()));
+    }
+
+    private static void putEntries(ByteBuffer out, int[] entries, int poolStart) {
+        for (int i = 0; i < entries.length; i += 2) {
+            boolean missing = entries[i + 1] < 0;
+            out.putInt(missing ? 0 : poolStart + entries[i]).putInt(entries[i + 1]);
+        }
+    }
+
+    // the string pool of build: UTF-8 bytes, every distinct string once
+    private static final class Pool {
+        private final Map<String, Integer> offsets = new HashMap<>();
+        private byte[] bytes = new byte[1024];
+        private int size = 0;
+
+        // stores the string and writes its (offset, length) into entries[index], entries[index + 1]
+        void add(String value, int[] entries, int index) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            Integer offset = offsets.get(value);
+            if (offset == null) {
+                if (size + encoded.length > bytes.length) {
+                    bytes = Arrays.copyOf(bytes, Math.max(size + encoded.length, 2 * bytes.length));
+                }
+                System.arraycopy(encoded, 0, bytes, size, encoded.length);
+                offset = size;
+                offsets.put(value, offset);
+                size += encoded.length;
+            }
+            entries[index] = offset;
+            entries[index + 1] = encoded.length;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    // Generates a catalog file from the resource files of a directory. It uses nothing but the JDK, so the
+    // build runs it with the source launcher in generate-resources, before anything is compiled:
+    //   java src/main/java/streams/TranslationCatalog.java src/main/resources/translations target/catalog.bin
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: TranslationCatalog <resource directory> <target file>");
+            System.exit(1);
+        }
+        Map<String, Properties> translations = readResources(Path.of(args[0]));
+        Path target = Path.of(args[1]).toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        List<String> languages = languages(translations);
+        generate(target, languages, translations);
+        System.out.println("Translation catalog " + target + ": " + translations.size() + " enums, languages " + languages);
+    }
+}
@@ -0,0 +1,455 @@
+package streams;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.IntStream;
+
+// Counts the words of a text without regular expressions and without a String per word.
+// message.split(" ") runs a regex match, creates a String per word, and toLowerCase creates another one.
+// Here the text is scanned byte by byte (UTF-8, e.g. a memory-mapped file) or char by char: the folded
+// bytes of the current word go into a small scratch array, and the word is looked up in an open
+// addressing hash table that stores all words in one byte array. A String is only created for words
+// that are asked for at the end, once per distinct word.
+//
+// Words are maximal runs of letters and digits (Character.isLetterOrDigit), folded with
+// Character.toLowerCase and stored as UTF-8. ASCII goes through the FOLD table; other characters are
+// decoded first in byte mode, so that e.g. an em dash or a no-break space separates words like in char
+// mode, and both modes (and Counts.get) fold through the same method and see the same words.
+//
+// In parallel the text is cut into one part per task, each cut moved to the next separator; every task
+// counts into its own table, the tables are merged at the end. No table is shared while counting,
+// so the counting scales with the number of cores.
+final class WordCounter {
+
+    // parts per core, so that cores that finish early can take over the remaining parts
+    static final int PARTS_PER_CORE = 4;
+    // smaller texts are counted sequentially
+    static final int MIN_PARALLEL_LENGTH = 1 << 16;
+
+    // FOLD[c] is the lower case of the ASCII character c if it belongs to a word, 0 for separators
+    private static final byte[] FOLD = new byte[0x80];
+
+    static {
+        for (int c = 0; c < 0x80; c++) {
+            if (c >= 'A' && c <= 'Z') {
+                FOLD[c] = (byte) (c + ('a' - 'A'));
+            } else if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                FOLD[c] = (byte) c;
+            }
+        }
+    }
+
+    private WordCounter() {
+    }
+
+    static Counts count(CharSequence text) {
+        Counts counts = new Counts();
+        counts.addWords(text, 0, text.length());
+        return counts;
+    }
+
+    // the bytes between position and limit of the buffer, as UTF-8
+    static Counts count(ByteBuffer utf8) {
+        Counts counts = new Counts();
+        counts.addWords(utf8, utf8.position(), utf8.limit());
+        return counts;
+    }
+
+    static Counts countParallel(CharSequence text) {
+        int[] cuts = cuts(text);
+        return IntStream.range(0, cuts.length - 1)
+                .parallel()
+                .collect(Counts::new, (counts, part) -> counts.addWords(text, cuts[part], cuts[part + 1]), Counts::addAll);
+    }
+
+    static Counts countParallel(ByteBuffer utf8) {
+        int start = utf8.position();
+        int[] cuts = cuts(utf8);
+        return IntStream.range(0, cuts.length - 1)
+                .parallel()
+                .collect(Counts::new, (counts, part) -> counts.addWords(utf8, start + cuts[part], start + cuts[part + 1]), Counts::addAll);
+    }
+
+    // the words of a (large) UTF-8 file, memory-mapped and counted in parallel
+    static Counts count(Path file) throws IOException {
+        Counts counts = new Counts();
+        for (ByteBuffer region : MappedLines.map(file)) {
+            counts.addAll(countParallel(region));
+        }
+        return counts;
+    }
+
+    // the parts of countParallel, relative to the start of the text
+    static int[] cuts(CharSequence text) {
+        return cuts(text.length(), cut -> {
+            while (cut < text.length() && isWordChar(text.charAt(cut))) {
+                cut++;
+            }
+            return cut;
+        });
+    }
+
+    static int[] cuts(ByteBuffer utf8) {
+        int start = utf8.position();
+        return cuts(utf8.limit() - start, cut -> nextSeparator(utf8, start + cut, utf8.limit()) - start);
+    }
+
+    // The index of the first separator at or after i, or to. Non-ASCII characters are decoded, so that a text
+    // without ASCII separators (e.g. Chinese with 、 and 。) is cut as well. Continuation bytes are skipped
+    // first: the cut is then at the start of a sequence, where decoding the part gives the same characters
+    // as decoding the whole text.
+    private static int nextSeparator(ByteBuffer buffer, int i, int to) {
+        while (i < to && (buffer.get(i) & 0xC0) == 0x80) {
+            i++;
+        }
+        while (i < to) {
+            byte b = buffer.get(i);
+            if (b >= 0) {
+                if (FOLD[b] == 0) {
+                    return i;
+                }
+                i++;
+            } else {
+                int decoded = decodeUtf8(buffer, i, to);
+                if (!Character.isLetterOrDigit(decoded >>> 3)) {
+                    return i;
+                }
+                i += decoded & 7;
+            }
+        }
+        return to;
+    }
+
+    // 0 = cut[0] < cut[1] < .. < cut[n] = length, the inner cuts moved to the next separator by toSeparator
+    private static int[] cuts(int length, IntUnaryOperator toSeparator) {
+        int parts = length < MIN_PARALLEL_LENGTH ? 1 : Runtime.getRuntime().availableProcessors() * PARTS_PER_CORE;
+        int[] cuts = new int[parts + 1];
+        int count = 1;
+        for (int i = 1; i < parts; i++) {
+            int cut = toSeparator.applyAsInt((int) ((long) length * i / parts));
+            if (cut > cuts[count - 1] && cut < length) {
+                cuts[count++] = cut;
+            }
+        }
+        cuts[count++] = length;
+        return Arrays.copyOf(cuts, count);
+    }
+
+    private static boolean isWordChar(char c) {
+        return c < 0x80 ? FOLD[c] != 0 : Character.isLetterOrDigit(c) || Character.isSurrogate(c);
+    }
+
+    private static final int REPLACEMENT = 0xFFFD;
+
+    // Decodes the UTF-8 sequence that starts with the non-ASCII byte at index i, and returns the code point
+    // and the number of bytes as codePoint << 3 | byteCount. A malformed or truncated sequence is one
+    // byte of U+FFFD (like the replacement of a decoder), which is a separator.
+    private static int decodeUtf8(ByteBuffer buffer, int i, int to) {
+        int lead = buffer.get(i) & 0xFF;
+        int byteCount;
+        int codePoint;
+        int min;
+        if (lead >= 0xC2 && lead <= 0xDF) {
+            byteCount = 2;
+            codePoint = lead & 0x1F;
+            min = 0x80;
+        } else if (lead >= 0xE0 && lead <= 0xEF) {
+            byteCount = 3;
+            codePoint = lead & 0x0F;
+            min = 0x800;
+        } else if (lead >= 0xF0 && lead <= 0xF4) {
+            byteCount = 4;
+            codePoint = lead & 0x07;
+            min = 0x10000;
+        } else {
+            return REPLACEMENT << 3 | 1;
+        }
+        if (i + byteCount > to) {
+            return REPLACEMENT << 3 | 1;
+        }
+        for (int k = 1; k < byteCount; k++) {
+            int b = buffer.get(i + k);
+            if ((b & 0xC0) != 0x80) {
+                return REPLACEMENT << 3 | 1;
+            }
+            codePoint = codePoint << 6 | (b & 0x3F);
+        }
+        // overlong encodings, surrogates and values beyond U+10FFFF are not valid UTF-8
+        if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+                || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+            return REPLACEMENT << 3 | 1;
+        }
+        return codePoint << 3 | byteCount;
+    }
+
+    // Word counts in an open addressing hash table with linear probing. Entry e is the word
+    // pool[offsets[e] .. offsets[e] + lengths[e]) with counts[e]; slots holds e + 1 (0 = empty).
+    static final class Counts {
+        private int[] slots = new int[1 << 10];
+        private int[] hashes = new int[1 << 9];
+        private int[] offsets = new int[1 << 9];
+        private int[] lengths = new int[1 << 9];
+        private long[] counts = new long[1 << 9];
+        private byte[] pool = new byte[1 << 12];
+        private int poolSize = 0;
+        private int size = 0;
+        private long total = 0;
+        private byte[] scratch = new byte[64]; // scratch for the folded bytes of the current word
+
+        // number of distinct words
+        int size() {
+            return size;
+        }
+
+        // number of words
+        long total() {
+            return total;
+        }
+
+        // the count of the word; the word is folded like the counted text (in both modes)
+        long get(String word) {
+            Counts single = count(word);
+            if (single.size != 1) {
+                return 0;
+            }
+            int entry = find(single.pool, 0, single.lengths[0], single.hashes[0]);
+            return entry < 0 ? 0 : counts[entry];
+        }
+
+        void addWords(ByteBuffer buffer, int from, int to) {
+            int length = 0;
+            int hash = FNV_OFFSET;
+            for (int i = from; i < to; ) {
+                byte b = buffer.get(i);
+                if (b >= 0) {
+                    i++;
+                    byte folded = FOLD[b];
+                    if (folded != 0) {
+                        length = append(length, folded);
+                        hash = (hash ^ (folded & 0xFF)) * FNV_PRIME;
+                        continue;
+                    }
+                } else {
+                    int decoded = decodeUtf8(buffer, i, to);
+                    i += decoded & 7;
+                    int start = length;
+                    length = appendFolded(length, decoded >>> 3);
+                    if (length > start) {
+                        hash = hash(hash, start, length);
+                        continue;
+                    }
+                }
+                if (length > 0) {
+                    add(scratch, 0, length, hash, 1);
+                    length = 0;
+                    hash = FNV_OFFSET;
+                }
+            }
+            if (length > 0) {
+                add(scratch, 0, length, hash, 1);
+            }
+        }
+
+        void addWords(CharSequence text, int from, int to) {
+            int length = 0;
+            int hash = FNV_OFFSET;
+            for (int i = from; i < to; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    byte folded = FOLD[c];
+                    if (folded != 0) {
+                        length = append(length, folded);
+                        hash = (hash ^ (folded & 0xFF)) * FNV_PRIME;
+                        continue;
+                    }
+                } else {
+                    int codePoint = c;
+                    if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(text.charAt(i + 1))) {
+                        codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    }
+                    int start = length;
+                    length = appendFolded(length, codePoint);
+                    if (length > start) {
+                        hash = hash(hash, start, length);
+                        continue;
+                    }
+                }
+                if (length > 0) {
+                    add(scratch, 0, length, hash, 1);
+                    length = 0;
+                    hash = FNV_OFFSET;
+                }
+            }
+            if (length > 0) {
+                add(scratch, 0, length, hash, 1);
+            }
+        }
+
+        private int append(int length, byte b) {
+            if (length == scratch.length) {
+                scratch = Arrays.copyOf(scratch, 2 * length);
+            }
+            scratch[length] = b;
+            return length + 1;
+        }
+
+        // Appends the lower case of a non-ASCII code point if it is a letter or digit and returns the new
+        // length; for a separator the length stays the same. Byte mode and char mode both fold here.
+        private int appendFolded(int length, int codePoint) {
+            return Character.isLetterOrDigit(codePoint) ? appendUtf8(length, Character.toLowerCase(codePoint)) : length;
+        }
+
+        // the lower case can be ASCII (e.g. U+0130 LATIN CAPITAL LETTER I WITH DOT ABOVE to i), which is one byte
+        private int appendUtf8(int length, int codePoint) {
+            if (codePoint < 0x80) {
+                return append(length, (byte) codePoint);
+            } else if (codePoint < 0x800) {
+                length = append(length, (byte) (0xC0 | codePoint >>> 6));
+            } else if (codePoint < 0x10000) {
+                length = append(length, (byte) (0xE0 | codePoint >>> 12));
+                length = append(length, (byte) (0x80 | (codePoint >>> 6 & 0x3F)));
+            } else {
+                length = append(length, (byte) (0xF0 | codePoint >>> 18));
+                length = append(length, (byte) (0x80 | (codePoint >>> 12 & 0x3F)));
+                length = append(length, (byte) (0x80 | (codePoint >>> 6 & 0x3F)));
+            }
+            return append(length, (byte) (0x80 | (codePoint & 0x3F)));
+        }
+
+        private static final int FNV_OFFSET = 0x811C9DC5;
+        private static final int FNV_PRIME = 0x01000193;
+
+        // continues the FNV hash of the word with the bytes scratch[from .. to)
+        private int hash(int hash, int from, int to) {
+            for (int b = from; b < to; b++) {
+                hash = (hash ^ (scratch[b] & 0xFF)) * FNV_PRIME;
+            }
+            return hash;
+        }
+
+        // spreads the FNV hash over all bits, the slot is taken from the low bits (Murmur3 finalizer)
+        private static int mix(int h) {
+            h ^= h >>> 16;
+            h *= 0x85EBCA6B;
+            h ^= h >>> 13;
+            h *= 0xC2B2AE35;
+            return h ^ (h >>> 16);
+        }
+
+        // the entry of the word, -1 if it is not in the table
+        private int find(byte[] bytes, int offset, int length, int hash) {
+            int mask = slots.length - 1;
+            for (int slot = mix(hash) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                int entry = slots[slot] - 1;
+                if (hashes[entry] == hash && equals(entry, bytes, offset, length)) {
+                    return entry;
+                }
+            }
+            return -1;
+        }
+
+        private boolean equals(int entry, byte[] bytes, int offset, int length) {
+            return lengths[entry] == length
+                    && Arrays.equals(pool, offsets[entry], offsets[entry] + length, bytes, offset, offset + length);
+        }
+
+        private void add(byte[] bytes, int offset, int length, int hash, long count) {
+            total += count;
+            int mask = slots.length - 1;
+            int slot = mix(hash) & mask;
+            for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+                int entry = slots[slot] - 1;
+                if (hashes[entry] == hash && equals(entry, bytes, offset, length)) {
+                    counts[entry] += count;
+                    return;
+                }
+            }
+            // new word: copied into the pool, the only copy the table ever makes of it
+            if (size == hashes.length) {
+                int capacity = 2 * size;
+                hashes = Arrays.copyOf(hashes, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            if (poolSize + length > pool.length) {
+                pool = Arrays.copyOf(pool, Math.max(poolSize + length, 2 * pool.length));
+            }
+            System.arraycopy(bytes, offset, pool, poolSize, length);
+            hashes[size] = hash;
+            offsets[size] = poolSize;
+            lengths[size] = length;
+            counts[size] = count;
+            poolSize += length;
+            slots[slot] = ++size;
+            if (2 * size > slots.length) {
+                rehash();
+            }
+        }
+
+        // at most half of the slots are used, so the probe sequences stay short
+        private void rehash() {
+            slots = new int[2 * slots.length];
+            int mask = slots.length - 1;
+            for (int entry = 0; entry < size; entry++) {
+                int slot = mix(hashes[entry]) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = entry + 1;
+            }
+        }
+
+        // adds the counts of the other table, e.g. of another thread; returns this
+        Counts addAll(Counts other) {
+            for (int entry = 0; entry < other.size; entry++) {
+                add(other.pool, other.offsets[entry], other.lengths[entry], other.hashes[entry], other.counts[entry]);
+            }
+            return this;
+        }
+
+        private String word(int entry) {
+            return new String(pool, offsets[entry], lengths[entry], StandardCharsets.UTF_8);
+        }
+
+        void forEach(ObjLongConsumer<String> action) {
+            for (int entry = 0; entry < size; entry++) {
+                action.accept(word(entry), counts[entry]);
+            }
+        }
+
+        Map<String, Long> toMap() {
+            Map<String, Long> map = new HashMap<>(2 * size);
+            forEach(map::put);
+            return map;
+        }
+
+        // the n most frequent words, the most frequent first; equal counts in the order of first occurrence
+        List<Map.Entry<String, Long>> top(int n) {
+            Integer[] entries = new Integer[size];
+            Arrays.setAll(entries, i -> i);
+            Arrays.sort(entries, Comparator.comparingLong((Integer entry) -> counts[entry]).reversed());
+            List<Map.Entry<String, Long>> top = new ArrayList<>(Math.min(n, size));
+            for (int i = 0; i < Math.min(n, size); i++) {
+                top.add(new AbstractMap.SimpleImmutableEntry<>(word(entries[i]), counts[entries[i]]));
+            }
+            return top;
+        }
+
+        @Override
+        public String toString() {
+            return toMap().toString();
+        }
+    }
+}
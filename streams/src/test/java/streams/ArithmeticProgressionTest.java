@@ -0,0 +1,205 @@
+package streams;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import org.junit.Test;
+
+/**
+ * Tests ArithmeticProgression against Stream.iterate, sequential and parallel, for negative steps, ends that are
+ * not reached and progressions over the whole int range, and that the parts of a split are the sequence.
+ */
+public class ArithmeticProgressionTest {
+
+    // start, start + step, .. as long, so the reference itself cannot overflow
+    private static long[] iterate(long start, long step, long count) {
+        return LongStream.iterate(start, n -> n + step).limit(count).toArray();
+    }
+
+    private static long[] iterateClosed(long start, long endInclusive, long step) {
+        return LongStream.iterate(start, n -> step > 0 ? n <= endInclusive : n >= endInclusive, n -> n + step).toArray();
+    }
+
+    private static long[] asLongs(IntStream values) {
+        return values.asLongStream().toArray();
+    }
+
+    private static final int[][] INTS = {
+        {0, 1, 10}, {5, -1, 11}, {-3, -7, 100}, {7, 0, 5}, {0, 3, 0}, {Integer.MAX_VALUE, -1, 1000}, {Integer.MIN_VALUE, 1, 1000},
+        {Integer.MIN_VALUE, 1 << 20, 1 << 12}, {Integer.MAX_VALUE, -(1 << 20), 1 << 12}, {Integer.MIN_VALUE, Integer.MAX_VALUE, 3},
+        {Integer.MAX_VALUE, Integer.MIN_VALUE + 1, 3}
+    };
+
+    @Test
+    public void intsLikeIterate() {
+        for (int[] p : INTS) {
+            String message = p[0] + " + i * " + p[1] + ", " + p[2] + " elements";
+            long[] expected = iterate(p[0], p[1], p[2]);
+            assertArrayEquals(message, expected, asLongs(ArithmeticProgression.ints(p[0], p[1], p[2])));
+            assertArrayEquals(message, expected, asLongs(ArithmeticProgression.ints(p[0], p[1], p[2]).parallel()));
+            assertEquals(message, p[2], ArithmeticProgression.ints(p[0], p[1], p[2]).count());
+        }
+    }
+
+    @Test
+    public void intsClosedLikeIterate() {
+        int[][] ranges = {
+            {1, 10, 1}, {1, 10, 3}, {1, 9, 4}, {10, 1, -1}, {10, 2, -3}, {10, 1, -3}, {1, 10, -1}, {10, 1, 1}, {5, 5, 7}, {5, 5, -7},
+            {-5, 5, 2}, {5, -6, -2}, {Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE}, {Integer.MAX_VALUE, Integer.MIN_VALUE, -Integer.MAX_VALUE},
+            {Integer.MAX_VALUE - 10, Integer.MAX_VALUE, 3}, {Integer.MIN_VALUE + 10, Integer.MIN_VALUE, -4}, {Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE}
+        };
+        for (int[] r : ranges) {
+            String message = "[" + r[0] + ", " + r[1] + "] with step " + r[2];
+            long[] expected = iterateClosed(r[0], r[1], r[2]);
+            assertArrayEquals(message, expected, asLongs(ArithmeticProgression.intsClosed(r[0], r[1], r[2])));
+            assertArrayEquals(message, expected, asLongs(ArithmeticProgression.intsClosed(r[0], r[1], r[2]).parallel()));
+        }
+        assertThrows(IllegalArgumentException.class, () -> ArithmeticProgression.intsClosed(1, 10, 0));
+    }
+
+    @Test
+    public void intsLeavingTheRange() {
+        assertThrows(IllegalArgumentException.class, () -> ArithmeticProgression.ints(Integer.MAX_VALUE, 1, 2));
+        assertThrows(IllegalArgumentException.class, () -> ArithmeticProgression.ints(Integer.MIN_VALUE, -1, 2));
+        assertThrows(IllegalArgumentException.class, () -> ArithmeticProgression.ints(0, 1, (1L << 32) + 1));
+        assertThrows(IllegalArgumentException.class, () -> ArithmeticProgression.ints(0, 1, -1));
+        assertThrows(IllegalArgumentException.class, () -> ArithmeticProgression.ints(Integer.MIN_VALUE, 1, (1L << 32) + 1));
+        // a step of 0 stays in the range for any count
+        assertEquals(Long.MAX_VALUE, ArithmeticProgression.ints(3, 0, Long.MAX_VALUE).spliterator().estimateSize());
+    }
+
+    // the leaves of the spliterator, split until they have at most maxSize elements, in encounter order
+    private static <T extends Spliterator<?>> List<T> leaves(T spliterator, long maxSize) {
+        List<T> leaves = new ArrayList<>();
+        addLeaves(spliterator, maxSize, leaves);
+        return leaves;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Spliterator<?>> void addLeaves(T spliterator, long maxSize, List<T> leaves) {
+        if (spliterator.estimateSize() > maxSize) {
+            T prefix = (T) spliterator.trySplit();
+            if (prefix != null) {
+                assertTrue(spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+                addLeaves(prefix, maxSize, leaves);
+                addLeaves(spliterator, maxSize, leaves);
+                return;
+            }
+        }
+        leaves.add(spliterator);
+    }
+
+    @Test
+    public void wholeIntRange() {
+        // 2^32 elements: start + i * step wraps around in int arithmetic and is still the exact value
+        long count = 1L << 32;
+        IntStream all = ArithmeticProgression.ints(Integer.MIN_VALUE, 1, count);
+        Spliterator.OfInt spliterator = all.spliterator();
+        assertEquals(count, spliterator.getExactSizeIfKnown());
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED | Spliterator.DISTINCT));
+        assertNull(spliterator.getComparator());
+
+        long expected = Integer.MIN_VALUE;
+        long total = 0;
+        for (Spliterator.OfInt leaf : leaves(spliterator, 1L << 24)) {
+            long size = leaf.estimateSize();
+            long first = expected;
+            leaf.tryAdvance((int value) -> assertEquals(first, value));
+            // the rest of a leaf is only checked at its end
+            if (size > 1) {
+                Spliterator.OfInt rest = leaf;
+                while (rest.estimateSize() > 1) {
+                    Spliterator.OfInt prefix = rest.trySplit();
+                    if (prefix == null) {
+                        break;
+                    }
+                }
+                long last = expected + size - 1;
+                rest.forEachRemaining((int value) -> assertEquals(last, value));
+            }
+            expected += size;
+            total += size;
+        }
+        assertEquals(count, total);
+        assertEquals(Integer.MAX_VALUE + 1L, expected);
+
+        assertArrayEquals(new int[] {Integer.MIN_VALUE, Integer.MIN_VALUE + 1, Integer.MIN_VALUE + 2},
+                ArithmeticProgression.ints(Integer.MIN_VALUE, 1, count).limit(3).toArray());
+        // the suffix after splitting off the prefixes, skip would step through all elements
+        Spliterator.OfInt last = ArithmeticProgression.intsClosed(Integer.MIN_VALUE, Integer.MAX_VALUE, 1).spliterator();
+        while (last.estimateSize() > 2) {
+            last.trySplit();
+        }
+        assertArrayEquals(new int[] {Integer.MAX_VALUE - 1, Integer.MAX_VALUE}, StreamSupport.intStream(last, false).toArray());
+        assertEquals(count, ArithmeticProgression.intsClosed(Integer.MIN_VALUE, Integer.MAX_VALUE, 1).spliterator().estimateSize());
+        assertEquals(count, ArithmeticProgression.intsClosed(Integer.MAX_VALUE, Integer.MIN_VALUE, -1).spliterator().estimateSize());
+    }
+
+    @Test
+    public void splitHalvesConcatenateToTheSequence() {
+        for (int[] p : INTS) {
+            for (long maxSize : new long[] {1, 2, 7, 100}) {
+                String message = p[0] + " + i * " + p[1] + ", " + p[2] + " elements, parts of " + maxSize;
+                List<Long> values = new ArrayList<>();
+                List<Spliterator.OfInt> parts = leaves(ArithmeticProgression.ints(p[0], p[1], p[2]).spliterator(), maxSize);
+                for (Spliterator.OfInt part : parts) {
+                    assertTrue(message, part.estimateSize() <= maxSize);
+                    part.forEachRemaining((int value) -> values.add((long) value));
+                    assertFalse(message, part.tryAdvance((int value) -> { }));
+                }
+                assertArrayEquals(message, iterate(p[0], p[1], p[2]), values.stream().mapToLong(Long::longValue).toArray());
+            }
+        }
+
+        long[][] longs = {{0, 3, 1000}, {Long.MAX_VALUE, -1, 100}, {Long.MIN_VALUE, Long.MAX_VALUE, 3}, {-1, -(1L << 40), 5000}};
+        for (long[] p : longs) {
+            List<Long> values = new ArrayList<>();
+            for (Spliterator.OfLong part : leaves(ArithmeticProgression.longs(p[0], p[1], p[2]).spliterator(), 3)) {
+                part.forEachRemaining((long value) -> values.add(value));
+            }
+            assertArrayEquals(iterate(p[0], p[1], p[2]), values.stream().mapToLong(Long::longValue).toArray());
+            assertArrayEquals(iterate(p[0], p[1], p[2]), ArithmeticProgression.longs(p[0], p[1], p[2]).parallel().toArray());
+        }
+
+        List<Double> doubles = new ArrayList<>();
+        for (Spliterator.OfDouble part : leaves(ArithmeticProgression.doubles(1, -0.345, 1000).spliterator(), 5)) {
+            part.forEachRemaining((double value) -> doubles.add(value));
+        }
+        double[] expected = IntStream.range(0, 1000).mapToDouble(i -> 1 + i * -0.345).toArray();
+        assertArrayEquals(expected, doubles.stream().mapToDouble(Double::doubleValue).toArray(), 0);
+        assertArrayEquals(expected, ArithmeticProgression.doubles(1, -0.345, 1000).parallel().toArray(), 0);
+    }
+
+    @Test
+    public void negativeStepIsNotSorted() {
+        Spliterator.OfInt descending = ArithmeticProgression.ints(10, -1, 10).spliterator();
+        assertFalse(descending.hasCharacteristics(Spliterator.SORTED));
+        assertTrue(descending.hasCharacteristics(Spliterator.DISTINCT));
+        assertThrows(IllegalStateException.class, descending::getComparator);
+        assertFalse(ArithmeticProgression.ints(10, 0, 10).spliterator().hasCharacteristics(Spliterator.DISTINCT));
+        // sorted() must not take the descending progression for sorted
+        assertArrayEquals(IntStream.rangeClosed(1, 10).toArray(), ArithmeticProgression.ints(10, -1, 10).sorted().toArray());
+        assertArrayEquals(new long[] {5, 3, 1, -1}, StreamSupport.longStream(ArithmeticProgression.longs(5, -2, 4).spliterator(), true).toArray());
+    }
+
+    @Test
+    public void longsAndDoublesLeavingTheRange() {
+        assertThrows(IllegalArgumentException.class, () -> ArithmeticProgression.longs(Long.MAX_VALUE, 1, 2));
+        assertThrows(IllegalArgumentException.class, () -> ArithmeticProgression.longs(0, Long.MIN_VALUE, 3));
+        assertEquals(Long.MIN_VALUE, ArithmeticProgression.longs(0, Long.MIN_VALUE, 2).skip(1).findFirst().getAsLong());
+        assertThrows(IllegalArgumentException.class, () -> ArithmeticProgression.doubles(0, Double.NaN, 2));
+        assertThrows(IllegalArgumentException.class, () -> ArithmeticProgression.doubles(Double.POSITIVE_INFINITY, 1, 2));
+        assertEquals(0, ArithmeticProgression.doubles(0, 1, 0).count());
+    }
+}
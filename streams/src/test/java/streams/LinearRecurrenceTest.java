@@ -0,0 +1,98 @@
+package streams;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for LinearRecurrence against a naive BigInteger loop, sequential and parallel, and for the
+ * overflow of terms: only a term that is traversed may throw.
+ */
+public class LinearRecurrenceTest {
+
+    // a(0) .. a(count - 1), one step after the other
+    private static BigInteger[] naive(long[] coefficients, long[] initialValues, int count) {
+        int k = coefficients.length;
+        BigInteger[] terms = new BigInteger[count];
+        for (int n = 0; n < count; n++) {
+            if (n < k) {
+                terms[n] = BigInteger.valueOf(initialValues[n]);
+            } else {
+                BigInteger term = BigInteger.ZERO;
+                for (int j = 0; j < k; j++) {
+                    term = term.add(BigInteger.valueOf(coefficients[j]).multiply(terms[n - 1 - j]));
+                }
+                terms[n] = term;
+            }
+        }
+        return terms;
+    }
+
+    private static long[] longs(BigInteger[] terms, int from, int to) {
+        long[] longs = new long[to - from];
+        for (int i = from; i < to; i++) {
+            longs[i - from] = terms[i].longValueExact();
+        }
+        return longs;
+    }
+
+    private static void assertTerms(long[] coefficients, long[] initialValues, int from, int to) {
+        LinearRecurrence recurrence = LinearRecurrence.of(coefficients, initialValues);
+        BigInteger[] expected = naive(coefficients, initialValues, to);
+        assertArrayEquals(longs(expected, from, to), recurrence.terms(from, to).toArray());
+        assertArrayEquals(longs(expected, from, to), recurrence.terms(from, to).parallel().toArray());
+    }
+
+    @Test
+    public void fibonacciTerms() {
+        BigInteger[] expected = naive(new long[] {1, 1}, new long[] {0, 1}, 3000);
+        assertArrayEquals(longs(expected, 0, 93), LinearRecurrence.fibonacci().terms(0, 93).toArray());
+        assertArrayEquals(longs(expected, 50, 93), LinearRecurrence.fibonacci().terms(50, 93).parallel().toArray());
+        assertEquals(expected[92].longValueExact(), LinearRecurrence.fibonacci().term(92));
+
+        List<BigInteger> big = List.of(expected).subList(1000, 3000);
+        assertEquals(big, LinearRecurrence.fibonacci().bigTerms(1000, 3000).toList());
+        assertEquals(big, LinearRecurrence.fibonacci().bigTerms(1000, 3000).parallel().toList());
+    }
+
+    // recurrences whose terms stay small, so that long ranges are split
+    @Test
+    public void splitRangesMatchTheNaiveLoop() {
+        assertTerms(new long[] {2, -1}, new long[] {0, 1}, 0, 100_000);         // a(n) = n
+        assertTerms(new long[] {1, -1}, new long[] {1, 2}, 12_345, 60_000);     // period 6
+        assertTerms(new long[] {0, 0, 1}, new long[] {-3, 5, 7}, 0, 50_000);   // period 3
+        assertTerms(new long[] {2, -1}, new long[] {-7, 3}, 3, 20_000);         // a(n) = 10n - 7
+    }
+
+    // the powers of the companion matrix overflow, the terms (all 0) do not
+    @Test
+    public void overflowingPowersWithSmallTerms() {
+        LinearRecurrence zeros = LinearRecurrence.of(new long[] {2}, new long[] {0});
+        assertArrayEquals(new long[5], zeros.terms(100, 105).toArray());
+        assertArrayEquals(new long[5000], zeros.terms(100, 5100).parallel().toArray());
+    }
+
+    @Test(timeout = 10_000)
+    public void limitDoesNotReachOverflowingTerms() {
+        long[] first = {0, 1, 1, 2, 3};
+        assertArrayEquals(first, LinearRecurrence.fibonacci().terms(0, 2000).parallel().limit(5).toArray());
+        assertArrayEquals(first, LinearRecurrence.fibonacci().terms(0, 40_000_000).parallel().limit(5).toArray());
+        assertArrayEquals(first, LinearRecurrence.fibonacci().terms(0, Long.MAX_VALUE).parallel().limit(5).toArray());
+        assertEquals(0, LinearRecurrence.fibonacci().terms(5000, 5000).count());
+        LinearRecurrence.fibonacci().spliterator(5000, 6000); // created, not traversed
+    }
+
+    @Test
+    public void traversingTerm93Throws() {
+        assertEquals(7540113804746346429L, LinearRecurrence.fibonacci().terms(92, 93).sum());
+        assertThrows(ArithmeticException.class, () -> LinearRecurrence.fibonacci().terms(0, 94).sum());
+        assertThrows(ArithmeticException.class, () -> LinearRecurrence.fibonacci().terms(93, 94).sum());
+        assertThrows(ArithmeticException.class, () -> LinearRecurrence.fibonacci().terms(0, 2000).parallel().sum());
+        assertThrows(ArithmeticException.class, () -> LinearRecurrence.fibonacci().term(93));
+    }
+}
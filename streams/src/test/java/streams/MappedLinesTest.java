@@ -0,0 +1,168 @@
+package streams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that MappedLines yields the same lines as Files.lines, sequential and parallel, also with small regions
+ * and chunks so that small files are split like large ones.
+ */
+public class MappedLinesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // region and chunk sizes, from no splitting at all to a split at almost every line
+    private static final int[][] SIZES = {
+        {MappedLines.REGION_BYTES, MappedLines.MIN_CHUNK_BYTES}, {64, 1}, {64, 16}, {256, 7}, {MappedLines.REGION_BYTES, 1}
+    };
+
+    private Path write(String text) throws IOException {
+        return write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path write(byte[] bytes) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, bytes);
+        return file;
+    }
+
+    private static List<String> expected(Path file) throws IOException {
+        try (Stream<String> lines = Files.lines(file)) {
+            return lines.toList();
+        }
+    }
+
+    private static List<String> lines(Path file, int regionBytes, int minChunkBytes, boolean parallel) throws IOException {
+        try (Stream<MappedLines.Line> lines = MappedLines.lines(file, regionBytes, minChunkBytes)) {
+            return (parallel ? lines.parallel() : lines).map(MappedLines.Line::toString).toList();
+        }
+    }
+
+    private static void assertLines(Path file) throws IOException {
+        List<String> expected = expected(file);
+        for (int[] size : SIZES) {
+            String sizes = "region " + size[0] + ", chunk " + size[1];
+            assertEquals(sizes, expected, lines(file, size[0], size[1], false));
+            assertEquals(sizes + ", parallel", expected, lines(file, size[0], size[1], true));
+        }
+    }
+
+    @Test
+    public void lineTerminators() throws IOException {
+        assertLines(write("a\nb\r\nc\n"));
+        assertLines(write("a\r\n\r\nb\r\n"));
+        // a \r at the end of the file ends the last line, like a \r\n
+        assertLines(write("a\nb\r"));
+        // an empty last line
+        assertLines(write("a\n\n"));
+        assertLines(write("\n"));
+        assertLines(write("\n\n\n"));
+    }
+
+    @Test
+    public void noFinalNewline() throws IOException {
+        assertLines(write("a\nlast line"));
+        assertLines(write("only line"));
+    }
+
+    @Test
+    public void emptyFile() throws IOException {
+        Path file = write("");
+        assertEquals(List.of(), expected(file));
+        assertLines(file);
+    }
+
+    @Test
+    public void splitAtTheLastNewlineIsNoSplit() throws IOException {
+        // the middle of the chunk is in the last line, the next newline is the last byte of the chunk
+        Path file = write("x\n" + "y".repeat(30) + "\n");
+        Spliterator<MappedLines.Line> lines = MappedLines.lines(file, 64, 1).spliterator();
+        assertNull(lines.trySplit());
+        List<String> all = new ArrayList<>();
+        lines.forEachRemaining(line -> all.add(line.toString()));
+        assertEquals(List.of("x", "y".repeat(30)), all);
+
+        // one byte more and the split is at the start of the last line
+        file = write("x\n" + "y".repeat(29) + "\nz");
+        Spliterator<MappedLines.Line> suffix = MappedLines.lines(file, 64, 1).spliterator();
+        Spliterator<MappedLines.Line> prefix = suffix.trySplit();
+        assertNotNull(prefix);
+        List<String> first = new ArrayList<>();
+        prefix.forEachRemaining(line -> first.add(line.toString()));
+        List<String> second = new ArrayList<>();
+        suffix.forEachRemaining(line -> second.add(line.toString()));
+        assertEquals(List.of("x", "y".repeat(29)), first);
+        assertEquals(List.of("z"), second);
+    }
+
+    @Test
+    public void randomFilesInManyRegions() throws IOException {
+        String[] pieces = {"a", "b", "ERROR", " ", "é", "東京", "😀", "\n", "\n", "\r\n"};
+        SplittableRandom random = new SplittableRandom(42);
+        for (int n = 0; n < 200; n++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(400);
+            int lineLength = 0;
+            for (int i = 0; i < length; i++) {
+                String piece = pieces[random.nextInt(pieces.length)];
+                // lines (with terminator) must fit into the smallest region of 64 bytes
+                if (lineLength > 40) {
+                    piece = "\n";
+                }
+                text.append(piece);
+                lineLength = piece.endsWith("\n") ? 0 : lineLength + piece.length() * 4;
+            }
+            assertLines(write(text.toString()));
+        }
+    }
+
+    @Test
+    public void lineLongerThanRegion() throws IOException {
+        Path file = write("a\n" + "b".repeat(100) + "\nc\n");
+        assertThrows(IOException.class, () -> MappedLines.lines(file, 64, 1));
+        assertEquals(expected(file), lines(file, 128, 1, true));
+    }
+
+    @Test
+    public void invalidSizes() throws IOException {
+        Path file = write("a\n");
+        assertThrows(IllegalArgumentException.class, () -> MappedLines.lines(file, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> MappedLines.lines(file, 64, 0));
+    }
+
+    @Test
+    public void startsWithAndContainsNonAscii() throws IOException {
+        Path file = write("Grüße aus Köln\n東京 — Tokyo\nERROR: ünknown\nStraße\n\n");
+        String[] probes = {"", "G", "Grü", "Gru", "Grüße aus Köln!", "Köln", "ö", "東京", "京", "京東", "—", " — T", "ERROR", "ERROR: ü",
+            "ünknown", "unknown", "ß", "Straße", "Strasse"};
+        List<String> expected = expected(file);
+        try (Stream<MappedLines.Line> lines = MappedLines.lines(file, 64, 1)) {
+            List<MappedLines.Line> actual = lines.toList();
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < actual.size(); i++) {
+                String line = expected.get(i);
+                for (String probe : probes) {
+                    assertEquals(line + " startsWith " + probe, line.startsWith(probe), actual.get(i).startsWith(probe));
+                    assertEquals(line + " contains " + probe, line.contains(probe), actual.get(i).contains(probe));
+                }
+            }
+        }
+    }
+}
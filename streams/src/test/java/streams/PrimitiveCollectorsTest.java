@@ -0,0 +1,255 @@
+package streams;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Comparator;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import org.junit.Test;
+
+/**
+ * Tests TopK, LongStats, DoubleStats and the sortable longs of doubles against the results of the boxed
+ * Collectors, sequential and parallel, also for NaN, -0.0 and infinite values.
+ */
+public class PrimitiveCollectorsTest {
+
+    private static final double[] SPECIAL = {
+        Double.NaN, -0.0, 0.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE, -Double.MIN_VALUE,
+        Double.MAX_VALUE, -Double.MAX_VALUE, Double.MIN_NORMAL, 1.0, -1.0
+    };
+
+    private static final int[] LENGTHS = {0, 1, 2, 3, 10, 100, 1000, 20_000};
+
+    private static long[] longs(SplittableRandom random, int length) {
+        return random.longs(length, -1000, 1000).map(value -> random.nextInt(10) == 0 ? random.nextLong() : value).toArray();
+    }
+
+    // mostly ordinary values, some special ones
+    private static double[] doubles(SplittableRandom random, int length, boolean special) {
+        double[] a = new double[length];
+        for (int i = 0; i < length; i++) {
+            a[i] = special && random.nextInt(20) == 0 ? SPECIAL[random.nextInt(SPECIAL.length)] : random.nextDouble(-100, 100);
+        }
+        return a;
+    }
+
+    // the values in the order of Double.compare, boxed
+    private static List<Double> sorted(double[] values) {
+        return DoubleStream.of(values).boxed().sorted().toList();
+    }
+
+    private static void assertSameDouble(String message, double expected, double actual) {
+        assertEquals(message, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+    }
+
+    @Test
+    public void sortableHasTheOrderOfDoubleCompare() {
+        SplittableRandom random = new SplittableRandom(1);
+        double[] values = DoubleStream.concat(DoubleStream.of(SPECIAL), DoubleStream.of(doubles(random, 1000, false))).toArray();
+        for (double a : values) {
+            assertSameDouble("round trip of " + a, a, PrimitiveCollectors.unsortable(PrimitiveCollectors.sortable(a)));
+            for (double b : values) {
+                assertEquals(a + " <=> " + b, Integer.signum(Double.compare(a, b)),
+                        Integer.signum(Long.compare(PrimitiveCollectors.sortable(a), PrimitiveCollectors.sortable(b))));
+            }
+        }
+    }
+
+    @Test
+    public void topKLikeBoxedSorting() {
+        SplittableRandom random = new SplittableRandom(2);
+        for (int length : LENGTHS) {
+            long[] longs = longs(random, length);
+            int[] ints = random.ints(length, -50, 50).toArray();
+            double[] doubles = doubles(random, length, true);
+            for (int k : new int[] {0, 1, 5, length, length + 3}) {
+                String message = "length " + length + ", k " + k;
+                long[] expectedLongs = LongStream.of(longs).boxed().sorted(Comparator.reverseOrder()).limit(k).mapToLong(Long::longValue).toArray();
+                assertArrayEquals(message, expectedLongs, PrimitiveCollectors.topK(LongStream.of(longs), k));
+                assertArrayEquals(message, expectedLongs, PrimitiveCollectors.topK(LongStream.of(longs).parallel(), k));
+
+                int[] expectedInts = IntStream.of(ints).boxed().sorted(Comparator.reverseOrder()).limit(k).mapToInt(Integer::intValue).toArray();
+                assertArrayEquals(message, expectedInts, PrimitiveCollectors.topK(IntStream.of(ints), k));
+                assertArrayEquals(message, expectedInts, PrimitiveCollectors.topK(IntStream.of(ints).parallel(), k));
+                assertArrayEquals(message, expectedInts, PrimitiveSort.largest(IntStream.of(ints).parallel(), k).toArray());
+
+                // NaN first, -0.0 after 0.0, compared by bits
+                double[] expectedDoubles = DoubleStream.of(doubles).boxed().sorted(Comparator.reverseOrder()).limit(k).mapToDouble(Double::doubleValue).toArray();
+                assertArrayEquals(message, expectedDoubles, PrimitiveCollectors.topK(DoubleStream.of(doubles), k), 0);
+                assertArrayEquals(message, expectedDoubles, PrimitiveCollectors.topK(DoubleStream.of(doubles).parallel(), k), 0);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> new PrimitiveCollectors.TopK(-1));
+    }
+
+    @Test
+    public void topKOfSpecialDoubles() {
+        assertArrayEquals(new double[] {Double.NaN, Double.POSITIVE_INFINITY, 0.0, -0.0},
+                PrimitiveCollectors.topK(DoubleStream.of(-0.0, Double.NEGATIVE_INFINITY, 0.0, Double.NaN, Double.POSITIVE_INFINITY, -1), 4), 0);
+        double[] zeros = PrimitiveCollectors.topK(DoubleStream.of(-0.0, 0.0, -0.0), 2);
+        assertSameDouble("largest", 0.0, zeros[0]);
+        assertSameDouble("second", -0.0, zeros[1]);
+    }
+
+    // the percentiles at which the rank is a whole number are values of the sorted list, the others lie between
+    // the two neighbors
+    private static void assertPercentiles(String message, List<? extends Number> sorted, PercentileFunction percentile) {
+        int n = sorted.size();
+        for (int rank = 0; rank < n; rank++) {
+            double p = n == 1 ? 50 : 100.0 * rank / (n - 1);
+            if (p / 100 * (n - 1) == rank) {
+                assertSameDouble(message + ", p" + p, sorted.get(rank).doubleValue(), percentile.at(p));
+            }
+        }
+        for (double p : new double[] {0.1, 10, 33.3, 50, 90, 99, 99.9}) {
+            double rank = p / 100 * (n - 1);
+            double lower = sorted.get((int) rank).doubleValue();
+            double upper = sorted.get(Math.min(n - 1, (int) rank + 1)).doubleValue();
+            double actual = percentile.at(p);
+            if (Double.isNaN(upper)) {
+                continue;
+            }
+            assertTrue(message + ", p" + p + ": " + lower + " <= " + actual + " <= " + upper, lower <= actual && actual <= upper);
+        }
+    }
+
+    @FunctionalInterface
+    private interface PercentileFunction {
+        double at(double p);
+    }
+
+    @Test
+    public void longStatsLikeSummaryStatistics() {
+        SplittableRandom random = new SplittableRandom(3);
+        for (int length : LENGTHS) {
+            long[] values = longs(random, length);
+            LongSummaryStatistics expected = LongStream.of(values).boxed().collect(Collectors.summarizingLong(Long::longValue));
+            List<Long> sorted = LongStream.of(values).boxed().sorted().toList();
+            for (boolean parallel : new boolean[] {false, true}) {
+                String message = "length " + length + (parallel ? ", parallel" : "");
+                LongStream stream = LongStream.of(values);
+                PrimitiveCollectors.LongStats stats = PrimitiveCollectors.stats(parallel ? stream.parallel() : stream);
+                assertEquals(message, expected.getCount(), stats.count());
+                assertEquals(message, expected.getSum(), stats.sum());
+                assertEquals(message, expected.getAverage(), stats.average(), 0);
+                if (length == 0) {
+                    assertThrows(IllegalStateException.class, stats::min);
+                    assertThrows(IllegalStateException.class, () -> stats.percentile(50));
+                    continue;
+                }
+                assertEquals(message, expected.getMin(), stats.min());
+                assertEquals(message, expected.getMax(), stats.max());
+                assertPercentiles(message, sorted, stats::percentile);
+            }
+        }
+    }
+
+    @Test
+    public void longStatsMergeInAnyOrder() {
+        SplittableRandom random = new SplittableRandom(4);
+        long[] values = longs(random, 5000);
+        PrimitiveCollectors.LongStats all = new PrimitiveCollectors.LongStats();
+        PrimitiveCollectors.LongStats part = new PrimitiveCollectors.LongStats();
+        for (int i = 0; i < values.length; i++) {
+            part.add(values[i]);
+            if (random.nextInt(100) == 0) {
+                // also merged parts that get more values
+                if (random.nextBoolean()) {
+                    all.addAll(part);
+                } else {
+                    part.addAll(all);
+                    all = part;
+                }
+                part = new PrimitiveCollectors.LongStats();
+            }
+        }
+        all.addAll(part);
+        all.add(Long.MIN_VALUE);
+        List<Long> sorted = LongStream.concat(LongStream.of(values), LongStream.of(Long.MIN_VALUE)).boxed().sorted().toList();
+        assertEquals(sorted.size(), all.count());
+        assertEquals(Long.MIN_VALUE, all.min());
+        assertEquals((long) sorted.get(sorted.size() - 1), all.max());
+        assertPercentiles("merged", sorted, all::percentile);
+        assertEquals(2.5, stats(1, 2, 3, 4).median(), 0);
+        assertEquals(3.25, stats(1, 2, 3, 4).percentile(75), 0);
+        assertThrows(IllegalArgumentException.class, () -> stats(1).percentile(100.5));
+        assertThrows(IllegalArgumentException.class, () -> stats(1).percentile(Double.NaN));
+    }
+
+    private static PrimitiveCollectors.LongStats stats(long... values) {
+        return PrimitiveCollectors.stats(LongStream.of(values));
+    }
+
+    @Test
+    public void doubleStatsLikeSummaryStatistics() {
+        SplittableRandom random = new SplittableRandom(5);
+        for (int length : LENGTHS) {
+            for (boolean special : new boolean[] {false, true}) {
+                double[] values = doubles(random, length, special);
+                List<Double> sorted = sorted(values);
+                for (boolean parallel : new boolean[] {false, true}) {
+                    String message = "length " + length + (special ? ", special" : "") + (parallel ? ", parallel" : "");
+                    DoubleStream stream = DoubleStream.of(values);
+                    PrimitiveCollectors.DoubleStats stats = PrimitiveCollectors.stats(parallel ? stream.parallel() : stream);
+                    // the same parts, so that the sums of huge values cancel the same way
+                    stream = DoubleStream.of(values);
+                    DoubleSummaryStatistics expected = (parallel ? stream.parallel() : stream).boxed()
+                            .collect(Collectors.summarizingDouble(Double::doubleValue));
+                    assertEquals(message, expected.getCount(), stats.count());
+                    assertEquals(message, expected.getSum(), stats.sum(), 1e-9);
+                    assertEquals(message, expected.getAverage(), stats.average(), 1e-9);
+                    if (length == 0) {
+                        assertThrows(IllegalStateException.class, stats::max);
+                        continue;
+                    }
+                    // unlike DoubleSummaryStatistics, the order is the one of Double.compare: NaN is the largest value
+                    assertSameDouble(message, sorted.get(0), stats.min());
+                    assertSameDouble(message, sorted.get(length - 1), stats.max());
+                    assertPercentiles(message, sorted, stats::percentile);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void doubleStatsOfSpecialValues() {
+        PrimitiveCollectors.DoubleStats zeros = PrimitiveCollectors.stats(DoubleStream.of(0.0, -0.0, 0.0).parallel());
+        assertSameDouble("min", -0.0, zeros.min());
+        assertSameDouble("max", 0.0, zeros.max());
+
+        PrimitiveCollectors.DoubleStats infinite = PrimitiveCollectors.stats(
+                DoubleStream.of(1, Double.POSITIVE_INFINITY, 2, Double.POSITIVE_INFINITY, 3).parallel());
+        assertEquals(Double.POSITIVE_INFINITY, infinite.sum(), 0);
+        assertEquals(Double.POSITIVE_INFINITY, infinite.average(), 0);
+        assertEquals(Double.POSITIVE_INFINITY, infinite.percentile(100), 0);
+        assertEquals(Double.POSITIVE_INFINITY, infinite.percentile(90), 0);
+        assertEquals(3, infinite.percentile(50), 0);
+        assertEquals(Double.POSITIVE_INFINITY, infinite.percentile(75), 0);
+
+        PrimitiveCollectors.DoubleStats bothInfinities = PrimitiveCollectors.stats(
+                DoubleStream.of(Double.NEGATIVE_INFINITY, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY));
+        assertTrue(Double.isNaN(bothInfinities.sum()));
+        assertEquals(Double.NEGATIVE_INFINITY, bothInfinities.percentile(0), 0);
+        assertEquals(Double.NEGATIVE_INFINITY, bothInfinities.percentile(25), 0);
+        assertEquals(Double.NEGATIVE_INFINITY, bothInfinities.percentile(50), 0);
+        assertEquals(0, bothInfinities.percentile(200.0 / 3), 0);
+        assertEquals(Double.POSITIVE_INFINITY, bothInfinities.percentile(90), 0);
+
+        PrimitiveCollectors.DoubleStats nan = PrimitiveCollectors.stats(DoubleStream.of(Double.NaN, 1, 2));
+        assertTrue(Double.isNaN(nan.sum()));
+        assertEquals(1, nan.min(), 0);
+        assertTrue(Double.isNaN(nan.max()));
+        assertEquals(2, nan.median(), 0);
+        assertTrue(Double.isNaN(nan.percentile(100)));
+    }
+}
@@ -0,0 +1,254 @@
+package streams;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import org.junit.Test;
+
+/**
+ * Tests PrimitiveSort against Arrays.sort on random arrays, with lengths around the radix and block thresholds,
+ * with the smallest and largest values and with many equal values.
+ */
+public class PrimitiveSortTest {
+
+    private static final int[] LENGTHS = {
+        0, 1, 2, 3, PrimitiveSort.INSERTION_SORT_LENGTH - 1, PrimitiveSort.INSERTION_SORT_LENGTH, PrimitiveSort.INSERTION_SORT_LENGTH + 1,
+        100, PrimitiveSort.MIN_RADIX_LENGTH - 1, PrimitiveSort.MIN_RADIX_LENGTH, PrimitiveSort.MIN_RADIX_LENGTH + 1, 5000,
+        2 * PrimitiveSort.MIN_BLOCK_LENGTH - 1, 2 * PrimitiveSort.MIN_BLOCK_LENGTH, 2 * PrimitiveSort.MIN_BLOCK_LENGTH + 1,
+        5 * PrimitiveSort.MIN_BLOCK_LENGTH + 3
+    };
+
+    private static final int KINDS = 6;
+
+    // kind 0: any value, 1: few distinct values, 2: all equal, 3: sorted, 4: reversed, 5: many minimum and maximum values
+    private static int[] ints(SplittableRandom random, int length, int kind) {
+        int[] a = new int[length];
+        int equal = random.nextInt();
+        for (int i = 0; i < length; i++) {
+            a[i] = switch (kind) {
+                case 1 -> random.nextInt(-3, 4);
+                case 2 -> equal;
+                case 5 -> random.nextInt(3) == 0 ? Integer.MIN_VALUE : random.nextInt(3) == 0 ? Integer.MAX_VALUE : random.nextInt();
+                default -> random.nextInt();
+            };
+        }
+        if (length > 0 && kind != 2) {
+            a[random.nextInt(length)] = Integer.MIN_VALUE;
+            a[random.nextInt(length)] = Integer.MAX_VALUE;
+        }
+        if (kind == 3 || kind == 4) {
+            Arrays.sort(a);
+            if (kind == 4) {
+                PrimitiveSort.reverse(a);
+            }
+        }
+        return a;
+    }
+
+    private static long[] longs(SplittableRandom random, int length, int kind) {
+        long[] a = new long[length];
+        long equal = random.nextLong();
+        for (int i = 0; i < length; i++) {
+            a[i] = switch (kind) {
+                case 1 -> random.nextLong(-3, 4);
+                case 2 -> equal;
+                case 5 -> random.nextInt(3) == 0 ? Long.MIN_VALUE : random.nextInt(3) == 0 ? Long.MAX_VALUE : random.nextLong();
+                // values that differ only in the high bytes, so the passes of the sign byte decide
+                default -> random.nextBoolean() ? random.nextLong() : (long) random.nextInt() << 32;
+            };
+        }
+        if (length > 0 && kind != 2) {
+            a[random.nextInt(length)] = Long.MIN_VALUE;
+            a[random.nextInt(length)] = Long.MAX_VALUE;
+        }
+        if (kind == 3 || kind == 4) {
+            Arrays.sort(a);
+            if (kind == 4) {
+                PrimitiveSort.reverse(a);
+            }
+        }
+        return a;
+    }
+
+    private static int[] descending(int[] sorted) {
+        int[] a = sorted.clone();
+        PrimitiveSort.reverse(a);
+        return a;
+    }
+
+    private static long[] descending(long[] sorted) {
+        long[] a = sorted.clone();
+        PrimitiveSort.reverse(a);
+        return a;
+    }
+
+    @Test
+    public void sortsLikeArraysSortInt() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int length : LENGTHS) {
+            for (int kind = 0; kind < KINDS; kind++) {
+                int[] a = ints(random, length, kind);
+                int[] expected = a.clone();
+                Arrays.sort(expected);
+                String message = "length " + length + ", kind " + kind;
+
+                int[] actual = a.clone();
+                PrimitiveSort.radixSort(actual);
+                assertArrayEquals(message, expected, actual);
+                actual = a.clone();
+                PrimitiveSort.parallelRadixSort(actual);
+                assertArrayEquals(message, expected, actual);
+                actual = a.clone();
+                PrimitiveSort.sortDescending(actual);
+                assertArrayEquals(message, descending(expected), actual);
+                actual = a.clone();
+                PrimitiveSort.parallelSortDescending(actual);
+                assertArrayEquals(message, descending(expected), actual);
+                assertArrayEquals(message, descending(expected), PrimitiveSort.descending(IntStream.of(a).parallel()).toArray());
+            }
+        }
+    }
+
+    @Test
+    public void sortsLikeArraysSortLong() {
+        SplittableRandom random = new SplittableRandom(2);
+        for (int length : LENGTHS) {
+            for (int kind = 0; kind < KINDS; kind++) {
+                long[] a = longs(random, length, kind);
+                long[] expected = a.clone();
+                Arrays.sort(expected);
+                String message = "length " + length + ", kind " + kind;
+
+                long[] actual = a.clone();
+                PrimitiveSort.radixSort(actual);
+                assertArrayEquals(message, expected, actual);
+                actual = a.clone();
+                PrimitiveSort.parallelRadixSort(actual);
+                assertArrayEquals(message, expected, actual);
+                actual = a.clone();
+                PrimitiveSort.sortDescending(actual);
+                assertArrayEquals(message, descending(expected), actual);
+                actual = a.clone();
+                PrimitiveSort.parallelSortDescending(actual);
+                assertArrayEquals(message, descending(expected), actual);
+                assertArrayEquals(message, descending(expected), PrimitiveSort.descending(LongStream.of(a).parallel()).toArray());
+            }
+        }
+    }
+
+    @Test
+    public void selectPartitionsAroundTheSortedValue() {
+        SplittableRandom random = new SplittableRandom(3);
+        for (int length : LENGTHS) {
+            if (length == 0) {
+                continue;
+            }
+            for (int kind = 0; kind < KINDS; kind++) {
+                int[] ints = ints(random, length, kind);
+                long[] longs = longs(random, length, kind);
+                int[] sortedInts = ints.clone();
+                Arrays.sort(sortedInts);
+                long[] sortedLongs = longs.clone();
+                Arrays.sort(sortedLongs);
+                for (int k : new int[] {0, length - 1, length / 2, random.nextInt(length)}) {
+                    String message = "length " + length + ", kind " + kind + ", k " + k;
+                    int[] a = ints.clone();
+                    PrimitiveSort.select(a, k);
+                    assertEquals(message, sortedInts[k], a[k]);
+                    for (int i = 0; i < length; i++) {
+                        assertTrue(message, i < k ? a[i] <= a[k] : a[i] >= a[k]);
+                    }
+                    int[] values = a.clone();
+                    Arrays.sort(values);
+                    assertArrayEquals(message, sortedInts, values);
+
+                    long[] b = longs.clone();
+                    PrimitiveSort.select(b, k);
+                    assertEquals(message, sortedLongs[k], b[k]);
+                    for (int i = 0; i < length; i++) {
+                        assertTrue(message, i < k ? b[i] <= b[k] : b[i] >= b[k]);
+                    }
+                    long[] longValues = b.clone();
+                    Arrays.sort(longValues);
+                    assertArrayEquals(message, sortedLongs, longValues);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void selectChecksK() {
+        assertThrows(IllegalArgumentException.class, () -> PrimitiveSort.select(new int[0], 0));
+        assertThrows(IllegalArgumentException.class, () -> PrimitiveSort.select(new int[3], 3));
+        assertThrows(IllegalArgumentException.class, () -> PrimitiveSort.select(new long[3], -1));
+    }
+
+    @Test
+    public void largestAndSmallest() {
+        SplittableRandom random = new SplittableRandom(4);
+        for (int length : LENGTHS) {
+            for (int kind = 0; kind < KINDS; kind++) {
+                int[] ints = ints(random, length, kind);
+                long[] longs = longs(random, length, kind);
+                int[] sortedInts = ints.clone();
+                Arrays.sort(sortedInts);
+                long[] sortedLongs = longs.clone();
+                Arrays.sort(sortedLongs);
+                int[] copy = ints.clone();
+                for (int n : new int[] {0, 1, length / 2, length - 1, length}) {
+                    if (n < 0 || n > length) {
+                        continue;
+                    }
+                    String message = "length " + length + ", kind " + kind + ", n " + n;
+                    assertArrayEquals(message, Arrays.copyOf(sortedInts, n), PrimitiveSort.smallest(ints, n));
+                    assertArrayEquals(message, descending(Arrays.copyOfRange(sortedInts, length - n, length)), PrimitiveSort.largest(ints, n));
+                    assertArrayEquals(message, Arrays.copyOf(sortedLongs, n), PrimitiveSort.smallest(longs, n));
+                    assertArrayEquals(message, descending(Arrays.copyOfRange(sortedLongs, length - n, length)), PrimitiveSort.largest(longs, n));
+                }
+                assertArrayEquals("not modified", copy, ints);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> PrimitiveSort.largest(new int[2], 3));
+        assertThrows(IllegalArgumentException.class, () -> PrimitiveSort.smallest(new long[2], -1));
+    }
+
+    @Test
+    public void sortByKeyIsStable() {
+        SplittableRandom random = new SplittableRandom(5);
+        for (int length : LENGTHS) {
+            // few keys, also negative ones, so that many elements have the same key
+            int[] ints = random.ints(length).toArray();
+            int[] actual = ints.clone();
+            PrimitiveSort.sortByKey(actual, value -> value % 5);
+            int[] expected = Arrays.stream(ints).boxed()
+                    .sorted(Comparator.comparingInt(value -> value % 5))
+                    .mapToInt(Integer::intValue).toArray();
+            assertArrayEquals("length " + length, expected, actual);
+            assertArrayEquals("length " + length, expected, PrimitiveSort.sortedByKey(IntStream.of(ints).parallel(), value -> value % 5).toArray());
+
+            long[] longs = random.longs(length).toArray();
+            long[] actualLongs = longs.clone();
+            PrimitiveSort.sortByKey(actualLongs, value -> (int) (value >> 61));
+            long[] expectedLongs = Arrays.stream(longs).boxed()
+                    .sorted(Comparator.comparingInt(value -> (int) (value >> 61)))
+                    .mapToLong(Long::longValue).toArray();
+            assertArrayEquals("length " + length, expectedLongs, actualLongs);
+        }
+    }
+
+    @Test
+    public void sortByExtremeKeys() {
+        int[] a = {5, 4, 3, 2, 1, 0};
+        int[] keys = {Integer.MAX_VALUE, Integer.MIN_VALUE, 0, Integer.MIN_VALUE, -1, Integer.MAX_VALUE};
+        PrimitiveSort.sortByKey(a, value -> keys[5 - value]);
+        assertArrayEquals(new int[] {4, 2, 1, 3, 5, 0}, a);
+    }
+}
@@ -0,0 +1,107 @@
+package streams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Test;
+
+/**
+ * Round trips through TranslationCatalog: generate or build, then open, wrap or load, and look up.
+ */
+public class TranslationCatalogTest {
+
+    enum Color {
+        RED, GREEN, BLUE, YELLOW
+    }
+
+    private static Map<String, Properties> translations() {
+        Properties colors = new Properties();
+        colors.setProperty("RED.de", "rot");
+        colors.setProperty("RED.fr", "rouge");
+        colors.setProperty("GREEN.de", "grün");
+        colors.setProperty("BLUE.fr", "bleu");
+        colors.setProperty("BLUE.it", "blu"); // language not in the catalog
+        colors.setProperty("PURPLE.de", "lila"); // constant the enum does not have
+        return Map.of(Color.class.getName(), colors);
+    }
+
+    private static void assertColors(TranslationCatalog catalog) {
+        assertEquals(3, catalog.languageCount());
+        assertEquals("fr", catalog.languageCode(0));
+        assertEquals("de", catalog.languageCode(1));
+        assertEquals("en", catalog.languageCode(2));
+        assertEquals(0, catalog.languageId("fr"));
+        assertEquals(1, catalog.languageId("DE"));
+        assertEquals(-1, catalog.languageId("it"));
+
+        TranslationCatalog.Section<Color> colors = catalog.section(Color.class);
+        assertEquals("rouge", colors.get(Color.RED, 0));
+        assertEquals("rot", colors.get(Color.RED, 1));
+        assertNull(colors.get(Color.RED, 2));
+        assertEquals("grün", colors.get(Color.GREEN, 1));
+        assertNull(colors.get(Color.GREEN, 0));
+        assertEquals("bleu", colors.get(Color.BLUE, 0));
+        assertNull(colors.get(Color.YELLOW, 1)); // no keys at all
+        assertEquals("-", colors.getOrDefault(Color.YELLOW, 1, "-"));
+        assertThrows(IllegalArgumentException.class, () -> colors.get(Color.RED, 3));
+    }
+
+    @Test
+    public void generateAndOpen() throws IOException {
+        Path file = Files.createTempFile("catalog", ".bin");
+        try {
+            TranslationCatalog.generate(file, List.of("fr", "de", "en"), translations());
+            assertColors(TranslationCatalog.open(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void buildAndWrap() {
+        assertColors(TranslationCatalog.wrap(TranslationCatalog.build(List.of("fr", "de", "en"), translations())));
+    }
+
+    @Test
+    public void languagesAreTheSortedCodesOfTheKeys() {
+        assertEquals(List.of("de", "fr", "it"), TranslationCatalog.languages(translations()));
+    }
+
+    @Test
+    public void unknownEnumAndInvalidKey() {
+        TranslationCatalog catalog = TranslationCatalog.wrap(TranslationCatalog.build(List.of("de"), translations()));
+        assertThrows(IllegalArgumentException.class, () -> catalog.section(Thread.State.class));
+
+        Properties invalid = new Properties();
+        invalid.setProperty("RED", "rot");
+        assertThrows(IllegalArgumentException.class,
+                () -> TranslationCatalog.build(List.of("de"), Map.of(Color.class.getName(), invalid)));
+    }
+
+    // the catalog generated by the build from src/main/resources/translations
+    @Test
+    public void loadGeneratedCatalog() throws IOException {
+        TranslationCatalog catalog = TranslationCatalog.load();
+        TranslationCatalog.Section<StreamApp.Direction> directions = catalog.section(StreamApp.Direction.class);
+        assertEquals("gauche", directions.get(StreamApp.Direction.LEFT, catalog.languageId("fr")));
+        assertEquals("geri dön", directions.get(StreamApp.Direction.TURN_AROUND, catalog.languageId("tr")));
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < catalog.languageCount(); i++) {
+            codes.add(catalog.languageCode(i));
+        }
+        assertEquals(TranslationCatalog.languages(TranslationCatalog.readResources(Path.of("src/main/resources/translations"))), codes);
+
+        assertEquals("sinistra", StreamApp.Direction.LEFT.getTranslation("it"));
+        assertEquals("droite", StreamApp.Direction.RIGHT.getTranslation(StreamApp.Language.forCode("FR")));
+        assertEquals(StreamApp.Direction.NOT_AVAILABLE, StreamApp.Direction.LEFT.getTranslation("xx"));
+    }
+}
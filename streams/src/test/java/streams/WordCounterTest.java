@@ -0,0 +1,131 @@
+package streams;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * Tests that WordCounter finds the same words in char mode and in byte mode (UTF-8), also for non-ASCII text.
+ */
+public class WordCounterTest {
+
+    private static WordCounter.Counts countBytes(String text) {
+        return WordCounter.count(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void assertWords(Map<String, Long> expected, String text) {
+        assertEquals("char mode", expected, WordCounter.count(text).toMap());
+        assertEquals("byte mode", expected, countBytes(text).toMap());
+    }
+
+    @Test
+    public void lowerCaseCanBeAscii() {
+        // U+0130 and U+212A (KELVIN SIGN) have the ASCII lower case i and k
+        assertWords(Map.of("istanbul", 2L), "İstanbul istanbul");
+        assertWords(Map.of("kelvin", 2L), "Kelvin kelvin");
+    }
+
+    @Test
+    public void nonAsciiPunctuationSeparatesWords() {
+        // em dash, curly quotes, no-break space, ideographic space
+        assertWords(Map.of("a", 1L, "b", 1L, "quoted", 1L, "x", 1L, "y", 1L, "z", 1L),
+                "a—b “quoted” x y　z");
+    }
+
+    @Test
+    public void nonAsciiLettersAreFolded() {
+        String text = "Über über ÜBER Straße ΣΟΦΊΑ σοφία 東京 𝐀";
+        assertWords(Map.of("über", 3L, "straße", 1L, "σοφία", 2L, "東京", 1L, "𝐀", 1L), text);
+        assertEquals(3, WordCounter.count(text).get("Über"));
+        assertEquals(3, countBytes(text).get("Über"));
+        assertEquals(2, countBytes(text).get("Σοφία"));
+    }
+
+    @Test
+    public void malformedUtf8Separates() {
+        // like the decoded String, in which every malformed sequence is a U+FFFD
+        byte[] bytes = {'a', 'b', (byte) 0xFF, 'c', (byte) 0xC3, 'd', (byte) 0xC0, (byte) 0xAF, 'e', (byte) 0xE2, (byte) 0x82};
+        assertEquals(Map.of("ab", 1L, "c", 1L, "d", 1L, "e", 1L), WordCounter.count(ByteBuffer.wrap(bytes)).toMap());
+        assertEquals(WordCounter.count(new String(bytes, StandardCharsets.UTF_8)).toMap(), WordCounter.count(ByteBuffer.wrap(bytes)).toMap());
+    }
+
+    @Test
+    public void byteModeMatchesCharModeOnRandomBytes() {
+        String[] pieces = {"a", "Z", "0", " ", ".", "é", "Ü", "İ", "ß", "—", " ", "“", "ж", "東", "😀", "𝐀"};
+        SplittableRandom random = new SplittableRandom(42);
+        for (int round = 0; round < 200; round++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = random.nextInt(200); i > 0; i--) {
+                text.append(pieces[random.nextInt(pieces.length)]);
+            }
+            byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            // some random bytes, mostly malformed sequences
+            for (int i = bytes.length == 0 ? 0 : random.nextInt(4); i > 0; i--) {
+                bytes[random.nextInt(bytes.length)] = (byte) random.nextInt(256);
+            }
+            String decoded = new String(bytes, StandardCharsets.UTF_8);
+            assertEquals(decoded, WordCounter.count(decoded).toMap(), WordCounter.count(ByteBuffer.wrap(bytes)).toMap());
+        }
+    }
+
+    @Test
+    public void parallelCountsMatchSequentialCounts() {
+        StringBuilder text = new StringBuilder();
+        String[] words = {"Über", "über", "a—b", "“quoted”", "x y", "İstanbul", "Straße", "東京", "word"};
+        SplittableRandom random = new SplittableRandom(7);
+        while (text.length() < 4 * WordCounter.MIN_PARALLEL_LENGTH) {
+            text.append(words[random.nextInt(words.length)]).append(random.nextBoolean() ? " " : "\n");
+        }
+        String string = text.toString();
+        Map<String, Long> expected = WordCounter.count(string).toMap();
+        assertEquals(expected, WordCounter.countParallel(string).toMap());
+        assertEquals(expected, WordCounter.countParallel(ByteBuffer.wrap(string.getBytes(StandardCharsets.UTF_8))).toMap());
+    }
+
+    @Test
+    public void textWithoutAsciiSeparatorsIsCutInParallel() {
+        // only non-ASCII separators: ideographic comma and full stop, em dash, emoji, and malformed bytes
+        String[] pieces = {"東京", "大阪", "漢字", "𝐀", "ß", "İ", "Ж", "、", "。", "—", "😀", "\uFFFD"};
+        SplittableRandom random = new SplittableRandom(11);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 2 * WordCounter.MIN_PARALLEL_LENGTH) {
+            text.append(pieces[random.nextInt(pieces.length)]);
+        }
+        String string = text.toString();
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < 20; i++) {
+            bytes[random.nextInt(bytes.length)] = (byte) (0x80 + random.nextInt(0x80));
+        }
+        String decoded = new String(bytes, StandardCharsets.UTF_8);
+        Map<String, Long> expected = WordCounter.count(decoded).toMap();
+
+        // also with a position: the cuts are relative to it
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 3).position(3).put(bytes).position(3);
+        int[] cuts = WordCounter.cuts(buffer);
+        assertTrue("parts: " + (cuts.length - 1), cuts.length - 1 > 1);
+        for (int i = 1; i < cuts.length - 1; i++) {
+            // a cut is never in the middle of a sequence
+            assertTrue((bytes[cuts[i]] & 0xC0) != 0x80);
+            String before = new String(bytes, 0, cuts[i], StandardCharsets.UTF_8);
+            String after = new String(bytes, cuts[i], bytes.length - cuts[i], StandardCharsets.UTF_8);
+            assertEquals(decoded, before + after);
+        }
+        assertEquals(expected, WordCounter.countParallel(buffer).toMap());
+        assertEquals(expected, WordCounter.countParallel(decoded).toMap());
+    }
+
+    @Test
+    public void oneLongWordIsOnePart() {
+        String word = "東".repeat(WordCounter.MIN_PARALLEL_LENGTH);
+        ByteBuffer buffer = ByteBuffer.wrap(word.getBytes(StandardCharsets.UTF_8));
+        assertArrayEquals(new int[] {0, buffer.limit()}, WordCounter.cuts(buffer));
+        assertEquals(Map.of(word, 1L), WordCounter.countParallel(buffer).toMap());
+    }
+}